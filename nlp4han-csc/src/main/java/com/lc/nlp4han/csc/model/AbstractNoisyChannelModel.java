@@ -15,6 +15,7 @@ import com.lc.nlp4han.csc.util.FileOperator;
 import com.lc.nlp4han.csc.util.CommonUtils;
 import com.lc.nlp4han.csc.util.Sentence;
 import com.lc.nlp4han.csc.util.Sequence;
+import com.lc.nlp4han.ml.ngram.model.LanguageModelState;
 
 /**
  *<ul>
@@ -46,10 +47,13 @@ public abstract class AbstractNoisyChannelModel implements NoisyChannelModel {
 	
 	/**
 	 * 根据给定句子，给出得分最高的前size个候选句子
+	 * <li>错误位置从左到右处理，每个候选句子保存已替换部分的n元上下文状态及其概率的对数之和，
+	 * 替换一个字时只对该字及其后n-1个受影响的位置重新打分，更靠后的位置使用原句的概率
+	 * <li>句子概率与{@link #getSourceModelLogScore(Sentence)}使用同一个n元模型计算，结果相同
 	 * @param confusionSet	字的混淆字集
 	 * @param beamSize		搜索束的大小
 	 * @param sentence		待搜索的原始句子
-	 * @param locations		错误字的位置
+	 * @param locations		错误字的位置，按递增顺序排列
 	 * @return				得分最高的前size个候选句子
 	 */
 	protected ArrayList<Sentence> beamSearch(ConfusionSet confusionSet, int beamSize, Sentence sentence, 
@@ -58,9 +62,12 @@ public abstract class AbstractNoisyChannelModel implements NoisyChannelModel {
 	    Queue<Sequence> next = new PriorityQueue<>(beamSize);
 	    Queue<Sequence> tmp;
 	    
+	    double[] suffix = suffixLogProbs(sentence);
+	    LanguageModelState[] window = {nGramModel.newState(), nGramModel.newState()};
+	    
 	    //原始句子的得分
 	    double score = 1.0;
-	    prev.add(new Sequence(sentence, score));
+	    prev.add(new Sequence(sentence, score, nGramModel.newSentenceState(), 0, 0.0));
 	    	
 	    for(int index : locations) {//遍历每一个错误位置
 	    	String character = sentence.getToken(index);
@@ -74,17 +81,31 @@ public abstract class AbstractNoisyChannelModel implements NoisyChannelModel {
 	    	int sz = Math.min(beamSize, prev.size());
 	    	for(int sc = 0; prev.size() > 0 && sc < sz; sc++) {
 	    		Sequence top = prev.remove();
+	    		
+	    		//上次替换的位置与当前位置之间都是原句的字，上下文状态扩展到当前位置之前
+	    		LanguageModelState state = top.getState();
+	    		LanguageModelState free = nGramModel.newState();
+	    		double prefix = top.getPrefixLogProb();
+	    		for(int i = top.getEnd(); i < index; i++) {
+	    			prefix += nGramModel.score(state, sentence.getToken(i), free);
+	    			LanguageModelState t = state;
+	    			state = free;
+	    			free = t;
+	    		}
 
 	    		Iterator<String> iterator = tmpCands.iterator();
 	    		while(iterator.hasNext()) {	//遍历当前字的所有混淆字，分别替换原始字组成新句子，计算句子得分
 	    			String candCharacter = iterator.next();
 	    			Sentence candSen = top.getSentence().setToken(index, candCharacter);
-	    			score = getSourceModelLogScore(candSen) * getChannelModelLogScore(sentence, index, candCharacter, tmpCands);
+	    			LanguageModelState candState = nGramModel.newState();
+	    			double candPrefix = prefix + nGramModel.score(state, candCharacter, candState);
+	    			double logProb = candPrefix + windowLogProb(candSen, index, candState, window, suffix);
+	    			score = nGramModel.toSentenceProb(logProb) * getChannelModelLogScore(sentence, index, candCharacter, tmpCands);
 	    			
 	    			if(candCharacter.equals(character))
 	    				score *= magicNumber;
 	    				
-	    			next.add(new Sequence(candSen, score));
+	    			next.add(new Sequence(candSen, score, candState, index + 1, candPrefix));
 	    		}
 	        }
 
@@ -104,6 +125,59 @@ public abstract class AbstractNoisyChannelModel implements NoisyChannelModel {
 		return result;
 	}
 	
+	/**
+	 * 计算原句每个位置在原句上下文中的概率的对数，位置size为句子结束标签
+	 * @param sentence	原句
+	 * @return			suffix[k]为位置k及之后所有位置的概率的对数之和，suffix[size + 1]为0
+	 */
+	private double[] suffixLogProbs(Sentence sentence) {
+		int size = sentence.size();
+		double[] suffix = new double[size + 2];
+		LanguageModelState state = nGramModel.newSentenceState();
+		LanguageModelState free = nGramModel.newState();
+		for(int i = 0; i < size; i++) {
+			suffix[i] = nGramModel.score(state, sentence.getToken(i), free);
+			LanguageModelState t = state;
+			state = free;
+			free = t;
+		}
+		suffix[size] = nGramModel.scoreEnd(state, free);
+		
+		for(int i = size - 1; i >= 0; i--)
+			suffix[i] += suffix[i + 1];
+		
+		return suffix;
+	}
+	
+	/**
+	 * 计算替换位置之后各位置的概率的对数之和
+	 * <li>只有替换位置之后n-1个位置的上下文包含替换的字，需要重新打分；更靠后的位置的上下文都是原句的字，使用原句的概率
+	 * @param candidate	替换后的句子
+	 * @param index		替换的位置
+	 * @param state		包含替换的字的上下文状态
+	 * @param window	两个可重用的状态
+	 * @param suffix	原句各位置之后的概率的对数之和
+	 * @return			替换位置之后（包括句子结束标签）的概率的对数之和
+	 */
+	private double windowLogProb(Sentence candidate, int index, LanguageModelState state, 
+			LanguageModelState[] window, double[] suffix) {
+		int size = candidate.size();
+		int last = Math.min(index + nGramModel.getOrder() - 1, size);
+		
+		double logProb = suffix[last + 1];
+		LanguageModelState in = state;
+		for(int i = index + 1; i <= last; i++) {
+			LanguageModelState out = in == window[0] ? window[1] : window[0];
+			if(i < size)
+				logProb += nGramModel.score(in, candidate.getToken(i), out);
+			else
+				logProb += nGramModel.scoreEnd(in, out);
+			in = out;
+		}
+		
+		return logProb;
+	}
+	
 	/**
 	 * 返回候选句子noisy channel model：p(s|c)*p(c)中的p(c)
 	 * @param candidate	候选句子
@@ -147,23 +221,21 @@ public abstract class AbstractNoisyChannelModel implements NoisyChannelModel {
 	protected double getTotalPrefixAndSuffixBigramCount(Sentence sentence, int index, HashSet<String> cands, Dictionary dictionary) {
 		double totalPre = 1.0;
 		double totalNext = 1.0;
+		String preToken = "";
+		String nextToken = "";
+		
+		if(index > 0)
+			preToken = sentence.getToken(index - 1);
+		if(index < sentence.size() - 1)
+			nextToken = sentence.getToken(index + 1);
+		
 		Iterator<String> iterator = cands.iterator();
 		while(iterator.hasNext()) {
 			String cand = iterator.next();
-			String preToken = "";
-			String nextToken = "";
 			
-			if(index > 0)
-				preToken = sentence.getToken(index - 1);
-			if(index < sentence.size() - 1)
-				nextToken = sentence.getToken(index + 1);
-			
-			String preBigram = preToken + cand;
-			String nextBigram = cand + nextToken;
-			if(dictionary.contains(preBigram))
-				totalPre += dictionary.getCount(preBigram);
-			if(dictionary.contains(nextBigram))
-				totalNext += dictionary.getCount(nextBigram);
+			//不在字典中的bigram计数为0
+			totalPre += dictionary.getCount(preToken, cand);
+			totalNext += dictionary.getCount(cand, nextToken);
 		}
 		
 		return totalPre * totalNext;
@@ -222,14 +294,12 @@ public abstract class AbstractNoisyChannelModel implements NoisyChannelModel {
 	 */
 	protected ArrayList<Integer> getErrorLocationsBySIMD(Dictionary dictionary, Sentence sentence) {
 		ArrayList<Integer> errorLocations = new ArrayList<>();
-		ArrayList<String> bigrams = CommonUtils.generateNGrams(sentence.toString().split(""), 2);
+		String text = sentence.toString();
 
 		//可能的错误位置， 当前bigram与下一个bigram中有不存在与字典的，设置当前bigram的第二个字为可能出错的字
-		for(int index = 0; index < bigrams.size() - 1; index++) {
-			String currentBigram = bigrams.get(index);
-			String nextBigram = bigrams.get(index + 1);
-			
-			if(!(dictionary.contains(currentBigram) && dictionary.contains(nextBigram))) {
+		//bigram直接在句子上按字符区间查字典
+		for(int index = 0; index < text.length() - 2; index++) {
+			if(!(dictionary.contains(text, index, index + 2) && dictionary.contains(text, index + 1, index + 3))) {
 				String wrong = sentence.getToken(index + 1);
 				//非汉字不考虑
 				if(CommonUtils.isHanZi(wrong))
@@ -91,11 +91,9 @@ public class HUSTNoisyChannelModelBasedBigram extends AbstractNoisyChannelModel
 			preToken = sentence.getToken(location - 1);
 		if(location < sentence.size() - 1)
 			nextToken = sentence.getToken(location + 1);
-		String prefixBigram = preToken + candidate;
-		String suffixBigram = candidate + nextToken;
 		
-		int prefixBigramCount = dictionary.getCount(prefixBigram);
-		int suffixBigramCount = dictionary.getCount(suffixBigram);
+		int prefixBigramCount = dictionary.getCount(preToken, candidate);
+		int suffixBigramCount = dictionary.getCount(candidate, nextToken);
 		
 		return prefixBigramCount * suffixBigramCount / totalBigram;
 	}	
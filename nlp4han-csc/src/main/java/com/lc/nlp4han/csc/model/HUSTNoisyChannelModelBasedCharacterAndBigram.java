@@ -92,12 +92,10 @@ public class HUSTNoisyChannelModelBasedCharacterAndBigram extends AbstractNoisyC
 			preToken = sentence.getToken(location - 1);
 		if(location < sentence.size() - 1)
 			nextToken = sentence.getToken(location + 1);
-		String prefixBigram = preToken + candidate;
-		String suffixBigram = candidate + nextToken;
 		
 		int count = dictionary.getCount(candidate);
-		int prefixBigramCount = dictionary.getCount(prefixBigram);
-		int suffixBigramCount = dictionary.getCount(suffixBigram);
+		int prefixBigramCount = dictionary.getCount(preToken, candidate);
+		int suffixBigramCount = dictionary.getCount(candidate, nextToken);
 		
 		return (count / total) * (prefixBigramCount * suffixBigramCount / totalBigram );
 	}	
@@ -5,8 +5,10 @@ import java.io.IOException;
 
 import com.lc.nlp4han.csc.util.Sentence;
 import com.lc.nlp4han.ml.ngram.io.BinaryFileNGramModelWriter;
+import com.lc.nlp4han.ml.ngram.model.LanguageModelState;
 import com.lc.nlp4han.ml.ngram.model.NGramLanguageModel;
 import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
 import com.lc.nlp4han.ml.ngram.utils.StringGram;
 
 /**
@@ -25,13 +27,55 @@ public class HustNGramModel implements NGramModel {
 		this.nGramModel = nGramModel;
 	}
 
+	/**
+	 * 从句首状态开始逐字打分，与getSequenceLogProbability(sequence, getOrder(), true)一致
+	 */
 	@Override
 	public double getSentenceLogProb(Sentence sentence, int n) {
-		Gram[] sequence = new StringGram[sentence.size()];
-		for(int i=0; i< sentence.size(); i++)
-			sequence[i] = new StringGram(sentence.getToken(i));
+		LanguageModelState state = newSentenceState();
+		LanguageModelState next = newState();
+		LanguageModelState tmp;
+		
+		double logProb = 0.0;
+		for(int i=0; i< sentence.size(); i++) {
+			logProb += score(state, sentence.getToken(i), next);
+			tmp = state;
+			state = next;
+			next = tmp;
+		}
+		logProb += scoreEnd(state, next);
+		
+		return toSentenceProb(logProb);
+	}
+	
+	@Override
+	public LanguageModelState newState() {
+		return nGramModel.newState();
+	}
+	
+	@Override
+	public LanguageModelState newSentenceState() {
+		return nGramModel.newSentenceState();
+	}
+	
+	@Override
+	public double score(LanguageModelState in, String token, LanguageModelState out) {
+		return nGramModel.score(in, nGramModel.getVocabulary().getId(new StringGram(token)), out);
+	}
+	
+	@Override
+	public double scoreEnd(LanguageModelState in, LanguageModelState out) {
+		return nGramModel.score(in, nGramModel.getVocabulary().getId(PseudoWord.End), out);
+	}
+	
+	@Override
+	public double toSentenceProb(double logProb) {
+		if (Double.isNaN(logProb) || Double.isInfinite(logProb))
+			return 0.0;
+		else if (logProb != 0)
+			return Math.pow(10, logProb);
 		
-		return nGramModel.getSequenceLogProbability(sequence, getOrder(), true);
+		return logProb;
 	}
 
 	@Override
@@ -1,6 +1,7 @@
 package com.lc.nlp4han.csc.ngram;
 
 import com.lc.nlp4han.csc.util.Sentence;
+import com.lc.nlp4han.ml.ngram.model.LanguageModelState;
 
 /**
  *<ul>
@@ -32,4 +33,40 @@ public interface NGramModel {
 	 * @return		n元串的概率
 	 */
 	public double getNGramLogProb(String[] grams, int n);
+	
+	/**
+	 * 返回上下文为空的状态，用于存放{@link #score(LanguageModelState, String, LanguageModelState)}的结果
+	 * @return	新状态
+	 */
+	public LanguageModelState newState();
+	
+	/**
+	 * 返回上下文为句子开始标签的状态
+	 * @return	新状态
+	 */
+	public LanguageModelState newSentenceState();
+	
+	/**
+	 * 返回给定上下文下字的概率的对数，并将加入该字后的上下文写入out
+	 * @param in	上下文状态
+	 * @param token	字
+	 * @param out	加入字后的状态，不能与in为同一个对象
+	 * @return		概率的对数
+	 */
+	public double score(LanguageModelState in, String token, LanguageModelState out);
+	
+	/**
+	 * 返回给定上下文下句子结束标签的概率的对数
+	 * @param in	上下文状态
+	 * @param out	加入结束标签后的状态，不能与in为同一个对象
+	 * @return		概率的对数
+	 */
+	public double scoreEnd(LanguageModelState in, LanguageModelState out);
+	
+	/**
+	 * 将逐字累加得到的句子概率的对数转换为与{@link #getSentenceLogProb(Sentence, int)}相同的句子概率
+	 * @param logProb	句子概率的对数
+	 * @return			句子的n元概率
+	 */
+	public double toSentenceProb(double logProb);
 }
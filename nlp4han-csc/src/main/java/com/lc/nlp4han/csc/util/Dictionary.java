@@ -4,13 +4,17 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map.Entry;
+
+import com.lc.nlp4han.util.DoubleArrayTrie;
 
 /**
  *<ul>
  *<li>Description: 字典，并保存字的频数 
+ *<li>建立字典时用HashMap累计频数；第一次查找或调用{@link #freeze()}后字典冻结，编译为双数组Trie树并释放HashMap，
+ *<li>之后只由Trie树保存频数，再添加、更新或移除会抛出IllegalStateException
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2017年10月13日
@@ -19,10 +23,20 @@ import java.util.Map.Entry;
 public class Dictionary {
 	
 	/**
-	 * 字与其在语料中出现频数的映射
+	 * 字与其在语料中出现频数的映射，字典冻结后为null
 	 */
 	private HashMap<String, Integer> dict;
 	
+	/**
+	 * 字典冻结后保存频数的双数组Trie树，冻结前为null
+	 */
+	private volatile DoubleArrayTrie trie;
+	
+	/**
+	 * 字典冻结后的所有字，用于遍历和写出字典
+	 */
+	private String[] words;
+	
 	public Dictionary() {
 		dict = new HashMap<>();
 	}
@@ -36,6 +50,7 @@ public class Dictionary {
 	 * @param character	待添加的词
 	 */
 	public void add(String character) {
+		checkNotFrozen();
 		if(dict.containsKey(character))
 			dict.put(character, dict.get(character)+ 1);
 		else
@@ -48,8 +63,10 @@ public class Dictionary {
 	 * @param count		所加的值
 	 */
 	public void add(String character, int count) {
-		if(contains(character)) 
-			dict.put(character, getCount(character) + count);
+		checkNotFrozen();
+		Integer old = dict.get(character);
+		if(old != null) 
+			dict.put(character, old + count);
 		else
 			dict.put(character, count);
 	}
@@ -60,6 +77,7 @@ public class Dictionary {
 	 * @return			给定词的数量
 	 */
 	public int remove(String character) {
+		checkNotFrozen();
 		int count = 0;
 		if(dict.containsKey(character)) {
 			count = dict.get(character);
@@ -75,7 +93,7 @@ public class Dictionary {
 	 * @return			true-包含/false-不包含
 	 */
 	public boolean contains(String character) {
-		return dict.containsKey(character);
+		return getTrie().contains(character);
 	}
 	
 	/**
@@ -84,11 +102,7 @@ public class Dictionary {
 	 * @return		给定词的数量
 	 */
 	public int getCount(String character) {
-		int count = 0;
-		if(dict.containsKey(character))
-			count = dict.get(character);
-		
-		return count;
+		return count(getTrie().get(character));
 	}
 	
 	/**
@@ -97,18 +111,90 @@ public class Dictionary {
 	 * @param count		character更新后的数量
 	 */
 	public void update(String character, int count) {
+		checkNotFrozen();
 		dict.put(character, count);
 	}
 	
+	/**
+	 * 判断text[start, end)是否在字典中，不创建字符串
+	 * @param text	文本
+	 * @param start	开始位置
+	 * @param end	结束位置(不含)
+	 * @return		true-包含/false-不包含
+	 */
+	public boolean contains(CharSequence text, int start, int end) {
+		return getTrie().contains(text, start, end);
+	}
+	
+	/**
+	 * 返回text[start, end)的数量，不创建字符串
+	 * @param text	文本
+	 * @param start	开始位置
+	 * @param end	结束位置(不含)
+	 * @return		给定词的数量
+	 */
+	public int getCount(CharSequence text, int start, int end) {
+		return count(getTrie().get(text, start, end));
+	}
+	
+	/**
+	 * 返回first与second连接成的词的数量，不拼接字符串
+	 * @param first		前半部分
+	 * @param second	后半部分
+	 * @return			连接成的词的数量
+	 */
+	public int getCount(String first, String second) {
+		DoubleArrayTrie trie = getTrie();
+		
+		return count(trie.getValue(trie.next(trie.next(DoubleArrayTrie.ROOT, first), second)));
+	}
+	
+	private static int count(int value) {
+		return value == DoubleArrayTrie.NOT_FOUND ? 0 : value;
+	}
+	
+	/**
+	 * 冻结字典：编译双数组Trie树并释放HashMap，之后字典不能再修改，已冻结时不做任何事
+	 * @return	字典本身
+	 */
+	public Dictionary freeze() {
+		getTrie();
+		
+		return this;
+	}
+	
+	/**
+	 * 返回字典的Trie树，第一次调用时冻结字典
+	 * @return	Trie树
+	 */
+	private DoubleArrayTrie getTrie() {
+		DoubleArrayTrie current = trie;
+		if(current == null) {
+			synchronized (this) {
+				current = trie;
+				if(current == null) {
+					words = dict.keySet().toArray(new String[dict.size()]);
+					current = DoubleArrayTrie.build(dict);
+					trie = current;
+					dict = null;
+				}
+			}
+		}
+		
+		return current;
+	}
+	
+	private void checkNotFrozen() {
+		if(trie != null)
+			throw new IllegalStateException("字典已冻结，不能再修改");
+	}
+	
 	/**
 	 * 返回字典大小
 	 * @return	字典大小
 	 */
 	public int size() {
-		if(dict != null)
-			return dict.size();
-		
-		return 0;
+		return getTrie().size();
 	}
 	
 	/**
@@ -121,8 +207,9 @@ public class Dictionary {
 		int size = size();
 		dos.writeInt(size);
 		
-		for(Entry<String, Integer> entry : dict.entrySet()) {
-			dos.writeUTF(entry.getKey() + "\t" + entry.getValue());
+		DoubleArrayTrie current = getTrie();
+		for(String word : words) {
+			dos.writeUTF(word + "\t" + current.get(word));
 		}
 		
 		dos.close();
@@ -133,6 +220,8 @@ public class Dictionary {
 	 * @return
 	 */
 	public Iterator<String> iterator() {
-		return dict.keySet().iterator();
+		getTrie();
+		
+		return Arrays.asList(words).iterator();
 	}
 }
\ No newline at end of file
@@ -199,7 +199,7 @@ public class FileOperator {
 		}
 		reader.close();
 	
-		return dictionary;
+		return dictionary.freeze();
 	}
 
 	/**
@@ -1,5 +1,7 @@
 package com.lc.nlp4han.csc.util;
 
+import com.lc.nlp4han.ml.ngram.model.LanguageModelState;
+
 /**
  *<ul>
  *<li>Description: 句子及其得分，用于BeamSearch
@@ -12,11 +14,28 @@ public class Sequence implements Comparable<Sequence>{
 	
 	private Sentence sentence;
 	private double score;
+	private LanguageModelState state;	//句子前end个字的n元上下文
+	private int end;					//已打分的前缀的长度
+	private double prefixLogProb;		//前end个字的概率的对数之和
 	
 	public Sequence(Sentence sentence, double score) {
 		this.sentence = sentence;
 		this.score = score;
 	}
+	
+	/**
+	 * @param sentence		句子
+	 * @param score			得分
+	 * @param state			句子前end个字的n元上下文，之后的字不再改变
+	 * @param end			已打分的前缀的长度
+	 * @param prefixLogProb	前end个字的概率的对数之和
+	 */
+	public Sequence(Sentence sentence, double score, LanguageModelState state, int end, double prefixLogProb) {
+		this(sentence, score);
+		this.state = state;
+		this.end = end;
+		this.prefixLogProb = prefixLogProb;
+	}
 
 	@Override
 	public int compareTo(Sequence o) {
@@ -33,6 +52,18 @@ public class Sequence implements Comparable<Sequence>{
 		return sentence;
 	}
 	
+	public LanguageModelState getState() {
+		return state;
+	}
+	
+	public int getEnd() {
+		return end;
+	}
+	
+	public double getPrefixLogProb() {
+		return prefixLogProb;
+	}
+	
 	public String toString() {
 		return sentence.toString();
 	}
@@ -0,0 +1,112 @@
+package com.lc.nlp4han.csc.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.csc.ngram.HustNGramModel;
+import com.lc.nlp4han.csc.util.ConfusionSet;
+import com.lc.nlp4han.csc.util.Sentence;
+import com.lc.nlp4han.ml.ngram.model.LaplaceLanguageModelTrainer;
+import com.lc.nlp4han.ml.ngram.model.NGramCounter;
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ * 测试beamSearch增量计算的句子得分与整句重新计算的得分一致
+ */
+public class AbstractNoisyChannelModelTest {
+
+	private static final String[] CHARS = {"我", "爱", "中", "国", "人", "民", "大", "会", "堂", "天"};
+
+	private AbstractNoisyChannelModel model(ConfusionSet confusionSet) throws IOException {
+		Random random = new Random(7);
+		Gram[] grams = new Gram[3000];
+		for(int i = 0; i < grams.length; i++)
+			grams[i] = new StringGram(CHARS[random.nextInt(random.nextInt(3) == 0 ? CHARS.length : 5)]);
+		HustNGramModel nGramModel = new HustNGramModel(new LaplaceLanguageModelTrainer(new NGramCounter(grams, 3), 3).trainModel());
+
+		return new AbstractNoisyChannelModel(confusionSet, nGramModel, 1.0) {
+			@Override
+			public Sentence getBestSentence(Sentence sentence) {
+				return null;
+			}
+
+			@Override
+			public ArrayList<Sentence> getBestKSentence(Sentence sentence, int k) {
+				return null;
+			}
+
+			@Override
+			public double getSourceModelLogScore(Sentence candidate) {
+				return nGramModel.getSentenceLogProb(candidate, order);
+			}
+
+			@Override
+			public double getChannelModelLogScore(Sentence sentence, int location, String candidate, HashSet<String> cands) {
+				return 1.0;
+			}
+		};
+	}
+
+	/**
+	 * 枚举所有位置的所有替换，按整句的得分从高到低排列
+	 */
+	private List<Sentence> exhaustive(AbstractNoisyChannelModel model, ConfusionSet confusionSet, Sentence sentence, List<Integer> locations) {
+		List<Sentence> sentences = new ArrayList<>();
+		sentences.add(sentence);
+		for(int index : locations) {
+			HashSet<String> cands = new HashSet<>(confusionSet.getConfusionSet(sentence.getToken(index)));
+			cands.add(sentence.getToken(index));
+			List<Sentence> next = new ArrayList<>();
+			for(Sentence s : sentences)
+				for(String cand : cands)
+					next.add(s.setToken(index, cand));
+			sentences = next;
+		}
+
+		Collections.sort(sentences, (a, b) -> Double.compare(model.getSourceModelLogScore(b), model.getSourceModelLogScore(a)));
+
+		return sentences;
+	}
+
+	@Test
+	public void testIncrementalScores() throws IOException {
+		ConfusionSet confusionSet = new ConfusionSet();
+		confusionSet.addSimilarityPronunciations("爱", new HashSet<>(Arrays.asList("会", "天")));
+		confusionSet.addSimilarityPronunciations("国", new HashSet<>(Arrays.asList("人", "民")));
+		confusionSet.addSimilarityPronunciations("民", new HashSet<>(Arrays.asList("国", "大")));
+		confusionSet.addSimilarityPronunciations("堂", new HashSet<>(Arrays.asList("天", "中")));
+		AbstractNoisyChannelModel model = model(confusionSet);
+
+		// 随机的句子，包括相邻的位置、句首和句尾的位置
+		Random random = new Random(8);
+		String[] confusable = {"爱", "国", "民", "堂"};
+		for(int n = 0; n < 50; n++) {
+			String[] tokens = new String[2 + random.nextInt(8)];
+			List<Integer> locations = new ArrayList<>();
+			for(int i = 0; i < tokens.length; i++) {
+				if(random.nextInt(3) == 0) {
+					tokens[i] = confusable[random.nextInt(confusable.length)];
+					locations.add(i);
+				}
+				else {
+					tokens[i] = CHARS[random.nextInt(CHARS.length)];
+				}
+			}
+			Sentence sentence = new Sentence(tokens);
+			List<Sentence> expected = exhaustive(model, confusionSet, sentence, locations);
+
+			ArrayList<Sentence> result = model.beamSearch(confusionSet, 1000, sentence, new ArrayList<>(locations));
+			assertEquals(expected.subList(0, result.size()), result);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.lc.nlp4han.csc.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class DictionaryTest {
+
+	@Test
+	public void testLookupAfterBuild() {
+		Dictionary dictionary = new Dictionary();
+		dictionary.add("我");
+		dictionary.add("我");
+		dictionary.add("我们", 3);
+		dictionary.update("们", 5);
+		dictionary.add("你");
+		assertEquals(1, dictionary.remove("你"));
+
+		assertEquals(2, dictionary.getCount("我"));
+		assertEquals(3, dictionary.getCount("我", "们"));
+		assertEquals(3, dictionary.getCount("说我们", 1, 3));
+		assertTrue(dictionary.contains("们"));
+		assertFalse(dictionary.contains("你"));
+		assertEquals(0, dictionary.getCount("你"));
+		assertEquals(3, dictionary.size());
+
+		HashSet<String> words = new HashSet<>();
+		Iterator<String> iterator = dictionary.iterator();
+		while(iterator.hasNext())
+			words.add(iterator.next());
+		assertEquals(3, words.size());
+		assertTrue(words.contains("我们"));
+	}
+
+	@Test
+	public void testFrozenAfterFirstLookup() {
+		Dictionary dictionary = new Dictionary();
+		dictionary.add("我");
+		assertTrue(dictionary.contains("我"));
+
+		// 第一次查找后字典冻结，修改会失败而不是重新编译
+		try {
+			dictionary.add("我");
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		try {
+			dictionary.update("我", 2);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		try {
+			dictionary.remove("我");
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		assertEquals(1, dictionary.getCount("我"));
+
+		assertSame(dictionary, dictionary.freeze());
+	}
+}
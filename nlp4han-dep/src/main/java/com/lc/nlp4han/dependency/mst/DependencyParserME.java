@@ -153,6 +153,50 @@ public class DependencyParserME implements DependencyParser
 		}
 	}
 
+	/**
+	 * 产生窗口内所有词对的上下文，一次批量计算各词对依存关系的概率
+	 * 
+	 * @param sentence
+	 *            词语
+	 * @param pos
+	 *            词性
+	 * @param additionaContext
+	 *            额外的信息
+	 * @param lenLeft
+	 *            依存词相对中心词的最小位置差
+	 * @param lenRight
+	 *            依存词相对中心词的最大位置差
+	 * @return 下标[i][j]为词对(i, j)的各依存关系的概率，窗口外的词对为null
+	 */
+	private double[][][] evalPairs(String[] sentence, String[] pos, Object[] additionaContext, int lenLeft,
+			int lenRight)
+	{
+		List<String[]> contexts = new ArrayList<>();
+		List<int[]> pairs = new ArrayList<>();
+		for (int i = 1; i < sentence.length; i++)
+		{
+			for (int j = 0; j - i <= lenRight && j - i >= lenLeft && j < sentence.length; j++)
+			{
+				if (i != j)
+				{
+					contexts.add(contextGenerator.getContext(i, j, sentence, pos, additionaContext));
+					pairs.add(new int[] { i, j });
+				}
+			}
+		}
+
+		double[][] scores = mm.evalBatch(contexts.toArray(new String[contexts.size()][]), null);
+
+		double[][][] probs = new double[sentence.length][sentence.length][];
+		for (int k = 0; k < scores.length; k++)
+		{
+			int[] pair = pairs.get(k);
+			probs[pair[0]][pair[1]] = scores[k];
+		}
+
+		return probs;
+	}
+
 	/**
 	 * 获得关系非null的最大概率及其对应的关系
 	 * 
@@ -190,14 +234,14 @@ public class DependencyParserME implements DependencyParser
 			lenRight = DependencyParseContextGeneratorConf.RIGHT;
 		}
 
+		double[][][] probs = evalPairs(sentence, pos, additionaContext, lenLeft, lenRight);
 		while (i < sentence.length)
 		{
 			while (j - i <= lenRight && j - i >= lenLeft && j < sentence.length)
 			{
 				if (i != j)
 				{
-					String[] context = contextGenerator.getContext(i, j, sentence, pos, additionaContext);
-					double temp[] = mm.eval(context);
+					double temp[] = probs[i][j];
 
 					String tempDependency[] = new String[temp.length];
 					for (int k = 0; k < temp.length; k++)
@@ -274,6 +318,7 @@ public class DependencyParserME implements DependencyParser
 			lenRight = DependencyParseContextGeneratorConf.RIGHT;
 		}
 
+		double[][][] probs = evalPairs(sentence, pos, additionaContext, lenLeft, lenRight);
 		while (i < sentence.length)
 		{
 			while (j - i <= lenRight && j - i >= lenLeft && j < sentence.length)
@@ -281,8 +326,7 @@ public class DependencyParserME implements DependencyParser
 				if (i != j)
 				{
 					Queue<DepDatum> queue = new PriorityQueue<>();
-					String[] context = contextGenerator.getContext(i, j, sentence, pos, additionaContext);
-					double temp[] = mm.eval(context);
+					double temp[] = probs[i][j];
 					String tempDependency[] = new String[temp.length];
 					for (int k = 0; k < temp.length; k++)
 					{
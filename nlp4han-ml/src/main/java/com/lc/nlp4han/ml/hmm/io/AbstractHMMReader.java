@@ -5,6 +5,7 @@ import java.util.HashMap;
 
 import com.lc.nlp4han.ml.hmm.model.EmissionProbEntry;
 import com.lc.nlp4han.ml.hmm.model.HMModel;
+import com.lc.nlp4han.ml.hmm.model.HMModelBasedArray;
 import com.lc.nlp4han.ml.hmm.model.HMModelBasedMap;
 import com.lc.nlp4han.ml.hmm.model.TransitionProbEntry;
 import com.lc.nlp4han.ml.hmm.utils.Dictionary;
@@ -47,6 +48,17 @@ public abstract class AbstractHMMReader {
 	 * @throws ClassNotFoundException
 	 */
 	public HMModel readModel() throws IOException, ClassNotFoundException {
+		return readModel(false);
+	}
+	
+	/**
+	 * 重构n元模型  
+	 * @param basedArray	true-返回基于数组的模型{@link HMModelBasedArray}，解码更快；false-返回基于Map的模型
+	 * @return 读取n元模型
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public HMModel readModel(boolean basedArray) throws IOException, ClassNotFoundException {
 		counts = new int[6];
 		
 		//读取模型各参数的数量
@@ -70,7 +82,11 @@ public abstract class AbstractHMMReader {
 		
 		close();
 		
-		return new HMModelBasedMap(order, dict, pi, transitionMatrix, emissionMatrix);
+		HMModel model = new HMModelBasedMap(order, dict, pi, transitionMatrix, emissionMatrix);
+		if(basedArray)
+			return new HMModelBasedArray(model);
+		
+		return model;
 	}
 	
 	/**
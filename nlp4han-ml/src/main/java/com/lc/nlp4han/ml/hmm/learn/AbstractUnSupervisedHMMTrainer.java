@@ -1,6 +1,7 @@
 package com.lc.nlp4han.ml.hmm.learn;
 
 import com.lc.nlp4han.ml.hmm.model.HMModel;
+import com.lc.nlp4han.ml.util.TrainingListener;
 
 /**
  *<ul>
@@ -14,6 +15,11 @@ public abstract class AbstractUnSupervisedHMMTrainer implements HMMTrainer {
 		
 	protected HMModel model;
 	
+	/**
+	 * 接收每次迭代的训练指标，为null时不统计
+	 */
+	protected TrainingListener listener;
+	
 	public AbstractUnSupervisedHMMTrainer() {
 		
 	}
@@ -24,6 +30,14 @@ public abstract class AbstractUnSupervisedHMMTrainer implements HMMTrainer {
 			throw new IllegalArgumentException("非监督训练目前只支持1阶HMM");
 	}
 
+	/**
+	 * 设置接收每次迭代的训练指标的监听器
+	 * @param listener	监听器，为null时不统计
+	 */
+	public void setTrainingListener(TrainingListener listener) {
+		this.listener = listener;
+	}
+
 	@Override
 	public abstract HMModel train();
 }
@@ -5,11 +5,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import com.lc.nlp4han.ml.hmm.model.BackwardAlgorithm;
+import com.lc.nlp4han.ml.hmm.model.ArrayHMMKernel;
 import com.lc.nlp4han.ml.hmm.model.EmissionProbEntry;
-import com.lc.nlp4han.ml.hmm.model.ForwardAlgorithm;
 import com.lc.nlp4han.ml.hmm.model.HMModel;
+import com.lc.nlp4han.ml.hmm.model.HMModelBasedArray;
 import com.lc.nlp4han.ml.hmm.model.HMModelBasedMap;
 import com.lc.nlp4han.ml.hmm.model.TransitionProbEntry;
 import com.lc.nlp4han.ml.hmm.stream.UnSupervisedHMMSample;
@@ -19,11 +24,14 @@ import com.lc.nlp4han.ml.hmm.utils.Observation;
 import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
 import com.lc.nlp4han.ml.hmm.utils.State;
 import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
 
 /**
  *<ul>
  *<li>Description: 基于Baum-Welch的非监督HMM训练器(目前只支持1阶HMM训练)
  *<li>训练器需有初始模型，初始模型可以导入现有的模型，也可以随机生成
+ *<li>E步可以多线程计算，每个线程累加各自的期望计数，迭代结束时按固定顺序合并，多线程与单线程的训练结果相同
+ *<li>设置监听器后每次迭代报告耗时、内存、线程利用率和训练语料在迭代前模型下的对数似然(以10为底)
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月23日
@@ -41,6 +49,21 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 	 */
 	private List<ObservationSequence> trainSequences;
 	
+	/**
+	 * E步的线程数
+	 */
+	private int threads = 1;
+	
+	/**
+	 * E步中一个任务处理的观测序列数，期望计数按块的顺序合并
+	 */
+	private static final int BLOCK_SIZE = 64;
+	
+	/**
+	 * 最近一次迭代的E步得到的训练语料的对数似然
+	 */
+	private double logLikelihood;
+	
 	/**
 	 * 构造方法
 	 * @param initHMModel		初始模型
@@ -49,8 +72,21 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 	 * @throws IOException
 	 */
 	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, UnSupervisedHMMSampleStream<?> sampleStream, ConvergencyJudge convergencyJudge) throws IOException {
+		this(initHMModel, sampleStream, convergencyJudge, 1);
+	}
+	
+	/**
+	 * 构造方法
+	 * @param initHMModel		初始模型
+	 * @param sampleStream		训练样本（观测样本）流
+	 * @param convergencyJudge	收敛判断
+	 * @param threads			E步的线程数
+	 * @throws IOException
+	 */
+	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, UnSupervisedHMMSampleStream<?> sampleStream, ConvergencyJudge convergencyJudge, int threads) throws IOException {
 		super(initHMModel);
 		this.convergencyJudge = convergencyJudge;
+		setThreads(threads);
 		trainSequences = new ArrayList<>();
 		
 		UnSupervisedHMMSample sample = null;
@@ -71,9 +107,28 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 			trainSequences.add(sample.getObservationSequence());
 	}
 	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, List<ObservationSequence> trainSequences) throws IOException {
+		this(initHMModel, trainSequences, new DefaultConvergencyJudge(), 1);
+	}
+	
+	/**
+	 * 构造方法
+	 * @param initHMModel		初始模型
+	 * @param trainSequences	训练语料(观测序列集)
+	 * @param convergencyJudge	收敛判断
+	 * @param threads			E步的线程数
+	 */
+	public UnSupervisedBaumWelchHMMTrainer(HMModel initHMModel, List<ObservationSequence> trainSequences, ConvergencyJudge convergencyJudge, int threads) {
 		super(initHMModel);
 		this.trainSequences = trainSequences;
-		convergencyJudge = new DefaultConvergencyJudge();
+		this.convergencyJudge = convergencyJudge;
+		setThreads(threads);
+	}
+	
+	private void setThreads(int threads) {
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数应大于0: " + threads);
+		
+		this.threads = threads;
 	}
 	
 	@Override
@@ -83,101 +138,88 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 		model = null;
 		int iteration = 1;
 		
-		do{
-			preModel = currentModel;
-			currentModel = iterate(preModel, trainSequences);
-		}while(!convergencyJudge.isConvergency(preModel, currentModel, trainSequences, iteration++));
+		TrainingMonitor monitor = new TrainingMonitor(listener, getClass().getSimpleName(), threads);
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			do{
+				preModel = currentModel;
+				monitor.startIteration();
+				currentModel = iterate(preModel, trainSequences, executor, monitor);
+				monitor.iterationFinished(iteration, trainSequences.size(), logLikelihood, Double.NaN, Double.NaN);
+			}while(!convergencyJudge.isConvergency(preModel, currentModel, trainSequences, iteration++));
+		} finally {
+			if(executor != null)
+				executor.shutdown();
+		}
 		
 		return currentModel;
 	}
 	
 	/**
 	 * 一次迭代，在当前HMM模型的基础上生成一个新的HMM模型
+	 * <li>E步按BLOCK_SIZE个观测序列分块，每次最多threads个块并行计算期望计数，再按块的顺序累加，结果与线程数无关
 	 * @param model		当前模型
 	 * @param sequences	训练语料(观测序列集)
+	 * @param executor	线程池，单线程时为null
+	 * @param monitor	统计E步任务的耗时
 	 * @return			新的HMM模型
 	 */
-	private HMModel iterate(HMModel model, final List<ObservationSequence> sequences) {
+	private HMModel iterate(HMModel model, final List<ObservationSequence> sequences, ExecutorService executor, TrainingMonitor monitor) {
 		Dictionary dict = model.getDict();
 		HashMap<State, Double> pi = new HashMap<>();
 		HashMap<StateSequence, TransitionProbEntry> transitionMatrix = new HashMap<>();
-		HashMap<StateSequence, TransitionProbEntry> tempTransitionMatrix = model.getTransitionMatrix();
 		HashMap<State, EmissionProbEntry> emissionMatrix = new HashMap<>();
 		
 		int N = model.statesCount();
 		int M = model.observationsCount();
+		HMModelBasedArray arrayModel = model instanceof HMModelBasedArray ? (HMModelBasedArray) model : new HMModelBasedArray(model);
 		
-		double[][] 	alpha, beta;										//前向概率和后向概率
-		double[] 	tempPiNumerator = new double[N];					//tempPiNumerator[i]初始转移为i的概率之和
-		double 		tempPiDenominator = 0.0;							//所有初始转移之和的总和
-		double[][] 	tempTransitionMatrixNumerator = new double[N][N];	//tempTransitionMatrixNumerator[i][j]由i转移到j的概率之和
-		double[] 	tempTransitionMatrixDenominator = new double[N];	//tempTransitionMatrixDenominator[i]由i转移的概率之和
-		double[][] 	tempEmissionMatrixNumerator = new double[N][M];		//tempEmissionMatrixNumerator[i][j]由i发射到j，且在训练语料中Ot=vj的概率之和
-		double[] 	tempEmissionMatrixDenominator = new double[N];	//tempEmissionMatrixDenominator[i]由i发射的概率之和
-		
-		Arrays.fill(tempPiNumerator, 0.0);
-		
-		Arrays.fill(tempTransitionMatrixDenominator, 0.0);
-		for(int i = 0; i < tempTransitionMatrixNumerator.length; i++)
-			Arrays.fill(tempTransitionMatrixNumerator[i], 0.0);
-		
-		Arrays.fill(tempEmissionMatrixDenominator, 0.0);
-		for(int i = 0; i < tempEmissionMatrixNumerator.length; i++)
-			Arrays.fill(tempEmissionMatrixNumerator[i], 0.0);
-		
+		//E步，计算期望计数
+		ExpectedCounts total = new ExpectedCounts(N, M);
+		ExpectedCounts[] partials = new ExpectedCounts[threads];
+		List<ExpectationTask> tasks = new ArrayList<>();
+		for(int i = 0; i < threads; i++) {
+			partials[i] = new ExpectedCounts(N, M);
+			tasks.add(new ExpectationTask(new ArrayHMMKernel(arrayModel), arrayModel, sequences, partials[i], monitor));
+		}
 		
-		BackwardAlgorithm backward = null;
-		ForwardAlgorithm forward = null;
-		for(int no = 0; no < trainSequences.size(); no++) {
-			ObservationSequence sequence = trainSequences.get(no);
+		int blocks = (sequences.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		for(int block = 0; block < blocks; block += threads) {
+			int count = Math.min(threads, blocks - block);
+			for(int i = 0; i < count; i++)
+				tasks.get(i).setRange((block + i) * BLOCK_SIZE, Math.min((block + i + 1) * BLOCK_SIZE, sequences.size()));
 			
-			forward = new ForwardAlgorithm(model, sequence);
-			alpha = forward.getAlpha();
-			backward = new BackwardAlgorithm(model, sequence);
-			beta = backward.getBeta();
-			
-			int T = sequence.length();
-			int[] observationsIndex = new int[T];
-			for(int i = 0; i < observationsIndex.length; i++)//观测序列的索引序列
-				observationsIndex[i] = dict.getIndex(sequence.get(i));
-			
-			double[][][] xi = calcXi(model, observationsIndex, alpha, beta);
-			double[][] gamma = calcGamma(model, T, alpha, beta);
-			
-			for(int i = 0; i < N; i++) {//遍历所有隐藏状态
-				//计算初始转移概率
-				tempPiNumerator[i] += gamma[0][i];
-				tempPiDenominator += tempPiNumerator[i];
-				
-				//计算转移概率
-				for(int t = 0; t < T - 1; t++) {
-					tempTransitionMatrixDenominator[i] += gamma[t][i];
-					
-					for(int j = 0; j < N; j++) 
-						tempTransitionMatrixNumerator[i][j] += xi[t][i][j];
-				}
-			
-				//计算发射概率
-				for(int t = 0; t < T; t++) {
-					for(int k = 0; k < M; k++) {//遍历所有观测
-						tempEmissionMatrixDenominator[i] += gamma[t][i];
-						
-						if(sequence.get(t).equals(dict.getObservation(k)))
-							tempEmissionMatrixNumerator[i][k] += gamma[t][i];
-					}
+			if(executor == null)
+				tasks.get(0).call();
+			else {
+				try {
+					for(Future<ExpectedCounts> future : executor.invokeAll(tasks.subList(0, count)))
+						future.get();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException("Interruption is not supported!", e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Exception during expectation step", e.getCause());
 				}
 			}
-		}//训练语料遍历结束
+			
+			for(int i = 0; i < count; i++)
+				total.add(partials[i]);
+		}
+		logLikelihood = total.logProb;
 		
 		/**
-		 * 重新估算模型参数
-		 */		
+		 * M步，重新估算模型参数
+		 */
+		double piDenominator = 0.0;
+		for(int i = 0; i < N; i++)
+			piDenominator += total.piNumerator[i];
+		
 		double prob = 0.0;
 		for(int i = 0; i < N; i++) {
 			State state = dict.getState(i);
 			
 			//计算初始转移概率
-			prob = 0.001 + 0.999 * tempPiNumerator[i] / tempPiDenominator;
+			prob = 0.001 + 0.999 * total.piNumerator[i] / piDenominator;
 			pi.put(state, Math.log10(prob));
 			
 			//计算转移概率
@@ -185,10 +227,10 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 			TransitionProbEntry transitionProbEntry = new TransitionProbEntry();
 			for(int j = 0; j < N; j++) {
 				State target = dict.getState(j);
-				if(tempTransitionMatrixDenominator[i] == 0)
-					prob = Math.pow(10, tempTransitionMatrix.get(start).getTransitionLogProb(target));
+				if(total.transitionDenominator[i] == 0)
+					prob = Math.pow(10, model.transitionLogProb(start, target));
 				else
-					prob = 0.001 + 0.999 * tempTransitionMatrixNumerator[i][j] / tempTransitionMatrixDenominator[i];
+					prob = 0.001 + 0.999 * total.transitionNumerator[i * N + j] / total.transitionDenominator[i];
 				
 				transitionProbEntry.put(target, Math.log10(prob));
 			}
@@ -198,7 +240,10 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 			EmissionProbEntry emissionProbEntry = new EmissionProbEntry();
 			for(int j = 0; j < M; j++) {
 				Observation observation = dict.getObservation(j);
-				prob = 0.001 + 0.999 * tempEmissionMatrixNumerator[i][j] / tempEmissionMatrixDenominator[i];
+				if(total.emissionDenominator[i] == 0)
+					prob = Math.pow(10, model.emissionLogProb(state, observation));
+				else
+					prob = 0.001 + 0.999 * total.emissionNumerator[j * N + i] / total.emissionDenominator[i];
 				emissionProbEntry.put(observation, Math.log10(prob));
 			}
 			emissionMatrix.put(state, emissionProbEntry);
@@ -208,68 +253,182 @@ public class UnSupervisedBaumWelchHMMTrainer extends AbstractUnSupervisedHMMTrai
 	}
 	
 	/**
-	 * 给定模型和观测，计算在t时刻处于状态i的概率gamma[t][i]
-	 * gamma[t][i] = SUMj{xi[t][i][j]}
-	 * @param model	HMM模型
-	 * @param xi	
-	 * @return		gamma
+	 * 一块观测序列的期望计数
 	 */
-	private double[][] calcGamma(HMModel model, int T, double[][] alpha, double[][] beta) {
-		if(T <= 1)
-			throw new IllegalArgumentException("观测序列太短");
-
-		int N = model.statesCount();
-		double[][] gamma = new double[T][N];
-
-		for(int t = 0; t < T; t++) {
-			double normalization_factor = 0.0;
-			for(int i = 0; i < N; i++) {
-				gamma[t][i] = Math.pow(10, alpha[t][i]) * Math.pow(10, beta[t][i]);
-				normalization_factor += gamma[t][i];
+	private static class ExpectedCounts {
+		
+		private int N;
+		
+		/**
+		 * piNumerator[i]初始状态为i的期望次数
+		 */
+		private double[] piNumerator;
+		
+		/**
+		 * transitionNumerator[i*N+j]由i转移到j的期望次数
+		 */
+		private double[] transitionNumerator;
+		
+		/**
+		 * transitionDenominator[i]由i转移的期望次数
+		 */
+		private double[] transitionDenominator;
+		
+		/**
+		 * emissionNumerator[k*N+i]由i发射观测k的期望次数
+		 */
+		private double[] emissionNumerator;
+		
+		/**
+		 * emissionDenominator[i]处于状态i的期望次数
+		 */
+		private double[] emissionDenominator;
+		
+		/**
+		 * 本块中出现过的观测，累加和清零时只处理这些观测
+		 */
+		private int[] observations;
+		
+		private int observationsCount;
+		
+		private boolean[] seen;
+		
+		/**
+		 * 观测序列的对数似然之和
+		 */
+		private double logProb;
+		
+		public ExpectedCounts(int N, int M) {
+			this.N = N;
+			piNumerator = new double[N];
+			transitionNumerator = new double[N * N];
+			transitionDenominator = new double[N];
+			emissionNumerator = new double[M * N];
+			emissionDenominator = new double[N];
+			observations = new int[M];
+			seen = new boolean[M];
+		}
+		
+		public void clear() {
+			Arrays.fill(piNumerator, 0.0);
+			Arrays.fill(transitionNumerator, 0.0);
+			Arrays.fill(transitionDenominator, 0.0);
+			Arrays.fill(emissionDenominator, 0.0);
+			for(int n = 0; n < observationsCount; n++) {
+				int k = observations[n];
+				Arrays.fill(emissionNumerator, k * N, (k + 1) * N, 0.0);
+				seen[k] = false;
 			}
-
-			//归一化
-			for(int i = 0; i < N; i++)
-				gamma[t][i] /= normalization_factor;
+			observationsCount = 0;
+			logProb = 0.0;
+		}
+		
+		public void addEmission(int i, int k, double count) {
+			if(!seen[k]) {
+				seen[k] = true;
+				observations[observationsCount++] = k;
+			}
+			emissionNumerator[k * N + i] += count;
+		}
+		
+		public void add(ExpectedCounts other) {
+			logProb += other.logProb;
+			add(piNumerator, other.piNumerator);
+			add(transitionNumerator, other.transitionNumerator);
+			add(transitionDenominator, other.transitionDenominator);
+			add(emissionDenominator, other.emissionDenominator);
+			for(int n = 0; n < other.observationsCount; n++) {
+				int k = other.observations[n];
+				for(int i = 0; i < N; i++)
+					addEmission(i, k, other.emissionNumerator[k * N + i]);
+			}
+		}
+		
+		private static void add(double[] to, double[] from) {
+			for(int i = 0; i < to.length; i++)
+				to[i] += from[i];
 		}
-
-		return gamma;
 	}
 	
 	/**
-	 * 给定模型和观测，计算在t时刻处于状态i，且在t+1时刻处于状态j的概率xi[t][i][j]
-	 * xi[t][i][j] = alpha[t][i]*A[i][j]*B[j][t+1]*beta[j][t+1]/denominator
-	 * @param model			HMM模型
-	 * @param T				观测序列长度
-	 * @param observations	观测序列
-	 * @param alpha			前向概率
-	 * @param beta			后向概率
-	 * @return				xi
+	 * 计算一块观测序列的期望计数，每个任务使用各自的计算核和计数，一次迭代中重复使用
 	 */
-	private double[][][] calcXi(HMModel model, int[] observations, double[][] alpha, double[][] beta) {
-		int T = observations.length;
-		if(T <= 1)
-			throw new IllegalArgumentException("观测序列太短:" + model.getDict().getObservationSequence(observations));
-
-		int N = model.statesCount();
-		double[][][] xi = new double[T - 1][N][N];
-
-		for(int t = 0; t < T - 1; t++) {
-			double normalization_factor = 0.0;
-			for(int i = 0; i < N; i++) {
-				for(int j = 0; j < N; j++) {
-					xi[t][i][j] = Math.pow(10, alpha[t][i]) * Math.pow(10, beta[t+1][j]) * Math.pow(10, model.transitionLogProb(new int[]{i}, j)) * Math.pow(10, model.emissionLogProb(j, observations[t+1]));
-					normalization_factor += xi[t][i][j];
+	private static class ExpectationTask implements Callable<ExpectedCounts> {
+		
+		private static final double LN10 = Math.log(10);
+		
+		private ArrayHMMKernel kernel;
+		
+		private HMModelBasedArray model;
+		
+		private List<ObservationSequence> sequences;
+		
+		private ExpectedCounts counts;
+		
+		private int from;
+		
+		private int to;
+		
+		private TrainingMonitor monitor;
+		
+		public ExpectationTask(ArrayHMMKernel kernel, HMModelBasedArray model, List<ObservationSequence> sequences, ExpectedCounts counts, TrainingMonitor monitor) {
+			this.kernel = kernel;
+			this.model = model;
+			this.sequences = sequences;
+			this.counts = counts;
+			this.monitor = monitor;
+		}
+		
+		public void setRange(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		/**
+		 * gamma[t][i] = alpha[t][i]*beta[t][i]/P(O)
+		 * xi[t][i][j] = alpha[t][i]*A[i][j]*B[j][t+1]*beta[t+1][j]/P(O)
+		 */
+		@Override
+		public ExpectedCounts call() {
+			long start = System.nanoTime();
+			counts.clear();
+			int N = model.statesCount();
+			for(int no = from; no < to; no++) {
+				int[] observations = kernel.getObservationIndex(sequences.get(no));
+				int T = observations.length;
+				double logProb = kernel.forward(observations);
+				kernel.backward(observations);
+				if(Double.isInfinite(logProb) || Double.isNaN(logProb))
+					continue;
+				counts.logProb += logProb;
+				
+				for(int t = 0; t < T; t++) {
+					for(int i = 0; i < N; i++) {
+						double gamma = Math.exp((kernel.getAlpha(t, i) + kernel.getBeta(t, i) - logProb) * LN10);
+						if(t == 0)
+							counts.piNumerator[i] += gamma;
+						if(t < T - 1)
+							counts.transitionDenominator[i] += gamma;
+						counts.emissionDenominator[i] += gamma;
+						if(observations[t] >= 0)
+							counts.addEmission(i, observations[t], gamma);
+					}
+				}
+				
+				for(int t = 0; t < T - 1; t++) {
+					int o = observations[t + 1];
+					for(int i = 0; i < N; i++) {
+						double alpha = kernel.getAlpha(t, i) - logProb;
+						for(int j = 0; j < N; j++) {
+							double xi = alpha + model.transitionLogProb(i, j) + model.emissionLogProb(j, o) + kernel.getBeta(t + 1, j);
+							counts.transitionNumerator[i * N + j] += Math.exp(xi * LN10);
+						}
+					}
 				}
 			}
-
-			//归一化
-			for(int i = 0; i < N; i++) {
-				for(int j = 0; j < N; j++)
-					xi[t][i][j]  /= normalization_factor;
-			}
+			
+			monitor.addBusyTime(System.nanoTime() - start);
+			return counts;
 		}
-
-		return xi;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,327 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于{@link HMModelBasedArray}的Viterbi、前向和后向算法
+ *<li>k阶模型的t时刻状态为最近min(t+1, k)个隐藏状态组成的元组，元组(s1...sm)的索引为s1*N^(m-1)+...+sm，N为隐藏状态数
+ *<li>1阶时与{@link HMMWithViterbi}、{@link ForwardAlgorithm}和{@link BackwardAlgorithm}的结果一致，2阶时与{@link HMMWithAStar#getLogProb(ObservationSequence, com.lc.nlp4han.ml.hmm.utils.StateSequence)}的计算方式一致
+ *<li>计算时使用的数组在多次调用间重复使用，不是线程安全的，每个线程应使用各自的实例
+ *<li>Company: HUST
+ *</ul>
+ */
+public class ArrayHMMKernel {
+
+	private static final double LOG_MIN = Math.log10(Double.MIN_VALUE);
+
+	private static final double LN10 = Math.log(10);
+
+	private HMModelBasedArray model;
+
+	/**
+	 * 隐藏状态数
+	 */
+	private int N;
+
+	/**
+	 * 模型阶数
+	 */
+	private int order;
+
+	/**
+	 * 每个时刻的元组状态数的上限，N^order
+	 */
+	private int stride;
+
+	/**
+	 * Viterbi变量，只保留相邻两个时刻
+	 */
+	private double[] delta;
+
+	private double[] nextDelta;
+
+	/**
+	 * 回溯路径，psi[t*stride+q]为t时刻元组状态q在最优路径上的前一时刻元组状态
+	 */
+	private int[] psi;
+
+	/**
+	 * 前向概率的对数，alpha[t*stride+q]
+	 */
+	private double[] alpha;
+
+	/**
+	 * 后向概率的对数，beta[t*stride+q]
+	 */
+	private double[] beta;
+
+	/**
+	 * 前向概率计算中每个元组状态的最大项
+	 */
+	private double[] max;
+
+	/**
+	 * 后向概率计算中一个元组状态的各项
+	 */
+	private double[] terms;
+
+	public ArrayHMMKernel(HMModelBasedArray model) {
+		this.model = model;
+		this.N = model.statesCount;
+		this.order = model.getOrder();
+		if(order < 1)
+			throw new IllegalArgumentException("模型阶数应大于0");
+
+		this.stride = HMModelBasedArray.power(N, order);
+		this.delta = new double[stride];
+		this.nextDelta = new double[stride];
+		this.max = new double[stride];
+		this.terms = new double[N];
+		this.psi = new int[0];
+		this.alpha = new double[0];
+		this.beta = new double[0];
+	}
+
+	/**
+	 * 返回观测序列中每个观测的索引，未登录的观测为-1
+	 * @param observations	观测序列
+	 * @return				观测的索引
+	 */
+	public int[] getObservationIndex(ObservationSequence observations) {
+		int[] indices = new int[observations.length()];
+		for(int t = 0; t < indices.length; t++)
+			indices[t] = model.getObservationIndex(observations.get(t));
+
+		return indices;
+	}
+
+	/**
+	 * 返回t时刻的元组状态数
+	 * @param t	时刻
+	 * @return	元组状态数
+	 */
+	public int getStateSpace(int t) {
+		return HMModelBasedArray.power(N, Math.min(t + 1, order));
+	}
+
+	/**
+	 * 返回元组状态中最近的隐藏状态
+	 * @param q	元组状态
+	 * @return	隐藏状态索引
+	 */
+	public int getState(int q) {
+		return q % N;
+	}
+
+	/**
+	 * 返回t时刻之后转移时t时刻元组状态p加上隐藏状态k后的元组状态
+	 */
+	private int next(int t, int p, int k) {
+		return (t + 1 < order ? p : p % (stride / N)) * N + k;
+	}
+
+	/**
+	 * Viterbi算法计算给定观测序列的最优隐藏序列
+	 * @param observations	观测的索引
+	 * @param states		最优隐藏序列中状态的索引，长度与观测序列相同
+	 * @return				最优路径的概率的对数
+	 */
+	public double viterbi(int[] observations, int[] states) {
+		int T = observations.length;
+		if(T == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(psi.length < T * stride)
+			psi = new int[T * stride];
+
+		double[] emissions = model.emissions;
+		int e = (observations[0] + 1) * N;
+		for(int i = 0; i < N; i++)
+			delta[i] = model.pi[i] + emissions[e + i];
+
+		for(int t = 1; t < T; t++) {
+			int size = getStateSpace(t);
+			int prevSize = getStateSpace(t - 1);
+			double[] transition = model.transitions[Math.min(t, order) - 1];
+			int offset = t * stride;
+			for(int q = 0; q < size; q++) {
+				nextDelta[q] = LOG_MIN;
+				psi[offset + q] = q / N;
+			}
+
+			//按前一时刻的元组状态逐行访问转移概率，前驱按索引递增的顺序比较，与HMMWithViterbi选取相同的路径
+			for(int p = 0; p < prevSize; p++) {
+				double d = delta[p];
+				int row = p * N;
+				int base = next(t - 1, p, 0);
+				for(int k = 0; k < N; k++) {
+					double current = d + transition[row + k];
+					if(nextDelta[base + k] < current) {
+						nextDelta[base + k] = current;
+						psi[offset + base + k] = p;
+					}
+				}
+			}
+
+			e = (observations[t] + 1) * N;
+			for(int q = 0; q < size; q++)
+				nextDelta[q] += emissions[e + q % N];
+
+			double[] tmp = delta;
+			delta = nextDelta;
+			nextDelta = tmp;
+		}
+
+		//结束
+		double logProb = LOG_MIN;
+		int best = 0;
+		int size = getStateSpace(T - 1);
+		for(int q = 0; q < size; q++) {
+			if(logProb < delta[q]) {
+				logProb = delta[q];
+				best = q;
+			}
+		}
+
+		//路径回溯
+		for(int t = T - 1; t > 0; t--) {
+			states[t] = best % N;
+			best = psi[t * stride + best];
+		}
+		states[0] = best;
+
+		return logProb;
+	}
+
+	/**
+	 * 前向算法计算观测序列的概率
+	 * @param observations	观测的索引
+	 * @return				观测序列的概率的对数
+	 */
+	public double forward(int[] observations) {
+		int T = observations.length;
+		if(T == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(alpha.length < T * stride)
+			alpha = new double[T * stride];
+
+		double[] emissions = model.emissions;
+		int e = (observations[0] + 1) * N;
+		for(int i = 0; i < N; i++)
+			alpha[i] = model.pi[i] + emissions[e + i];
+
+		for(int t = 1; t < T; t++) {
+			int size = getStateSpace(t);
+			int prevSize = getStateSpace(t - 1);
+			double[] transition = model.transitions[Math.min(t, order) - 1];
+			int prevOffset = (t - 1) * stride;
+			int offset = t * stride;
+
+			for(int q = 0; q < size; q++) {
+				max[q] = Double.NEGATIVE_INFINITY;
+				alpha[offset + q] = 0.0;
+			}
+			for(int p = 0; p < prevSize; p++) {
+				double a = alpha[prevOffset + p];
+				int row = p * N;
+				int base = next(t - 1, p, 0);
+				for(int k = 0; k < N; k++)
+					max[base + k] = Math.max(max[base + k], a + transition[row + k]);
+			}
+			for(int p = 0; p < prevSize; p++) {
+				double a = alpha[prevOffset + p];
+				int row = p * N;
+				int base = next(t - 1, p, 0);
+				for(int k = 0; k < N; k++)
+					if(max[base + k] != Double.NEGATIVE_INFINITY)
+						alpha[offset + base + k] += Math.exp((a + transition[row + k] - max[base + k]) * LN10);
+			}
+
+			e = (observations[t] + 1) * N;
+			for(int q = 0; q < size; q++)
+				alpha[offset + q] = max[q] + Math.log10(alpha[offset + q]) + emissions[e + q % N];
+		}
+
+		int offset = (T - 1) * stride;
+		return logSum(alpha, offset, offset + getStateSpace(T - 1));
+	}
+
+	/**
+	 * 后向算法计算观测序列的概率
+	 * @param observations	观测的索引
+	 * @return				观测序列的概率的对数
+	 */
+	public double backward(int[] observations) {
+		int T = observations.length;
+		if(T == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(beta.length < T * stride)
+			beta = new double[T * stride];
+
+		double[] emissions = model.emissions;
+		int offset = (T - 1) * stride;
+		int size = getStateSpace(T - 1);
+		for(int q = 0; q < size; q++)
+			beta[offset + q] = 0.0;
+
+		for(int t = T - 2; t >= 0; t--) {
+			size = getStateSpace(t);
+			double[] transition = model.transitions[Math.min(t + 1, order) - 1];
+			int nextOffset = (t + 1) * stride;
+			int e = (observations[t + 1] + 1) * N;
+			offset = t * stride;
+
+			for(int p = 0; p < size; p++) {
+				int row = p * N;
+				int base = nextOffset + next(t, p, 0);
+				for(int k = 0; k < N; k++)
+					terms[k] = transition[row + k] + emissions[e + k] + beta[base + k];
+
+				beta[offset + p] = logSum(terms, 0, N);
+			}
+		}
+
+		int e = (observations[0] + 1) * N;
+		for(int i = 0; i < N; i++)
+			terms[i] = model.pi[i] + emissions[e + i] + beta[i];
+
+		return logSum(terms, 0, N);
+	}
+
+	/**
+	 * 返回log10(Σ10^values[i])，from <= i < to
+	 */
+	private static double logSum(double[] values, int from, int to) {
+		double m = Double.NEGATIVE_INFINITY;
+		for(int i = from; i < to; i++)
+			m = Math.max(m, values[i]);
+		if(m == Double.NEGATIVE_INFINITY)
+			return m;
+
+		double sum = 0.0;
+		for(int i = from; i < to; i++)
+			sum += Math.exp((values[i] - m) * LN10);
+
+		return m + Math.log10(sum);
+	}
+
+	/**
+	 * 返回最近一次前向算法中t时刻元组状态q的前向概率的对数
+	 * @param t	时刻
+	 * @param q	元组状态
+	 * @return	前向概率的对数
+	 */
+	public double getAlpha(int t, int q) {
+		return alpha[t * stride + q];
+	}
+
+	/**
+	 * 返回最近一次后向算法中t时刻元组状态q的后向概率的对数
+	 * @param t	时刻
+	 * @param q	元组状态
+	 * @return	后向概率的对数
+	 */
+	public double getBeta(int t, int q) {
+		return beta[t * stride + q];
+	}
+}
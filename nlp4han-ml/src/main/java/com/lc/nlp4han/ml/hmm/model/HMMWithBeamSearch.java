@@ -0,0 +1,313 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import java.util.Arrays;
+
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于柱搜索的Viterbi解码，可用于高阶HMM，每个时刻只保留得分最高的beamSize个元组状态，以及与最高得分之差不超过threshold的元组状态
+ *<li>可以只扩展观测在{@link StateCandidates}中的候选隐藏状态；beamSize和threshold不限制且不使用候选状态时与{@link HMMWithViterbi}的结果一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class HMMWithBeamSearch implements HMM {
+
+	private static final double LOG_MIN = Math.log10(Double.MIN_VALUE);
+
+	private HMModelBasedArray model;
+
+	private ArrayHMMKernel kernel;
+
+	/**
+	 * 观测的候选隐藏状态，不使用候选状态时为null
+	 */
+	private StateCandidates candidates;
+
+	/**
+	 * 所有隐藏状态
+	 */
+	private int[] all;
+
+	/**
+	 * 每个时刻保留的元组状态数的上限，不大于0时不限制
+	 */
+	private int beamSize;
+
+	/**
+	 * 保留的元组状态与最高得分之差的上限（以10为底的对数），Double.POSITIVE_INFINITY时不限制
+	 */
+	private double threshold;
+
+	private int N;
+
+	private int order;
+
+	private int stride;
+
+	/**
+	 * 所有时刻保留的元组状态及其在前一时刻保留的元组状态中的位置，begin[t]为t时刻的起始位置
+	 */
+	private int[] tuples;
+
+	private int[] backs;
+
+	private int[] begin;
+
+	/**
+	 * 上一时刻保留的元组状态的得分，剪枝后为当前时刻保留的元组状态的得分
+	 */
+	private double[] scores;
+
+	/**
+	 * 当前时刻扩展得到的元组状态、得分及前驱
+	 */
+	private int[] nextTuples;
+
+	private double[] nextScores;
+
+	private int[] nextBacks;
+
+	/**
+	 * slot[q]为元组状态q在当前时刻扩展结果中的位置，stamp[q]等于mark时有效
+	 */
+	private int[] slot;
+
+	private int[] stamp;
+
+	private int mark;
+
+	/**
+	 * 剪枝时排序用的得分
+	 */
+	private double[] sorted;
+
+	public HMMWithBeamSearch(HMModel model, int beamSize) {
+		this(model, beamSize, Double.POSITIVE_INFINITY, true);
+	}
+
+	/**
+	 * @param model			HMM模型，不是{@link HMModelBasedArray}时转换为数组模型
+	 * @param beamSize		每个时刻保留的元组状态数的上限，不大于0时不限制
+	 * @param threshold		保留的元组状态与最高得分之差的上限（以10为底的对数）
+	 * @param constrained	是否只扩展观测的候选隐藏状态
+	 */
+	public HMMWithBeamSearch(HMModel model, int beamSize, double threshold, boolean constrained) {
+		if(threshold < 0)
+			throw new IllegalArgumentException("阈值不能小于0：" + threshold);
+
+		this.model = model instanceof HMModelBasedArray ? (HMModelBasedArray) model : new HMModelBasedArray(model);
+		this.kernel = new ArrayHMMKernel(this.model);
+		this.candidates = constrained ? new StateCandidates(this.model) : null;
+		this.beamSize = beamSize;
+		this.threshold = threshold;
+
+		N = this.model.statesCount;
+		all = new int[N];
+		for(int i = 0; i < N; i++)
+			all[i] = i;
+		order = this.model.getOrder();
+		stride = HMModelBasedArray.power(N, order);
+		slot = new int[stride];
+		stamp = new int[stride];
+		mark = 0;
+		tuples = new int[stride];
+		backs = new int[stride];
+		begin = new int[0];
+		scores = new double[stride];
+		nextTuples = new int[stride];
+		nextScores = new double[stride];
+		nextBacks = new int[stride];
+		sorted = new double[stride];
+	}
+
+	/**
+	 * 返回观测的可扩展隐藏状态
+	 */
+	private int[] getCandidates(int observation) {
+		if(candidates == null)
+			return all;
+
+		return candidates.getCandidates(observation);
+	}
+
+	/**
+	 * 返回新的标记，使stamp中已有的标记失效
+	 */
+	private int nextMark() {
+		if(++mark == Integer.MAX_VALUE) {
+			Arrays.fill(stamp, 0);
+			mark = 1;
+		}
+
+		return mark;
+	}
+
+	@Override
+	public StateSequence bestStateSeqence(ObservationSequence observationSequence) {
+		int[] observations = kernel.getObservationIndex(observationSequence);
+		int[] states = new int[observations.length];
+		decode(observations, states);
+
+		StateSequence sequence = new StateSequence();
+		for(int index : states)
+			sequence = sequence.addLast(model.getState(index));
+
+		return sequence;
+	}
+
+	/**
+	 * 柱搜索计算给定观测序列的最优隐藏序列
+	 * @param observations	观测的索引
+	 * @param states		最优隐藏序列中状态的索引，长度与观测序列相同
+	 * @return				最优路径的概率的对数
+	 */
+	public double decode(int[] observations, int[] states) {
+		int T = observations.length;
+		if(T == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(begin.length < T + 1)
+			begin = new int[T + 1];
+
+		double[] emissions = model.emissions;
+		int e = (observations[0] + 1) * N;
+		int size = 0;
+		for(int i : getCandidates(observations[0])) {
+			nextTuples[size] = i;
+			nextScores[size] = model.pi[i] + emissions[e + i];
+			nextBacks[size] = 0;
+			size++;
+		}
+		begin[0] = 0;
+		begin[1] = prune(0, size);
+
+		for(int t = 1; t < T; t++) {
+			double[] transition = model.transitions[Math.min(t, order) - 1];
+			int[] targets = getCandidates(observations[t]);
+			nextMark();
+			size = 0;
+
+			//前一时刻保留的元组状态按索引递增排列，只有得分严格更高时才替换前驱，与HMMWithViterbi选取相同的路径
+			for(int a = begin[t - 1]; a < begin[t]; a++) {
+				int p = tuples[a];
+				double d = scores[a - begin[t - 1]];
+				int row = p * N;
+				int base = (t < order ? p : p % (stride / N)) * N;
+				for(int k : targets) {
+					int q = base + k;
+					double current = d + transition[row + k];
+					if(stamp[q] != mark) {
+						stamp[q] = mark;
+						slot[q] = size;
+						nextTuples[size] = q;
+						nextScores[size] = current;
+						nextBacks[size] = a;
+						size++;
+					} else if(nextScores[slot[q]] < current) {
+						nextScores[slot[q]] = current;
+						nextBacks[slot[q]] = a;
+					}
+				}
+			}
+
+			e = (observations[t] + 1) * N;
+			for(int s = 0; s < size; s++)
+				nextScores[s] += emissions[e + nextTuples[s] % N];
+
+			begin[t + 1] = prune(begin[t], size);
+		}
+
+		//结束
+		double logProb = LOG_MIN;
+		int best = begin[T - 1];
+		for(int a = begin[T - 1]; a < begin[T]; a++) {
+			if(logProb < scores[a - begin[T - 1]]) {
+				logProb = scores[a - begin[T - 1]];
+				best = a;
+			}
+		}
+
+		//路径回溯
+		for(int t = T - 1; t >= 0; t--) {
+			states[t] = tuples[best] % N;
+			best = backs[best];
+		}
+
+		return logProb;
+	}
+
+	/**
+	 * 对当前时刻扩展得到的元组状态剪枝，保留的元组状态按索引递增存放在tuples的from位置之后
+	 * @param from	保留的元组状态的起始位置
+	 * @param size	扩展得到的元组状态数
+	 * @return		保留的元组状态的结束位置
+	 */
+	private int prune(int from, int size) {
+		double max = Double.NEGATIVE_INFINITY;
+		for(int s = 0; s < size; s++)
+			max = Math.max(max, nextScores[s]);
+
+		double cutoff = max - threshold;
+		int limit = size;
+		if(beamSize > 0 && size > beamSize) {
+			System.arraycopy(nextScores, 0, sorted, 0, size);
+			Arrays.sort(sorted, 0, size);
+			cutoff = Math.max(cutoff, sorted[size - beamSize]);
+			limit = beamSize;
+		}
+
+		nextMark();
+		int above = 0;
+		for(int s = 0; s < size; s++) {
+			if(nextScores[s] >= cutoff) {
+				stamp[nextTuples[s]] = mark;
+				slot[nextTuples[s]] = s;
+				if(nextScores[s] > cutoff)
+					above++;
+			}
+		}
+		Arrays.sort(nextTuples, 0, size);
+
+		//得分高于cutoff的元组状态全部保留，剩余的位置由得分等于cutoff的元组状态按索引递增填补
+		int ties = limit - above;
+		int kept = 0;
+		ensureCapacity(from + Math.min(size, limit));
+		for(int s = 0; s < size; s++) {
+			int q = nextTuples[s];
+			if(stamp[q] != mark)
+				continue;
+
+			double score = nextScores[slot[q]];
+			if(score == cutoff) {
+				if(ties == 0)
+					continue;
+				ties--;
+			}
+			tuples[from + kept] = q;
+			backs[from + kept] = nextBacks[slot[q]];
+			scores[kept] = score;
+			kept++;
+		}
+
+		return from + kept;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(tuples.length < capacity) {
+			int length = Math.max(capacity, tuples.length * 2);
+			tuples = Arrays.copyOf(tuples, length);
+			backs = Arrays.copyOf(backs, length);
+		}
+	}
+
+	@Override
+	public double getLogProb(ObservationSequence observations) {
+		return Math.pow(10, kernel.forward(kernel.getObservationIndex(observations)));
+	}
+
+	@Override
+	public double getLogProb(ObservationSequence observations, StateSequence states) {
+		return new HMMWithAStar(model).getLogProb(observations, states);
+	}
+}
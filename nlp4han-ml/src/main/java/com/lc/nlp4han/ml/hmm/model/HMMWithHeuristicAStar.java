@@ -0,0 +1,253 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于A*算法的解码，可用于高阶HMM，不使用候选状态时结果与不剪枝的Viterbi解码一致
+ *<li>启发函数为t时刻之后每个时刻max(转移到k的最大转移概率 + k发射该时刻观测的概率)之和，其中转移到各隐藏状态的最大转移概率在构造时预先计算
+ *<li>启发函数不小于实际的后续得分，且满足一致性，因此每个结点第一次出队时即为最优，第一个出队的最后时刻结点即为最优路径
+ *<li>可以只扩展观测在{@link StateCandidates}中的候选隐藏状态，默认使用候选状态；对平滑后的模型，候选之外的隐藏状态也可能发射该观测，此时结果是候选状态范围内的最优路径，不一定与Viterbi解码一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class HMMWithHeuristicAStar implements HMM {
+
+	private HMModelBasedArray model;
+
+	private ArrayHMMKernel kernel;
+
+	/**
+	 * 观测的候选隐藏状态，不使用候选状态时为null
+	 */
+	private StateCandidates candidates;
+
+	/**
+	 * 所有隐藏状态
+	 */
+	private int[] all;
+
+	/**
+	 * maxTransition[k]为所有历史转移到隐藏状态k的最大转移概率的对数
+	 */
+	private double[] maxTransition;
+
+	private int N;
+
+	private int order;
+
+	private int stride;
+
+	/**
+	 * 已出队的结点，closed[t*stride+q]等于mark时t时刻的元组状态q已出队
+	 */
+	private int[] closed;
+
+	/**
+	 * 入队结点的最高得分，best[t*stride+q]在closed[t*stride+q]等于-mark时有效
+	 */
+	private double[] best;
+
+	private int mark;
+
+	/**
+	 * 最近一次解码出队的结点数
+	 */
+	private int expansions;
+
+	/**
+	 * 搜索结点
+	 */
+	private static class Node implements Comparable<Node> {
+
+		private final int t;
+
+		private final int q;
+
+		/**
+		 * 从起点到当前结点的得分
+		 */
+		private final double score;
+
+		/**
+		 * 得分与启发函数之和
+		 */
+		private final double estimate;
+
+		private final Node back;
+
+		public Node(int t, int q, double score, double estimate, Node back) {
+			this.t = t;
+			this.q = q;
+			this.score = score;
+			this.estimate = estimate;
+			this.back = back;
+		}
+
+		@Override
+		public int compareTo(Node o) {
+			return Double.compare(o.estimate, estimate);
+		}
+	}
+
+	/**
+	 * 只扩展观测的候选隐藏状态，结果是候选状态范围内的最优路径，不一定与不剪枝的Viterbi解码一致
+	 * @param model			HMM模型，不是{@link HMModelBasedArray}时转换为数组模型
+	 */
+	public HMMWithHeuristicAStar(HMModel model) {
+		this(model, true);
+	}
+
+	/**
+	 * @param model			HMM模型，不是{@link HMModelBasedArray}时转换为数组模型
+	 * @param constrained	是否只扩展观测的候选隐藏状态，为false时结果与不剪枝的Viterbi解码一致
+	 */
+	public HMMWithHeuristicAStar(HMModel model, boolean constrained) {
+		this.model = model instanceof HMModelBasedArray ? (HMModelBasedArray) model : new HMModelBasedArray(model);
+		this.kernel = new ArrayHMMKernel(this.model);
+		this.candidates = constrained ? new StateCandidates(this.model) : null;
+
+		N = this.model.statesCount;
+		order = this.model.getOrder();
+		stride = HMModelBasedArray.power(N, order);
+		all = new int[N];
+		for(int i = 0; i < N; i++)
+			all[i] = i;
+
+		maxTransition = new double[N];
+		Arrays.fill(maxTransition, Double.NEGATIVE_INFINITY);
+		for(double[] transition : this.model.transitions)
+			for(int r = 0; r < transition.length; r++)
+				maxTransition[r % N] = Math.max(maxTransition[r % N], transition[r]);
+
+		closed = new int[0];
+		best = new double[0];
+		mark = 0;
+	}
+
+	/**
+	 * 返回观测的可扩展隐藏状态
+	 */
+	private int[] getCandidates(int observation) {
+		if(candidates == null)
+			return all;
+
+		return candidates.getCandidates(observation);
+	}
+
+	@Override
+	public StateSequence bestStateSeqence(ObservationSequence observationSequence) {
+		int[] observations = kernel.getObservationIndex(observationSequence);
+		int[] states = new int[observations.length];
+		decode(observations, states);
+
+		StateSequence sequence = new StateSequence();
+		for(int index : states)
+			sequence = sequence.addLast(model.getState(index));
+
+		return sequence;
+	}
+
+	/**
+	 * A*算法计算给定观测序列的最优隐藏序列
+	 * @param observations	观测的索引
+	 * @param states		最优隐藏序列中状态的索引，长度与观测序列相同
+	 * @return				最优路径的概率的对数
+	 */
+	public double decode(int[] observations, int[] states) {
+		int T = observations.length;
+		if(T == 0)
+			throw new IllegalArgumentException("观测序列不能为空");
+		if(closed.length < T * stride) {
+			closed = new int[T * stride];
+			best = new double[T * stride];
+			mark = 0;
+		}
+		if(++mark == Integer.MAX_VALUE) {
+			Arrays.fill(closed, 0);
+			mark = 1;
+		}
+
+		//启发函数，outside[t]为t时刻之后得分的上界
+		double[] emissions = model.emissions;
+		double[] outside = new double[T];
+		for(int t = T - 2; t >= 0; t--) {
+			int e = (observations[t + 1] + 1) * N;
+			double max = Double.NEGATIVE_INFINITY;
+			for(int k : getCandidates(observations[t + 1]))
+				max = Math.max(max, maxTransition[k] + emissions[e + k]);
+			outside[t] = outside[t + 1] + max;
+		}
+
+		PriorityQueue<Node> queue = new PriorityQueue<>();
+		int e = (observations[0] + 1) * N;
+		for(int i : getCandidates(observations[0])) {
+			double score = model.pi[i] + emissions[e + i];
+			queue.add(new Node(0, i, score, score + outside[0], null));
+		}
+
+		expansions = 0;
+		Node node = null;
+		while(!queue.isEmpty()) {
+			node = queue.remove();
+			int t = node.t;
+			if(closed[t * stride + node.q] == mark)
+				continue;
+
+			closed[t * stride + node.q] = mark;
+			expansions++;
+			if(t == T - 1)
+				break;
+
+			double[] transition = model.transitions[Math.min(t + 1, order) - 1];
+			int row = node.q * N;
+			int base = (t + 1 < order ? node.q : node.q % (stride / N)) * N;
+			int offset = (t + 1) * stride;
+			e = (observations[t + 1] + 1) * N;
+			for(int k : getCandidates(observations[t + 1])) {
+				int q = base + k;
+				int index = offset + q;
+				if(closed[index] == mark)
+					continue;
+
+				double score = node.score + transition[row + k] + emissions[e + k];
+				if(closed[index] == -mark && best[index] >= score)
+					continue;
+
+				closed[index] = -mark;
+				best[index] = score;
+				queue.add(new Node(t + 1, q, score, score + outside[t + 1], node));
+			}
+		}
+
+		double logProb = node.score;
+		for(int t = T - 1; t >= 0; t--) {
+			states[t] = node.q % N;
+			node = node.back;
+		}
+
+		return logProb;
+	}
+
+	/**
+	 * 返回最近一次解码出队的结点数
+	 * @return	出队的结点数
+	 */
+	public int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	public double getLogProb(ObservationSequence observations) {
+		return Math.pow(10, kernel.forward(kernel.getObservationIndex(observations)));
+	}
+
+	@Override
+	public double getLogProb(ObservationSequence observations, StateSequence states) {
+		return new HMMWithAStar(model).getLogProb(observations, states);
+	}
+}
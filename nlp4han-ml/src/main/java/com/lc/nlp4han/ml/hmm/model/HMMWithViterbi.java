@@ -5,7 +5,7 @@ import com.lc.nlp4han.ml.hmm.utils.StateSequence;
 
 /**
  *<ul>
- *<li>Description: 基于维特比解码和前向算法的的HMM，用于1阶HMM
+ *<li>Description: 基于维特比解码和前向算法的的HMM，用于1阶HMM；模型为{@link HMModelBasedArray}时使用{@link ArrayHMMKernel}计算，也可用于高阶HMM
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2018年1月15日
@@ -38,14 +38,24 @@ public class HMMWithViterbi implements HMM {
 	 */
 	private double logProb;
 	
+	/**
+	 * 数组模型的计算核，其他模型时为null
+	 */
+	private ArrayHMMKernel kernel;
+	
 	public HMMWithViterbi(HMModel model) {
 		this.model = model;
-		if(model.getOrder() != 1)
+		if(model instanceof HMModelBasedArray)
+			kernel = new ArrayHMMKernel((HMModelBasedArray) model);
+		else if(model.getOrder() != 1)
 			throw new IllegalArgumentException("不支持高阶HMM解码");
 	}
 
 	@Override
 	public double getLogProb(ObservationSequence observations, StateSequence states) {
+		if(model.getOrder() > 1)
+			return new HMMWithAStar(model).getLogProb(observations, states);
+		
 		double logProb = model.getLogPi(states.get(0)) + model.emissionLogProb(states.get(0), observations.get(0));
 		for(int i = 1; i < states.length(); i++) 
 			logProb += model.transitionLogProb(new StateSequence(states.get(i - 1)), states.get(i)) +
@@ -56,6 +66,9 @@ public class HMMWithViterbi implements HMM {
 
 	@Override
 	public double getLogProb(ObservationSequence observations) {
+		if(kernel != null)
+			return Math.pow(10, kernel.forward(kernel.getObservationIndex(observations)));
+		
 		ForwardAlgorithm algorithm = new ForwardAlgorithm(model, observations);
 //		BackwardAlgorithm algorithm = new BackwardAlgorithm(model, observations);
 		return algorithm.getProb();
@@ -63,7 +76,12 @@ public class HMMWithViterbi implements HMM {
 	
 	@Override
 	public StateSequence bestStateSeqence(ObservationSequence observationSequence) {
-		viterbiCalculator(observationSequence);
+		if(kernel != null) {
+			int[] observations = kernel.getObservationIndex(observationSequence);
+			stateSequenceIndex = new int[observations.length];
+			logProb = kernel.viterbi(observations, stateSequenceIndex);
+		}else
+			viterbiCalculator(observationSequence);
 		
 		StateSequence sequence = new StateSequence();
 		for(int index : stateSequenceIndex)
@@ -0,0 +1,223 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import java.util.HashMap;
+
+import com.lc.nlp4han.ml.hmm.utils.Dictionary;
+import com.lc.nlp4han.ml.hmm.utils.Observation;
+import com.lc.nlp4han.ml.hmm.utils.State;
+import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 基于稠密数组的隐式马尔科夫模型，由其他模型转换得到，概率与原模型一致
+ *<li>初始概率、各阶转移概率和发射概率都保存在连续的double[]中，供{@link ArrayHMMKernel}按索引访问
+ *<li>转移概率transitions[m-1][(s1*N+...+sm)*N+j]为长度为m的历史s1...sm转移到j的概率的对数，N为隐藏状态数
+ *<li>发射概率emissions[(o+1)*N+i]为状态i发射观测o的概率的对数，o=-1为未登录的观测
+ *<li>Company: HUST
+ *</ul>
+ */
+public class HMModelBasedArray implements HMModel {
+
+	/**
+	 * 版本序列号
+	 */
+	private static final long serialVersionUID = -3360525185640342217L;
+
+	/**
+	 * 原模型，按隐藏状态和观测状态对象的查询由其完成
+	 */
+	private HMModel model;
+
+	/**
+	 * 隐藏状态数
+	 */
+	final int statesCount;
+
+	/**
+	 * 观测状态数
+	 */
+	final int observationsCount;
+
+	/**
+	 * 初始转移概率的对数
+	 */
+	final double[] pi;
+
+	/**
+	 * 各长度历史的转移概率的对数
+	 */
+	final double[][] transitions;
+
+	/**
+	 * 发射概率的对数，按观测排列，同一观测的各状态连续存放
+	 */
+	final double[] emissions;
+
+	/**
+	 * 由给定模型构造稠密数组模型
+	 * @param model	原模型
+	 */
+	public HMModelBasedArray(HMModel model) {
+		this.model = model;
+		this.statesCount = model.statesCount();
+		this.observationsCount = model.observationsCount();
+
+		//观测的索引不一定连续，按最大的索引分配发射概率
+		int maxObservation = -1;
+		for(Observation observation : model.getObservations())
+			maxObservation = Math.max(maxObservation, model.getDict().getIndex(observation));
+
+		int order = model.getOrder();
+		int N = statesCount;
+		if(Math.pow(N, order + 1) > Integer.MAX_VALUE || (long) (maxObservation + 2) * N > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("模型过大，无法使用数组表示");
+
+		pi = new double[N];
+		for(int i = 0; i < N; i++)
+			pi[i] = model.getLogPi(i);
+
+		transitions = new double[order][];
+		for(int m = 1; m <= order; m++) {
+			int histories = power(N, m);
+			double[] matrix = new double[histories * N];
+			int[] history = new int[m];
+			for(int h = 0; h < histories; h++) {
+				for(int k = m - 1, rest = h; k >= 0; k--, rest /= N)
+					history[k] = rest % N;
+
+				for(int j = 0; j < N; j++)
+					matrix[h * N + j] = model.transitionLogProb(history, j);
+			}
+			transitions[m - 1] = matrix;
+		}
+
+		emissions = new double[(maxObservation + 2) * N];
+		for(int o = -1; o <= maxObservation; o++)
+			for(int i = 0; i < N; i++)
+				emissions[(o + 1) * N + i] = model.emissionLogProb(i, o);
+	}
+
+	/**
+	 * 返回base的exponent次幂
+	 */
+	static int power(int base, int exponent) {
+		int result = 1;
+		for(int i = 0; i < exponent; i++)
+			result *= base;
+
+		return result;
+	}
+
+	@Override
+	public double getLogPi(State i) {
+		return model.getLogPi(i);
+	}
+
+	@Override
+	public double getLogPi(int i) {
+		return pi[i];
+	}
+
+	@Override
+	public double transitionLogProb(int[] start, int target) {
+		if(start.length == 0 || start.length > transitions.length)
+			return model.transitionLogProb(start, target);
+
+		int history = 0;
+		for(int s : start)
+			history = history * statesCount + s;
+
+		return transitions[start.length - 1][history * statesCount + target];
+	}
+
+	/**
+	 * 返回1阶转移的转移概率对数，不需要构造历史数组
+	 * @param start		起始隐藏状态索引
+	 * @param target	目的隐藏状态索引
+	 * @return			转移概率对数
+	 */
+	public double transitionLogProb(int start, int target) {
+		return transitions[0][start * statesCount + target];
+	}
+
+	@Override
+	public double transitionLogProb(StateSequence start, State target) {
+		return model.transitionLogProb(start, target);
+	}
+
+	@Override
+	public double emissionLogProb(State state, Observation observation) {
+		return model.emissionLogProb(state, observation);
+	}
+
+	@Override
+	public double emissionLogProb(int i, int t) {
+		return emissions[(t + 1) * statesCount + i];
+	}
+
+	@Override
+	public Observation[] getObservations() {
+		return model.getObservations();
+	}
+
+	@Override
+	public State[] getStates() {
+		return model.getStates();
+	}
+
+	@Override
+	public State getState(int index) {
+		return model.getState(index);
+	}
+
+	@Override
+	public int statesCount() {
+		return statesCount;
+	}
+
+	@Override
+	public int observationsCount() {
+		return observationsCount;
+	}
+
+	@Override
+	public int getObservationIndex(Observation observation) {
+		return model.getObservationIndex(observation);
+	}
+
+	@Override
+	public int getOrder() {
+		return transitions.length;
+	}
+
+	@Override
+	public Dictionary getDict() {
+		return model.getDict();
+	}
+
+	@Override
+	public HashMap<State, Double> getPi() {
+		return model.getPi();
+	}
+
+	@Override
+	public HashMap<StateSequence, TransitionProbEntry> getTransitionMatrix() {
+		return model.getTransitionMatrix();
+	}
+
+	@Override
+	public HashMap<State, EmissionProbEntry> getEmissionMatrix() {
+		return model.getEmissionMatrix();
+	}
+
+	@Override
+	public HMModel clone() {
+		try {
+			return (HMModel)super.clone();
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+}
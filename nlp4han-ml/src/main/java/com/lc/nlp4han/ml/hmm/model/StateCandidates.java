@@ -0,0 +1,100 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import com.lc.nlp4han.ml.hmm.utils.CommonUtils;
+import com.lc.nlp4han.ml.hmm.utils.Dictionary;
+import com.lc.nlp4han.ml.hmm.utils.Observation;
+import com.lc.nlp4han.ml.hmm.utils.State;
+
+/**
+ *<ul>
+ *<li>Description: 观测的候选隐藏状态，由发射概率矩阵中出现过的(隐藏状态, 观测)得到，索引取自{@link Dictionary}
+ *<li>未登录的观测和没有候选的观测可以是任意隐藏状态；候选状态按索引递增排列
+ *<li>Company: HUST
+ *</ul>
+ */
+public class StateCandidates {
+
+	/**
+	 * 所有隐藏状态
+	 */
+	private int[] all;
+
+	/**
+	 * candidates[o+1]为观测o的候选隐藏状态，o=-1为未登录的观测
+	 */
+	private int[][] candidates;
+
+	/**
+	 * 由模型的发射概率矩阵构造候选隐藏状态
+	 * @param model	HMM模型
+	 */
+	public StateCandidates(HMModel model) {
+		Dictionary dict = model.getDict();
+		int N = model.statesCount();
+		all = new int[N];
+		for(int i = 0; i < N; i++)
+			all[i] = i;
+
+		int maxObservation = -1;
+		for(Observation observation : model.getObservations())
+			maxObservation = Math.max(maxObservation, dict.getIndex(observation));
+
+		List<List<Integer>> lists = new ArrayList<>();
+		for(int o = 0; o <= maxObservation; o++)
+			lists.add(new ArrayList<Integer>());
+
+		HashMap<State, EmissionProbEntry> emissionMatrix = model.getEmissionMatrix();
+		for(int i = 0; emissionMatrix != null && i < N; i++) {
+			EmissionProbEntry entry = emissionMatrix.get(dict.getState(i));
+			if(entry == null)
+				continue;
+
+			Iterator<Observation> iterator = entry.keyIterator();
+			while(iterator.hasNext()) {
+				Observation observation = iterator.next();
+				int o = dict.getIndex(observation);
+				if(o >= 0 && !observation.equals(CommonUtils.UNKNOWN))
+					lists.get(o).add(i);
+			}
+		}
+
+		candidates = new int[maxObservation + 2][];
+		candidates[0] = all;
+		for(int o = 0; o <= maxObservation; o++) {
+			List<Integer> list = lists.get(o);
+			if(list.size() == 0)
+				candidates[o + 1] = all;
+			else {
+				int[] states = new int[list.size()];
+				for(int k = 0; k < states.length; k++)
+					states[k] = list.get(k);
+				candidates[o + 1] = states;
+			}
+		}
+	}
+
+	/**
+	 * 返回观测的候选隐藏状态
+	 * @param observation	观测的索引，-1为未登录的观测
+	 * @return				候选隐藏状态的索引，按递增排列
+	 */
+	public int[] getCandidates(int observation) {
+		if(observation + 1 >= candidates.length)
+			return all;
+
+		return candidates[observation + 1];
+	}
+
+	/**
+	 * 返回所有隐藏状态
+	 * @return	所有隐藏状态的索引
+	 */
+	public int[] getAll() {
+		return all;
+	}
+}
@@ -9,6 +9,7 @@ import com.lc.nlp4han.ml.model.Prior;
 import com.lc.nlp4han.ml.model.UniformPrior;
 import com.lc.nlp4han.ml.util.AbstractEventTrainer;
 import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
 import com.lc.nlp4han.ml.util.TrainingParameters;
 
 /**
@@ -58,7 +59,8 @@ public class GIS extends AbstractEventTrainer {
 
     int threads = getIntParam(TrainingParameters.THREADS_PARAM, 1);
 
-    model = trainModel(iterations, indexer, true, false, null, 0, threads);
+    model = trainModel(iterations, indexer, true, false, null, 0, threads,
+        createTrainingMonitor(threads));
 
     return model;
   }
@@ -266,8 +268,18 @@ public class GIS extends AbstractEventTrainer {
   public static GISModel trainModel(int iterations, DataIndexer indexer,
       boolean printMessagesWhileTraining, boolean smoothing, Prior modelPrior,
       int cutoff, int threads) {
+    return trainModel(iterations, indexer, printMessagesWhileTraining, smoothing, modelPrior,
+        cutoff, threads, null);
+  }
+
+  private static GISModel trainModel(int iterations, DataIndexer indexer,
+      boolean printMessagesWhileTraining, boolean smoothing, Prior modelPrior,
+      int cutoff, int threads, TrainingMonitor monitor) {
     GISTrainer trainer = new GISTrainer(printMessagesWhileTraining);
     trainer.setSmoothing(smoothing);
+    if (monitor != null) {
+      trainer.setTrainingMonitor(monitor);
+    }
     trainer.setSmoothingObservation(SMOOTHING_OBSERVATION);
     if (modelPrior == null) {
       modelPrior = new UniformPrior();
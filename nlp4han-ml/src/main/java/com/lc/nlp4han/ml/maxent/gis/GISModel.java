@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.Context;
@@ -111,6 +112,22 @@ public final class GISModel extends AbstractModel {
     return GISModel.eval(scontexts, values, outsums, evalParams);
   }
 
+  /**
+   * Use this model to evaluate a context given as predicate ids and return an
+   * array of the likelihood of each outcome given that context.
+   *
+   * @param predIds
+   *          The ids of the predicates which have been observed at the present
+   *          decision point, negative ids are ignored.
+   * @param outsums
+   *          This is where the distribution is stored.
+   * @return The normalized probabilities for the outcomes given the context.
+   */
+  public final double[] eval(int[] predIds, double[] outsums) {
+    prior.logPrior(outsums, predIds, null);
+    return GISModel.eval(predIds, null, outsums, evalParams);
+  }
+
 
   /**
    * Use this model to evaluate a context and return an array of the likelihood
@@ -174,6 +191,30 @@ public final class GISModel extends AbstractModel {
       }
     }
 
+    return normalize(prior, numfeats, model);
+  }
+
+  /**
+   * Evaluates many contexts given as predicate ids, reusing one feature count
+   * array for the whole batch.
+   */
+  @Override
+  public double[][] evalBatch(int[][] predIds, double[][] outsums) {
+    outsums = batchOutput(predIds.length, outsums);
+    int[] numfeats = new int[evalParams.getNumOutcomes()];
+    for (int i = 0; i < predIds.length; i++) {
+      Arrays.fill(numfeats, 0);
+      prior.logPrior(outsums[i], predIds[i], null);
+      evalParams.sum(predIds[i], null, outsums[i], numfeats);
+      normalize(outsums[i], numfeats, evalParams);
+    }
+    return outsums;
+  }
+
+  /**
+   * Turns the summed parameters of the outcomes into probabilities.
+   */
+  private static double[] normalize(double[] prior, int[] numfeats, EvalParameters model) {
     double normal = 0.0;
     for (int oid = 0; oid < model.getNumOutcomes(); oid++) {
       if (model.getCorrectionParam() != 0) {
@@ -1,12 +1,15 @@
 package com.lc.nlp4han.ml.maxent.gis;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.lc.nlp4han.ml.model.DataIndexer;
 import com.lc.nlp4han.ml.model.EvalParameters;
@@ -16,6 +19,7 @@ import com.lc.nlp4han.ml.model.OnePassDataIndexer;
 import com.lc.nlp4han.ml.model.Prior;
 import com.lc.nlp4han.ml.model.UniformPrior;
 import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
 
 
 /**
@@ -34,6 +38,9 @@ import com.lc.nlp4han.ml.util.ObjectStream;
  * A prior can be used to train models which converge to the distribution which minimizes the
  * relative entropy between the distribution specified by the empirical constraints of the training
  * data and the specified prior.  By default, the uniform distribution is used as the prior.
+ *
+ * With more than one thread the model expectations are partitioned by predicate, see
+ * {@link PartitionedExpectations}, so that the memory does not grow with the number of threads.
  */
 class GISTrainer {
 
@@ -128,6 +135,8 @@ class GISTrainer {
    */
   private MutableContext[][] modelExpects;
 
+  private int threads;
+
   /**
    * This is the prior distribution that the model uses for training.
    */
@@ -135,6 +144,19 @@ class GISTrainer {
 
   private static final double LLThreshold = 0.0001;
 
+  /**
+   * Receives the metrics of the iterations.
+   */
+  private TrainingMonitor monitor = new TrainingMonitor(null, "GIS", 1);
+
+  /**
+   * The events, the correctly classified events and the squared L2 norm of the
+   * gradient of the log-likelihood of the last iteration.
+   */
+  private int iterationEvents;
+  private int iterationCorrect;
+  private double iterationGradient;
+
   /**
    * Initial probability for all outcomes.
    */
@@ -193,6 +215,15 @@ class GISTrainer {
     sigma = sigmaValue;
   }
 
+  /**
+   * Sets the monitor which receives the metrics of the iterations.
+   *
+   * @param monitor the monitor.
+   */
+  public void setTrainingMonitor(TrainingMonitor monitor) {
+    this.monitor = monitor;
+  }
+
   /**
    * Trains a GIS model on the event in the specified event stream, using the specified number
    * of iterations and the specified count cutoff.
@@ -232,7 +263,9 @@ class GISTrainer {
       throw new IllegalArgumentException("threads must be at least one or greater but is " + threads + "!");
     }
 
-    modelExpects = new MutableContext[threads][];
+    // the partitioned expectations of multiple threads are set up in findParameters
+    this.threads = threads;
+    modelExpects = new MutableContext[threads == 1 ? 1 : 0][];
 
     /* Incorporate all of the needed info *****/
     display("Incorporating indexed data for training...  \n");
@@ -381,9 +414,9 @@ class GISTrainer {
 
   /* Estimate and return the model parameters. */
   private void findParameters(int iterations, double correctionConstant) {
-	int threads=modelExpects.length;
 	ExecutorService executor = Executors.newFixedThreadPool(threads);
 	CompletionService<ModelExpactationComputeTask> completionService = new ExecutorCompletionService<>(executor);
+	PartitionedExpectations partitioned = threads > 1 ? new PartitionedExpectations(executor) : null;
     double prevLL = 0.0;
     double currLL;
     display("Performing " + iterations + " iterations.\n");
@@ -394,7 +427,13 @@ class GISTrainer {
         display(" " + i + ":  ");
       else
         display(i + ":  ");
-      currLL = nextIteration(correctionConstant,completionService);
+      monitor.startIteration();
+      if (partitioned == null)
+        currLL = nextIteration(correctionConstant,completionService);
+      else
+        currLL = partitioned.nextIteration(correctionConstant);
+      monitor.iterationFinished(i, iterationEvents, currLL, Math.sqrt(iterationGradient),
+          (double) iterationCorrect / iterationEvents);
       if (i > 1) {
         if (prevLL > currLL) {
           System.err.println("Model Diverging: loglikelihood decreased");
@@ -416,10 +455,9 @@ class GISTrainer {
   }
 
   //modeled on implementation in  Zhang Le's maxent kit
-  private double gaussianUpdate(int predicate, int oid, int n, double correctionConstant) {
+  private double gaussianUpdate(int predicate, int oid, double modelValue, double correctionConstant) {
     double param = params[predicate].getParameters()[oid];
     double x0 = 0.0;
-    double modelValue = modelExpects[0][predicate].getParameters()[oid];
     double observedValue = observedExpects[predicate].getParameters()[oid];
     for (int i = 0; i < 50; i++) {
       double tmp = modelValue * Math.exp(correctionConstant * x0);
@@ -458,6 +496,7 @@ class GISTrainer {
     }
 
     public ModelExpactationComputeTask call() {
+      long start = System.nanoTime();
 
       final double[] modelDistribution = new double[numOutcomes];
 
@@ -495,7 +534,7 @@ class GISTrainer {
         loglikelihood += Math.log(modelDistribution[outcomeList[ei]]) * numTimesEventsSeen[ei];
 
         numEvents += numTimesEventsSeen[ei];
-        if (printMessages) {
+        if (printMessages || monitor.isEnabled()) {
           int max = 0;
           for (int oi = 1; oi < numOutcomes; oi++) {
             if (modelDistribution[oi] > modelDistribution[max]) {
@@ -509,6 +548,7 @@ class GISTrainer {
 
       }
 
+      monitor.addBusyTime(System.nanoTime() - start);
       return this;
     }
 
@@ -587,13 +627,15 @@ class GISTrainer {
     display(".");
 
     // compute the new parameter values
+    double gradient = 0.0;
     for (int pi = 0; pi < numPreds; pi++) {
       double[] observed = observedExpects[pi].getParameters();
       double[] model = modelExpects[0][pi].getParameters();
       int[] activeOutcomes = params[pi].getOutcomes();
       for (int aoi=0;aoi<activeOutcomes.length;aoi++) {
+        gradient += (observed[aoi] - model[aoi]) * (observed[aoi] - model[aoi]);
         if (useGaussianSmoothing) {
-          params[pi].updateParameter(aoi,gaussianUpdate(pi,aoi,numEvents,correctionConstant));
+          params[pi].updateParameter(aoi,gaussianUpdate(pi,aoi,model[aoi],correctionConstant));
         }
         else {
           if (model[aoi] == 0) {
@@ -612,9 +654,308 @@ class GISTrainer {
 
     display(". loglikelihood=" + loglikelihood + "\t" + ((double) numCorrect / numEvents) + "\n");
 
+    iterationEvents = numEvents;
+    iterationCorrect = numCorrect;
+    iterationGradient = gradient;
+
     return loglikelihood;
   }
 
+  /**
+   * Computes the model expectations with several threads without a copy of the
+   * expectations per thread. The events are processed in blocks: the threads first
+   * compute the outcome distributions of a part of the events of the block, and then
+   * add the distributions to the expectations of the predicates they own, using an
+   * index from each predicate to the events it occurs in. Finally every thread updates
+   * the parameters of its predicates.
+   * <p>
+   * The expectations of a predicate are summed in the order of the events, as by a
+   * single thread, so the parameters do not depend on the number of threads.
+   */
+  private class PartitionedExpectations {
+
+    private static final int DISTRIBUTIONS_SIZE = 1 << 21;
+
+    private final ExecutorService executor;
+
+    /** The model expectations, the expectations of predicate pi start at expectOffsets[pi]. */
+    private final double[] expects;
+    private final int[] expectOffsets;
+
+    /** The events predicate pi occurs in are eventIds[eventOffsets[pi]] to eventIds[eventOffsets[pi+1]-1]. */
+    private final int[] eventOffsets;
+    private final int[] eventIds;
+    private final float[] eventValues;
+    private final int[] cursors;
+
+    /** The outcome distributions of the events of the current block. */
+    private final double[] distributions;
+    private final int blockSize;
+
+    private final List<Partition> partitions = new ArrayList<>();
+
+    PartitionedExpectations(ExecutorService executor) {
+      this.executor = executor;
+
+      expectOffsets = new int[numPreds + 1];
+      for (int pi = 0; pi < numPreds; pi++) {
+        expectOffsets[pi + 1] = expectOffsets[pi] + params[pi].getOutcomes().length;
+      }
+      expects = new double[expectOffsets[numPreds]];
+
+      // index the events of each predicate in the order of the events
+      eventOffsets = new int[numPreds + 1];
+      for (int[] context : contexts) {
+        for (int pi : context) {
+          if (predicateCounts[pi] >= cutoff)
+            eventOffsets[pi + 1]++;
+        }
+      }
+      for (int pi = 0; pi < numPreds; pi++) {
+        eventOffsets[pi + 1] += eventOffsets[pi];
+      }
+      eventIds = new int[eventOffsets[numPreds]];
+      eventValues = values != null ? new float[eventIds.length] : null;
+      cursors = new int[numPreds];
+      System.arraycopy(eventOffsets, 0, cursors, 0, numPreds);
+      for (int ei = 0; ei < numUniqueEvents; ei++) {
+        for (int j = 0; j < contexts[ei].length; j++) {
+          int pi = contexts[ei][j];
+          if (predicateCounts[pi] >= cutoff) {
+            eventIds[cursors[pi]] = ei;
+            if (eventValues != null)
+              eventValues[cursors[pi]] = values[ei] != null ? values[ei][j] : 1;
+            cursors[pi]++;
+          }
+        }
+      }
+
+      blockSize = Math.max(1024, DISTRIBUTIONS_SIZE / Math.max(1, numOutcomes));
+      distributions = new double[Math.min(blockSize, Math.max(1, numUniqueEvents)) * numOutcomes];
+
+      // give every thread predicates with about the same number of updates
+      long total = 0;
+      for (int pi = 0; pi < numPreds; pi++) {
+        total += cost(pi);
+      }
+      int start = 0;
+      long sum = 0;
+      for (int t = 0; t < threads; t++) {
+        int end = start;
+        long limit = total * (t + 1) / threads;
+        while (end < numPreds && (sum < limit || t == threads - 1)) {
+          sum += cost(end);
+          end++;
+        }
+        partitions.add(new Partition(start, end));
+        start = end;
+      }
+    }
+
+    private long cost(int pi) {
+      return 1 + (long) (eventOffsets[pi + 1] - eventOffsets[pi]) * params[pi].getOutcomes().length;
+    }
+
+    /* Compute one iteration of GIS and retutn log-likelihood.*/
+    double nextIteration(double correctionConstant) {
+      for (Partition partition : partitions) {
+        partition.clear();
+      }
+      System.arraycopy(eventOffsets, 0, cursors, 0, numPreds);
+
+      for (int blockStart = 0; blockStart < numUniqueEvents; blockStart += blockSize) {
+        int blockEnd = Math.min(numUniqueEvents, blockStart + blockSize);
+        for (int t = 0; t < threads; t++) {
+          partitions.get(t).setEvents(blockStart,
+              blockStart + (int) ((long) (blockEnd - blockStart) * t / threads),
+              blockStart + (int) ((long) (blockEnd - blockStart) * (t + 1) / threads));
+        }
+        run(Partition.DISTRIBUTIONS);
+        run(Partition.EXPECTATIONS);
+      }
+
+      display(".");
+
+      double loglikelihood = 0.0;
+      int numEvents = 0;
+      int numCorrect = 0;
+      for (Partition partition : partitions) {
+        partition.correctionConstant = correctionConstant;
+        loglikelihood += partition.loglikelihood;
+        numEvents += partition.numEvents;
+        numCorrect += partition.numCorrect;
+      }
+
+      display(".");
+
+      run(Partition.PARAMETERS);
+
+      double gradient = 0.0;
+      for (Partition partition : partitions) {
+        gradient += partition.gradient;
+      }
+
+      display(". loglikelihood=" + loglikelihood + "\t" + ((double) numCorrect / numEvents) + "\n");
+
+      iterationEvents = numEvents;
+      iterationCorrect = numCorrect;
+      iterationGradient = gradient;
+
+      return loglikelihood;
+    }
+
+    private void run(int phase) {
+      for (Partition partition : partitions) {
+        partition.phase = phase;
+      }
+
+      try {
+        for (Future<Partition> result : executor.invokeAll(partitions)) {
+          result.get();
+        }
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+        throw new IllegalStateException("Interruption is not supported!", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Exception during training: " + e.getMessage(), e);
+      }
+    }
+
+    /**
+     * The work of one thread, a range of the events of the current block and a fixed
+     * range of the predicates.
+     */
+    private class Partition implements Callable<Partition> {
+
+      static final int DISTRIBUTIONS = 0;
+      static final int EXPECTATIONS = 1;
+      static final int PARAMETERS = 2;
+
+      private final int predStart;
+      private final int predEnd;
+      private final double[] modelDistribution = new double[numOutcomes];
+
+      private int phase;
+      private int blockStart;
+      private int blockEnd;
+      private int eventStart;
+      private int eventEnd;
+      private double correctionConstant;
+
+      private double loglikelihood;
+      private int numEvents;
+      private int numCorrect;
+      private double gradient;
+
+      Partition(int predStart, int predEnd) {
+        this.predStart = predStart;
+        this.predEnd = predEnd;
+      }
+
+      void clear() {
+        loglikelihood = 0;
+        numEvents = 0;
+        numCorrect = 0;
+        gradient = 0;
+      }
+
+      void setEvents(int blockStart, int eventStart, int eventEnd) {
+        this.blockStart = blockStart;
+        this.blockEnd = blockStart + Math.min(blockSize, numUniqueEvents - blockStart);
+        this.eventStart = eventStart;
+        this.eventEnd = eventEnd;
+      }
+
+      public Partition call() {
+        long start = System.nanoTime();
+        if (phase == DISTRIBUTIONS)
+          computeDistributions();
+        else if (phase == EXPECTATIONS)
+          addExpectations();
+        else
+          updateParameters();
+        monitor.addBusyTime(System.nanoTime() - start);
+        return this;
+      }
+
+      private void computeDistributions() {
+        for (int ei = eventStart; ei < eventEnd; ei++) {
+          if (values != null) {
+            prior.logPrior(modelDistribution, contexts[ei], values[ei]);
+            GISModel.eval(contexts[ei], values[ei], modelDistribution, evalParams);
+          }
+          else {
+            prior.logPrior(modelDistribution,contexts[ei]);
+            GISModel.eval(contexts[ei], modelDistribution, evalParams);
+          }
+          System.arraycopy(modelDistribution, 0, distributions, (ei - blockStart) * numOutcomes, numOutcomes);
+
+          loglikelihood += Math.log(modelDistribution[outcomeList[ei]]) * numTimesEventsSeen[ei];
+
+          numEvents += numTimesEventsSeen[ei];
+          int max = 0;
+          for (int oi = 1; oi < numOutcomes; oi++) {
+            if (modelDistribution[oi] > modelDistribution[max]) {
+              max = oi;
+            }
+          }
+          if (max == outcomeList[ei]) {
+            numCorrect += numTimesEventsSeen[ei];
+          }
+        }
+      }
+
+      private void addExpectations() {
+        for (int pi = predStart; pi < predEnd; pi++) {
+          int[] activeOutcomes = params[pi].getOutcomes();
+          int offset = expectOffsets[pi];
+          int end = eventOffsets[pi + 1];
+          int c = cursors[pi];
+          for (; c < end && eventIds[c] < blockEnd; c++) {
+            int ei = eventIds[c];
+            int distribution = (ei - blockStart) * numOutcomes;
+            int seen = numTimesEventsSeen[ei];
+            // same multiplication order as the unpartitioned computation, so the sums are identical
+            if (eventValues != null) {
+              float value = eventValues[c];
+              for (int aoi = 0; aoi < activeOutcomes.length; aoi++) {
+                expects[offset + aoi] += distributions[distribution + activeOutcomes[aoi]] * value * seen;
+              }
+            }
+            else {
+              for (int aoi = 0; aoi < activeOutcomes.length; aoi++) {
+                expects[offset + aoi] += distributions[distribution + activeOutcomes[aoi]] * seen;
+              }
+            }
+          }
+          cursors[pi] = c;
+        }
+      }
+
+      private void updateParameters() {
+        for (int pi = predStart; pi < predEnd; pi++) {
+          double[] observed = observedExpects[pi].getParameters();
+          int offset = expectOffsets[pi];
+          int[] activeOutcomes = params[pi].getOutcomes();
+          for (int aoi = 0; aoi < activeOutcomes.length; aoi++) {
+            double model = expects[offset + aoi];
+            gradient += (observed[aoi] - model) * (observed[aoi] - model);
+            if (useGaussianSmoothing) {
+              params[pi].updateParameter(aoi, gaussianUpdate(pi, aoi, model, correctionConstant));
+            }
+            else {
+              if (model == 0) {
+                System.err.println("Model expects == 0 for "+predLabels[pi]+" "+outcomeLabels[aoi]);
+              }
+              params[pi].updateParameter(aoi, ((Math.log(observed[aoi]) - Math.log(model)) / correctionConstant));
+            }
+            expects[offset + aoi] = 0.0; // re-initialize to 0.0's
+          }
+        }
+      }
+    }
+  }
+
   private void display(String s) {
     if (printMessages)
       System.out.print(s);
@@ -10,6 +10,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import com.lc.nlp4han.ml.model.DataIndexer;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
 
 /**
  * Evaluate negative log-likelihood and its gradient in parallel
@@ -25,6 +26,9 @@ public class ParallelNegLogLikelihood extends NegLogLikelihood {
   // Partial gradient
   private double[][] gradientThread;
 
+  // Receives the busy time of the tasks
+  private TrainingMonitor monitor = new TrainingMonitor(null, "ParallelNegLogLikelihood", 1);
+
   public ParallelNegLogLikelihood(DataIndexer indexer, int threads) {
     super(indexer);
 
@@ -37,6 +41,13 @@ public class ParallelNegLogLikelihood extends NegLogLikelihood {
     this.gradientThread         = new double[threads][dimension];
   }
 
+  /**
+   * Sets the monitor the busy time of the tasks is added to.
+   */
+  public void setTrainingMonitor(TrainingMonitor monitor) {
+    this.monitor = monitor;
+  }
+
   /**
    * Negative log-likelihood
    */
@@ -97,12 +108,17 @@ public class ParallelNegLogLikelihood extends NegLogLikelihood {
 
       List<Future<?>> futures = new ArrayList<>();
       for (int i = 0; i < threads; i++) {
+        final ComputeTask task;
         if (i != threads - 1)
-          futures.add(executor.submit(
-              cons.newInstance(this, i, i*taskSize, taskSize, x)));
+          task = cons.newInstance(this, i, i*taskSize, taskSize, x);
         else
-          futures.add(executor.submit(
-              cons.newInstance(this, i, i*taskSize, taskSize + leftOver, x)));
+          task = cons.newInstance(this, i, i*taskSize, taskSize + leftOver, x);
+        futures.add(executor.submit(() -> {
+          long start = System.nanoTime();
+          task.call();
+          monitor.addBusyTime(System.nanoTime() - start);
+          return task;
+        }));
       }
 
       for (Future<?> future: futures)
@@ -1,6 +1,7 @@
 package com.lc.nlp4han.ml.maxent.quasinewton;
 
 import com.lc.nlp4han.ml.maxent.quasinewton.LineSearch.LineSearchResult;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
 
 
 /**
@@ -91,6 +92,12 @@ public class QNMinimizer {
   // This is optional and can be omitted.
   private Evaluator evaluator;
 
+  // Receives the metrics of the iterations
+  private TrainingMonitor monitor = new TrainingMonitor(null, "QNMinimizer", 1);
+
+  // Number of events processed by one function evaluation
+  private long eventsPerFctEval;
+
   public QNMinimizer() {
     this(L1COST_DEFAULT, L2COST_DEFAULT);
   }
@@ -152,6 +159,18 @@ public class QNMinimizer {
     this.evaluator = evaluator;
   }
 
+  /**
+   * Sets the monitor which receives the metrics of the iterations.
+   *
+   * @param monitor the monitor
+   * @param eventsPerFctEval number of events processed by one function evaluation,
+   *     the events of an iteration are this times its function evaluations
+   */
+  public void setTrainingMonitor(TrainingMonitor monitor, long eventsPerFctEval) {
+    this.monitor = monitor;
+    this.eventsPerFctEval = eventsPerFctEval;
+  }
+
   /**
    * Find the parameters that minimize the objective function
    * @param function objective function
@@ -206,6 +225,9 @@ public class QNMinimizer {
         ArrayMath.invL2norm(lsr.getGradAtNext());
 
     for (int iter = 1; iter <= iterations; iter++) {
+      monitor.startIteration();
+      int fctEvalCount = lsr.getFctEvalCount();
+
       // Find direction
       if (l1Cost > 0) {
         System.arraycopy(lsr.getPseudoGradAtNext(), 0, direction, 0, direction.length);
@@ -234,6 +256,14 @@ public class QNMinimizer {
       // Save Hessian updates
       updateInfo.update(lsr);
 
+      double accuracy = Double.NaN;
+      if (evaluator != null && (verbose || monitor.isEnabled()))
+        accuracy = evaluator.evaluate(lsr.getNextPoint());
+
+      monitor.iterationFinished(iter, eventsPerFctEval * (lsr.getFctEvalCount() - fctEvalCount),
+          lsr.getValueAtNext(), ArrayMath.l2norm(l1Cost > 0 ?
+              lsr.getPseudoGradAtNext() : lsr.getGradAtNext()), accuracy);
+
       if (verbose) {
         if (iter < 10)
           display("  " + iter + ":  ");
@@ -245,7 +275,7 @@ public class QNMinimizer {
         if (evaluator != null) {
           display("\t" + lsr.getValueAtNext()
                 + "\t" + lsr.getFuncChangeRate()
-                + "\t" + evaluator.evaluate(lsr.getNextPoint()) + "\n");
+                + "\t" + accuracy + "\n");
         } else {
           display("\t " + lsr.getValueAtNext() +
                   "\t" + lsr.getFuncChangeRate() + "\n");
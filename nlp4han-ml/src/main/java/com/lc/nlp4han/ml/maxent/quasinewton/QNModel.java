@@ -1,5 +1,7 @@
 package com.lc.nlp4han.ml.maxent.quasinewton;
 
+import java.util.Arrays;
+
 import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.Context;
 
@@ -15,10 +17,6 @@ public class QNModel extends AbstractModel {
     return this.outcomeNames.length;
   }
 
-  private Integer getPredIndex(String predicate) {
-    return pmap.get(predicate);
-  }
-
   public double[] eval(String[] context) {
     return eval(context, new double[evalParams.getNumOutcomes()]);
   }
@@ -44,12 +42,13 @@ public class QNModel extends AbstractModel {
    * @return Normalized probabilities for the outcomes given the context.
    */
   private double[] eval(String[] context, float[] values, double[] probs) {
+    Arrays.fill(probs, 0);
     Context[] params = evalParams.getParams();
 
     for (int ci = 0; ci < context.length; ci++) {
-      Integer predIdx = getPredIndex(context[ci]);
+      int predIdx = getPredIndex(context[ci]);
 
-      if (predIdx != null) {
+      if (predIdx >= 0) {
         double predValue = 1.0;
         if (values != null) predValue = values[ci];
 
@@ -62,6 +61,53 @@ public class QNModel extends AbstractModel {
       }
     }
 
+    return normalize(probs);
+  }
+
+  /**
+   * Model evaluation of a context given as predicate ids.
+   * @param predIds
+   *          The ids of the predicates which have been observed at the present
+   *          decision point, negative ids are ignored.
+   * @param probs
+   *          Probability for outcomes.
+   * @return Normalized probabilities for the outcomes given the context.
+   */
+  public double[] eval(int[] predIds, double[] probs) {
+    Arrays.fill(probs, 0);
+    Context[] params = evalParams.getParams();
+
+    for (int ci = 0; ci < predIds.length; ci++) {
+      int predIdx = predIds[ci];
+
+      if (predIdx >= 0) {
+        double[] parameters = params[predIdx].getParameters();
+        int[] outcomes = params[predIdx].getOutcomes();
+        for (int i = 0; i < outcomes.length; i++) {
+          probs[outcomes[i]] += parameters[i];
+        }
+      }
+    }
+
+    return normalize(probs);
+  }
+
+  /**
+   * Evaluates many contexts given as predicate ids, the parameters of predicates
+   * which occur with every outcome are summed in a plain loop over the outcomes.
+   */
+  @Override
+  public double[][] evalBatch(int[][] predIds, double[][] probs) {
+    probs = batchOutput(predIds.length, probs);
+    for (int i = 0; i < predIds.length; i++) {
+      Arrays.fill(probs[i], 0);
+      evalParams.sum(predIds[i], null, probs[i], null);
+      normalize(probs[i]);
+    }
+    return probs;
+  }
+
+  private double[] normalize(double[] probs) {
     double logSumExp = ArrayMath.logSumOfExps(probs);
     for (int oi = 0; oi < outcomeNames.length; oi++) {
     	probs[oi] = Math.exp(probs[oi] - logSumExp);
@@ -9,6 +9,7 @@ import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.Context;
 import com.lc.nlp4han.ml.model.DataIndexer;
 import com.lc.nlp4han.ml.util.AbstractEventTrainer;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
 
 /**
  * Maxent model trainer using L-BFGS algorithm.
@@ -147,9 +148,14 @@ public class QNTrainer extends AbstractEventTrainer {
       objectiveFunction = new ParallelNegLogLikelihood(indexer, threads);
     }
 
+    TrainingMonitor monitor = createTrainingMonitor(threads);
+    if (objectiveFunction instanceof ParallelNegLogLikelihood)
+      ((ParallelNegLogLikelihood) objectiveFunction).setTrainingMonitor(monitor);
+
     QNMinimizer minimizer = new QNMinimizer(
         l1Cost, l2Cost, iterations, m, maxFctEval, verbose);
     minimizer.setEvaluator(new ModelEvaluator(indexer));
+    minimizer.setTrainingMonitor(monitor, indexer.getNumEvents());
 
     double[] parameters = minimizer.minimize(objectiveFunction);
 
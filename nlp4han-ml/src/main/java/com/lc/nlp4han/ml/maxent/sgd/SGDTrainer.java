@@ -0,0 +1,556 @@
+package com.lc.nlp4han.ml.maxent.sgd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lc.nlp4han.ml.maxent.quasinewton.ArrayMath;
+import com.lc.nlp4han.ml.maxent.quasinewton.QNModel;
+import com.lc.nlp4han.ml.maxent.quasinewton.QNTrainer;
+import com.lc.nlp4han.ml.model.Context;
+import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.util.AbstractTrainer;
+import com.lc.nlp4han.ml.util.EventTrainer;
+import com.lc.nlp4han.ml.util.InsufficientTrainingDataException;
+import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.TrainingParameters;
+
+/**
+ * Maxent model trainer using stochastic gradient descent on an event stream.
+ * <p>
+ * The event stream is read once to count the predicates and outcomes and once per
+ * iteration to update the parameters, the events are never held in memory. The step
+ * size is either a global learning rate which decays per iteration (SGD) or a per
+ * parameter learning rate (AdaGrad). The L1 and L2 penalties of the steps in which a
+ * predicate was not active are applied when the predicate becomes active again, so
+ * a mini-batch costs only as much as its active predicates.
+ * <p>
+ * With more than one thread the mini-batches are processed by workers which update the
+ * shared parameters without locking (Hogwild), the result then depends on the
+ * scheduling of the threads.
+ * <p>
+ * The objective is the one minimized by {@link QNTrainer} and the trained model is a
+ * {@link QNModel}.
+ */
+public class SGDTrainer extends AbstractTrainer implements EventTrainer {
+
+  public static final String MAXENT_SGD_VALUE = "MAXENT_SGD";
+
+  public static final String UPDATER_PARAM = "Updater";
+  public static final String UPDATER_SGD_VALUE = "SGD";
+  public static final String UPDATER_ADAGRAD_VALUE = "AdaGrad";
+
+  public static final String LEARNING_RATE_PARAM = "LearningRate";
+  public static final double LEARNING_RATE_DEFAULT = 0.1;
+
+  // The learning rate of iteration i is LearningRate / (1 + Decay * (i - 1))
+  public static final String DECAY_PARAM = "Decay";
+  public static final double DECAY_DEFAULT = 0;
+
+  public static final String MINI_BATCH_SIZE_PARAM = "MiniBatchSize";
+  public static final int MINI_BATCH_SIZE_DEFAULT = 1;
+
+  public static final String L1COST_PARAM = QNTrainer.L1COST_PARAM;
+  public static final double L1COST_DEFAULT = 0;
+
+  public static final String L2COST_PARAM = QNTrainer.L2COST_PARAM;
+  public static final double L2COST_DEFAULT = 0;
+
+  // Stop if the relative change of the log-likelihood is less than this
+  public static final String TOLERANCE_PARAM = "Tolerance";
+  public static final double TOLERANCE_DEFAULT = 0.00001;
+
+  private static final double ADAGRAD_EPSILON = 1e-6;
+
+  private static final List<Event> END_OF_ITERATION = new ArrayList<>(0);
+
+  private boolean adaGrad;
+  private double learningRate = LEARNING_RATE_DEFAULT;
+  private double decay = DECAY_DEFAULT;
+  private int miniBatchSize = MINI_BATCH_SIZE_DEFAULT;
+  private double l1Cost = L1COST_DEFAULT;
+  private double l2Cost = L2COST_DEFAULT;
+  private double tolerance = TOLERANCE_DEFAULT;
+  private int threads = 1;
+  private boolean printMessages = true;
+
+  /** Number of events in the event stream. */
+  private int numEvents;
+  private int numPreds;
+  private int numOutcomes;
+
+  private Map<String, Integer> predicateIndex;
+  private Map<String, Integer> outcomeIndex;
+  private String[] predLabels;
+  private String[] outcomeLabels;
+
+  /** The parameters, the parameters of a predicate are stored next to each other. */
+  private double[] weights;
+  /** The sums of the squared gradients of the parameters, only for AdaGrad. */
+  private double[] sumSquares;
+  /** The sum of the step sizes up to the last regularization of each predicate. */
+  private double[] lastRates;
+
+  /** Number of mini-batch updates. */
+  private final AtomicLong steps = new AtomicLong();
+
+  // the sum of the step sizes is sumOfRates + rate * (steps - firstStep) during an iteration
+  private volatile double sumOfRates;
+  private volatile double rate;
+  private volatile long firstStep;
+
+  public SGDTrainer() {
+  }
+
+  public boolean isValid() {
+
+    if (!super.isValid()) {
+      return false;
+    }
+
+    String algorithmName = getAlgorithm();
+    if (algorithmName != null && !(MAXENT_SGD_VALUE.equals(algorithmName))) {
+      return false;
+    }
+
+    String updater = getStringParam(UPDATER_PARAM, UPDATER_ADAGRAD_VALUE);
+    if (!(UPDATER_SGD_VALUE.equals(updater) || UPDATER_ADAGRAD_VALUE.equals(updater))) {
+      return false;
+    }
+    adaGrad = UPDATER_ADAGRAD_VALUE.equals(updater);
+
+    learningRate = getDoubleParam(LEARNING_RATE_PARAM, LEARNING_RATE_DEFAULT);
+    decay = getDoubleParam(DECAY_PARAM, DECAY_DEFAULT);
+    miniBatchSize = getIntParam(MINI_BATCH_SIZE_PARAM, MINI_BATCH_SIZE_DEFAULT);
+    l1Cost = getDoubleParam(L1COST_PARAM, L1COST_DEFAULT);
+    l2Cost = getDoubleParam(L2COST_PARAM, L2COST_DEFAULT);
+    tolerance = getDoubleParam(TOLERANCE_PARAM, TOLERANCE_DEFAULT);
+    threads = getIntParam(TrainingParameters.THREADS_PARAM, 1);
+
+    return learningRate > 0 && decay >= 0 && miniBatchSize >= 1
+        && l1Cost >= 0 && l2Cost >= 0 && tolerance >= 0 && threads >= 1;
+  }
+
+  public QNModel train(ObjectStream<Event> events) throws IOException {
+
+    if (!isValid()) {
+      throw new IllegalArgumentException("trainParams are not valid!");
+    }
+
+    QNModel model = trainModel(getIterations(), getCutoff(), events);
+
+    addToReport(AbstractTrainer.TRAINER_TYPE_PARAM, EventTrainer.EVENT_VALUE);
+    return model;
+  }
+
+  /**
+   * Trains a model, the event stream is reset after each pass.
+   *
+   * @param iterations the number of passes over the events
+   * @param cutoff the minimum number of times a predicate must occur
+   * @param events the events
+   * @return the trained model
+   */
+  public QNModel trainModel(int iterations, int cutoff, ObjectStream<Event> events) throws IOException {
+
+    display("Counting predicates with cutoff of " + cutoff + "...  ");
+    computeCounts(events, cutoff);
+    display("done.\n");
+
+    display("\t    Number of Events: " + numEvents + "\n");
+    display("\t  Number of Outcomes: " + numOutcomes + "\n");
+    display("\tNumber of Predicates: " + numPreds + "\n");
+
+    if (numPreds == 0) {
+      throw new InsufficientTrainingDataException("Insufficient training data to create model.");
+    }
+
+    weights = new double[numPreds * numOutcomes];
+    sumSquares = adaGrad ? new double[weights.length] : null;
+    lastRates = new double[numPreds];
+    steps.set(0);
+    sumOfRates = 0;
+    rate = 0;
+    firstStep = 0;
+
+    if (threads == 1)
+      display("Computing model parameters ...\n");
+    else
+      display("Computing model parameters in " + threads + " threads...\n");
+
+    findParameters(iterations, events);
+
+    // apply the pending penalties
+    double sum = sumOfRates();
+    for (int pi = 0; pi < numPreds; pi++) {
+      regularize(pi, sum);
+    }
+
+    Context[] params = new Context[numPreds];
+    int[] allOutcomesPattern = new int[numOutcomes];
+    for (int oi = 0; oi < numOutcomes; oi++) {
+      allOutcomesPattern[oi] = oi;
+    }
+    for (int pi = 0; pi < numPreds; pi++) {
+      params[pi] = new Context(allOutcomesPattern,
+          Arrays.copyOfRange(weights, pi * numOutcomes, (pi + 1) * numOutcomes));
+    }
+
+    QNModel model = new QNModel(params, predLabels, outcomeLabels);
+
+    weights = null;
+    sumSquares = null;
+    lastRates = null;
+
+    return model;
+  }
+
+  private void computeCounts(ObjectStream<Event> events, int cutoff) throws IOException {
+    Map<String, int[]> counts = new LinkedHashMap<>();
+    outcomeIndex = new LinkedHashMap<>();
+    numEvents = 0;
+
+    Event ev;
+    while ((ev = events.read()) != null) {
+      numEvents++;
+
+      if (!outcomeIndex.containsKey(ev.getOutcome())) {
+        outcomeIndex.put(ev.getOutcome(), outcomeIndex.size());
+      }
+
+      for (String pred : ev.getContext()) {
+        int[] count = counts.get(pred);
+        if (count == null) {
+          counts.put(pred, new int[] {1});
+        }
+        else {
+          count[0]++;
+        }
+      }
+    }
+    events.reset();
+
+    predicateIndex = new HashMap<>();
+    List<String> preds = new ArrayList<>();
+    for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+      if (entry.getValue()[0] >= cutoff) {
+        predicateIndex.put(entry.getKey(), preds.size());
+        preds.add(entry.getKey());
+      }
+    }
+
+    predLabels = preds.toArray(new String[preds.size()]);
+    outcomeLabels = outcomeIndex.keySet().toArray(new String[outcomeIndex.size()]);
+    numPreds = predLabels.length;
+    numOutcomes = outcomeLabels.length;
+  }
+
+  private void findParameters(int iterations, ObjectStream<Event> events) throws IOException {
+    display("Performing " + iterations + " iterations.\n");
+
+    ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    List<Worker> workers = new ArrayList<>(threads);
+    for (int t = 0; t < threads; t++) {
+      workers.add(new Worker());
+    }
+
+    try {
+      double prevLL = 0;
+      for (int i = 1; i <= iterations; i++) {
+        // the sum of the step sizes continues from the last iteration
+        double sum = sumOfRates();
+        firstStep = steps.get();
+        sumOfRates = sum;
+        rate = learningRate / (1 + decay * (i - 1));
+
+        for (Worker worker : workers) {
+          worker.clearStats();
+        }
+
+        if (executor == null)
+          nextIteration(events, workers.get(0));
+        else
+          nextIteration(events, workers, executor);
+        events.reset();
+
+        double loglikelihood = 0;
+        int numCorrect = 0;
+        int numSeen = 0;
+        for (Worker worker : workers) {
+          loglikelihood += worker.loglikelihood;
+          numCorrect += worker.numCorrect;
+          numSeen += worker.numSeen;
+        }
+
+        if (i < 10)
+          display("  " + i + ":  ");
+        else if (i < 100)
+          display(" " + i + ":  ");
+        else
+          display(i + ":  ");
+        display(". loglikelihood=" + loglikelihood + "\t" + ((double) numCorrect / numSeen) + "\n");
+
+        if (i > 1 && Math.abs(loglikelihood - prevLL) < tolerance * Math.abs(prevLL)) {
+          display("Stopping: change in log-likelihood less than " + tolerance + "\n");
+          break;
+        }
+        prevLL = loglikelihood;
+      }
+    }
+    finally {
+      if (executor != null)
+        executor.shutdownNow();
+    }
+  }
+
+  private void nextIteration(ObjectStream<Event> events, Worker worker) throws IOException {
+    List<Event> batch;
+    while (!(batch = readBatch(events)).isEmpty()) {
+      worker.update(batch);
+    }
+  }
+
+  /**
+   * Reads the mini-batches on this thread and lets the workers update the parameters.
+   */
+  private void nextIteration(ObjectStream<Event> events, List<Worker> workers, ExecutorService executor)
+      throws IOException {
+
+    final BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(threads * 2);
+    List<Future<?>> results = new ArrayList<>(workers.size());
+    for (final Worker worker : workers) {
+      results.add(executor.submit(() -> {
+        List<Event> batch;
+        while ((batch = queue.take()) != END_OF_ITERATION) {
+          worker.update(batch);
+        }
+        return null;
+      }));
+    }
+
+    try {
+      List<Event> batch;
+      while (!(batch = readBatch(events)).isEmpty()) {
+        offer(queue, batch, results);
+      }
+      for (int t = 0; t < workers.size(); t++) {
+        offer(queue, END_OF_ITERATION, results);
+      }
+
+      for (Future<?> result : results) {
+        result.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interruption is not supported!", e);
+    }
+    catch (ExecutionException e) {
+      throw new RuntimeException("Exception during training: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Waits until the batch is queued, a worker which failed would otherwise block the reader.
+   */
+  private static void offer(BlockingQueue<List<Event>> queue, List<Event> batch, List<Future<?>> results)
+      throws InterruptedException, ExecutionException {
+    while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+      for (Future<?> result : results) {
+        if (result.isDone())
+          result.get();
+      }
+    }
+  }
+
+  private List<Event> readBatch(ObjectStream<Event> events) throws IOException {
+    List<Event> batch = new ArrayList<>(miniBatchSize);
+    Event ev;
+    while (batch.size() < miniBatchSize && (ev = events.read()) != null) {
+      batch.add(ev);
+    }
+    return batch;
+  }
+
+  private double sumOfRates() {
+    return sumOfRates + rate * (steps.get() - firstStep);
+  }
+
+  /**
+   * Applies the penalties of the steps since the last regularization of a predicate.
+   *
+   * @param pi the predicate
+   * @param sum the current sum of the step sizes
+   */
+  private void regularize(int pi, double sum) {
+    double delta = sum - lastRates[pi];
+    if (delta <= 0)
+      return;
+
+    lastRates[pi] = sum;
+    if (l1Cost == 0 && l2Cost == 0)
+      return;
+
+    for (int i = pi * numOutcomes; i < (pi + 1) * numOutcomes; i++) {
+      double stepSize = adaGrad ? delta / (Math.sqrt(sumSquares[i]) + ADAGRAD_EPSILON) : delta;
+
+      double w = weights[i];
+      if (l2Cost > 0) {
+        w *= Math.exp(-2 * l2Cost / numEvents * stepSize);
+      }
+      if (l1Cost > 0) {
+        double penalty = l1Cost / numEvents * stepSize;
+        w = w > 0 ? Math.max(0, w - penalty) : Math.min(0, w + penalty);
+      }
+      weights[i] = w;
+    }
+  }
+
+  /**
+   * Computes the gradients of mini-batches, each worker is used by one thread.
+   */
+  private class Worker {
+
+    private final double[] probs = new double[numOutcomes];
+
+    // the active predicates of the mini-batch and their gradients
+    private final int[] slots = new int[numPreds];
+    private int[] active = new int[16];
+    private double[] gradients = new double[16 * numOutcomes];
+
+    private int[] predIds = new int[16];
+    private float[] predValues = new float[16];
+
+    private double loglikelihood;
+    private int numCorrect;
+    private int numSeen;
+
+    Worker() {
+      Arrays.fill(slots, -1);
+    }
+
+    void clearStats() {
+      loglikelihood = 0;
+      numCorrect = 0;
+      numSeen = 0;
+    }
+
+    void update(List<Event> batch) {
+      double sum = sumOfRates();
+      double scale = 1.0 / batch.size();
+      int numActive = 0;
+
+      for (Event event : batch) {
+        int n = index(event);
+        if (n == 0)
+          continue;
+
+        Arrays.fill(probs, 0);
+        for (int i = 0; i < n; i++) {
+          int pi = predIds[i];
+          regularize(pi, sum);
+
+          int offset = pi * numOutcomes;
+          for (int oi = 0; oi < numOutcomes; oi++) {
+            probs[oi] += predValues[i] * weights[offset + oi];
+          }
+        }
+
+        double logSumExp = ArrayMath.logSumOfExps(probs);
+        for (int oi = 0; oi < numOutcomes; oi++) {
+          probs[oi] = Math.exp(probs[oi] - logSumExp);
+        }
+
+        int outcome = outcomeIndex.get(event.getOutcome());
+        loglikelihood += Math.log(probs[outcome]);
+        if (ArrayMath.maxIdx(probs) == outcome)
+          numCorrect++;
+        numSeen++;
+
+        probs[outcome] -= 1;
+        for (int i = 0; i < n; i++) {
+          int pi = predIds[i];
+          int slot = slots[pi];
+          if (slot < 0) {
+            slot = numActive++;
+            slots[pi] = slot;
+            if (active.length < numActive) {
+              active = Arrays.copyOf(active, numActive * 2);
+              gradients = Arrays.copyOf(gradients, numActive * 2 * numOutcomes);
+            }
+            active[slot] = pi;
+            Arrays.fill(gradients, slot * numOutcomes, numActive * numOutcomes, 0);
+          }
+
+          int offset = slot * numOutcomes;
+          for (int oi = 0; oi < numOutcomes; oi++) {
+            gradients[offset + oi] += scale * predValues[i] * probs[oi];
+          }
+        }
+      }
+
+      double stepSize = rate;
+      for (int slot = 0; slot < numActive; slot++) {
+        int pi = active[slot];
+        slots[pi] = -1;
+
+        int offset = pi * numOutcomes;
+        int gradientOffset = slot * numOutcomes;
+        for (int oi = 0; oi < numOutcomes; oi++) {
+          double g = gradients[gradientOffset + oi];
+          if (adaGrad) {
+            sumSquares[offset + oi] += g * g;
+            weights[offset + oi] -= stepSize * g / (Math.sqrt(sumSquares[offset + oi]) + ADAGRAD_EPSILON);
+          }
+          else {
+            weights[offset + oi] -= stepSize * g;
+          }
+        }
+      }
+
+      steps.incrementAndGet();
+    }
+
+    /**
+     * Maps the context of an event to the predicate ids.
+     *
+     * @return the number of active predicates
+     */
+    private int index(Event event) {
+      String[] context = event.getContext();
+      float[] values = event.getValues();
+      if (predIds.length < context.length) {
+        predIds = new int[context.length];
+        predValues = new float[context.length];
+      }
+
+      int n = 0;
+      for (int ci = 0; ci < context.length; ci++) {
+        Integer pi = predicateIndex.get(context[ci]);
+        if (pi != null) {
+          predIds[n] = pi;
+          predValues[n] = values != null ? values[ci] : 1;
+          n++;
+        }
+      }
+      return n;
+    }
+  }
+
+  private void display(String s) {
+    if (printMessages)
+      System.out.print(s);
+  }
+}
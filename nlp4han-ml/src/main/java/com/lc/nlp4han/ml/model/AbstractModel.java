@@ -20,12 +20,34 @@ public abstract class AbstractModel implements ClassificationModel {
   /** The type of the model. */
   protected ModelType modelType;
 
+  /** Hashed predicates of this model, compiled on first use. */
+  private volatile FeatureIndex featureIndex;
+
+  /**
+   * Creates a model which sets up its outcomes and parameters itself,
+   * see {@link MappedModel}.
+   */
+  protected AbstractModel() {
+  }
+
   public AbstractModel(Context[] params, String[] predLabels, Map<String, Integer> pmap, String[] outcomeNames) {
     this.pmap = pmap;
     this.outcomeNames =  outcomeNames;
     this.evalParams = new EvalParameters(params,outcomeNames.length);
   }
 
+  /**
+   * Creates a model which shares the feature index of its predicates, so models
+   * built repeatedly from the same <code>pmap</code> do not hash it again.
+   *
+   * @param featureIndex the index compiled from <code>pmap</code>.
+   */
+  public AbstractModel(Context[] params, String[] predLabels, Map<String, Integer> pmap, String[] outcomeNames,
+      FeatureIndex featureIndex) {
+    this(params, predLabels, pmap, outcomeNames);
+    this.featureIndex = featureIndex;
+  }
+
   public AbstractModel(Context[] params, String[] predLabels, String[] outcomeNames) {
     init(predLabels,outcomeNames);
     this.evalParams = new EvalParameters(params,outcomeNames.length);
@@ -123,6 +145,137 @@ public abstract class AbstractModel implements ClassificationModel {
     return evalParams.getNumOutcomes();
   }
 
+  /**
+   * Returns the id of a predicate.
+   *
+   * @param predicate the predicate.
+   * @return the predicate id, or -1 if the model does not know the predicate.
+   */
+  public int getPredIndex(String predicate) {
+    Integer ci = pmap.get(predicate);
+    return ci == null ? -1 : ci;
+  }
+
+  /**
+   * Maps the predicates of a context to their ids.
+   *
+   * @param context the predicates.
+   * @return the predicate ids, -1 for predicates the model does not know.
+   */
+  protected int[] getPredIndexes(String[] context) {
+    int[] scontexts = new int[context.length];
+    for (int i = 0; i < context.length; i++) {
+      scontexts[i] = getPredIndex(context[i]);
+    }
+    return scontexts;
+  }
+
+  /**
+   * Evaluates many contexts at once. The predicates of all contexts are looked up
+   * first, then the contexts are evaluated by {@link #evalBatch(int[][], double[][])}.
+   */
+  public double[][] evalBatch(String[][] contexts, double[][] probs) {
+    int[][] predIds = new int[contexts.length][];
+    for (int i = 0; i < contexts.length; i++) {
+      predIds[i] = getPredIndexes(contexts[i]);
+    }
+    return evalBatch(predIds, probs);
+  }
+
+  /**
+   * Evaluates many contexts at once. Models override this with a loop which
+   * reuses its scratch arrays over the whole batch.
+   */
+  public double[][] evalBatch(int[][] predIds, double[][] probs) {
+    probs = batchOutput(predIds.length, probs);
+    for (int i = 0; i < predIds.length; i++) {
+      eval(predIds[i], probs[i]);
+    }
+    return probs;
+  }
+
+  /**
+   * Returns arrays for the probabilities of a batch of contexts, allocating
+   * those which are missing.
+   *
+   * @param size the number of contexts.
+   * @param probs the arrays passed by the caller, may be null.
+   * @return the arrays for the probabilities.
+   */
+  protected double[][] batchOutput(int size, double[][] probs) {
+    if (probs == null) {
+      probs = new double[size][];
+    }
+    else if (probs.length < size) {
+      throw new IllegalArgumentException("probs has " + probs.length + " rows for " + size + " contexts");
+    }
+
+    int numOutcomes = getNumOutcomes();
+    for (int i = 0; i < size; i++) {
+      if (probs[i] == null) {
+        probs[i] = new double[numOutcomes];
+      }
+    }
+    return probs;
+  }
+
+  /**
+   * Returns the index of the hashed predicates of this model, which maps features
+   * to the ids accepted by {@link #eval(int[], double[])}.
+   * <p>
+   * If two predicates of the model share a hash the index can not tell them apart,
+   * a warning is printed when the index is compiled and callers should evaluate
+   * string contexts instead, see {@link #hasExactFeatureIndex()}.
+   *
+   * @return the feature index of this model.
+   */
+  public FeatureIndex getFeatureIndex() {
+    FeatureIndex index = featureIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = featureIndex;
+        if (index == null) {
+          index = compileFeatureIndex();
+          warnCollisions(index);
+          featureIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns whether the feature index maps every predicate of this model to its
+   * own id, which is the case unless two predicates share a 64-bit hash.
+   *
+   * @return true if hashed lookups give the same ids as string lookups.
+   */
+  public boolean hasExactFeatureIndex() {
+    return getFeatureIndex().getCollisions() == 0;
+  }
+
+  /**
+   * Prints a warning if predicates were dropped from a feature index because
+   * their hash collides with another predicate.
+   *
+   * @param index the compiled feature index.
+   */
+  public static void warnCollisions(FeatureIndex index) {
+    if (index.getCollisions() > 0) {
+      System.err.println("Warning: " + index.getCollisions()
+          + " predicates share a hash with another predicate, using string lookups instead of the feature index");
+    }
+  }
+
+  /**
+   * Compiles the index of the hashed predicates of this model.
+   *
+   * @return the feature index of this model.
+   */
+  protected FeatureIndex compileFeatureIndex() {
+    return new FeatureIndex(pmap);
+  }
+
   /**
    * Provides the fundamental data structures which encode the maxent model
    * information.  This method will usually only be needed by
@@ -144,7 +297,7 @@ public abstract class AbstractModel implements ClassificationModel {
    *
    * @return An Object[] with the values as described above.
    */
-  public final Object[] getDataStructures() {
+  public Object[] getDataStructures() {
       Object[] data = new Object[5];
       data[0] = evalParams.getParams();
       data[1] = pmap;
@@ -1,6 +1,13 @@
 package com.lc.nlp4han.ml.model;
 
-
+/**
+ * A classifier which assigns probabilities to the outcomes of a context.
+ * <p>
+ * Evaluation does not modify a model: its parameters are only read, and the
+ * probabilities are written into the array passed by the caller or into a new
+ * array. One model can therefore be evaluated by multiple threads at the same
+ * time, as long as each thread passes its own <code>probs</code> array.
+ */
 public interface ClassificationModel {
 
   /**
@@ -25,6 +32,17 @@ public interface ClassificationModel {
      **/
   double[] eval(String[] context, double probs[]);
 
+  /**
+   * Evaluates a context given as predicate ids of this model.
+   *
+   * @param predIds The ids of the contextual predicates, as found in the
+   *                {@link FeatureIndex} of the model. Negative ids are ignored.
+   * @param probs An array which is populated with the probabilities for each of the different
+   *         outcomes, all of which sum to 1.
+   * @return an array of the probabilities for each of the different outcomes, all of which sum to 1.
+   */
+  double[] eval(int[] predIds, double[] probs);
+
   /**
    * Evaluates a contexts with the specified context values.
    * @param context A list of String names of the contextual predicates
@@ -34,6 +52,28 @@ public interface ClassificationModel {
    */
   double[] eval(String[] context, float[] values);
 
+  /**
+   * Evaluates many contexts at once, for callers which have all contexts ready.
+   * The probabilities are the same as those of {@link #eval(String[], double[])}.
+   *
+   * @param contexts The contexts, each a list of String names of contextual predicates.
+   * @param probs The arrays which are populated with the probabilities of the contexts,
+   *         or null to allocate them.
+   * @return the probabilities of the outcomes of every context.
+   */
+  double[][] evalBatch(String[][] contexts, double[][] probs);
+
+  /**
+   * Evaluates many contexts given as predicate ids of this model at once.
+   * The probabilities are the same as those of {@link #eval(int[], double[])}.
+   *
+   * @param predIds The predicate ids of the contexts, negative ids are ignored.
+   * @param probs The arrays which are populated with the probabilities of the contexts,
+   *         or null to allocate them.
+   * @return the probabilities of the outcomes of every context.
+   */
+  double[][] evalBatch(int[][] predIds, double[][] probs);
+
   /**
    * Simple function to return the outcome associated with the index
    * containing the highest probability in the double[].
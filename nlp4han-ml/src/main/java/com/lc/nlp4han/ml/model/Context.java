@@ -11,6 +11,8 @@ public class Context {
   protected double[] parameters;
   /** The outcomes which occur with this context. */
   protected int[] outcomes;
+  /** True if the outcomes are 0, 1, ..., n-1, so that parameter i belongs to outcome i. */
+  protected final boolean dense;
 
   /**
    * Creates a new parameters object with the specified parameters associated with the specified
@@ -21,6 +23,12 @@ public class Context {
   public Context(int[] outcomePattern, double[] parameters) {
     this.outcomes = outcomePattern;
     this.parameters = parameters;
+
+    boolean identity = true;
+    for (int i = 0; i < outcomePattern.length && identity; i++) {
+      identity = outcomePattern[i] == i;
+    }
+    this.dense = identity;
   }
 
   /**
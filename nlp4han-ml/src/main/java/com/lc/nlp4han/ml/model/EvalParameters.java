@@ -68,4 +68,52 @@ public class EvalParameters {
   public void setCorrectionParam(double correctionParam) {
     this.correctionParam = correctionParam;
   }
+
+  /**
+   * Adds the parameters of the predicates of a context, weighted by their values,
+   * to the scores of the outcomes. The parameters of a context with a parameter for
+   * every outcome are added in a plain loop over the outcomes, which the JIT compiler
+   * can vectorize. The scores are the same as those of the loops in the eval methods
+   * of the models.
+   *
+   * @param context the predicate ids of the context, negative ids are ignored.
+   * @param values the values of the predicates, or null if all values are 1.
+   * @param scores the scores to which the parameters are added.
+   * @param numfeats if not null, counts the active features of every outcome.
+   */
+  public void sum(int[] context, float[] values, double[] scores, int[] numfeats) {
+    double value = 1;
+    for (int ci = 0; ci < context.length; ci++) {
+      int pid = context[ci];
+      if (pid < 0)
+        continue;
+
+      Context predParams = params[pid];
+      int[] activeOutcomes = predParams.outcomes;
+      double[] activeParameters = predParams.parameters;
+      if (values != null) {
+        value = values[ci];
+      }
+
+      if (predParams.dense) {
+        for (int oid = 0; oid < activeParameters.length; oid++) {
+          scores[oid] += activeParameters[oid] * value;
+        }
+        if (numfeats != null) {
+          for (int oid = 0; oid < activeParameters.length; oid++) {
+            numfeats[oid]++;
+          }
+        }
+      }
+      else {
+        for (int ai = 0; ai < activeOutcomes.length; ai++) {
+          int oid = activeOutcomes[ai];
+          scores[oid] += activeParameters[ai] * value;
+          if (numfeats != null) {
+            numfeats[oid]++;
+          }
+        }
+      }
+    }
+  }
 }
\ No newline at end of file
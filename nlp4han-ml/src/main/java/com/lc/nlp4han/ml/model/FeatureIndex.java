@@ -0,0 +1,200 @@
+package com.lc.nlp4han.ml.model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compiled index from hashed predicates to the predicate ids of a model.
+ * <p>
+ * A predicate is hashed with a polynomial hash over its characters. Since the hash
+ * of a concatenation can be computed by appending the parts one after another, a
+ * context generator can hash a feature such as <code>"c_1c0=" + c_1 + c0</code>
+ * from the precomputed hash of the template prefix and the characters of the
+ * tokens, without building the feature string. The 64-bit hash is used as the key
+ * of an open addressing table, the probability that two predicates of a model share
+ * a key is negligible. Predicates which do share a key are counted by
+ * {@link #getCollisions()}, and the models then evaluate string contexts instead,
+ * see {@link AbstractModel#hasExactFeatureIndex()}.
+ * <p>
+ * The index is immutable and can be shared by multiple threads.
+ *
+ * @see FeatureTemplate
+ */
+public class FeatureIndex {
+
+  private static final long MULTIPLIER = 0x100000001b3L;
+  private static final long SEED = 0xcbf29ce484222325L;
+
+  private final long[] keys;
+  private final int[] ids;
+  private final int mask;
+  private int size;
+  private int collisions;
+
+  /**
+   * Compiles the predicate map of a model.
+   *
+   * @param pmap mapping between predicates and their ids.
+   */
+  public FeatureIndex(Map<String, Integer> pmap) {
+    this(pmap.size());
+
+    for (Map.Entry<String, Integer> entry : pmap.entrySet()) {
+      insert(hash(entry.getKey()), entry.getValue());
+    }
+    size = pmap.size() - collisions;
+  }
+
+  /**
+   * Compiles the hashes of the predicates of a model.
+   *
+   * @param hashes the hashes of the predicates, indexed by predicate id.
+   */
+  public FeatureIndex(long[] hashes) {
+    this(hashes.length);
+
+    for (int id = 0; id < hashes.length; id++) {
+      insert(hashes[id], id);
+    }
+    size = hashes.length - collisions;
+  }
+
+  private FeatureIndex(int numPreds) {
+    int capacity = 2;
+    while (capacity < numPreds * 2) {
+      capacity <<= 1;
+    }
+
+    keys = new long[capacity];
+    ids = new int[capacity];
+    mask = capacity - 1;
+    Arrays.fill(ids, -1);
+  }
+
+  private void insert(long key, int id) {
+    for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+      if (ids[slot] < 0) {
+        keys[slot] = key;
+        ids[slot] = id;
+        return;
+      }
+
+      if (keys[slot] == key) {
+        // keep the first predicate, the other one can not be told apart by its hash
+        collisions++;
+        return;
+      }
+    }
+  }
+
+  private int slot(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key & mask;
+  }
+
+  /**
+   * Returns the id of a hashed predicate.
+   *
+   * @param key the hash of the predicate.
+   * @return the predicate id, or -1 if the model does not know the predicate.
+   */
+  public int get(long key) {
+    for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+      int id = ids[slot];
+      if (id < 0 || keys[slot] == key)
+        return id;
+    }
+  }
+
+  /**
+   * Returns the id of a predicate.
+   *
+   * @param predicate the predicate.
+   * @return the predicate id, or -1 if the model does not know the predicate.
+   */
+  public int get(String predicate) {
+    return get(hash(predicate));
+  }
+
+  /**
+   * Returns the number of predicates in this index.
+   *
+   * @return the number of predicates.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of predicates which were dropped because their hash
+   * was already taken by another predicate. If it is not 0 the ids looked up by
+   * hash may belong to the wrong predicate.
+   *
+   * @return the number of dropped predicates, normally 0.
+   */
+  public int getCollisions() {
+    return collisions;
+  }
+
+  /**
+   * Returns the hash of the empty string.
+   *
+   * @return the initial hash.
+   */
+  public static long hash() {
+    return SEED;
+  }
+
+  /**
+   * Returns the hash of a string.
+   *
+   * @param s the string.
+   * @return the hash of the string.
+   */
+  public static long hash(CharSequence s) {
+    return append(SEED, s);
+  }
+
+  /**
+   * Returns the hash of a string extended by one character.
+   *
+   * @param hash the hash of the string.
+   * @param c the appended character.
+   * @return the hash of the extended string.
+   */
+  public static long append(long hash, char c) {
+    return hash * MULTIPLIER + c;
+  }
+
+  /**
+   * Returns the hash of a string extended by another string.
+   *
+   * @param hash the hash of the string.
+   * @param s the appended string.
+   * @return the hash of the extended string.
+   */
+  public static long append(long hash, CharSequence s) {
+    for (int i = 0; i < s.length(); i++) {
+      hash = hash * MULTIPLIER + s.charAt(i);
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the hash of a string extended by the characters <code>s[start, end)</code>.
+   *
+   * @param hash the hash of the string.
+   * @param s the characters.
+   * @param start the index of the first appended character.
+   * @param end the index after the last appended character.
+   * @return the hash of the extended string.
+   */
+  public static long append(long hash, char[] s, int start, int end) {
+    for (int i = start; i < end; i++) {
+      hash = hash * MULTIPLIER + s[i];
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,34 @@
+package com.lc.nlp4han.ml.model;
+
+/**
+ * The constant prefix of a family of features, for example <code>"c_1c0="</code>,
+ * together with its precomputed {@link FeatureIndex} hash.
+ */
+public final class FeatureTemplate {
+
+  private final String prefix;
+  private final long hash;
+
+  /**
+   * Creates a template for the features starting with the specified prefix.
+   *
+   * @param prefix the prefix of the features.
+   */
+  public FeatureTemplate(String prefix) {
+    this.prefix = prefix;
+    this.hash = FeatureIndex.hash(prefix);
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public long getHash() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return prefix;
+  }
+}
@@ -0,0 +1,506 @@
+package com.lc.nlp4han.ml.model;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.lc.nlp4han.ml.maxent.quasinewton.ArrayMath;
+import com.lc.nlp4han.ml.naivebayes.NaiveBayesEvalParameters;
+import com.lc.nlp4han.ml.naivebayes.NaiveBayesModel;
+
+/**
+ * A model which is evaluated directly on a buffer in the compact binary format
+ * written by {@link MappedModelWriter}.
+ * <p>
+ * The format consists of a sorted table of the predicate strings, whose position
+ * in the table is the predicate id, and of flat arrays with the outcomes and the
+ * parameters of all predicates. Nothing has to be parsed when a model is opened:
+ * {@link #open(File)} maps the file into memory, so that the model is usable
+ * at once and several JVMs on one host share its pages through the OS cache.
+ * Predicates are looked up by binary search in the string table.
+ * <p>
+ * The buffer layout, in big-endian byte order, is:
+ * <pre>
+ * header    int magic, version, model type, #outcomes, #predicates, #parameters,
+ *           correction constant, #outcome chars, long vocabulary,
+ *           double correction parameter, int #predicate chars, reserved
+ * double    outcome totals[#outcomes]
+ * double    parameters[#parameters]
+ * int       predicate char offsets[#predicates + 1]
+ * int       parameter offsets[#predicates + 1]
+ * int       parameter outcomes[#parameters]
+ * int       outcome char offsets[#outcomes + 1]
+ * char      outcome chars[#outcome chars]
+ * char      predicate chars[#predicate chars]
+ * </pre>
+ * The doubles come first so that every array is aligned to its element size.
+ * <p>
+ * A mapped model evaluates to exactly the same probabilities as the model it
+ * was converted from, and it is read only, so it can be shared by multiple threads.
+ */
+public class MappedModel extends AbstractModel {
+
+  /** The first four bytes of a mapped model, "N4HM". */
+  public static final int MAGIC = 0x4E34484D;
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 56;
+
+  /** The model types in the order of their codes in the header. */
+  static final ModelType[] TYPES = {ModelType.Maxent, ModelType.Perceptron,
+      ModelType.MaxentQn, ModelType.NaiveBayes};
+
+  private final ByteBuffer buffer;
+  private final int numPreds;
+  private final int numParams;
+  private final double correctionConstant;
+  private final double constantInverse;
+  private final double correctionParam;
+  private final long vocabulary;
+  private final double prior;
+
+  private final double[] outcomeTotals;
+  private final DoubleBuffer parameters;
+  private final IntBuffer predOffsets;
+  private final IntBuffer paramOffsets;
+  private final IntBuffer paramOutcomes;
+  private final CharBuffer predChars;
+
+  /**
+   * Creates a model on a buffer which holds a model in the mapped format.
+   * The buffer must not be modified afterwards.
+   *
+   * @param buffer the buffer, from its position to its limit.
+   * @throws IOException if the buffer does not contain a mapped model.
+   */
+  public MappedModel(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer = buffer.slice();
+
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+      throw new IOException("Not a mapped model");
+
+    if (buffer.getInt(4) != VERSION)
+      throw new IOException("Unsupported mapped model version: " + buffer.getInt(4));
+
+    int type = buffer.getInt(8);
+    if (type < 0 || type >= TYPES.length)
+      throw new IOException("Unknown model type: " + type);
+    modelType = TYPES[type];
+
+    int numOutcomes = buffer.getInt(12);
+    numPreds = buffer.getInt(16);
+    numParams = buffer.getInt(20);
+    correctionConstant = buffer.getInt(24);
+    int numOutcomeChars = buffer.getInt(28);
+    vocabulary = buffer.getLong(32);
+    correctionParam = buffer.getDouble(40);
+    int numPredChars = buffer.getInt(48);
+
+    constantInverse = 1.0 / correctionConstant;
+    // the value of UniformPrior, MappedModelWriter rejects models with other priors
+    prior = Math.log(1.0 / numOutcomes);
+
+    long size = size(buffer);
+    if (buffer.limit() != size)
+      throw new IOException("Mapped model is truncated or corrupt, expected "
+          + size + " bytes but found " + buffer.limit());
+
+    int pos = HEADER_SIZE;
+    outcomeTotals = new double[numOutcomes];
+    view(pos, numOutcomes * 8).asDoubleBuffer().get(outcomeTotals);
+    pos += numOutcomes * 8;
+    parameters = view(pos, numParams * 8).asDoubleBuffer();
+    pos += numParams * 8;
+    predOffsets = view(pos, (numPreds + 1) * 4).asIntBuffer();
+    pos += (numPreds + 1) * 4;
+    paramOffsets = view(pos, (numPreds + 1) * 4).asIntBuffer();
+    pos += (numPreds + 1) * 4;
+    paramOutcomes = view(pos, numParams * 4).asIntBuffer();
+    pos += numParams * 4;
+    IntBuffer outcomeOffsets = view(pos, (numOutcomes + 1) * 4).asIntBuffer();
+    pos += (numOutcomes + 1) * 4;
+    CharBuffer outcomeChars = view(pos, numOutcomeChars * 2).asCharBuffer();
+    pos += numOutcomeChars * 2;
+    predChars = view(pos, numPredChars * 2).asCharBuffer();
+
+    outcomeNames = new String[numOutcomes];
+    for (int i = 0; i < numOutcomes; i++) {
+      outcomeNames[i] = outcomeChars.subSequence(outcomeOffsets.get(i),
+          outcomeOffsets.get(i + 1)).toString();
+    }
+  }
+
+  /**
+   * Computes the size of a mapped model from its header.
+   */
+  private static long size(ByteBuffer header) {
+    long numOutcomes = header.getInt(12);
+    long numPreds = header.getInt(16);
+    long numParams = header.getInt(20);
+    return HEADER_SIZE + 8 * (numOutcomes + numParams)
+        + 4 * (2 * (numPreds + 1) + numParams + numOutcomes + 1)
+        + 2 * ((long) header.getInt(28) + header.getInt(48));
+  }
+
+  private ByteBuffer view(int pos, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(pos);
+    view.limit(pos + length);
+    return view.slice();
+  }
+
+  /**
+   * Maps a model file into memory.
+   *
+   * @param file the file written by {@link MappedModelWriter}.
+   * @return the model.
+   * @throws IOException if the file can not be mapped or is not a mapped model.
+   */
+  public static MappedModel open(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IOException("Mapped model exceeds 2GB: " + file);
+
+      // the mapping stays valid after the channel is closed
+      return new MappedModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Reads a mapped model from a stream into a heap buffer, the model is not shared
+   * with other processes. Prefer {@link #open(File)} for model files.
+   *
+   * @param in the stream, which is not closed.
+   * @return the model.
+   * @throws IOException if the stream can not be read or is not a mapped model.
+   */
+  public static MappedModel read(InputStream in) throws IOException {
+    DataInputStream input = new DataInputStream(in);
+    byte[] header = new byte[HEADER_SIZE];
+    input.readFully(header);
+
+    ByteBuffer head = ByteBuffer.wrap(header);
+    if (head.getInt(0) != MAGIC)
+      throw new IOException("Not a mapped model");
+
+    long size = size(head);
+    if (size > Integer.MAX_VALUE)
+      throw new IOException("Mapped model exceeds 2GB");
+
+    byte[] data = Arrays.copyOf(header, (int) size);
+    input.readFully(data, HEADER_SIZE, data.length - HEADER_SIZE);
+    return new MappedModel(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Tests if a file starts with the magic number of the mapped format.
+   *
+   * @param file the file.
+   * @return true if the file contains a mapped model.
+   * @throws IOException if the file can not be read.
+   */
+  public static boolean isMappedModel(File file) throws IOException {
+    if (file.length() < HEADER_SIZE)
+      return false;
+
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readInt() == MAGIC;
+    }
+  }
+
+  /**
+   * Tests if a stream starts with the magic number of the mapped format. The stream
+   * must support mark and is reset to its current position.
+   *
+   * @param in the stream.
+   * @return true if the stream contains a mapped model.
+   * @throws IOException if the stream can not be read.
+   */
+  public static boolean isMappedModel(InputStream in) throws IOException {
+    in.mark(4);
+    try {
+      int magic = 0;
+      for (int i = 0; i < 4; i++) {
+        int b = in.read();
+        if (b < 0)
+          return false;
+        magic = (magic << 8) | b;
+      }
+      return magic == MAGIC;
+    }
+    finally {
+      in.reset();
+    }
+  }
+
+  /**
+   * Returns the number of predicates of this model.
+   *
+   * @return the number of predicates.
+   */
+  public int getNumPredicates() {
+    return numPreds;
+  }
+
+  /**
+   * Returns the predicate with the specified id.
+   *
+   * @param id the predicate id.
+   * @return the predicate.
+   */
+  public String getPredicate(int id) {
+    return predChars.subSequence(predOffsets.get(id), predOffsets.get(id + 1)).toString();
+  }
+
+  @Override
+  public int getNumOutcomes() {
+    return outcomeNames.length;
+  }
+
+  @Override
+  public int getPredIndex(String predicate) {
+    int lo = 0;
+    int hi = numPreds - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compare(mid, predicate);
+      if (cmp < 0)
+        lo = mid + 1;
+      else if (cmp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+  /**
+   * Compares a predicate of the table with a string in the order of
+   * {@link String#compareTo(String)}.
+   */
+  private int compare(int id, String s) {
+    int start = predOffsets.get(id);
+    int length = predOffsets.get(id + 1) - start;
+    int n = Math.min(length, s.length());
+    for (int i = 0; i < n; i++) {
+      char c = predChars.get(start + i);
+      char d = s.charAt(i);
+      if (c != d)
+        return c - d;
+    }
+    return length - s.length();
+  }
+
+  @Override
+  protected FeatureIndex compileFeatureIndex() {
+    long[] hashes = new long[numPreds];
+    for (int id = 0; id < numPreds; id++) {
+      long hash = FeatureIndex.hash();
+      for (int i = predOffsets.get(id), end = predOffsets.get(id + 1); i < end; i++) {
+        hash = FeatureIndex.append(hash, predChars.get(i));
+      }
+      hashes[id] = hash;
+    }
+    return new FeatureIndex(hashes);
+  }
+
+  public double[] eval(String[] context) {
+    return eval(context, null, new double[outcomeNames.length]);
+  }
+
+  public double[] eval(String[] context, double[] probs) {
+    return eval(context, null, probs);
+  }
+
+  public double[] eval(String[] context, float[] values) {
+    return eval(context, values, new double[outcomeNames.length]);
+  }
+
+  public double[] eval(int[] predIds, double[] probs) {
+    return eval(predIds, null, probs);
+  }
+
+  /**
+   * Evaluates a context with the computation of the model type the model was
+   * converted from.
+   *
+   * @param context the predicates which have been observed at the present decision point.
+   * @param values the values of the predicates, or null if all are 1.
+   * @param probs where the distribution is stored.
+   * @return the normalized probabilities for the outcomes given the context.
+   */
+  public double[] eval(String[] context, float[] values, double[] probs) {
+    return eval(getPredIndexes(context), values, probs);
+  }
+
+  private double[] eval(int[] predIds, float[] values, double[] probs) {
+    switch (modelType) {
+      case Maxent:
+        return evalGIS(predIds, values, probs);
+      case Perceptron:
+        return evalPerceptron(predIds, values, probs);
+      case MaxentQn:
+        return evalQN(predIds, values, probs);
+      default:
+        return evalNaiveBayes(predIds, values, probs);
+    }
+  }
+
+  /**
+   * Sums the weighted parameters of the context into the outcome scores.
+   */
+  private void sum(int[] predIds, float[] values, double[] probs, int[] numfeats) {
+    double value = 1;
+    for (int ci = 0; ci < predIds.length; ci++) {
+      int pid = predIds[ci];
+      if (pid >= 0) {
+        if (values != null) {
+          value = values[ci];
+        }
+        for (int ai = paramOffsets.get(pid), end = paramOffsets.get(pid + 1); ai < end; ai++) {
+          int oid = paramOutcomes.get(ai);
+          if (numfeats != null)
+            numfeats[oid]++;
+          probs[oid] += parameters.get(ai) * value;
+        }
+      }
+    }
+  }
+
+  /** See {@link com.lc.nlp4han.ml.maxent.gis.GISModel#eval(int[], float[], double[], EvalParameters)}. */
+  private double[] evalGIS(int[] predIds, float[] values, double[] probs) {
+    int numOutcomes = outcomeNames.length;
+    int[] numfeats = new int[numOutcomes];
+    Arrays.fill(probs, 0, numOutcomes, prior);
+    sum(predIds, values, probs, numfeats);
+
+    double normal = 0.0;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      if (correctionParam != 0) {
+        probs[oid] = Math.exp(probs[oid] * constantInverse
+            + ((1.0 - (numfeats[oid] / correctionConstant)) * correctionParam));
+      } else {
+        probs[oid] = Math.exp(probs[oid] * constantInverse);
+      }
+      normal += probs[oid];
+    }
+
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      probs[oid] /= normal;
+    }
+    return probs;
+  }
+
+  /** See {@link com.lc.nlp4han.ml.perceptron.PerceptronModel#eval(int[], float[], double[], EvalParameters, boolean)}. */
+  private double[] evalPerceptron(int[] predIds, float[] values, double[] probs) {
+    int numOutcomes = outcomeNames.length;
+    Arrays.fill(probs, 0);
+    sum(predIds, values, probs, null);
+
+    double maxPrior = 1;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      if (maxPrior < Math.abs(probs[oid]))
+        maxPrior = Math.abs(probs[oid]);
+    }
+
+    double normal = 0.0;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      probs[oid] = Math.exp(probs[oid] / maxPrior);
+      normal += probs[oid];
+    }
+
+    for (int oid = 0; oid < numOutcomes; oid++)
+      probs[oid] /= normal;
+
+    return probs;
+  }
+
+  /** See {@link com.lc.nlp4han.ml.maxent.quasinewton.QNModel#eval(int[], double[])}. */
+  private double[] evalQN(int[] predIds, float[] values, double[] probs) {
+    Arrays.fill(probs, 0);
+    sum(predIds, values, probs, null);
+
+    double logSumExp = ArrayMath.logSumOfExps(probs);
+    for (int oi = 0; oi < outcomeNames.length; oi++) {
+      probs[oi] = Math.exp(probs[oi] - logSumExp);
+    }
+    return probs;
+  }
+
+  /**
+   * Naive bayes evaluation is not a plain sum of parameters, the parameters of the
+   * active predicates are handed to {@link NaiveBayesModel#eval(int[], float[], double[], EvalParameters, boolean)}.
+   */
+  private double[] evalNaiveBayes(int[] predIds, float[] values, double[] probs) {
+    Context[] active = new Context[predIds.length];
+    int[] activeIds = new int[predIds.length];
+    for (int ci = 0; ci < predIds.length; ci++) {
+      activeIds[ci] = predIds[ci] >= 0 ? ci : -1;
+      if (predIds[ci] >= 0)
+        active[ci] = getContext(predIds[ci]);
+    }
+
+    Arrays.fill(probs, 0);
+    return NaiveBayesModel.eval(activeIds, values, probs, new NaiveBayesEvalParameters(active,
+        outcomeNames.length, outcomeTotals, vocabulary), true);
+  }
+
+  private Context getContext(int pid) {
+    int start = paramOffsets.get(pid);
+    int length = paramOffsets.get(pid + 1) - start;
+    int[] outcomes = new int[length];
+    double[] params = new double[length];
+    for (int i = 0; i < length; i++) {
+      outcomes[i] = paramOutcomes.get(start + i);
+      params[i] = parameters.get(start + i);
+    }
+    return new Context(outcomes, params);
+  }
+
+  /**
+   * Materializes the parameters and the predicate map of this model, so that the
+   * model can be written in the format of the model type it was converted from.
+   */
+  @Override
+  public Object[] getDataStructures() {
+    Context[] params = new Context[numPreds];
+    Map<String, Integer> predMap = new HashMap<>(numPreds * 4 / 3 + 1);
+    for (int pid = 0; pid < numPreds; pid++) {
+      params[pid] = getContext(pid);
+      predMap.put(getPredicate(pid), pid);
+    }
+
+    Object[] data = new Object[5];
+    data[0] = params;
+    data[1] = predMap;
+    data[2] = outcomeNames;
+    data[3] = (int) correctionConstant;
+    data[4] = correctionParam;
+    return data;
+  }
+
+  double[] getOutcomeTotals() {
+    return outcomeTotals;
+  }
+
+  long getVocabulary() {
+    return vocabulary;
+  }
+
+  int getNumParameters() {
+    return numParams;
+  }
+}
@@ -0,0 +1,202 @@
+package com.lc.nlp4han.ml.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.lc.nlp4han.ml.naivebayes.NaiveBayesEvalParameters;
+import com.lc.nlp4han.ml.util.ModelUtil;
+
+/**
+ * Converts a model of any type into the compact binary format which is opened
+ * by {@link MappedModel}.
+ * <p>
+ * The format has no room for a {@link Prior}, a mapped model always evaluates with
+ * the {@link UniformPrior}, so models with any other prior are rejected.
+ */
+public class MappedModelWriter extends AbstractModelWriter {
+
+  private final DataOutputStream output;
+
+  private final int type;
+  private final Context[] params;
+  private final String[] predLabels;
+  private final String[] outcomeLabels;
+  private final int correctionConstant;
+  private final double correctionParam;
+  private final double[] outcomeTotals;
+  private final long vocabulary;
+  private final Prior prior;
+
+  /**
+   * Prepares to write a model to a file.
+   *
+   * @param model the model which is to be persisted.
+   * @param f the file in which the model is to be persisted.
+   */
+  public MappedModelWriter(AbstractModel model, File f) throws IOException {
+    this(model, new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f))));
+  }
+
+  /**
+   * Prepares to write a model to a stream.
+   *
+   * @param model the model which is to be persisted.
+   * @param dos the stream which will be used to persist the model.
+   */
+  public MappedModelWriter(AbstractModel model, DataOutputStream dos) {
+    output = dos;
+    type = Arrays.asList(MappedModel.TYPES).indexOf(model.getModelType());
+
+    Object[] data = model.getDataStructures();
+    params = (Context[]) data[0];
+    @SuppressWarnings("unchecked")
+    Map<String, Integer> pmap = (Map<String, Integer>) data[1];
+    outcomeLabels = (String[]) data[2];
+    correctionConstant = (Integer) data[3];
+    correctionParam = (Double) data[4];
+    prior = model.prior;
+
+    predLabels = new String[pmap.size()];
+    for (Map.Entry<String, Integer> entry : pmap.entrySet()) {
+      predLabels[entry.getValue()] = entry.getKey();
+    }
+
+    if (model instanceof MappedModel) {
+      outcomeTotals = ((MappedModel) model).getOutcomeTotals();
+      vocabulary = ((MappedModel) model).getVocabulary();
+    }
+    else if (model.evalParams instanceof NaiveBayesEvalParameters) {
+      outcomeTotals = ((NaiveBayesEvalParameters) model.evalParams).getOutcomeTotals();
+      vocabulary = ((NaiveBayesEvalParameters) model.evalParams).getVocabulary();
+    }
+    else {
+      outcomeTotals = new double[outcomeLabels.length];
+      vocabulary = 0;
+    }
+  }
+
+  @Override
+  public void persist() throws IOException {
+    if (prior != null && !(prior instanceof UniformPrior))
+      throw new IOException("The mapped format only supports the uniform prior, found "
+          + prior.getClass().getName());
+
+    // the predicate id in the mapped model is the position in the sorted table
+    Integer[] order = new Integer[predLabels.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> predLabels[a].compareTo(predLabels[b]));
+
+    long numParams = 0;
+    long numPredChars = 0;
+    for (int pid = 0; pid < params.length; pid++) {
+      numParams += params[pid].getOutcomes().length;
+      numPredChars += predLabels[pid].length();
+    }
+    long numOutcomeChars = 0;
+    for (String outcome : outcomeLabels) {
+      numOutcomeChars += outcome.length();
+    }
+
+    long size = MappedModel.HEADER_SIZE + 8 * (outcomeLabels.length + numParams)
+        + 4 * (2 * (predLabels.length + 1) + numParams + outcomeLabels.length + 1)
+        + 2 * (numOutcomeChars + numPredChars);
+    if (size > Integer.MAX_VALUE)
+      throw new IOException("Model is too large for the mapped format: " + size + " bytes");
+
+    writeInt(MappedModel.MAGIC);
+    writeInt(MappedModel.VERSION);
+    writeInt(type);
+    writeInt(outcomeLabels.length);
+    writeInt(predLabels.length);
+    writeInt((int) numParams);
+    writeInt(correctionConstant);
+    writeInt((int) numOutcomeChars);
+    output.writeLong(vocabulary);
+    writeDouble(correctionParam);
+    writeInt((int) numPredChars);
+    writeInt(0);
+
+    for (double total : outcomeTotals)
+      writeDouble(total);
+
+    for (Integer pid : order) {
+      for (double param : params[pid].getParameters())
+        writeDouble(param);
+    }
+
+    int offset = 0;
+    writeInt(offset);
+    for (Integer pid : order) {
+      offset += predLabels[pid].length();
+      writeInt(offset);
+    }
+
+    offset = 0;
+    writeInt(offset);
+    for (Integer pid : order) {
+      offset += params[pid].getOutcomes().length;
+      writeInt(offset);
+    }
+
+    for (Integer pid : order) {
+      for (int outcome : params[pid].getOutcomes())
+        writeInt(outcome);
+    }
+
+    offset = 0;
+    writeInt(offset);
+    for (String outcome : outcomeLabels) {
+      offset += outcome.length();
+      writeInt(offset);
+    }
+
+    for (String outcome : outcomeLabels)
+      output.writeChars(outcome);
+
+    for (Integer pid : order)
+      output.writeChars(predLabels[pid]);
+
+    close();
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    output.writeUTF(s);
+  }
+
+  @Override
+  public void writeInt(int i) throws IOException {
+    output.writeInt(i);
+  }
+
+  @Override
+  public void writeDouble(double d) throws IOException {
+    output.writeDouble(d);
+  }
+
+  @Override
+  public void close() throws IOException {
+    output.flush();
+    output.close();
+  }
+
+  /**
+   * Converts a model file of any format into the mapped format.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: MappedModelWriter inputModel outputModel");
+      System.exit(1);
+    }
+
+    AbstractModel model = (AbstractModel) ModelUtil.readModel(new File(args[0]));
+    new MappedModelWriter(model, new File(args[1])).persist();
+  }
+}
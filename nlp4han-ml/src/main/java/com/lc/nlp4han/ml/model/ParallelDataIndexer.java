@@ -0,0 +1,556 @@
+package com.lc.nlp4han.ml.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.lc.nlp4han.ml.util.InsufficientTrainingDataException;
+import com.lc.nlp4han.ml.util.ObjectStream;
+
+/**
+ * Collects event and context counts with several threads, for event streams
+ * which are too large to be held in memory.
+ * <p>
+ * The first pass writes the events to a temporary file, while worker threads count
+ * the predicates of chunks of events into a set of sharded counting maps. The
+ * predicates which pass the cutoff are numbered in lexicographic order, so the
+ * indexing does not depend on the number of threads. The second pass maps the
+ * events of the temporary file to predicate ids in parallel. Whenever the indexed
+ * events held in memory exceed the memory budget, they are sorted, merged and
+ * written to a run file, and the runs are finally merged with an external merge
+ * sort in which duplicate events are combined.
+ * <p>
+ * Without sorting, events keep the order of the event stream. Real valued
+ * events are indexed as if all values were 1.
+ */
+public class ParallelDataIndexer extends AbstractDataIndexer {
+
+  /** The default number of predicate ids kept in memory before a run is written. */
+  public static final int DEFAULT_MEMORY_BUDGET = 1 << 24;
+
+  private static final int CHUNK_SIZE = 2048;
+
+  private final int threads;
+  private final int memoryBudget;
+  private final File tmpDir;
+  private final boolean sort;
+
+  private int numEvents;
+
+  /** Predicate counts, the shard of a predicate is chosen by its hash code. */
+  private Map<String, int[]>[] shards;
+
+  /** The indexed events if no run file was written. */
+  private List<ComparableEvent> inMemory;
+
+  public ParallelDataIndexer(ObjectStream<Event> eventStream, int cutoff, boolean sort, int threads)
+      throws IOException {
+    this(eventStream, cutoff, sort, threads, DEFAULT_MEMORY_BUDGET, null);
+  }
+
+  /**
+   * Indexes an event stream.
+   *
+   * @param eventStream the events.
+   * @param cutoff the minimum number of times a predicate must have been
+   *        observed in order to be included in the model.
+   * @param sort if true, duplicate events are merged.
+   * @param threads the number of worker threads.
+   * @param memoryBudget the number of predicate ids of indexed events which are
+   *        kept in memory before they are written to a run file.
+   * @param tmpDir the directory of the temporary files, or null for the default.
+   */
+  public ParallelDataIndexer(ObjectStream<Event> eventStream, int cutoff, boolean sort, int threads,
+      int memoryBudget, File tmpDir) throws IOException {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads must be at least 1: " + threads);
+    if (memoryBudget < 1)
+      throw new IllegalArgumentException("memoryBudget must be at least 1: " + memoryBudget);
+
+    this.threads = threads;
+    this.memoryBudget = memoryBudget;
+    this.tmpDir = tmpDir;
+    this.sort = sort;
+
+    System.out.println("Indexing events with " + threads + " threads using cutoff of " + cutoff + "\n");
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    File events = File.createTempFile("events", null, tmpDir);
+    events.deleteOnExit();
+    try {
+      System.out.print("\tComputing event counts...  ");
+      Map<String, Integer> omap = new LinkedHashMap<>();
+      int count = computeEventCounts(eventStream, events, omap, executor);
+      System.out.println("done. " + count + " events");
+
+      Map<String, Integer> predicateIndex = new HashMap<>();
+      selectPredicates(cutoff, predicateIndex);
+      shards = null;
+
+      outcomeLabels = omap.keySet().toArray(new String[omap.size()]);
+
+      System.out.print("\tIndexing...  ");
+      List<File> runs = index(events, predicateIndex, executor);
+      System.out.println("done.");
+
+      if (sort) {
+        System.out.print("Sorting and merging events... ");
+      }
+      else {
+        System.out.print("Collecting events... ");
+      }
+      merge(runs);
+      System.out.println("Done indexing.");
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Indexing was interrupted", e);
+    }
+    finally {
+      executor.shutdownNow();
+      events.delete();
+    }
+  }
+
+  @Override
+  public int getNumEvents() {
+    return numEvents;
+  }
+
+  private static int shard(String predicate, int numShards) {
+    int h = predicate.hashCode();
+    h ^= h >>> 16;
+    return (h * 0x9e3779b9 >>> 16) & (numShards - 1);
+  }
+
+  /**
+   * Writes the events to the event file and counts their predicates in parallel.
+   */
+  @SuppressWarnings("unchecked")
+  private int computeEventCounts(ObjectStream<Event> eventStream, File events, Map<String, Integer> omap,
+      ExecutorService executor) throws IOException, InterruptedException {
+    int numShards = Integer.highestOneBit(threads * 4 - 1) << 1;
+    shards = new Map[numShards];
+    for (int i = 0; i < numShards; i++) {
+      shards[i] = new HashMap<>();
+    }
+
+    int eventCount = 0;
+    List<Future<?>> pending = new ArrayList<>();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(events), 1 << 16))) {
+      List<String[]> chunk = new ArrayList<>(CHUNK_SIZE);
+      Event ev;
+      while ((ev = eventStream.read()) != null) {
+        eventCount++;
+
+        String oc = ev.getOutcome();
+        Integer ocID = omap.get(oc);
+        if (ocID == null) {
+          ocID = omap.size();
+          omap.put(oc, ocID);
+        }
+
+        String[] context = ev.getContext();
+        out.writeInt(ocID);
+        out.writeInt(context.length);
+        for (String pred : context) {
+          out.writeUTF(pred);
+        }
+
+        chunk.add(context);
+        if (chunk.size() == CHUNK_SIZE) {
+          submitCount(chunk, executor, pending);
+          chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+      submitCount(chunk, executor, pending);
+    }
+
+    for (Future<?> f : pending) {
+      get(f);
+    }
+    return eventCount;
+  }
+
+  private void submitCount(final List<String[]> chunk, ExecutorService executor, List<Future<?>> pending)
+      throws IOException, InterruptedException {
+    // bound the chunks waiting in memory
+    while (pending.size() >= threads * 2) {
+      get(pending.remove(0));
+    }
+
+    pending.add(executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        int numShards = shards.length;
+        @SuppressWarnings("unchecked")
+        Map<String, int[]>[] local = new Map[numShards];
+        for (String[] context : chunk) {
+          for (String pred : context) {
+            int s = shard(pred, numShards);
+            if (local[s] == null) {
+              local[s] = new HashMap<>();
+            }
+            int[] n = local[s].get(pred);
+            if (n == null) {
+              local[s].put(pred, new int[] {1});
+            }
+            else {
+              n[0]++;
+            }
+          }
+        }
+
+        for (int s = 0; s < numShards; s++) {
+          if (local[s] == null)
+            continue;
+
+          Map<String, int[]> shard = shards[s];
+          synchronized (shard) {
+            for (Map.Entry<String, int[]> entry : local[s].entrySet()) {
+              int[] n = shard.get(entry.getKey());
+              if (n == null) {
+                shard.put(entry.getKey(), entry.getValue());
+              }
+              else {
+                n[0] += entry.getValue()[0];
+              }
+            }
+          }
+        }
+      }
+    }));
+  }
+
+  /**
+   * Numbers the predicates which occur at least cutoff times in lexicographic order.
+   */
+  private void selectPredicates(int cutoff, Map<String, Integer> predicateIndex) {
+    List<String> predicates = new ArrayList<>();
+    for (Map<String, int[]> shard : shards) {
+      for (Map.Entry<String, int[]> entry : shard.entrySet()) {
+        if (entry.getValue()[0] >= cutoff) {
+          predicates.add(entry.getKey());
+        }
+      }
+    }
+
+    predLabels = predicates.toArray(new String[predicates.size()]);
+    Arrays.sort(predLabels);
+
+    predCounts = new int[predLabels.length];
+    for (int i = 0; i < predLabels.length; i++) {
+      predicateIndex.put(predLabels[i], i);
+      predCounts[i] = shards[shard(predLabels[i], shards.length)].get(predLabels[i])[0];
+    }
+  }
+
+  /**
+   * Maps the events of the event file to predicate ids in parallel and writes the
+   * indexed events to run files whenever the memory budget is exceeded.
+   *
+   * @return the run files, empty if all events fit into memory.
+   */
+  private List<File> index(File events, final Map<String, Integer> predicateIndex, ExecutorService executor)
+      throws IOException, InterruptedException {
+    List<File> runs = new ArrayList<>();
+    List<ComparableEvent> buffer = new ArrayList<>();
+    long buffered = 0;
+
+    List<Future<List<ComparableEvent>>> pending = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(events), 1 << 16))) {
+      while (true) {
+        final List<Object[]> chunk = readChunk(in);
+        if (chunk.isEmpty())
+          break;
+
+        pending.add(executor.submit(() -> {
+          List<ComparableEvent> indexed = new ArrayList<>(chunk.size());
+          int[] ids = new int[16];
+          for (Object[] raw : chunk) {
+            String[] context = (String[]) raw[1];
+            if (ids.length < context.length) {
+              ids = new int[context.length];
+            }
+
+            int n = 0;
+            for (String pred : context) {
+              Integer id = predicateIndex.get(pred);
+              if (id != null) {
+                ids[n++] = id;
+              }
+            }
+
+            // drop events with no active features
+            if (n > 0) {
+              indexed.add(new ComparableEvent((Integer) raw[0], Arrays.copyOf(ids, n)));
+            }
+            else {
+              System.err.println("Dropped event " + outcomeLabels[(Integer) raw[0]] + ":" + Arrays.asList(context));
+            }
+          }
+          return indexed;
+        }));
+
+        // collect in order, so that unsorted events keep the order of the stream
+        while (pending.size() >= threads * 2) {
+          buffered += collect(get(pending.remove(0)), buffer);
+          if (buffered > memoryBudget) {
+            runs.add(writeRun(buffer));
+            buffer.clear();
+            buffered = 0;
+          }
+        }
+      }
+    }
+
+    for (Future<List<ComparableEvent>> f : pending) {
+      buffered += collect(get(f), buffer);
+      if (buffered > memoryBudget) {
+        runs.add(writeRun(buffer));
+        buffer.clear();
+        buffered = 0;
+      }
+    }
+
+    if (!runs.isEmpty() && !buffer.isEmpty()) {
+      runs.add(writeRun(buffer));
+      buffer.clear();
+    }
+
+    this.inMemory = buffer;
+    return runs;
+  }
+
+  private static List<Object[]> readChunk(DataInputStream in) throws IOException {
+    List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+    while (chunk.size() < CHUNK_SIZE) {
+      int ocID;
+      try {
+        ocID = in.readInt();
+      }
+      catch (EOFException e) {
+        break;
+      }
+
+      String[] context = new String[in.readInt()];
+      for (int i = 0; i < context.length; i++) {
+        context[i] = in.readUTF();
+      }
+      chunk.add(new Object[] {ocID, context});
+    }
+    return chunk;
+  }
+
+  private static long collect(List<ComparableEvent> indexed, List<ComparableEvent> buffer) {
+    long n = 0;
+    for (ComparableEvent ce : indexed) {
+      n += ce.predIndexes.length + 3;
+      buffer.add(ce);
+    }
+    return n;
+  }
+
+  /**
+   * Sorts and merges the events if sorting is enabled.
+   */
+  private List<ComparableEvent> sortAndMerge(List<ComparableEvent> events) {
+    if (!sort || events.isEmpty())
+      return events;
+
+    ComparableEvent[] array = events.toArray(new ComparableEvent[events.size()]);
+    if (threads > 1) {
+      Arrays.parallelSort(array);
+    }
+    else {
+      Arrays.sort(array);
+    }
+
+    List<ComparableEvent> merged = new ArrayList<>();
+    ComparableEvent ce = array[0];
+    merged.add(ce);
+    for (int i = 1; i < array.length; i++) {
+      if (ce.compareTo(array[i]) == 0) {
+        ce.seen += array[i].seen;
+      }
+      else {
+        ce = array[i];
+        merged.add(ce);
+      }
+    }
+    return merged;
+  }
+
+  private File writeRun(List<ComparableEvent> events) throws IOException {
+    File run = File.createTempFile("run", null, tmpDir);
+    run.deleteOnExit();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+      for (ComparableEvent ce : sortAndMerge(events)) {
+        out.writeInt(ce.outcome);
+        out.writeInt(ce.seen);
+        out.writeInt(ce.predIndexes.length);
+        for (int pid : ce.predIndexes) {
+          out.writeInt(pid);
+        }
+      }
+    }
+    return run;
+  }
+
+  /**
+   * Reads the events of a run file one after another.
+   */
+  private static class Run implements Comparable<Run> {
+
+    private final int index;
+    private final DataInputStream in;
+    private ComparableEvent head;
+
+    Run(int index, File file) throws IOException {
+      this.index = index;
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+      advance();
+    }
+
+    boolean advance() throws IOException {
+      int outcome;
+      try {
+        outcome = in.readInt();
+      }
+      catch (EOFException e) {
+        head = null;
+        in.close();
+        return false;
+      }
+
+      int seen = in.readInt();
+      int[] pids = new int[in.readInt()];
+      for (int i = 0; i < pids.length; i++) {
+        pids[i] = in.readInt();
+      }
+      head = new ComparableEvent(outcome, pids);
+      head.seen = seen;
+      return true;
+    }
+
+    @Override
+    public int compareTo(Run r) {
+      int c = head.compareTo(r.head);
+      return c != 0 ? c : Integer.compare(index, r.index);
+    }
+  }
+
+  /**
+   * Merges the runs, or the events kept in memory, into the arrays of the indexer.
+   */
+  private void merge(List<File> runs) throws IOException {
+    List<ComparableEvent> events;
+    if (runs.isEmpty()) {
+      numEvents = inMemory.size();
+      events = sortAndMerge(inMemory);
+    }
+    else {
+      events = new ArrayList<>();
+      numEvents = 0;
+      List<Run> readers = new ArrayList<>();
+      try {
+        for (int i = 0; i < runs.size(); i++) {
+          readers.add(new Run(i, runs.get(i)));
+        }
+
+        if (sort) {
+          PriorityQueue<Run> queue = new PriorityQueue<>();
+          for (Run r : readers) {
+            if (r.head != null)
+              queue.add(r);
+          }
+
+          ComparableEvent last = null;
+          while (!queue.isEmpty()) {
+            Run r = queue.poll();
+            ComparableEvent ce = r.head;
+            numEvents += ce.seen;
+            if (last != null && last.compareTo(ce) == 0) {
+              last.seen += ce.seen;
+            }
+            else {
+              events.add(ce);
+              last = ce;
+            }
+
+            if (r.advance())
+              queue.add(r);
+          }
+        }
+        else {
+          // runs of unsorted events are concatenated in the order they were written
+          for (Run r : readers) {
+            while (r.head != null) {
+              events.add(r.head);
+              numEvents++;
+              r.advance();
+            }
+          }
+        }
+      }
+      finally {
+        for (Run r : readers) {
+          if (r.head != null)
+            r.in.close();
+        }
+        for (File run : runs) {
+          run.delete();
+        }
+      }
+    }
+    inMemory = null;
+
+    if (events.isEmpty()) {
+      throw new InsufficientTrainingDataException("Insufficient training data to create model.");
+    }
+
+    if (sort) System.out.println("done. Reduced " + numEvents + " events to " + events.size() + ".");
+
+    int numUniqueEvents = events.size();
+    contexts = new int[numUniqueEvents][];
+    outcomeList = new int[numUniqueEvents];
+    numTimesEventsSeen = new int[numUniqueEvents];
+    for (int i = 0; i < numUniqueEvents; i++) {
+      ComparableEvent ce = events.get(i);
+      contexts[i] = ce.predIndexes;
+      outcomeList[i] = ce.outcome;
+      numTimesEventsSeen[i] = ce.seen;
+    }
+  }
+
+  private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package com.lc.nlp4han.ml.naivebayes;
+
+import java.util.Arrays;
+
+import com.lc.nlp4han.ml.model.Context;
+
+/**
+ * The parameters of a naive Bayes model compiled into flat arrays of log
+ * probabilities. The log likelihoods of all predicates are kept in a single
+ * array indexed by <code>predicate * numOutcomes + outcome</code> with the
+ * Lidstone smoothing already applied, and the log priors are computed once.
+ * <p>
+ * A context is evaluated by summing rows of the table into the caller's array,
+ * so no objects are allocated. The terms are added in the same order as
+ * {@link NaiveBayesModel#eval(int[], float[], double[], com.lc.nlp4han.ml.model.EvalParameters, boolean)}
+ * adds them to its {@link LogProbabilities}, which makes the probabilities
+ * identical to those of that method.
+ */
+public class NaiveBayesLogTable {
+
+  private final Context[] params;
+  private final int numOutcomes;
+  private final double[] outcomeTotals;
+  private final long vocabulary;
+
+  /**
+   * The log likelihoods of the predicates. An outcome after the last outcome
+   * a predicate occurs with gets nothing added by the map based evaluation,
+   * its entry is 0.
+   */
+  private final double[] logLikelihoods;
+
+  private final double[] logPriors;
+
+  public NaiveBayesLogTable(NaiveBayesEvalParameters evalParams) {
+    this.params = evalParams.getParams();
+    this.numOutcomes = evalParams.getNumOutcomes();
+    this.outcomeTotals = evalParams.getOutcomeTotals();
+    this.vocabulary = evalParams.getVocabulary();
+
+    if (!fits(params.length, numOutcomes)) {
+      throw new IllegalArgumentException("A table of " + params.length + " predicates and "
+          + numOutcomes + " outcomes is too large");
+    }
+
+    logLikelihoods = new double[params.length * numOutcomes];
+    for (int pid = 0; pid < params.length; pid++) {
+      addLogLikelihoods(pid, 1, logLikelihoods, pid * numOutcomes);
+    }
+
+    double total = 0;
+    for (int i = 0; i < numOutcomes; ++i) {
+      total += outcomeTotals[i];
+    }
+    logPriors = new double[numOutcomes];
+    for (int i = 0; i < numOutcomes; ++i) {
+      logPriors[i] = Math.log(outcomeTotals[i] / total);
+    }
+  }
+
+  /**
+   * Returns whether the table of a model with the given size fits into an array.
+   */
+  static boolean fits(int numPreds, int numOutcomes) {
+    return (long) numPreds * numOutcomes <= Integer.MAX_VALUE - 8;
+  }
+
+  /**
+   * Adds the log likelihoods of a predicate with the given value to
+   * <code>sums[offset + outcome]</code>, visiting the outcomes like the map
+   * based evaluation does.
+   */
+  private void addLogLikelihoods(int pid, double value, double[] sums, int offset) {
+    int[] activeOutcomes = params[pid].getOutcomes();
+    double[] activeParameters = params[pid].getParameters();
+    int ai = 0;
+    for (int i = 0; i < numOutcomes && ai < activeOutcomes.length; ++i) {
+      int oid = activeOutcomes[ai];
+      double numerator = oid == i ? activeParameters[ai++] * value : 0;
+      sums[offset + i] += Math.log(
+          NaiveBayesModel.getSmoothedProbability(numerator, outcomeTotals[i], vocabulary));
+    }
+  }
+
+  public int getNumOutcomes() {
+    return numOutcomes;
+  }
+
+  /**
+   * Clears the sums before the predicates of a context are added.
+   *
+   * @param sums the log probabilities of the outcomes.
+   */
+  public void clear(double[] sums) {
+    Arrays.fill(sums, 0, numOutcomes, 0);
+  }
+
+  /**
+   * Adds the log likelihoods of a predicate to the sums.
+   *
+   * @param pid the predicate id, negative ids are ignored.
+   * @param sums the log probabilities of the outcomes.
+   */
+  public void add(int pid, double[] sums) {
+    if (pid >= 0) {
+      int offset = pid * numOutcomes;
+      for (int i = 0; i < numOutcomes; i++) {
+        sums[i] += logLikelihoods[offset + i];
+      }
+    }
+  }
+
+  /**
+   * Adds the log likelihoods of a predicate with a value to the sums. The value
+   * scales the count of the predicate, so these terms are not precomputed.
+   *
+   * @param pid the predicate id, negative ids are ignored.
+   * @param value the value of the predicate.
+   * @param sums the log probabilities of the outcomes.
+   */
+  public void add(int pid, float value, double[] sums) {
+    if (pid >= 0) {
+      addLogLikelihoods(pid, value, sums, 0);
+    }
+  }
+
+  /**
+   * Adds the log priors and turns the sums into the probabilities of the outcomes.
+   *
+   * @param sums the log probabilities of the outcomes, replaced by the probabilities.
+   * @return the probabilities.
+   */
+  public double[] finish(double[] sums) {
+    for (int i = 0; i < numOutcomes; ++i) {
+      sums[i] += logPriors[i];
+    }
+    return normalize(sums);
+  }
+
+  /**
+   * Evaluates a context given as predicate ids.
+   *
+   * @param context the predicate ids, negative ids are ignored.
+   * @param values the values of the predicates, or null.
+   * @param outsums the array which is populated with the probabilities.
+   * @return the probabilities of the outcomes.
+   */
+  public double[] eval(int[] context, float[] values, double[] outsums) {
+    clear(outsums);
+    for (int ci = 0; ci < context.length; ci++) {
+      if (values != null) {
+        add(context[ci], values[ci], outsums);
+      }
+      else {
+        add(context[ci], outsums);
+      }
+    }
+    return finish(outsums);
+  }
+
+  /**
+   * Normalizes the log probabilities the same way {@link LogProbabilities} does.
+   */
+  private double[] normalize(double[] sums) {
+    double highestLogProbability = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < numOutcomes; i++) {
+      if (sums[i] > highestLogProbability) {
+        highestLogProbability = sums[i];
+      }
+    }
+
+    // outcomes whose probability is NaN are dropped and get 0
+    double sum = 0;
+    for (int i = 0; i < numOutcomes; i++) {
+      double p = Math.exp(sums[i] - highestLogProbability);
+      if (Double.isNaN(p)) {
+        sums[i] = 0;
+      }
+      else {
+        sum += p;
+        sums[i] = p;
+      }
+    }
+
+    if (sum > Double.MIN_VALUE) {
+      for (int i = 0; i < numOutcomes; i++) {
+        sums[i] = sums[i] / sum;
+      }
+    }
+    return sums;
+  }
+}
@@ -18,6 +18,10 @@ public class NaiveBayesModel extends AbstractModel {
   protected double[] outcomeTotals;
   protected long vocabulary;
 
+  /** The log probability table, compiled on first use. */
+  private volatile NaiveBayesLogTable logTable;
+  private volatile boolean logTableCompiled;
+
   public NaiveBayesModel(Context[] params, String[] predLabels, Map<String, Integer> pmap, String[] outcomeNames) {
     super(params, predLabels, pmap, outcomeNames);
     outcomeTotals = initOutcomeTotals(outcomeNames, params);
@@ -58,13 +62,76 @@ public class NaiveBayesModel extends AbstractModel {
   }
 
   public double[] eval(String[] context, float[] values, double[] outsums) {
-    int[] scontexts = new int[context.length];
+    NaiveBayesLogTable table = getLogTable();
+    if (table != null) {
+      table.clear(outsums);
+      for (int i = 0; i < context.length; i++) {
+        if (values != null) {
+          table.add(getPredIndex(context[i]), values[i], outsums);
+        }
+        else {
+          table.add(getPredIndex(context[i]), outsums);
+        }
+      }
+      return table.finish(outsums);
+    }
+
+    java.util.Arrays.fill(outsums, 0);
+    return eval(getPredIndexes(context), values, outsums, evalParams, true);
+  }
+
+  public double[] eval(int[] predIds, double[] outsums) {
+    NaiveBayesLogTable table = getLogTable();
+    if (table != null) {
+      return table.eval(predIds, null, outsums);
+    }
+
     java.util.Arrays.fill(outsums, 0);
-    for (int i = 0; i < context.length; i++) {
-      Integer ci = pmap.get(context[i]);
-      scontexts[i] = ci == null ? -1 : ci;
+    return eval(predIds, null, outsums, evalParams, true);
+  }
+
+  /**
+   * Evaluates many contexts at once without looking up the predicate ids of the
+   * whole batch first.
+   */
+  @Override
+  public double[][] evalBatch(String[][] contexts, double[][] probs) {
+    probs = batchOutput(contexts.length, probs);
+    for (int i = 0; i < contexts.length; i++) {
+      eval(contexts[i], null, probs[i]);
+    }
+    return probs;
+  }
+
+  @Override
+  public double[][] evalBatch(int[][] predIds, double[][] probs) {
+    probs = batchOutput(predIds.length, probs);
+    for (int i = 0; i < predIds.length; i++) {
+      eval(predIds[i], probs[i]);
+    }
+    return probs;
+  }
+
+  /**
+   * Returns the flat log probability table of this model, compiling it on first
+   * use. The probabilities computed with the table are identical to those of
+   * {@link #eval(int[], float[], double[], EvalParameters, boolean)}.
+   *
+   * @return the table, or null if the model is too large for a flat table.
+   */
+  public NaiveBayesLogTable getLogTable() {
+    if (!logTableCompiled) {
+      synchronized (this) {
+        if (!logTableCompiled) {
+          if (evalParams instanceof NaiveBayesEvalParameters
+              && NaiveBayesLogTable.fits(evalParams.getParams().length, evalParams.getNumOutcomes())) {
+            logTable = new NaiveBayesLogTable((NaiveBayesEvalParameters) evalParams);
+          }
+          logTableCompiled = true;
+        }
+      }
     }
-    return eval(scontexts, values, outsums, evalParams, true);
+    return logTable;
   }
 
   public static double[] eval(int[] context, double[] prior, EvalParameters model) {
@@ -119,7 +186,7 @@ public class NaiveBayesModel extends AbstractModel {
       return 1.0 * numerator / denominator;
   }
 
-  private static double getSmoothedProbability(double numerator, double denominator, double vocabulary) {
+  static double getSmoothedProbability(double numerator, double denominator, double vocabulary) {
     final double delta = 0.05; // Lidstone smoothing
 
     return 1.0 * (numerator + delta) / (denominator + delta * vocabulary);
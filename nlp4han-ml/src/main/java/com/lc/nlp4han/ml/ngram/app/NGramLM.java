@@ -78,7 +78,7 @@ public class NGramLM {
 	 * @throws ClassNotFoundException
 	 * @throws IOException
 	 */
-	private static NGramLanguageModel loadModel(String modelFile) throws ClassNotFoundException, IOException {
+	static NGramLanguageModel loadModel(String modelFile) throws ClassNotFoundException, IOException {
 		AbstractNGramModelReader modelReader;
 		if(modelFile.endsWith(".arpa"))
 			modelReader = new ARPATextFileNGramModleReader(new File(modelFile));
@@ -95,7 +95,7 @@ public class NGramLM {
 	 * @param sequence	待解析的字符序列
 	 * @return 			Gram数组
 	 */
-	private static Gram[] parseGrams(String sequence) {
+	static Gram[] parseGrams(String sequence) {
 		Gram[] grams = null;
 		if(sequence.length() == 0 || sequence == null)
 			return grams;
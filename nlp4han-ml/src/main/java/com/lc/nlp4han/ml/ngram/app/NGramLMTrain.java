@@ -95,7 +95,7 @@ public class NGramLMTrain {
 	 * @param type 		模型文件的类型
 	 * @throws IOException
 	 */
-	private static void writeModel(NGramLanguageModel lModel, String modelFile, String type) throws IOException {
+	static void writeModel(NGramLanguageModel lModel, String modelFile, String type) throws IOException {
 		AbstractNGramModelWriter modelWriter;
 		
 		/**
@@ -0,0 +1,138 @@
+package com.lc.nlp4han.ml.ngram.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.lc.nlp4han.ml.ngram.io.ARPATextFileNGramModleReader;
+import com.lc.nlp4han.ml.ngram.io.BinaryFileNGramCountReader;
+import com.lc.nlp4han.ml.ngram.io.BinaryFileNGramModelReader;
+import com.lc.nlp4han.ml.ngram.io.FileOperator;
+import com.lc.nlp4han.ml.ngram.io.TextFileNGramCountReader;
+import com.lc.nlp4han.ml.ngram.io.TextFileNGramModelReader;
+import com.lc.nlp4han.ml.ngram.model.AbstractNGramCountReader;
+import com.lc.nlp4han.ml.ngram.model.AbstractNGramModelReader;
+import com.lc.nlp4han.ml.ngram.model.NGramCounter;
+import com.lc.nlp4han.ml.ngram.model.NGramLanguageModel;
+import com.lc.nlp4han.ml.ngram.model.NGramModelPruner;
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+
+/**
+ *<ul>
+ *<li>Description: 对n元模型剪枝后导出，并报告剪枝前后的模型大小、加载时间和困惑度
+ *<li>Company: HUST
+ *</ul>
+ */
+public class NGramPrune {
+
+	/**
+	 * 按文件类型加载模型，并输出加载时间
+	 * @param modelFile	模型文件
+	 * @param type		模型文件的类型(text/binary/arpa)
+	 * @return			n元模型
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	private static NGramLanguageModel loadModel(String modelFile, String type) throws IOException, ClassNotFoundException {
+		long start = System.currentTimeMillis();
+		AbstractNGramModelReader modelReader;
+		if(type.equals("arpa"))
+			modelReader = new ARPATextFileNGramModleReader(new File(modelFile));
+		else if(type.equals("binary"))
+			modelReader = new BinaryFileNGramModelReader(new File(modelFile));
+		else
+			modelReader = new TextFileNGramModelReader(new File(modelFile));
+		NGramLanguageModel model = modelReader.constructModel();
+
+		System.out.println("模型文件: " + modelFile + ", 大小: " + new File(modelFile).length() + " 字节, 加载时间: " +
+				(System.currentTimeMillis() - start) + " ms");
+		System.out.println("n元数量: " + Arrays.toString(NGramModelPruner.getNGramCounts(model)));
+		return model;
+	}
+
+	/**
+	 * 剪枝模型并写入文件，输出剪枝前后的模型大小、加载时间和困惑度
+	 * @param modelFile	待剪枝的模型文件
+	 * @param type		模型文件的类型(text/binary/arpa)，剪枝后的模型以同样的类型写入
+	 * @param prunedFile	剪枝后的模型文件
+	 * @param threshold	相对熵阈值
+	 * @param testFile	测试语料文件，为null时不计算困惑度
+	 * @param countFile	n元计数文件，为null时不做频数截断
+	 * @param cutoffs	每阶的频数下限
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static void prune(String modelFile, String type, String prunedFile, double threshold, String testFile,
+			String countFile, int[] cutoffs) throws IOException, ClassNotFoundException {
+		NGramLanguageModel model = loadModel(modelFile, type);
+
+		NGramCounter counter = null;
+		if(countFile != null) {
+			AbstractNGramCountReader countReader;
+			if(countFile.endsWith(".bin"))
+				countReader = new BinaryFileNGramCountReader(new File(countFile));
+			else
+				countReader = new TextFileNGramCountReader(new File(countFile));
+			counter = countReader.constructNGramCount();
+		}
+
+		NGramLanguageModel pruned = new NGramModelPruner(model, threshold, counter, cutoffs).prune();
+		NGramLMTrain.writeModel(pruned, prunedFile, type);
+		pruned = loadModel(prunedFile, type);
+
+		if(testFile != null) {
+			List<String> list = FileOperator.readFileToList(testFile);
+			List<Gram[]> test = new LinkedList<>();
+			for(String line : list) {
+				Gram[] grams = NGramLM.parseGrams(line.trim());
+				if(grams != null)
+					test.add(grams);
+			}
+
+			System.out.print("剪枝前: ");
+			model.getPerplexity(test, model.getOrder(), true);
+			System.out.print("剪枝后: ");
+			pruned.getPerplexity(test, pruned.getOrder(), true);
+		}
+	}
+
+	/**
+	 * <li>剪枝n元模型，输出剪枝前后的模型大小、加载时间和困惑度。
+	 * <li>示例:NGramPrune trigram.lm text trigram.pruned.lm 1e-8 test.txt
+	 * <li>示例:NGramPrune trigram.arpa arpa trigram.pruned.arpa 1e-8 - count.txt 0,2,2
+	 * @param args [0]-模型文件路径, [1]-模型文件类型(文本文件text/二进制文件binary/ARPA格式arpa), [2]-剪枝后的模型文件路径,
+	 * 			   [3]-相对熵阈值(0表示不做相对熵剪枝), [4]-测试语料的文件路径(-表示不计算困惑度),
+	 * 			   [5]-n元计数文件路径(可选), [6]-每阶的频数下限，以逗号分隔(可选)
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		int len = args.length;
+		if(!(5 == len || 7 == len)) {
+			System.err.println("错误的参数个数：" + len +
+					"\n示例:NGramPrune 模型文件路径  模型文件类型(text/binary/arpa)  剪枝后的模型文件路径  相对熵阈值  测试语料路径(-不计算困惑度)  [n元计数文件路径  每阶频数下限(如0,2,2)]");
+			System.exit(0);
+		}
+
+		String type = args[1].toLowerCase();
+		if(!(type.equals("text") || type.equals("binary") || type.equals("arpa"))) {
+			System.err.println("错误的模型文件类型：" + args[1] + "\ntext-文本文件, binary-二进制文件, arpa-ARPA格式文本文件");
+			System.exit(0);
+		}
+
+		String testFile = args[4].equals("-") ? null : args[4];
+		String countFile = null;
+		int[] cutoffs = null;
+		if(7 == len) {
+			countFile = args[5];
+			String[] values = args[6].split(",");
+			cutoffs = new int[values.length];
+			for(int i = 0; i < values.length; i++)
+				cutoffs[i] = Integer.parseInt(values[i].trim());
+		}
+
+		prune(args[0], type, args[2], Double.parseDouble(args[3]), testFile, countFile, cutoffs);
+	}
+}
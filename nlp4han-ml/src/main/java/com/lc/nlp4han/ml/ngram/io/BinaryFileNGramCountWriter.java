@@ -1,5 +1,6 @@
 package com.lc.nlp4han.ml.ngram.io;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -34,6 +35,17 @@ public class BinaryFileNGramCountWriter extends AbstractNGramCountWriter{
 		this.dos = dos;
 	}
 	
+	/**
+	 * 不绑定计数器，由调用者逐条写入（如ParallelNGramCounter归并的结果）
+	 * @param file 写入的文件
+	 * @throws IOException
+	 */
+	public BinaryFileNGramCountWriter(File file) throws IOException {
+		super();
+		
+		dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+	}
+	
 	@Override
 	public void writeCountEntry(NGramCountEntry entry) throws IOException {
 		dos.writeUTF(entry.toString());
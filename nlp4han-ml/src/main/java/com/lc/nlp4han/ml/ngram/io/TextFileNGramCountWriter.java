@@ -31,6 +31,16 @@ public class TextFileNGramCountWriter extends AbstractNGramCountWriter{
 		this.bwriter = bwriter;
 	}
 	
+	/**
+	 * 不绑定计数器，由调用者逐条写入（如ParallelNGramCounter归并的结果）
+	 * @param file 写入的文件
+	 * @throws IOException
+	 */
+	public TextFileNGramCountWriter(File file) throws IOException {
+		super();
+		bwriter = new BufferedWriter(new FileWriter(file));
+	}
+	
 	@Override
 	public void writeCountEntry(NGramCountEntry entry) throws IOException {
 		bwriter.write(entry.toString());
@@ -0,0 +1,132 @@
+package com.lc.nlp4han.ml.ngram.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.lc.nlp4han.ml.ngram.model.BinaryDataReader;
+import com.lc.nlp4han.ml.ngram.model.DataReader;
+import com.lc.nlp4han.ml.ngram.model.TextDataReader;
+import com.lc.nlp4han.ml.ngram.model.TrieLanguageModel;
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ *<ul>
+ *<li>Description: 读取n元模型文件，直接建立前缀树n元模型，不经过n元到概率的映射
+ *<li>支持arpa格式的文本文件，以及NGramModelWriter写入的文本文件和二进制文件，格式根据文件内容自动判断
+ *<li>Company: HUST
+ *</ul>
+ */
+public class TrieNGramModelReader {
+
+	private DataReader dataReader;
+
+	public TrieNGramModelReader(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+
+		// 读取不同格式的文件
+		if (file.getName().endsWith(".bin")) 	//二进制文件
+			this.dataReader = new BinaryDataReader(input);
+		else 	//文本文件
+			this.dataReader = new TextDataReader(input);
+	}
+
+	public TrieNGramModelReader(DataReader dataReader) {
+		this.dataReader = dataReader;
+	}
+
+	/**
+	 * 返回读取的前缀树n元模型
+	 * @param quantizationBits	二元及以上概率与回退权重的量化位数，0表示不量化
+	 * @return 前缀树n元模型
+	 * @throws IOException
+	 */
+	public TrieLanguageModel getModel(int quantizationBits) throws IOException {
+		try {
+			String string = dataReader.readUTF();
+			while(string != null && string.trim().isEmpty())
+				string = dataReader.readUTF();
+
+			if(string == null)
+				throw new IOException("模型文件为空");
+			else if(string.trim().equals("\\data\\"))
+				return readARPA(quantizationBits);
+			else
+				return readModel(string.trim(), quantizationBits);
+		} finally {
+			dataReader.close();
+		}
+	}
+
+	/**
+	 * 读取NGramModelWriter写入的模型：平滑方法，n元的最大长度，每阶n元的数量，按阶排列的n元
+	 */
+	private TrieLanguageModel readModel(String smooth, int quantizationBits) throws IOException {
+		int n = dataReader.readCount();
+		int[] counts = new int[n];
+		for(int i = 0; i < n; i++)
+			counts[i] = dataReader.readCount();
+
+		TrieLanguageModel.Builder builder = new TrieLanguageModel.Builder(n, smooth);
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < counts[i]; j++)
+				addEntry(builder, dataReader.readUTF(), i + 1);
+
+		return builder.build(quantizationBits);
+	}
+
+	/**
+	 * 读取arpa格式的模型，\data\已读取
+	 */
+	private TrieLanguageModel readARPA(int quantizationBits) throws IOException {
+		TrieLanguageModel.Builder builder = null;
+		int n = 0;
+		int order = 0;
+		String string = null;
+		while((string = dataReader.readUTF()) != null) {
+			string = string.trim();
+			if(string.isEmpty())
+				continue;
+
+			if(string.equals("\\end\\")) {
+				break;
+			}else if(string.startsWith("ngram ")) {
+				int len = Integer.parseInt(string.substring(6, string.indexOf('=')).trim());
+				n = Math.max(n, len);
+			}else if(string.startsWith("\\") && string.endsWith("-grams:")) {
+				order = Integer.parseInt(string.substring(1, string.indexOf('-')));
+				if(builder == null)
+					builder = new TrieLanguageModel.Builder(n, "backoff");
+			}else {
+				if(builder == null)
+					throw new IOException("arpa格式有误: " + string);
+
+				addEntry(builder, string, order);
+			}
+		}
+
+		if(builder == null)
+			throw new IOException("arpa模型中没有n元");
+
+		return builder.build(quantizationBits);
+	}
+
+	/**
+	 * 解析一行n元及其概率：概率 n元 [回退权重]，以空白分隔
+	 */
+	private void addEntry(TrieLanguageModel.Builder builder, String string, int order) {
+		String[] strings = string.trim().split("\\s+");
+		Gram[] grams = new Gram[order];
+		for(int i = 0; i < order; i++)
+			grams[i] = new StringGram(strings[i + 1]);
+
+		double log_prob = Double.parseDouble(strings[0]);
+		double log_bo = 0.0;
+		if(strings.length > order + 1)
+			log_bo = Double.parseDouble(strings[order + 1]);
+
+		builder.add(grams, log_prob, log_bo);
+	}
+}
@@ -0,0 +1,118 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import java.util.Arrays;
+
+/**
+ *<ul>
+ *<li>Description: 增量计算序列概率时的上下文状态，由{@link StatefulLanguageModel}创建和更新
+ *<li>保存最近的至多n-1个元的编号（最近的在最后），前缀树模型只保留在模型中存在的最长上下文
+ *<li>状态可以重复使用，解码时每个候选保存一个状态，不需要每步分配n元
+ *<li>Company: HUST
+ *</ul>
+ */
+public class LanguageModelState {
+
+	/**
+	 * 上下文的元编号，最近的在最后
+	 */
+	int[] words;
+
+	/**
+	 * 前缀树模型中上下文每个后缀words[i, length)对应的节点，不存在时为-1
+	 */
+	int[] nodes;
+
+	/**
+	 * 上下文的长度
+	 */
+	int length;
+
+	/**
+	 * 得到该状态的打分所匹配的n元长度，0表示使用了<unk>的概率
+	 */
+	int matched;
+
+	LanguageModelState(int order) {
+		int size = Math.max(order - 1, 0);
+		this.words = new int[size];
+		this.nodes = new int[size];
+	}
+
+	/**
+	 * 返回上下文的长度
+	 * @return 上下文的长度
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * 返回上下文中的元编号
+	 * @param index 位置，0为最早的元
+	 * @return 元编号
+	 */
+	public int getWord(int index) {
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("上下文长度为" + length + ": " + index);
+
+		return words[index];
+	}
+
+	/**
+	 * 返回得到该状态的打分所匹配的最长n元的长度
+	 * @return n元长度，0表示使用了<unk>的概率
+	 */
+	public int getMatchedLength() {
+		return matched;
+	}
+
+	/**
+	 * 复制另一个状态
+	 * @param other 被复制的状态
+	 */
+	public void copyFrom(LanguageModelState other) {
+		if(words.length < other.length) {
+			words = new int[other.words.length];
+			nodes = new int[other.nodes.length];
+		}
+
+		System.arraycopy(other.words, 0, words, 0, other.length);
+		System.arraycopy(other.nodes, 0, nodes, 0, other.length);
+		length = other.length;
+		matched = other.matched;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for(int i = 0; i < length; i++)
+			result = 31 * result + words[i];
+
+		return result;
+	}
+
+	/**
+	 * 上下文相同的状态对后续的打分相同，可用于合并解码路径
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LanguageModelState other = (LanguageModelState) obj;
+		if (length != other.length)
+			return false;
+		for(int i = 0; i < length; i++)
+			if(words[i] != other.words[i])
+				return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(Arrays.copyOf(words, length));
+	}
+}
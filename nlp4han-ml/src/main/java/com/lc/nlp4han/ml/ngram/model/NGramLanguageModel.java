@@ -20,7 +20,7 @@ import java.util.HashMap;
  *<li>Date: 2017年7月30日
  *</ul>
  */
-public class NGramLanguageModel implements LanguageModel {
+public class NGramLanguageModel implements StatefulLanguageModel {
 	
 	/**
 	 * 字典
@@ -42,6 +42,16 @@ public class NGramLanguageModel implements LanguageModel {
 	 */
 	private HashMap<NGram, ARPAEntry> nGramLogProbability;
 	
+	/**
+	 * 最大似然模型，未出现的n元概率为0
+	 */
+	private boolean ml;
+	
+	/**
+	 * 插值模型，未出现的n元直接使用低阶概率，不乘回退权重
+	 */
+	private boolean interpolate;
+	
 	public HashMap<NGram, ARPAEntry> getnGramLogProbability() {
 		return nGramLogProbability;
 	}
@@ -51,6 +61,10 @@ public class NGramLanguageModel implements LanguageModel {
 		this.n = n;
 		this.smooth = smooth;
 		this.vocabulary = vocabulary;	
+		
+		String smoothing = smooth == null ? "" : smooth.toLowerCase();
+		this.ml = smoothing.equals("ml");
+		this.interpolate = smoothing.equals("interpolate");
 	}
 	
 	/**
@@ -74,6 +88,11 @@ public class NGramLanguageModel implements LanguageModel {
 		return smooth;
 	}
 	
+	@Override
+	public Vocabulary getVocabulary() {
+		return vocabulary;
+	}
+	
 	/**
 	 * 返回true-模型包含给定n元 ；false-模型不包含给定n元
 	 * @param nGram 待判断是否存在与模型中的n元
@@ -198,12 +217,10 @@ public class NGramLanguageModel implements LanguageModel {
 	 * @return OOV概率的对数  
 	 */	
 	private double calcOOVLogProbability(NGram nGram) {
-		String smoothing = smooth.toLowerCase();
-
-		if(smoothing.equals("ml")) {
+		if(ml) {
 			//直接返回0
 			return Math.log10(0);
-		}else if(smoothing.equals("interpolate")) {
+		}else if(interpolate) {
 			if(1 == nGram.length())
 				return getNGramLogProbability(PseudoWord.oovNGram);
 			
@@ -222,6 +239,74 @@ public class NGramLanguageModel implements LanguageModel {
 		}
 	}
 	
+	@Override
+	public LanguageModelState newState() {
+		return new LanguageModelState(n);
+	}
+	
+	@Override
+	public LanguageModelState newSentenceState() {
+		LanguageModelState state = newState();
+		if(n > 1) {
+			state.words[0] = vocabulary.getId(PseudoWord.Start);
+			state.length = 1;
+		}
+		
+		return state;
+	}
+	
+	@Override
+	public double score(LanguageModelState in, int word, LanguageModelState out) {
+		int length = in.length;
+		double backoff = 0.0;
+		double logProb = Double.NaN;
+		int matched = 0;
+		for(int i = 0; i <= length && Double.isNaN(logProb); i++) {
+			NGram nGram = toNGram(in.words, i, length, word);
+			if(nGram != null && contains(nGram)) {
+				logProb = backoff + nGramLogProbability.get(nGram).getLog_prob();
+				matched = length - i + 1;
+			}else if(ml) {
+				logProb = Math.log10(0);
+			}else if(i == length) {
+				logProb = backoff + (contains(PseudoWord.oovNGram) ? getNGramLogProbability(PseudoWord.oovNGram) : Math.log10(0));
+			}else if(!interpolate) {
+				NGram context = toNGram(in.words, i, length - 1, in.words[length - 1]);
+				if(context != null)
+					backoff += getNGramLogBo(context);
+			}
+		}
+		
+		//保留最近的n-1个元
+		out.length = Math.min(length + 1, out.words.length);
+		if(out.length > 0) {
+			System.arraycopy(in.words, length + 1 - out.length, out.words, 0, out.length - 1);
+			out.words[out.length - 1] = word;
+		}
+		out.matched = matched;
+		
+		return logProb;
+	}
+	
+	/**
+	 * 将编号序列words[start, end)与元word组成n元
+	 * @return n元，含有字典外的元时返回null
+	 */
+	private NGram toNGram(int[] words, int start, int end, int word) {
+		if(word < 0)
+			return null;
+		
+		Gram[] grams = new Gram[end - start + 1];
+		for(int i = start; i < end; i++) {
+			if(words[i] < 0)
+				return null;
+			grams[i - start] = vocabulary.getGram(words[i]);
+		}
+		grams[end - start] = vocabulary.getGram(word);
+		
+		return new NGram(grams);
+	}
+	
 	/**
 	 * <li>根据给定n元阶数将元序列切分成n元组，计算序列概率
 	 * <li>n=3, abcde——>a/ab/abc/bcd/cde
@@ -229,7 +314,7 @@ public class NGramLanguageModel implements LanguageModel {
 	 * @param order		n元阶数
 	 * @return			所有切分的n元
 	 */
-	private List<NGram> splitSequence(Gram[] sequence, int order, boolean boundary) {
+	static List<NGram> splitSequence(Gram[] sequence, int order, boolean boundary) {
 		List<NGram> list = new LinkedList<>();		
 		
 		if(boundary) {//为句子加上边界<s>...</s>
@@ -0,0 +1,243 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.lc.nlp4han.ml.ngram.utils.ARPAEntry;
+import com.lc.nlp4han.ml.ngram.utils.NGram;
+import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
+
+/**
+ *<ul>
+ *<li>Description: 回退n元模型的剪枝，在训练和写入模型文件之间使用以减小模型
+ *<li>支持按阶的频数截断和相对熵（Stolcke）剪枝，一元不剪枝，仍有更高阶n元以其为历史的n元不剪枝
+ *<li>剪枝后按calcBOW的方式重新计算回退权重，使每个历史下的概率和仍为1
+ *<li>Company: HUST
+ *</ul>
+ */
+public class NGramModelPruner {
+
+	/**
+	 * 待剪枝的模型，剪枝时不修改
+	 */
+	private NGramLanguageModel model;
+
+	/**
+	 * 相对熵阈值，剪去某个n元使模型困惑度的相对增长小于阈值时剪去该n元，不大于0时不做相对熵剪枝
+	 */
+	private double threshold;
+
+	/**
+	 * n元的频数，为null时不做频数截断
+	 */
+	private NGramCounter counter;
+
+	/**
+	 * 每阶的频数下限，cutoffs[i]对应i+1元，频数小于下限的n元被剪去
+	 */
+	private int[] cutoffs;
+
+	/**
+	 * 原模型中历史的概率的对数，按需计算
+	 */
+	private HashMap<NGram, Double> historyLogProbability;
+
+	/**
+	 * 原模型中每个历史下出现的元的概率之和，以及这些元在低阶历史下的概率之和，按需计算
+	 */
+	private HashMap<NGram, double[]> historySums;
+
+	public NGramModelPruner(NGramLanguageModel model, double threshold) {
+		this(model, threshold, null, null);
+	}
+
+	/**
+	 * @param model		待剪枝的回退模型
+	 * @param threshold	相对熵阈值，不大于0时不做相对熵剪枝
+	 * @param counter	训练模型时的n元频数，为null时不做频数截断
+	 * @param cutoffs	每阶的频数下限，cutoffs[i]对应i+1元，一元的下限被忽略
+	 */
+	public NGramModelPruner(NGramLanguageModel model, double threshold, NGramCounter counter, int[] cutoffs) {
+		String smooth = model.getSmooth() == null ? "" : model.getSmooth().toLowerCase();
+		if(smooth.equals("ml") || smooth.equals("interpolate"))
+			throw new IllegalArgumentException("只能对回退模型剪枝: " + model.getSmooth());
+		if(counter != null && cutoffs == null)
+			throw new IllegalArgumentException("缺少频数下限");
+
+		this.model = model;
+		this.threshold = threshold;
+		this.counter = counter;
+		this.cutoffs = cutoffs;
+	}
+
+	/**
+	 * 剪枝并重新计算回退权重
+	 * @return 剪枝后的新模型，与原模型共享字典
+	 */
+	public NGramLanguageModel prune() {
+		HashMap<NGram, ARPAEntry> source = model.getnGramLogProbability();
+		int n = model.getOrder();
+		historyLogProbability = new HashMap<>();
+		historySums = new HashMap<>();
+
+		//按阶分组，并统计每个历史下出现的n元
+		List<List<NGram>> nGramsByN = new ArrayList<>();
+		for(int i = 0; i < n; i++)
+			nGramsByN.add(new ArrayList<NGram>());
+		HashMap<NGram, List<NGram>> children = new HashMap<>();
+		HashMap<NGram, ARPAEntry> pruned = new HashMap<>();
+		for(Entry<NGram, ARPAEntry> entry : source.entrySet()) {
+			NGram nGram = entry.getKey();
+			ARPAEntry value = entry.getValue();
+			pruned.put(nGram, new ARPAEntry(value.getLog_prob(), value.getLog_bo()));
+			nGramsByN.get(nGram.length() - 1).add(nGram);
+
+			if(nGram.length() > 1) {
+				NGram history = nGram.removeLast();
+				List<NGram> list = children.get(history);
+				if(list == null) {
+					list = new ArrayList<>();
+					children.put(history, list);
+				}
+				list.add(nGram);
+			}
+		}
+
+		//从高阶到低阶剪枝，低阶n元被剪去前其更高阶的n元已确定
+		HashMap<NGram, Integer> retainedChildren = new HashMap<>();
+		for(int i = n - 1; i >= 1; i--) {
+			for(NGram nGram : nGramsByN.get(i)) {
+				if(!retainedChildren.containsKey(nGram) && isPruned(nGram, children)) {
+					pruned.remove(nGram);
+				}else {
+					NGram history = nGram.removeLast();
+					Integer count = retainedChildren.get(history);
+					retainedChildren.put(history, count == null ? 1 : count + 1);
+				}
+			}
+		}
+
+		//按历史长度从短到长重新计算回退权重，计算时用到的低阶概率已是剪枝后的
+		NGramLanguageModel result = new NGramLanguageModel(pruned, n, model.getSmooth(), model.getVocabulary());
+		for(int i = 0; i < n; i++) {
+			for(NGram history : nGramsByN.get(i)) {
+				ARPAEntry entry = pruned.get(history);
+				if(entry == null)
+					continue;
+
+				double sum_N = 0.0;
+				double sum_N_1 = 0.0;
+				List<NGram> list = children.get(history);
+				if(list != null) {
+					for(NGram nGram : list) {
+						ARPAEntry child = pruned.get(nGram);
+						if(child != null) {
+							sum_N += Math.pow(10, child.getLog_prob());
+							sum_N_1 += Math.pow(10, result.getNGramLogProbability(nGram.removeFirst()));
+						}
+					}
+				}
+
+				if(sum_N < 1.0 && sum_N_1 < 1.0)
+					entry.setLog_bo(Math.log10((1 - sum_N) / (1 - sum_N_1)));
+			}
+		}
+		historyLogProbability = null;
+		historySums = null;
+
+		return result;
+	}
+
+	/**
+	 * 返回true-频数低于下限或剪去后的相对熵小于阈值；false-保留
+	 * @param nGram		待判断的n元，长度大于1
+	 * @param children	原模型中每个历史下出现的n元
+	 */
+	private boolean isPruned(NGram nGram, HashMap<NGram, List<NGram>> children) {
+		if(counter != null && nGram.length() - 1 < cutoffs.length && counter.getNGramCount(nGram) < cutoffs[nGram.length() - 1])
+			return true;
+
+		if(threshold <= 0)
+			return false;
+
+		return getDeltaPerplexity(nGram, children) < threshold;
+	}
+
+	/**
+	 * <li>计算剪去n元(h,w)后模型困惑度的相对增长，概率都取自原模型(Stolcke, 1998)：
+	 * <li>&emsp;bo'(h) = (1 - Σp(.|h) + p(w|h)) / (1 - Σp(.|h') + p(w|h'))，求和范围为h下出现的元
+	 * <li>&emsp;D = -P(h){p(w|h)[ln p(w|h') + ln bo'(h) - ln p(w|h)] + (1 - Σp(.|h))[ln bo'(h) - ln bo(h)]}
+	 * <li>&emsp;返回exp(D) - 1
+	 * @param nGram		待剪去的n元(h,w)
+	 * @param children	原模型中每个历史下出现的n元
+	 * @return 困惑度的相对增长，无法计算时返回正无穷（不剪枝）
+	 */
+	private double getDeltaPerplexity(NGram nGram, HashMap<NGram, List<NGram>> children) {
+		NGram history = nGram.removeLast();
+
+		double[] sums = historySums.get(history);
+		if(sums == null) {
+			sums = new double[2];
+			for(NGram child : children.get(history)) {
+				sums[0] += Math.pow(10, model.getNGramLogProbability(child));
+				sums[1] += Math.pow(10, model.getNGramLogProbability(child.removeFirst()));
+			}
+			historySums.put(history, sums);
+		}
+		double sum_N = sums[0];
+		double sum_N_1 = sums[1];
+
+		double prob = Math.pow(10, model.getNGramLogProbability(nGram));
+		double lowerProb = Math.pow(10, model.getNGramLogProbability(nGram.removeFirst()));
+		double numerator = 1 - sum_N + prob;
+		double denominator = 1 - sum_N_1 + lowerProb;
+		if(numerator <= 0 || denominator <= 0 || prob <= 0 || lowerProb <= 0)
+			return Double.POSITIVE_INFINITY;
+
+		ARPAEntry entry = model.getnGramLogProbability().get(history);
+		double logBo = entry == null ? 0.0 : entry.getLog_bo() * Math.log(10);
+		double newLogBo = Math.log(numerator / denominator);
+
+		double deltaEntropy = -Math.exp(getHistoryLogProbability(history)) *
+				(prob * (Math.log(lowerProb) + newLogBo - Math.log(prob)) + (1 - sum_N) * (newLogBo - logBo));
+
+		return Math.expm1(deltaEntropy);
+	}
+
+	/**
+	 * 按链式法则计算历史在原模型中的概率的自然对数，以<s>开始时以<s>为条件
+	 * @param history 历史
+	 * @return 概率的自然对数
+	 */
+	private double getHistoryLogProbability(NGram history) {
+		Double cached = historyLogProbability.get(history);
+		if(cached != null)
+			return cached;
+
+		double logProb = 0.0;
+		int start = PseudoWord.Start.equals(history.getGram(0)) ? 1 : 0;
+		for(int i = start; i < history.length(); i++) {
+			NGram prefix = new NGram(Arrays.copyOfRange(history.getGrams(), 0, i + 1));
+			logProb += model.getNGramLogProbability(prefix) * Math.log(10);
+		}
+		historyLogProbability.put(history, logProb);
+
+		return logProb;
+	}
+
+	/**
+	 * 返回模型中每阶n元的数量
+	 * @param model n元模型
+	 * @return 数组，第i个元素为i+1元的数量
+	 */
+	public static int[] getNGramCounts(NGramLanguageModel model) {
+		int[] counts = new int[model.getOrder()];
+		for(NGram nGram : model.getnGramLogProbability().keySet())
+			counts[nGram.length() - 1]++;
+
+		return counts;
+	}
+}
@@ -0,0 +1,514 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.GramSentenceStream;
+import com.lc.nlp4han.ml.ngram.utils.NGram;
+import com.lc.nlp4han.ml.ngram.utils.NGramCountEntry;
+import com.lc.nlp4han.ml.ngram.utils.NGramGenerator;
+import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ *<ul>
+ *<li>Description: 多线程、外存的n元计数
+ *<li>句子按批分给多个线程，每个线程为句子加上<s>和</s>后生成1-n元（与NGramCounter(GramSentenceStream, n)一致），
+ *<li>再按n元的哈希值累加到分片的计数表中
+ *<li>计数表中的n元数量超过内存预算时，各分片排序后写入临时文件，成为一个有序段
+ *<li>计数结束后对所有有序段做多路归并，按n元的顺序写入NGramCountWriter，或重建NGramCounter
+ *<li>Company: HUST
+ *</ul>
+ */
+public class ParallelNGramCounter {
+
+	/**
+	 * 默认的内存预算，即计数表中最多保存的n元数量
+	 */
+	public static final int DEFAULT_MEMORY_BUDGET = 1 << 21;
+
+	/**
+	 * 每批句子的数量
+	 */
+	private static final int BATCH_SIZE = 1024;
+
+	/**
+	 * n元最大长度
+	 */
+	private int n;
+
+	private int threads;
+
+	private int memoryBudget;
+
+	/**
+	 * 临时文件的目录，为null时使用系统默认目录
+	 */
+	private File tmpDir;
+
+	/**
+	 * 按n元哈希值分片的计数表
+	 */
+	private HashMap<NGram, int[]>[] shards;
+
+	/**
+	 * 计数表中的n元数量
+	 */
+	private AtomicLong size;
+
+	/**
+	 * 已写出的有序段
+	 */
+	private List<Run> runs;
+
+	/**
+	 * 初始化当前实例
+	 * @param n			n元的最大长度
+	 * @param threads	计数的线程数
+	 */
+	public ParallelNGramCounter(int n, int threads) {
+		this(n, threads, DEFAULT_MEMORY_BUDGET, null);
+	}
+
+	/**
+	 * 初始化当前实例
+	 * @param n				n元的最大长度
+	 * @param threads		计数的线程数
+	 * @param memoryBudget	计数表中最多保存的n元数量，超过后写出有序段
+	 * @param tmpDir		临时文件的目录，为null时使用系统默认目录
+	 */
+	@SuppressWarnings("unchecked")
+	public ParallelNGramCounter(int n, int threads, int memoryBudget, File tmpDir) {
+		if(n < 1)
+			throw new IllegalArgumentException("n元长度必须为正数: " + n);
+		if(threads < 1)
+			throw new IllegalArgumentException("线程数必须为正数: " + threads);
+		if(memoryBudget < 1)
+			throw new IllegalArgumentException("内存预算必须为正数: " + memoryBudget);
+
+		this.n = n;
+		this.threads = threads;
+		this.memoryBudget = memoryBudget;
+		this.tmpDir = tmpDir;
+		this.shards = new HashMap[threads];
+		for(int i = 0; i < shards.length; i++)
+			shards[i] = new HashMap<>();
+		this.size = new AtomicLong();
+		this.runs = new ArrayList<>();
+	}
+
+	/**
+	 * 返回n元的最大长度
+	 * @return n元的最大长度
+	 */
+	public int getOrder() {
+		return n;
+	}
+
+	/**
+	 * 统计句子流中所有的n元，可多次调用以累加多个语料
+	 * @param gramSentenceStream 元组成的句子流
+	 * @throws IOException
+	 */
+	public void count(GramSentenceStream gramSentenceStream) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			LinkedList<Future<Integer>> futures = new LinkedList<>();
+			List<Gram[]> batch = new ArrayList<>(BATCH_SIZE);
+			Gram[] grams = null;
+			while((grams = gramSentenceStream.nextSentence()) != null) {
+				batch.add(grams);
+				if(batch.size() == BATCH_SIZE) {
+					futures.add(executor.submit(new CountTask(batch)));
+					batch = new ArrayList<>(BATCH_SIZE);
+
+					//限制已读入但未统计的句子数量
+					if(futures.size() > 2 * threads)
+						get(futures.removeFirst());
+
+					if(size.get() >= memoryBudget) {
+						while(!futures.isEmpty())
+							get(futures.removeFirst());
+						spill(executor);
+					}
+				}
+			}
+
+			if(!batch.isEmpty())
+				futures.add(executor.submit(new CountTask(batch)));
+			while(!futures.isEmpty())
+				get(futures.removeFirst());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Interruption is not supported!", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+
+			throw new RuntimeException("Exception during counting: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 返回n元所在的分片
+	 */
+	private HashMap<NGram, int[]> shard(NGram nGram) {
+		return shards[(nGram.hashCode() & 0x7fffffff) % shards.length];
+	}
+
+	/**
+	 * 统计一批句子的n元，先在本地计数，再按分片累加
+	 */
+	private class CountTask implements Callable<Integer> {
+
+		private List<Gram[]> sentences;
+
+		CountTask(List<Gram[]> sentences) {
+			this.sentences = sentences;
+		}
+
+		@Override
+		public Integer call() {
+			HashMap<NGram, int[]> local = new HashMap<>();
+			for(Gram[] grams : sentences) {
+				Gram[] sentence = new Gram[grams.length + 2];
+				sentence[0] = PseudoWord.Start;
+				for(int i = 0; i < grams.length; i++)
+					sentence[i + 1] = grams[i];
+				sentence[grams.length + 1] = PseudoWord.End;
+
+				for(int i = 1; i <= n; i++) {
+					for(NGram nGram : NGramGenerator.generate(sentence, i)) {
+						int[] count = local.get(nGram);
+						if(count == null)
+							local.put(nGram, new int[] {1});
+						else
+							count[0]++;
+					}
+				}
+			}
+
+			List<List<Entry<NGram, int[]>>> byShard = new ArrayList<>();
+			for(int i = 0; i < shards.length; i++)
+				byShard.add(new ArrayList<Entry<NGram, int[]>>());
+			for(Entry<NGram, int[]> entry : local.entrySet())
+				byShard.get((entry.getKey().hashCode() & 0x7fffffff) % shards.length).add(entry);
+
+			int added = 0;
+			for(int i = 0; i < shards.length; i++) {
+				HashMap<NGram, int[]> shard = shards[i];
+				synchronized (shard) {
+					for(Entry<NGram, int[]> entry : byShard.get(i)) {
+						int[] count = shard.get(entry.getKey());
+						if(count == null) {
+							shard.put(entry.getKey(), entry.getValue());
+							added++;
+						}else {
+							count[0] += entry.getValue()[0];
+						}
+					}
+				}
+			}
+
+			size.addAndGet(added);
+			return added;
+		}
+	}
+
+	/**
+	 * 将各分片排序后写入有序段文件，并清空计数表
+	 */
+	private void spill(ExecutorService executor) throws IOException {
+		List<Callable<Run>> tasks = new ArrayList<>();
+		for(final HashMap<NGram, int[]> shard : shards) {
+			if(shard.isEmpty())
+				continue;
+
+			tasks.add(new Callable<Run>() {
+				@Override
+				public Run call() throws IOException {
+					Run run = sort(shard);
+					run.write(tmpDir);
+					shard.clear();
+					return run;
+				}
+			});
+		}
+
+		try {
+			for(Future<Run> future : executor.invokeAll(tasks))
+				runs.add(get(future));
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Interruption is not supported!", e);
+		}
+
+		size.set(0);
+	}
+
+	/**
+	 * 将计数表中的n元排序为内存中的有序段
+	 */
+	private static Run sort(HashMap<NGram, int[]> shard) {
+		NGram[] nGrams = shard.keySet().toArray(new NGram[shard.size()]);
+		Arrays.sort(nGrams);
+		int[] counts = new int[nGrams.length];
+		for(int i = 0; i < nGrams.length; i++)
+			counts[i] = shard.get(nGrams[i])[0];
+
+		return new Run(nGrams, counts);
+	}
+
+	/**
+	 * 将计数表中剩余的n元转为内存中的有序段
+	 */
+	private void finish() {
+		for(HashMap<NGram, int[]> shard : shards) {
+			if(!shard.isEmpty()) {
+				runs.add(sort(shard));
+				shard.clear();
+			}
+		}
+
+		size.set(0);
+	}
+
+	/**
+	 * 多路归并所有有序段，按n元的顺序依次处理，相同的n元计数相加
+	 */
+	private void merge(EntryHandler handler) throws IOException {
+		finish();
+
+		PriorityQueue<RunReader> queue = new PriorityQueue<>();
+		try {
+			for(Run run : runs) {
+				RunReader reader = run.open();
+				if(reader.next())
+					queue.add(reader);
+				else
+					reader.close();
+			}
+
+			while(!queue.isEmpty()) {
+				RunReader top = queue.poll();
+				NGram nGram = top.nGram;
+				int count = top.count;
+				if(top.next())
+					queue.add(top);
+				else
+					top.close();
+
+				while(!queue.isEmpty() && queue.peek().nGram.equals(nGram)) {
+					RunReader same = queue.poll();
+					count += same.count;
+					if(same.next())
+						queue.add(same);
+					else
+						same.close();
+				}
+
+				handler.handle(nGram, count);
+			}
+		} finally {
+			for(RunReader reader : queue)
+				reader.close();
+		}
+	}
+
+	/**
+	 * 按n元的顺序将计数写入文件，格式与TextFileNGramCountWriter和BinaryFileNGramCountWriter相同，写入后关闭写入流
+	 * @param writer n元计数的写入流
+	 * @throws IOException
+	 */
+	public void persist(final NGramCountWriter writer) throws IOException {
+		//先归并一遍得到n元类型数量，再写入n元
+		final int[] number = new int[1];
+		merge(new EntryHandler() {
+			@Override
+			public void handle(NGram nGram, int count) {
+				number[0]++;
+			}
+		});
+
+		writer.writeNumber(number[0]);
+		merge(new EntryHandler() {
+			@Override
+			public void handle(NGram nGram, int count) throws IOException {
+				writer.writeCountEntry(new NGramCountEntry(nGram, count));
+			}
+		});
+		writer.close();
+	}
+
+	/**
+	 * 将计数归并到内存中，返回n元计数器
+	 * @return n元计数器
+	 * @throws IOException
+	 */
+	public NGramCounter getNGramCounter() throws IOException {
+		final HashMap<NGram, Integer> nGramCountMap = new HashMap<>();
+		final int[] total = new int[1];
+		merge(new EntryHandler() {
+			@Override
+			public void handle(NGram nGram, int count) {
+				nGramCountMap.put(nGram, count);
+				total[0] += count;
+			}
+		});
+
+		return new NGramCounter(nGramCountMap, n, total[0]);
+	}
+
+	/**
+	 * 删除有序段的临时文件，并清空所有计数
+	 */
+	public void close() {
+		for(Run run : runs)
+			run.delete();
+		runs.clear();
+		for(HashMap<NGram, int[]> shard : shards)
+			shard.clear();
+		size.set(0);
+	}
+
+	/**
+	 * 归并时处理每个n元及其计数
+	 */
+	private interface EntryHandler {
+
+		void handle(NGram nGram, int count) throws IOException;
+	}
+
+	/**
+	 *<ul>
+	 *<li>Description: 按n元排序的计数，保存在内存中或临时文件中
+	 *<li>文件中每条记录为：n元长度，各个元，计数
+	 *</ul>
+	 */
+	private static class Run {
+
+		private NGram[] nGrams;
+
+		private int[] counts;
+
+		private File file;
+
+		private int length;
+
+		Run(NGram[] nGrams, int[] counts) {
+			this.nGrams = nGrams;
+			this.counts = counts;
+			this.length = nGrams.length;
+		}
+
+		void write(File tmpDir) throws IOException {
+			file = File.createTempFile("ngram", ".run", tmpDir);
+			file.deleteOnExit();
+
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				for(int i = 0; i < length; i++) {
+					dos.writeByte(nGrams[i].length());
+					for(Gram gram : nGrams[i].getGrams())
+						dos.writeUTF(gram.toString());
+					dos.writeInt(counts[i]);
+				}
+			} finally {
+				dos.close();
+			}
+
+			nGrams = null;
+			counts = null;
+		}
+
+		RunReader open() throws IOException {
+			if(file == null)
+				return new RunReader(this, null);
+
+			return new RunReader(this, new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+		}
+
+		void delete() {
+			if(file != null)
+				file.delete();
+		}
+	}
+
+	/**
+	 *<ul>
+	 *<li>Description: 顺序读取一个有序段，按当前n元比较
+	 *</ul>
+	 */
+	private static class RunReader implements Comparable<RunReader> {
+
+		private Run run;
+
+		private DataInputStream dis;
+
+		private int index;
+
+		private NGram nGram;
+
+		private int count;
+
+		RunReader(Run run, DataInputStream dis) {
+			this.run = run;
+			this.dis = dis;
+		}
+
+		boolean next() throws IOException {
+			if(index == run.length)
+				return false;
+
+			if(dis == null) {
+				nGram = run.nGrams[index];
+				count = run.counts[index];
+			}else {
+				Gram[] grams = new Gram[dis.readByte()];
+				for(int i = 0; i < grams.length; i++)
+					grams[i] = new StringGram(dis.readUTF());
+				nGram = new NGram(grams);
+				count = dis.readInt();
+			}
+
+			index++;
+			return true;
+		}
+
+		void close() throws IOException {
+			if(dis != null)
+				dis.close();
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			return nGram.compareTo(o.nGram);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+/**
+ *<ul>
+ *<li>Description: 可按状态增量打分的n元模型
+ *<li>解码时从句首状态开始，每加入一个元调用一次{@link #score(LanguageModelState, int, LanguageModelState)}，
+ *<li>不需要重新切分和计算已有的前缀
+ *<li>Company: HUST
+ *</ul>
+ */
+public interface StatefulLanguageModel extends LanguageModel {
+
+	/**
+	 * 返回模型的字典，元编号由字典给出
+	 * @return 字典
+	 */
+	public Vocabulary getVocabulary();
+
+	/**
+	 * 返回最大的n元长度
+	 * @return 最大的n元长度
+	 */
+	public int getOrder();
+
+	/**
+	 * 返回上下文为空的状态
+	 * @return 新状态
+	 */
+	public LanguageModelState newState();
+
+	/**
+	 * 返回上下文为句子开始标签<s>的状态
+	 * @return 新状态
+	 */
+	public LanguageModelState newSentenceState();
+
+	/**
+	 * 计算给定上下文下元的概率的对数，并将加入该元后的上下文写入out
+	 * <li>结果与getNGramLogProbability(上下文+元)一致
+	 * @param in	上下文状态
+	 * @param word	元编号，为负表示字典外的元
+	 * @param out	加入元后的状态，不能与in为同一个对象
+	 * @return 概率的对数
+	 */
+	public double score(LanguageModelState in, int word, LanguageModelState out);
+}
@@ -0,0 +1,1041 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.NGram;
+import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ *<ul>
+ *<li>Description: 基于前缀树的紧凑n元模型
+ *<li>元用字典中的编号表示，一元按编号直接索引，k元(k>1)按(父节点，元编号)排序，
+ *<li>每个节点的子节点在下一阶中连续存放，由子节点指针给出起止位置
+ *<li>每阶的节点按位紧凑存储，二元及以上的概率与回退权重可量化为码本下标
+ *<li>模型可写入文件，并以内存映射的方式打开，打开时不需要解析和重建
+ *<li>Company: HUST
+ *</ul>
+ */
+public class TrieLanguageModel implements StatefulLanguageModel {
+
+	/**
+	 * 模型文件的标识
+	 */
+	private static final int MAGIC = 0x4E475452;
+
+	/**
+	 * 每页的long数量为2^PAGE_BITS，单个内存映射缓冲区不能超过2GB
+	 */
+	private static final int PAGE_BITS = 27;
+
+	private static final long PAGE_SIZE = 1L << PAGE_BITS;
+
+	/**
+	 * 字典，给出元的编号
+	 */
+	private Vocabulary vocabulary;
+
+	/**
+	 * 模型中使用的平滑方法
+	 */
+	private String smooth;
+
+	/**
+	 * 量化的位数，0表示不量化
+	 */
+	private int quantizationBits;
+
+	/**
+	 * 每阶n元的存储，levels[0]为一元
+	 */
+	private Level[] levels;
+
+	/**
+	 * 最大似然模型，未出现的n元概率为0
+	 */
+	private boolean ml;
+
+	/**
+	 * 插值模型，未出现的n元直接使用低阶概率，不乘回退权重
+	 */
+	private boolean interpolate;
+
+	/**
+	 * <unk>概率的对数
+	 */
+	private double oovLogProbability;
+
+	private TrieLanguageModel(Vocabulary vocabulary, String smooth, int quantizationBits, Level[] levels) {
+		this.vocabulary = vocabulary;
+		this.smooth = smooth;
+		this.quantizationBits = quantizationBits;
+		this.levels = levels;
+
+		String smoothing = smooth.toLowerCase();
+		this.ml = smoothing.equals("ml");
+		this.interpolate = smoothing.equals("interpolate");
+
+		int oov = vocabulary.getId(PseudoWord.oov);
+		float prob = oov < 0 ? Float.NaN : levels[0].prob(oov);
+		this.oovLogProbability = Float.isNaN(prob) ? Double.NEGATIVE_INFINITY : prob;
+	}
+
+	@Override
+	public int getOrder() {
+		return levels.length;
+	}
+
+	/**
+	 * 返回平滑方法
+	 * @return 平滑方法
+	 */
+	public String getSmooth() {
+		return smooth;
+	}
+
+	/**
+	 * 返回量化的位数
+	 * @return 量化的位数，0表示不量化
+	 */
+	public int getQuantizationBits() {
+		return quantizationBits;
+	}
+
+	/**
+	 * 返回字典
+	 * @return 字典
+	 */
+	@Override
+	public Vocabulary getVocabulary() {
+		return vocabulary;
+	}
+
+	/**
+	 * 返回给定长度的n元节点数量，包括仅作为高阶n元前缀的节点
+	 * @param order n元长度
+	 * @return 节点数量
+	 */
+	public int getNGramCount(int order) {
+		return levels[order - 1].count;
+	}
+
+	/**
+	 * 返回n元存储占用的字节数，不包括字典
+	 * @return 字节数
+	 */
+	public long getMemorySize() {
+		long size = 0;
+		for(Level level : levels)
+			size += level.getMemorySize();
+
+		return size;
+	}
+
+	/**
+	 * 返回元编号序列words[start, end)的概率的对数，末尾的元为预测的元
+	 * <li>编号为负表示字典外的元
+	 * <li>未出现的n元按平滑方法回退到低阶n元，与NGramLanguageModel的结果一致
+	 * @param words	元编号序列
+	 * @param start	起始位置
+	 * @param end	结束位置（不包括）
+	 * @return 概率的对数
+	 */
+	public double getLogProbability(int[] words, int start, int end) {
+		double backoff = 0.0;
+		for(int i = start; i < end; i++) {
+			int length = end - i;
+			int context = -1;
+			int node = unigram(words[i]);
+			for(int k = 1; k < length && node >= 0; k++) {
+				if(k == length - 1)
+					context = node;
+
+				node = child(k - 1, node, words[i + k]);
+			}
+
+			if(node >= 0) {
+				float prob = levels[length - 1].prob(node);
+				if(!Float.isNaN(prob))
+					return backoff + prob;
+			}
+
+			if(ml)
+				return Double.NEGATIVE_INFINITY;
+
+			if(!interpolate && context >= 0)
+				backoff += levels[length - 2].bo(context);
+		}
+
+		return backoff + oovLogProbability;
+	}
+
+	@Override
+	public LanguageModelState newState() {
+		return new LanguageModelState(levels.length);
+	}
+
+	@Override
+	public LanguageModelState newSentenceState() {
+		LanguageModelState state = newState();
+		int word = vocabulary.getId(PseudoWord.Start);
+		int node = unigram(word);
+		if(levels.length > 1 && (node >= 0 || ml)) {
+			state.words[0] = word;
+			state.nodes[0] = node;
+			state.length = 1;
+		}
+
+		return state;
+	}
+
+	/**
+	 * 状态中保存上下文每个后缀的节点，每个后缀加上新元只需在其子节点中查找一次，回退权重直接从节点读取
+	 */
+	@Override
+	public double score(LanguageModelState in, int word, LanguageModelState out) {
+		int length = in.length;
+		double backoff = 0.0;
+		double logProb = Double.NaN;
+		int matched = 0;
+
+		// 新的上下文为in的后缀加上word，最多n-1个元
+		int size = Math.min(length + 1, out.words.length);
+		int start = length + 1 - size;
+		for(int i = 0; i < length; i++) {
+			int context = in.nodes[i];
+			int node = context < 0 ? -1 : child(length - i - 1, context, word);
+			if(i >= start)
+				out.nodes[i - start] = node;
+
+			if(Double.isNaN(logProb)) {
+				float prob = node < 0 ? Float.NaN : levels[length - i].prob(node);
+				if(!Float.isNaN(prob)) {
+					logProb = backoff + prob;
+					matched = length - i + 1;
+				}else if(ml) {
+					logProb = Double.NEGATIVE_INFINITY;
+				}else if(!interpolate && context >= 0) {
+					backoff += levels[length - i - 1].bo(context);
+				}
+			}
+		}
+
+		int node = unigram(word);
+		if(Double.isNaN(logProb)) {
+			float prob = node < 0 ? Float.NaN : levels[0].prob(node);
+			if(!Float.isNaN(prob)) {
+				logProb = backoff + prob;
+				matched = 1;
+			}else {
+				logProb = ml ? Double.NEGATIVE_INFINITY : backoff + oovLogProbability;
+			}
+		}
+
+		// 只保留在模型中存在的最长上下文，更长的上下文不会出现在任何n元中
+		// 最大似然模型中上下文不存在时概率为0，需要保留完整的上下文
+		if(size > 0)
+			out.nodes[size - 1] = node;
+		int first = 0;
+		while(!ml && first < size && out.nodes[first] < 0)
+			first++;
+		for(int i = first; i < size; i++) {
+			out.words[i - first] = i == size - 1 ? word : in.words[start + i];
+			out.nodes[i - first] = out.nodes[i];
+		}
+		out.length = size - first;
+		out.matched = matched;
+
+		return logProb;
+	}
+
+	/**
+	 * 返回一元节点，元不在模型中时返回-1
+	 * @param word 元编号
+	 * @return 一元节点
+	 */
+	private int unigram(int word) {
+		return word >= 0 && word < levels[0].count ? word : -1;
+	}
+
+	/**
+	 * 在第level阶的节点node的子节点中查找元word
+	 * @param level	父节点所在的阶（从0开始）
+	 * @param node	父节点
+	 * @param word	元编号
+	 * @return 子节点，不存在时返回-1
+	 */
+	private int child(int level, int node, int word) {
+		if(level + 1 >= levels.length || word < 0)
+			return -1;
+
+		Level parent = levels[level];
+		Level children = levels[level + 1];
+		int low = parent.pointer(node);
+		int high = parent.pointer(node + 1) - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int midWord = children.word(mid);
+			if(midWord < word)
+				low = mid + 1;
+			else if(midWord > word)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 将n元中的元转换为编号
+	 * @param nGram n元
+	 * @return 元编号序列
+	 */
+	private int[] toIds(NGram nGram) {
+		int[] words = new int[nGram.length()];
+		for(int i = 0; i < words.length; i++)
+			words[i] = vocabulary.getId(nGram.getGram(i));
+
+		return words;
+	}
+
+	@Override
+	public double getNGramLogProbability(NGram nGram) {
+		int[] words = toIds(nGram);
+		return getLogProbability(words, 0, words.length);
+	}
+
+	@Override
+	public double getSequenceLogProbability(Gram[] sequence, int order, boolean boundary) {
+		double probability = 0.0;
+
+		List<NGram> nGrams = NGramLanguageModel.splitSequence(sequence, order, boundary);
+		if(nGrams.size() > 0) {
+			for(NGram nGram : nGrams)
+				probability += getNGramLogProbability(nGram);
+
+			if (Double.isNaN(probability) || Double.isInfinite(probability))
+				probability = 0.0;
+			else if (probability != 0)
+				probability = Math.pow(10, probability);
+		}
+
+		return probability;
+	}
+
+	@Override
+	public NGram getNextPrediction(Gram[] sequence, int order, boolean boundary) {
+		NGram predict = null;
+		double maxProb = Double.NEGATIVE_INFINITY;
+
+		List<NGram> nGrams = new ArrayList<>();
+		for(int word = 0; word < levels[0].count; word++)
+			collect(0, word, new Gram[] {vocabulary.getGram(word)}, nGrams);
+
+		for(NGram nGram : nGrams) {
+			Gram[] grams = new Gram[sequence.length + nGram.length()];
+			for (int i = 0; i < sequence.length; i++)
+				grams[i] = sequence[i];
+			for (int i = 0; i < nGram.length(); i++)
+				grams[i + sequence.length] = nGram.getGram(i);
+
+			double prob = getSequenceLogProbability(grams, order, boundary);
+			if (prob > maxProb) {
+				maxProb = prob;
+				predict = nGram;
+			}
+		}
+
+		return predict;
+	}
+
+	/**
+	 * 深度优先收集节点及其子树中的所有n元
+	 * @param level	节点所在的阶（从0开始）
+	 * @param node	节点
+	 * @param grams	从根到节点的元
+	 * @param list	收集的n元
+	 */
+	private void collect(int level, int node, Gram[] grams, List<NGram> list) {
+		if(!Float.isNaN(levels[level].prob(node)))
+			list.add(new NGram(grams));
+
+		if(level + 1 < levels.length) {
+			Level children = levels[level + 1];
+			for(int i = levels[level].pointer(node); i < levels[level].pointer(node + 1); i++) {
+				Gram[] childGrams = Arrays.copyOf(grams, grams.length + 1);
+				childGrams[grams.length] = vocabulary.getGram(children.word(i));
+				collect(level + 1, i, childGrams, list);
+			}
+		}
+	}
+
+	@Override
+	public double getPerplexity(List<Gram[]> testSet, int order, boolean boundary) {
+		//句子数量
+		int sentences = 0;
+		//词的数量
+		int words = 0;
+		//未登录词数量
+		int OOVs = 0;
+		//所有句子的概率乘积的对数
+		double logprob = 0.0;
+		//ppl = 10^(-logprob / (words - OOVs + sentences))
+		double ppl = 0.0;
+
+		for(Gram[] grams : testSet) {
+			sentences++;
+			for(Gram gram : grams) {
+				words++;
+				if(!vocabulary.contains(gram))
+					OOVs++;
+			}
+
+			List<NGram> nGrams = NGramLanguageModel.splitSequence(grams, order, boundary);
+			double nGramLogProb = 0.0;
+			for(NGram nGram : nGrams) {
+				nGramLogProb = getNGramLogProbability(nGram);
+				if (!(Double.isInfinite(nGramLogProb) || Double.isNaN(nGramLogProb)))
+					logprob += nGramLogProb;
+			}
+		}
+
+		if(vocabulary.contains(PseudoWord.oov))
+			OOVs = 0;
+
+		ppl = Math.pow(10, (-logprob / (words - OOVs + sentences)));
+		System.out.println(sentences+" sentences, " + words+" words, " + OOVs+" OOVs" +
+			   ", logprob= " + logprob + " ppl= " + ppl);
+		return ppl;
+	}
+
+	/**
+	 * 将模型写入文件，写入的文件可用{@link #open(File)}以内存映射的方式打开
+	 * <li>文件格式：标识，头部长度，头部（阶数，平滑方法，量化位数，字典，每阶的布局与码本），按8字节对齐的各阶数据
+	 * @param file 模型文件
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream hos = new DataOutputStream(header);
+		hos.writeInt(levels.length);
+		hos.writeUTF(smooth);
+		hos.writeInt(quantizationBits);
+		hos.writeInt(vocabulary.getNumIds());
+		for(int i = 0; i < vocabulary.getNumIds(); i++)
+			hos.writeUTF(vocabulary.getGram(i).toString());
+		for(Level level : levels)
+			level.writeHeader(hos);
+		hos.close();
+
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			dos.writeInt(MAGIC);
+			dos.writeInt(header.size());
+			header.writeTo(dos);
+			for(long i = 8 + header.size(); i % 8 != 0; i++)
+				dos.writeByte(0);
+
+			for(Level level : levels)
+				level.bits.write(dos);
+		} finally {
+			dos.close();
+		}
+	}
+
+	/**
+	 * 以内存映射的方式打开{@link #write(File)}写入的模型文件
+	 * @param file 模型文件
+	 * @return n元模型
+	 * @throws IOException
+	 */
+	public static TrieLanguageModel open(File file) throws IOException {
+		Vocabulary vocabulary = new Vocabulary();
+		String smooth;
+		int quantizationBits;
+		Level[] levels;
+		long[] lengths;
+		long offset;
+
+		DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(dis.readInt() != MAGIC)
+				throw new IOException("不是前缀树n元模型文件: " + file);
+
+			int headerLength = dis.readInt();
+			offset = (8L + headerLength + 7) / 8 * 8;
+
+			int n = dis.readInt();
+			smooth = dis.readUTF();
+			quantizationBits = dis.readInt();
+			int numIds = dis.readInt();
+			for(int i = 0; i < numIds; i++) {
+				vocabulary.add(new StringGram(dis.readUTF()));
+				if(vocabulary.getNumIds() != i + 1)
+					throw new IOException("模型文件中的字典有误: " + file);
+			}
+
+			levels = new Level[n];
+			lengths = new long[n];
+			for(int i = 0; i < n; i++) {
+				levels[i] = Level.readHeader(dis);
+				lengths[i] = dis.readLong();
+			}
+		} finally {
+			dis.close();
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			for(int i = 0; i < levels.length; i++) {
+				levels[i].bits = Bits.map(channel, offset, lengths[i]);
+				offset += lengths[i] * 8;
+			}
+		} finally {
+			raf.close();
+		}
+
+		return new TrieLanguageModel(vocabulary, smooth, quantizationBits, levels);
+	}
+
+	/**
+	 * 返回表示[0, max]所需的位数
+	 */
+	private static int bitsFor(long max) {
+		return 64 - Long.numberOfLeadingZeros(max);
+	}
+
+	/**
+	 *<ul>
+	 *<li>Description: 一阶n元的存储，每个节点依次为元编号，概率，回退权重，子节点指针
+	 *<li>最高阶没有回退权重和子节点指针，其余阶末尾有一个只含子节点指针的哨兵节点
+	 *<li>概率码本的最后一个下标表示空节点（概率为NaN），回退权重码本的最后一个下标表示0
+	 *</ul>
+	 */
+	private static class Level {
+
+		private int count;
+
+		private int wordBits;
+
+		private int probBits;
+
+		private int boBits;
+
+		private int pointerBits;
+
+		private int recordBits;
+
+		/**
+		 * 概率与回退权重的码本，为null时按32位浮点数存储
+		 */
+		private float[] probCodes;
+
+		private float[] boCodes;
+
+		private Bits bits;
+
+		Level(int count, int wordBits, int probBits, int boBits, int pointerBits, float[] probCodes, float[] boCodes) {
+			this.count = count;
+			this.wordBits = wordBits;
+			this.probBits = probBits;
+			this.boBits = boBits;
+			this.pointerBits = pointerBits;
+			this.recordBits = wordBits + probBits + boBits + pointerBits;
+			this.probCodes = probCodes;
+			this.boCodes = boCodes;
+		}
+
+		/**
+		 * 返回存储的long数量，包括哨兵节点
+		 */
+		long length() {
+			long records = pointerBits > 0 ? count + 1 : count;
+			return (records * recordBits + 63) / 64;
+		}
+
+		long getMemorySize() {
+			long size = length() * 8;
+			if(probCodes != null)
+				size += probCodes.length * 4;
+			if(boCodes != null)
+				size += boCodes.length * 4;
+
+			return size;
+		}
+
+		int word(int i) {
+			return (int) bits.read((long) i * recordBits, wordBits);
+		}
+
+		float prob(int i) {
+			long code = bits.read((long) i * recordBits + wordBits, probBits);
+			return decode(code, probBits, probCodes, Float.NaN);
+		}
+
+		float bo(int i) {
+			if(boBits == 0)
+				return 0.0f;
+
+			long code = bits.read((long) i * recordBits + wordBits + probBits, boBits);
+			return decode(code, boBits, boCodes, 0.0f);
+		}
+
+		int pointer(int i) {
+			return (int) bits.read((long) i * recordBits + wordBits + probBits + boBits, pointerBits);
+		}
+
+		void set(int i, int word, float prob, float bo, int pointer) {
+			long position = (long) i * recordBits;
+			bits.write(position, wordBits, word);
+			position += wordBits;
+			bits.write(position, probBits, encode(prob, probBits, probCodes, Float.isNaN(prob)));
+			position += probBits;
+			bits.write(position, boBits, encode(bo, boBits, boCodes, bo == 0.0f));
+			position += boBits;
+			bits.write(position, pointerBits, pointer);
+		}
+
+		private static float decode(long code, int width, float[] codes, float reserved) {
+			if(codes == null)
+				return Float.intBitsToFloat((int) code);
+
+			return code == (1L << width) - 1 ? reserved : codes[(int) code];
+		}
+
+		/**
+		 * 返回与值最接近的码本下标
+		 */
+		private static long encode(float value, int width, float[] codes, boolean reserved) {
+			if(codes == null)
+				return Float.floatToRawIntBits(value) & 0xFFFFFFFFL;
+
+			if(reserved)
+				return (1L << width) - 1;
+
+			int index = Arrays.binarySearch(codes, value);
+			if(index >= 0)
+				return index;
+
+			index = -index - 1;
+			if(index == codes.length || (index > 0 && value - codes[index - 1] <= codes[index] - value))
+				return index - 1;
+
+			return index;
+		}
+
+		/**
+		 * 建立等频码本，每个区间取中位数，最后一个下标保留
+		 * @param values	待量化的值
+		 * @param bits		量化位数
+		 * @param nan		true-跳过NaN（概率）；false-跳过0（回退权重）
+		 * @return 码本
+		 */
+		static float[] codebook(float[] values, int bits, boolean nan) {
+			float[] sorted = new float[values.length];
+			int length = 0;
+			for(float value : values)
+				if(nan ? !Float.isNaN(value) : value != 0.0f)
+					sorted[length++] = value;
+			Arrays.sort(sorted, 0, length);
+
+			int size = (int) Math.min(length, (1L << bits) - 1);
+			float[] codes = new float[size];
+			for(int c = 0; c < size; c++) {
+				long from = (long) c * length / size;
+				long to = (long) (c + 1) * length / size;
+				codes[c] = sorted[(int) ((from + to - 1) / 2)];
+			}
+
+			return codes;
+		}
+
+		void writeHeader(DataOutputStream dos) throws IOException {
+			dos.writeInt(count);
+			dos.writeInt(wordBits);
+			dos.writeInt(probBits);
+			dos.writeInt(boBits);
+			dos.writeInt(pointerBits);
+			writeCodes(dos, probCodes);
+			writeCodes(dos, boCodes);
+			dos.writeLong(length());
+		}
+
+		static Level readHeader(DataInputStream dis) throws IOException {
+			int count = dis.readInt();
+			int wordBits = dis.readInt();
+			int probBits = dis.readInt();
+			int boBits = dis.readInt();
+			int pointerBits = dis.readInt();
+			float[] probCodes = readCodes(dis);
+			float[] boCodes = readCodes(dis);
+
+			return new Level(count, wordBits, probBits, boBits, pointerBits, probCodes, boCodes);
+		}
+
+		private static void writeCodes(DataOutputStream dos, float[] codes) throws IOException {
+			if(codes == null) {
+				dos.writeInt(-1);
+			}else {
+				dos.writeInt(codes.length);
+				for(float code : codes)
+					dos.writeFloat(code);
+			}
+		}
+
+		private static float[] readCodes(DataInputStream dis) throws IOException {
+			int length = dis.readInt();
+			if(length < 0)
+				return null;
+
+			float[] codes = new float[length];
+			for(int i = 0; i < length; i++)
+				codes[i] = dis.readFloat();
+
+			return codes;
+		}
+	}
+
+	/**
+	 *<ul>
+	 *<li>Description: 按位读写的存储，分页存放在堆内数组或内存映射的缓冲区中
+	 *</ul>
+	 */
+	private static class Bits {
+
+		private LongBuffer[] pages;
+
+		private Bits(LongBuffer[] pages) {
+			this.pages = pages;
+		}
+
+		/**
+		 * 在堆内分配存储
+		 * @param length long的数量
+		 */
+		static Bits allocate(long length) {
+			LongBuffer[] pages = new LongBuffer[(int) ((length + PAGE_SIZE - 1) >>> PAGE_BITS)];
+			for(int i = 0; i < pages.length; i++)
+				pages[i] = LongBuffer.wrap(new long[(int) Math.min(PAGE_SIZE, length - ((long) i << PAGE_BITS))]);
+
+			return new Bits(pages);
+		}
+
+		/**
+		 * 以只读方式映射文件中的存储
+		 * @param channel	文件通道
+		 * @param offset	起始位置
+		 * @param length	long的数量
+		 */
+		static Bits map(FileChannel channel, long offset, long length) throws IOException {
+			LongBuffer[] pages = new LongBuffer[(int) ((length + PAGE_SIZE - 1) >>> PAGE_BITS)];
+			for(int i = 0; i < pages.length; i++) {
+				long size = Math.min(PAGE_SIZE, length - ((long) i << PAGE_BITS));
+				pages[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + ((long) i << (PAGE_BITS + 3)), size * 8).asLongBuffer();
+			}
+
+			return new Bits(pages);
+		}
+
+		private long get(long index) {
+			return pages[(int) (index >>> PAGE_BITS)].get((int) (index & (PAGE_SIZE - 1)));
+		}
+
+		private void set(long index, long value) {
+			pages[(int) (index >>> PAGE_BITS)].put((int) (index & (PAGE_SIZE - 1)), value);
+		}
+
+		/**
+		 * 读取从position开始的width位（width不超过64）
+		 */
+		long read(long position, int width) {
+			if(width == 0)
+				return 0;
+
+			long index = position >>> 6;
+			int shift = (int) (position & 63);
+			long value = get(index) >>> shift;
+			if(shift + width > 64)
+				value |= get(index + 1) << (64 - shift);
+
+			return width == 64 ? value : value & ((1L << width) - 1);
+		}
+
+		/**
+		 * 将value的低width位写入从position开始的位置
+		 */
+		void write(long position, int width, long value) {
+			if(width == 0)
+				return;
+
+			long mask = width == 64 ? -1L : (1L << width) - 1;
+			value &= mask;
+			long index = position >>> 6;
+			int shift = (int) (position & 63);
+			set(index, (get(index) & ~(mask << shift)) | (value << shift));
+			if(shift + width > 64) {
+				int rest = 64 - shift;
+				set(index + 1, (get(index + 1) & ~(mask >>> rest)) | (value >>> rest));
+			}
+		}
+
+		void write(DataOutputStream dos) throws IOException {
+			for(LongBuffer page : pages)
+				for(int i = 0; i < page.capacity(); i++)
+					dos.writeLong(page.get(i));
+		}
+	}
+
+	/**
+	 *<ul>
+	 *<li>Description: 逐个加入n元及其概率与回退权重，建立前缀树n元模型
+	 *<li>高阶n元的前缀不在模型中时，以空节点（概率为NaN，回退权重为0）补齐
+	 *</ul>
+	 */
+	public static class Builder {
+
+		private int n;
+
+		private String smooth;
+
+		private Vocabulary vocabulary;
+
+		/**
+		 * 每阶n元的元编号（每个n元占连续的k个），概率与回退权重
+		 */
+		private int[][] words;
+
+		private float[][] probs;
+
+		private float[][] bos;
+
+		private int[] counts;
+
+		/**
+		 * @param n		最大的n元长度
+		 * @param smooth	模型中使用的平滑方法
+		 */
+		public Builder(int n, String smooth) {
+			if(n < 1)
+				throw new IllegalArgumentException("n元长度必须为正数: " + n);
+
+			this.n = n;
+			this.smooth = smooth;
+			this.vocabulary = new Vocabulary();
+			this.words = new int[n][];
+			this.probs = new float[n][];
+			this.bos = new float[n][];
+			this.counts = new int[n];
+			for(int k = 0; k < n; k++) {
+				words[k] = new int[16 * (k + 1)];
+				probs[k] = new float[16];
+				bos[k] = new float[16];
+			}
+		}
+
+		/**
+		 * 加入n元
+		 * @param grams		n元中的元
+		 * @param logProb	概率的对数
+		 * @param logBo		回退权重的对数
+		 */
+		public void add(Gram[] grams, double logProb, double logBo) {
+			if(grams.length < 1 || grams.length > n)
+				throw new IllegalArgumentException("n元长度超出范围: " + grams.length);
+
+			int[] ids = new int[grams.length];
+			for(int i = 0; i < grams.length; i++) {
+				vocabulary.add(grams[i]);
+				ids[i] = vocabulary.getId(grams[i]);
+			}
+
+			append(grams.length - 1, ids, (float) logProb, (float) logBo);
+		}
+
+		private void append(int k, int[] ids, float prob, float bo) {
+			int count = counts[k];
+			if(count == probs[k].length) {
+				int capacity = count * 2;
+				words[k] = Arrays.copyOf(words[k], capacity * (k + 1));
+				probs[k] = Arrays.copyOf(probs[k], capacity);
+				bos[k] = Arrays.copyOf(bos[k], capacity);
+			}
+
+			System.arraycopy(ids, 0, words[k], count * (k + 1), k + 1);
+			probs[k][count] = prob;
+			bos[k][count] = bo;
+			counts[k]++;
+		}
+
+		/**
+		 * 按元编号序列的字典序对第k阶排序，排序的是基本类型的下标数组，不装箱
+		 */
+		private void sort(int k) {
+			int width = k + 1;
+			int[] w = words[k];
+			int[] order = new int[counts[k]];
+			for(int i = 0; i < order.length; i++)
+				order[i] = i;
+
+			sortOrder(order, new int[order.length], 0, order.length, w, width);
+
+			int[] sortedWords = new int[order.length * width];
+			float[] sortedProbs = new float[order.length];
+			float[] sortedBos = new float[order.length];
+			for(int i = 0; i < order.length; i++) {
+				System.arraycopy(w, order[i] * width, sortedWords, i * width, width);
+				sortedProbs[i] = probs[k][order[i]];
+				sortedBos[i] = bos[k][order[i]];
+			}
+
+			words[k] = sortedWords;
+			probs[k] = sortedProbs;
+			bos[k] = sortedBos;
+		}
+
+		/**
+		 * 按下标对应的元编号序列对order[from, to)归并排序，相同的序列保持原有顺序
+		 * @param order		下标数组
+		 * @param buffer	与order等长的缓冲区
+		 * @param from		开始位置
+		 * @param to		结束位置(不含)
+		 * @param w			元编号序列
+		 * @param width		每个序列的长度
+		 */
+		private static void sortOrder(int[] order, int[] buffer, int from, int to, int[] w, int width) {
+			if(to - from <= 16) {
+				for(int i = from + 1; i < to; i++) {
+					int index = order[i];
+					int j = i - 1;
+					while(j >= from && compareIds(w, order[j] * width, w, index * width, width) > 0) {
+						order[j + 1] = order[j];
+						j--;
+					}
+					order[j + 1] = index;
+				}
+
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			sortOrder(order, buffer, from, mid, w, width);
+			sortOrder(order, buffer, mid, to, w, width);
+			if(compareIds(w, order[mid - 1] * width, w, order[mid] * width, width) <= 0)
+				return;
+
+			System.arraycopy(order, from, buffer, from, to - from);
+			int i = from;
+			int j = mid;
+			for(int p = from; p < to; p++) {
+				if(j >= to || (i < mid && compareIds(w, buffer[i] * width, w, buffer[j] * width, width) <= 0))
+					order[p] = buffer[i++];
+				else
+					order[p] = buffer[j++];
+			}
+		}
+
+		private static int compareIds(int[] a, int aOffset, int[] b, int bOffset, int length) {
+			for(int i = 0; i < length; i++) {
+				int c = Integer.compare(a[aOffset + i], b[bOffset + i]);
+				if(c != 0)
+					return c;
+			}
+
+			return 0;
+		}
+
+		/**
+		 * 建立模型
+		 * @param quantizationBits	二元及以上概率与回退权重的量化位数，0表示按32位浮点数存储
+		 * @return 前缀树n元模型
+		 */
+		public TrieLanguageModel build(int quantizationBits) {
+			if(quantizationBits != 0 && (quantizationBits < 2 || quantizationBits > 24))
+				throw new IllegalArgumentException("量化位数必须为0或2~24: " + quantizationBits);
+
+			// 从高阶到低阶补齐缺失的前缀
+			for(int k = n - 1; k > 0; k--) {
+				sort(k);
+				sort(k - 1);
+				int parents = counts[k - 1];
+				int[] parentWords = words[k - 1];
+				int p = 0;
+				int[] last = null;
+				for(int i = 0; i < counts[k]; i++) {
+					int offset = i * (k + 1);
+					while(p < parents && compareIds(parentWords, p * k, words[k], offset, k) < 0)
+						p++;
+					if(p < parents && compareIds(parentWords, p * k, words[k], offset, k) == 0)
+						continue;
+					if(last != null && compareIds(last, 0, words[k], offset, k) == 0)
+						continue;
+
+					last = Arrays.copyOfRange(words[k], offset, offset + k);
+					append(k - 1, last, Float.NaN, 0.0f);
+				}
+			}
+
+			// 一元按编号直接索引
+			int numIds = vocabulary.getNumIds();
+			float[] unigramProbs = new float[numIds];
+			float[] unigramBos = new float[numIds];
+			Arrays.fill(unigramProbs, Float.NaN);
+			for(int i = 0; i < counts[0]; i++) {
+				unigramProbs[words[0][i]] = probs[0][i];
+				unigramBos[words[0][i]] = bos[0][i];
+			}
+			words[0] = new int[numIds];
+			for(int i = 0; i < numIds; i++)
+				words[0][i] = i;
+			probs[0] = unigramProbs;
+			bos[0] = unigramBos;
+			counts[0] = numIds;
+
+			Level[] levels = new Level[n];
+			for(int k = 0; k < n; k++) {
+				boolean quantized = quantizationBits > 0 && k > 0;
+				boolean highest = k == n - 1;
+				float[] values = Arrays.copyOf(probs[k], counts[k]);
+				float[] probCodes = quantized ? Level.codebook(values, quantizationBits, true) : null;
+				float[] boCodes = quantized && !highest ? Level.codebook(Arrays.copyOf(bos[k], counts[k]), quantizationBits, false) : null;
+
+				int valueBits = quantized ? quantizationBits : 32;
+				Level level = new Level(counts[k], k == 0 ? 0 : bitsFor(numIds - 1), valueBits,
+						highest ? 0 : valueBits, highest ? 0 : bitsFor(counts[k + 1]), probCodes, boCodes);
+				level.bits = Bits.allocate(level.length());
+
+				// 子节点指针为下一阶中第一个前缀不小于该节点的位置
+				int child = 0;
+				for(int i = 0; i < counts[k]; i++) {
+					if(!highest) {
+						while(child < counts[k + 1] && compareIds(words[k + 1], child * (k + 2), words[k], i * (k + 1), k + 1) < 0)
+							child++;
+					}
+					level.set(i, words[k][i * (k + 1) + k], probs[k][i], bos[k][i], child);
+				}
+				if(!highest)
+					level.set(counts[k], 0, Float.NaN, 0.0f, counts[k + 1]);
+
+				levels[k] = level;
+			}
+
+			return new TrieLanguageModel(vocabulary, smooth, quantizationBits, levels);
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package com.lc.nlp4han.ml.ngram.model;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 import com.lc.nlp4han.ml.ngram.utils.Gram;
 import com.lc.nlp4han.ml.ngram.utils.GramSentenceStream;
@@ -12,6 +14,7 @@ import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
 /**
  *<ul>
  *<li>Description: 字典类，用户给定字典文件建立字典类，用于判断训练语料中的未登录词(oov) 
+ *<li>字典中的元按加入的顺序从0开始编号，编号可用于紧凑的模型存储
  *<li>Company: HUST
  *<li>@author Sonly
  *<li>Date: 2017年9月5日
@@ -19,27 +22,36 @@ import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
  */
 public class Vocabulary {
 	
-	private HashSet<Gram> vocabulary;
+	private HashMap<Gram, Integer> vocabulary;
+	
+	/**
+	 * 按编号排列的元
+	 */
+	private List<Gram> grams;
 		
 	public Vocabulary() {
-		this.vocabulary = new HashSet<>();
+		this.vocabulary = new HashMap<>();
+		this.grams = new ArrayList<>();
 		add(PseudoWord.oov);
 	}
 	
 	public Vocabulary(GramStream vocab) throws IOException {
-		this.vocabulary = new HashSet<>();
+		this.vocabulary = new HashMap<>();
+		this.grams = new ArrayList<>();
 		establishVocab(vocab);
 		add(PseudoWord.oov);
 	}
 	
 	public Vocabulary(GramSentenceStream vocab) throws IOException {
-		this.vocabulary = new HashSet<>();
+		this.vocabulary = new HashMap<>();
+		this.grams = new ArrayList<>();
 		establishVocab(vocab);
 		add(PseudoWord.oov);
 	}
 	
 	public Vocabulary(Gram[] vocab, boolean isSentence) {
-		this.vocabulary = new HashSet<>();
+		this.vocabulary = new HashMap<>();
+		this.grams = new ArrayList<>();
 		establishVocab(vocab);
 		add(PseudoWord.oov);
 	}
@@ -53,8 +65,10 @@ public class Vocabulary {
 	 * @param gram 待添加的元
 	 */
 	public void add(Gram gram) {
-		if(!vocabulary.contains(gram))
-			vocabulary.add(gram);
+		if(!vocabulary.containsKey(gram)) {
+			vocabulary.put(gram, grams.size());
+			grams.add(gram);
+		}
 	}
 	
 	/**
@@ -71,7 +85,34 @@ public class Vocabulary {
 	 * @return 在-true/不在-false
 	 */
 	public boolean contains(Gram gram) {
-		return vocabulary.contains(gram);
+		return vocabulary.containsKey(gram);
+	}
+	
+	/**
+	 * 返回元的编号
+	 * @param gram 元
+	 * @return 元的编号，不在字典中时返回-1
+	 */
+	public int getId(Gram gram) {
+		Integer id = vocabulary.get(gram);
+		return id == null ? -1 : id;
+	}
+	
+	/**
+	 * 返回给定编号的元
+	 * @param id 元的编号
+	 * @return 元
+	 */
+	public Gram getGram(int id) {
+		return grams.get(id);
+	}
+	
+	/**
+	 * 返回字典中元的数量，包括<unk>和句子边界
+	 * @return 编号的数量
+	 */
+	public int getNumIds() {
+		return grams.size();
 	}
 	
 	/**
@@ -82,7 +123,7 @@ public class Vocabulary {
 	private void establishVocab(GramStream stream) throws IOException {
 		Gram gram = null;
 		while((gram = stream.next()) != null) {
-			if(!vocabulary.contains(gram))
+			if(!vocabulary.containsKey(gram))
 				add(gram);
 		}
 	}
@@ -96,7 +137,7 @@ public class Vocabulary {
 		Gram[] grams = null;
 		while((grams = stream.nextSentence()) != null) {
 			for(Gram gram : grams)
-				if(!vocabulary.contains(gram))
+				if(!vocabulary.containsKey(gram))
 					add(gram);
 		}
 		add(PseudoWord.End);
@@ -109,7 +150,7 @@ public class Vocabulary {
 	 */
 	private void establishVocab(Gram[] grams) {
 		for(Gram gram: grams) {
-			if(!vocabulary.contains(gram))
+			if(!vocabulary.containsKey(gram))
 				add(gram);
 		}
 	}
@@ -9,6 +9,7 @@ import java.util.Map;
 import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.Context;
 import com.lc.nlp4han.ml.model.EvalParameters;
+import com.lc.nlp4han.ml.model.FeatureIndex;
 
 
 public class PerceptronModel extends AbstractModel {
@@ -18,6 +19,12 @@ public class PerceptronModel extends AbstractModel {
     modelType = ModelType.Perceptron;
   }
 
+  public PerceptronModel(Context[] params, String[] predLabels, Map<String, Integer> pmap, String[] outcomeNames,
+      FeatureIndex featureIndex) {
+    super(params,predLabels,pmap,outcomeNames,featureIndex);
+    modelType = ModelType.Perceptron;
+  }
+
   public PerceptronModel(Context[] params, String[] predLabels, String[] outcomeNames) {
     super(params,predLabels,outcomeNames);
     modelType = ModelType.Perceptron;
@@ -45,6 +52,11 @@ public class PerceptronModel extends AbstractModel {
     return eval(scontexts,values,outsums,evalParams,true);
   }
 
+  public double[] eval(int[] predIds, double[] outsums) {
+    java.util.Arrays.fill(outsums, 0);
+    return eval(predIds,null,outsums,evalParams,true);
+  }
+
   public static double[] eval(int[] context, double[] prior, EvalParameters model) {
     return eval(context,null,prior,model,true);
   }
@@ -71,26 +83,43 @@ public class PerceptronModel extends AbstractModel {
     }
     
     if (normalize) {
-      int numOutcomes = model.getNumOutcomes();
+      normalize(prior, model.getNumOutcomes());
+    }
+    
+    return prior;
+  }
 
-      double maxPrior = 1;
+  /**
+   * Evaluates many contexts given as predicate ids, the parameters of predicates
+   * which occur with every outcome are summed in a plain loop over the outcomes.
+   */
+  @Override
+  public double[][] evalBatch(int[][] predIds, double[][] outsums) {
+    outsums = batchOutput(predIds.length, outsums);
+    for (int i = 0; i < predIds.length; i++) {
+      java.util.Arrays.fill(outsums[i], 0);
+      evalParams.sum(predIds[i], null, outsums[i], null);
+      normalize(outsums[i], evalParams.getNumOutcomes());
+    }
+    return outsums;
+  }
 
-      for (int oid = 0; oid < numOutcomes; oid++) {
-        if (maxPrior < Math.abs(prior[oid]))
-          maxPrior = Math.abs(prior[oid]);
-      }
+  private static void normalize(double[] prior, int numOutcomes) {
+    double maxPrior = 1;
 
-      double normal = 0.0;
-      for (int oid = 0; oid < numOutcomes; oid++) {
-        prior[oid] = Math.exp(prior[oid]/maxPrior);
-        normal += prior[oid];
-      }
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      if (maxPrior < Math.abs(prior[oid]))
+        maxPrior = Math.abs(prior[oid]);
+    }
 
-      for (int oid = 0; oid < numOutcomes; oid++)
-        prior[oid] /= normal;
+    double normal = 0.0;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      prior[oid] = Math.exp(prior[oid]/maxPrior);
+      normal += prior[oid];
     }
-    
-    return prior;
+
+    for (int oid = 0; oid < numOutcomes; oid++)
+      prior[oid] /= normal;
   }
 
   public static void main(String[] args) throws java.io.IOException {
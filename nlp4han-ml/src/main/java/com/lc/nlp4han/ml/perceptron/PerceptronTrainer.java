@@ -1,12 +1,22 @@
 package com.lc.nlp4han.ml.perceptron;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.DataIndexer;
 import com.lc.nlp4han.ml.model.EvalParameters;
 import com.lc.nlp4han.ml.model.MutableContext;
 import com.lc.nlp4han.ml.util.AbstractEventTrainer;
+import com.lc.nlp4han.ml.util.TrainingMonitor;
+import com.lc.nlp4han.ml.util.TrainingParameters;
 
 /**
  * Trains models using the perceptron algorithm.  Each outcome is represented as
@@ -14,7 +24,12 @@ import com.lc.nlp4han.ml.util.AbstractEventTrainer;
  * average weighting as described in:
  * Discriminative Training Methods for Hidden Markov Models: Theory and Experiments
  * with the Perceptron Algorithm. Michael Collins, EMNLP 2002.
- *
+ * <p>
+ * With more than one thread the events are randomly split into one shard per
+ * thread, and each iteration trains a copy of the parameters on every shard and
+ * mixes them by averaging, as described in:
+ * Distributed Training Strategies for the Structured Perceptron.
+ * Ryan McDonald, Keith Hall and Gideon Mann, NAACL 2010.
  */
 public class PerceptronTrainer extends AbstractEventTrainer {
 
@@ -62,6 +77,13 @@ public class PerceptronTrainer extends AbstractEventTrainer {
 
   private boolean useSkippedlAveraging;
 
+  private int threads = 1;
+
+  private long seed;
+
+  /** Receives the metrics of the iterations, the objective is the number of misclassified events. */
+  private TrainingMonitor monitor;
+
   public PerceptronTrainer() {
   }
 
@@ -104,6 +126,9 @@ public class PerceptronTrainer extends AbstractEventTrainer {
 
     this.setTolerance(tolerance);
 
+    this.setThreads(getIntParam(TrainingParameters.THREADS_PARAM, 1));
+    this.seed = getIntParam(TrainingParameters.SEED_PARAM, 0);
+
     model = this.trainModel(iterations, indexer, cutoff, useAverage);
 
     return model;
@@ -162,6 +187,32 @@ public class PerceptronTrainer extends AbstractEventTrainer {
     useSkippedlAveraging = averaging;
   }
 
+  /**
+   * Sets the number of threads. With more than one thread the parameters are
+   * trained with iterative parameter mixing.
+   *
+   * @param threads the number of threads
+   */
+  public void setThreads(int threads) {
+
+    if (threads < 1) {
+      throw new
+          IllegalArgumentException("threads must be at least one but is " + threads + "!");
+    }
+
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the seed of the random split of the events into shards, the result of
+   * a multi-threaded training only depends on the seed and the number of threads.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
   public AbstractModel trainModel(int iterations, DataIndexer di, int cutoff) {
     return trainModel(iterations,di,cutoff,true);
   }
@@ -199,7 +250,12 @@ public class PerceptronTrainer extends AbstractEventTrainer {
 
   private MutableContext[] findParameters (int iterations, boolean useAverage) {
 
-    display("Performing " + iterations + " iterations.\n");
+    if (threads == 1)
+      display("Performing " + iterations + " iterations.\n");
+    else
+      display("Performing " + iterations + " iterations in " + threads + " threads.\n");
+
+    monitor = createTrainingMonitor(threads);
 
     int[] allOutcomesPattern= new int[numOutcomes];
     for (int oi = 0; oi < numOutcomes; oi++)
@@ -235,86 +291,70 @@ public class PerceptronTrainer extends AbstractEventTrainer {
     // A counter for the denominator for averaging.
     int numTimesSummed = 0;
 
+    int[][] shards = shardEvents();
+    ExecutorService executor = null;
+    List<ShardTrainingTask> tasks = new ArrayList<>();
+    if (shards.length > 1) {
+      executor = Executors.newFixedThreadPool(shards.length);
+      for (int[] shard : shards)
+        tasks.add(new ShardTrainingTask(shard, params));
+    }
+
     double stepsize = 1;
-    for (int i = 1; i <= iterations; i++) {
-
-      // Decrease the stepsize by a small amount.
-      if (stepSizeDecrease != null)
-        stepsize *= 1 - stepSizeDecrease;
-
-      displayIteration(i);
-
-      int numCorrect = 0;
-
-      for (int ei = 0; ei < numUniqueEvents; ei++) {
-        int targetOutcome = outcomeList[ei];
-
-        for (int ni = 0; ni < this.numTimesEventsSeen[ei]; ni++) {
-
-          // Compute the model's prediction according to the current parameters.
-          double[] modelDistribution = new double[numOutcomes];
-          if (values != null)
-            PerceptronModel.eval(contexts[ei], values[ei], modelDistribution, evalParams, false);
-          else
-            PerceptronModel.eval(contexts[ei], null, modelDistribution, evalParams, false);
-
-          int maxOutcome = maxIndex(modelDistribution);
-
-          // If the predicted outcome is different from the target
-          // outcome, do the standard update: boost the parameters
-          // associated with the target and reduce those associated
-          // with the incorrect predicted outcome.
-          if (maxOutcome != targetOutcome) {
-            for (int ci = 0; ci < contexts[ei].length; ci++) {
-              int pi = contexts[ei][ci];
-              if (values == null) {
-                params[pi].updateParameter(targetOutcome, stepsize);
-                params[pi].updateParameter(maxOutcome, -stepsize);
-              } else {
-                params[pi].updateParameter(targetOutcome, stepsize * values[ei][ci]);
-                params[pi].updateParameter(maxOutcome, -stepsize * values[ei][ci]);
-              }
-            }
-          }
+    try {
+      for (int i = 1; i <= iterations; i++) {
 
-          // Update the counts for accuracy.
-          if (maxOutcome == targetOutcome)
-            numCorrect++;
-        }
-      }
+        // Decrease the stepsize by a small amount.
+        if (stepSizeDecrease != null)
+          stepsize *= 1 - stepSizeDecrease;
 
-      // Calculate the training accuracy and display.
-      double trainingAccuracy = (double) numCorrect / numEvents;
-      if (i < 10 || (i % 10) == 0)
-        display(". (" + numCorrect + "/" + numEvents + ") " + trainingAccuracy + "\n");
+        displayIteration(i);
+        monitor.startIteration();
 
-      // TODO: Make averaging configurable !!!
+        int numCorrect;
+        if (executor == null)
+          numCorrect = trainEvents(shards[0], params, evalParams, stepsize);
+        else
+          numCorrect = mixParameters(executor, tasks, params, stepsize);
 
-      boolean doAveraging;
+        // Calculate the training accuracy and display.
+        double trainingAccuracy = (double) numCorrect / numEvents;
+        monitor.iterationFinished(i, numEvents, numEvents - numCorrect, Double.NaN, trainingAccuracy);
+        if (i < 10 || (i % 10) == 0)
+          display(". (" + numCorrect + "/" + numEvents + ") " + trainingAccuracy + "\n");
 
-      doAveraging = useAverage && useSkippedlAveraging && (i < 20 || isPerfectSquare(i)) || useAverage;
+        // TODO: Make averaging configurable !!!
 
-      if (doAveraging) {
-        numTimesSummed++;
-        for (int pi = 0; pi < numPreds; pi++)
-          for (int aoi = 0; aoi < numOutcomes; aoi++)
-            summedParams[pi].updateParameter(aoi, params[pi].getParameters()[aoi]);
-      }
+        boolean doAveraging;
 
-      // If the tolerance is greater than the difference between the
-      // current training accuracy and all of the previous three
-      // training accuracies, stop training.
-      if (Math.abs(prevAccuracy1 - trainingAccuracy) < tolerance
-        && Math.abs(prevAccuracy2 - trainingAccuracy) < tolerance
-        && Math.abs(prevAccuracy3 - trainingAccuracy) < tolerance) {
-        display("Stopping: change in training set accuracy less than " + tolerance + "\n");
-        break;
-      }
+        doAveraging = useAverage && useSkippedlAveraging && (i < 20 || isPerfectSquare(i)) || useAverage;
 
-      // Update the previous training accuracies.
-      prevAccuracy1 = prevAccuracy2;
-      prevAccuracy2 = prevAccuracy3;
-      prevAccuracy3 = trainingAccuracy;
+        if (doAveraging) {
+          numTimesSummed++;
+          for (int pi = 0; pi < numPreds; pi++)
+            for (int aoi = 0; aoi < numOutcomes; aoi++)
+              summedParams[pi].updateParameter(aoi, params[pi].getParameters()[aoi]);
+        }
+
+        // If the tolerance is greater than the difference between the
+        // current training accuracy and all of the previous three
+        // training accuracies, stop training.
+        if (Math.abs(prevAccuracy1 - trainingAccuracy) < tolerance
+          && Math.abs(prevAccuracy2 - trainingAccuracy) < tolerance
+          && Math.abs(prevAccuracy3 - trainingAccuracy) < tolerance) {
+          display("Stopping: change in training set accuracy less than " + tolerance + "\n");
+          break;
+        }
+
+        // Update the previous training accuracies.
+        prevAccuracy1 = prevAccuracy2;
+        prevAccuracy2 = prevAccuracy3;
+        prevAccuracy3 = trainingAccuracy;
+      }
+    }
+    finally {
+      if (executor != null)
+        executor.shutdown();
     }
 
     // Output the final training stats.
@@ -336,6 +376,158 @@ public class PerceptronTrainer extends AbstractEventTrainer {
 
   }
 
+  /**
+   * Trains the parameters on the given events in the given order.
+   *
+   * @return the number of events which were predicted correctly before the update
+   */
+  private int trainEvents(int[] events, MutableContext[] params, EvalParameters evalParams, double stepsize) {
+    int numCorrect = 0;
+
+    for (int ei : events) {
+      int targetOutcome = outcomeList[ei];
+
+      for (int ni = 0; ni < this.numTimesEventsSeen[ei]; ni++) {
+
+        // Compute the model's prediction according to the current parameters.
+        double[] modelDistribution = new double[numOutcomes];
+        if (values != null)
+          PerceptronModel.eval(contexts[ei], values[ei], modelDistribution, evalParams, false);
+        else
+          PerceptronModel.eval(contexts[ei], null, modelDistribution, evalParams, false);
+
+        int maxOutcome = maxIndex(modelDistribution);
+
+        // If the predicted outcome is different from the target
+        // outcome, do the standard update: boost the parameters
+        // associated with the target and reduce those associated
+        // with the incorrect predicted outcome.
+        if (maxOutcome != targetOutcome) {
+          for (int ci = 0; ci < contexts[ei].length; ci++) {
+            int pi = contexts[ei][ci];
+            if (values == null) {
+              params[pi].updateParameter(targetOutcome, stepsize);
+              params[pi].updateParameter(maxOutcome, -stepsize);
+            } else {
+              params[pi].updateParameter(targetOutcome, stepsize * values[ei][ci]);
+              params[pi].updateParameter(maxOutcome, -stepsize * values[ei][ci]);
+            }
+          }
+        }
+
+        // Update the counts for accuracy.
+        if (maxOutcome == targetOutcome)
+          numCorrect++;
+      }
+    }
+
+    return numCorrect;
+  }
+
+  /**
+   * Splits the events into one shard per thread. A single shard keeps the
+   * order of the events, otherwise the events are shuffled with the seed.
+   */
+  private int[][] shardEvents() {
+    int[] order = new int[numUniqueEvents];
+    for (int ei = 0; ei < numUniqueEvents; ei++)
+      order[ei] = ei;
+
+    int numShards = Math.max(1, Math.min(threads, numUniqueEvents));
+    if (numShards == 1)
+      return new int[][] {order};
+
+    Random random = new Random(seed);
+    for (int i = order.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+
+    int[][] shards = new int[numShards][];
+    for (int s = 0; s < numShards; s++) {
+      int start = (int) ((long) numUniqueEvents * s / numShards);
+      int end = (int) ((long) numUniqueEvents * (s + 1) / numShards);
+      shards[s] = new int[end - start];
+      System.arraycopy(order, start, shards[s], 0, end - start);
+    }
+    return shards;
+  }
+
+  /**
+   * Trains a copy of the parameters on every shard in parallel and replaces
+   * the parameters with the average of the copies.
+   *
+   * @return the number of events which were predicted correctly on all shards
+   */
+  private int mixParameters(ExecutorService executor, List<ShardTrainingTask> tasks,
+      MutableContext[] params, double stepsize) {
+
+    int numCorrect = 0;
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (ShardTrainingTask task : tasks) {
+        task.stepsize = stepsize;
+        results.add(executor.submit(task));
+      }
+      for (Future<Integer> result : results)
+        numCorrect += result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interruption is not supported!", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Exception during training: " + e.getMessage(), e);
+    }
+
+    // mix the parameters in a fixed order, so that the result does not
+    // depend on the scheduling of the threads
+    for (int pi = 0; pi < numPreds; pi++) {
+      double[] mixed = params[pi].getParameters();
+      for (int oi = 0; oi < numOutcomes; oi++) {
+        double sum = 0;
+        for (ShardTrainingTask task : tasks)
+          sum += task.params[pi].getParameters()[oi];
+        mixed[oi] = sum / tasks.size();
+      }
+    }
+
+    return numCorrect;
+  }
+
+  /**
+   * Trains a copy of the mixed parameters on one shard of the events.
+   */
+  private class ShardTrainingTask implements Callable<Integer> {
+
+    private final int[] events;
+    private final MutableContext[] mixedParams;
+    private final MutableContext[] params;
+    private final EvalParameters evalParams;
+
+    private double stepsize;
+
+    ShardTrainingTask(int[] events, MutableContext[] mixedParams) {
+      this.events = events;
+      this.mixedParams = mixedParams;
+
+      params = new MutableContext[numPreds];
+      for (int pi = 0; pi < numPreds; pi++)
+        params[pi] = new MutableContext(mixedParams[pi].getOutcomes(), new double[numOutcomes]);
+      evalParams = new EvalParameters(params, numOutcomes);
+    }
+
+    public Integer call() {
+      long start = System.nanoTime();
+      for (int pi = 0; pi < numPreds; pi++)
+        System.arraycopy(mixedParams[pi].getParameters(), 0, params[pi].getParameters(), 0, numOutcomes);
+
+      int numCorrect = trainEvents(events, params, evalParams, stepsize);
+      monitor.addBusyTime(System.nanoTime() - start);
+      return numCorrect;
+    }
+  }
+
   private double trainingStats (EvalParameters evalParams) {
     int numCorrect = 0;
 
@@ -2,19 +2,28 @@ package com.lc.nlp4han.ml.perceptron;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.DataIndexer;
 import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.model.FeatureIndex;
 import com.lc.nlp4han.ml.model.MutableContext;
 import com.lc.nlp4han.ml.model.OnePassDataIndexer;
 import com.lc.nlp4han.ml.model.Sequence;
 import com.lc.nlp4han.ml.model.SequenceStream;
 import com.lc.nlp4han.ml.model.SequenceStreamEventStream;
 import com.lc.nlp4han.ml.util.AbstractEventModelSequenceTrainer;
+import com.lc.nlp4han.ml.util.TrainingParameters;
 
 /**
  * Trains models for sequences using the perceptron algorithm.  Each outcome is represented as
@@ -24,6 +33,12 @@ import com.lc.nlp4han.ml.util.AbstractEventModelSequenceTrainer;
  * with the Perceptron Algorithm. Michael Collins, EMNLP 2002.
  * Specifically only updates are applied to tokens which were incorrectly tagged by a sequence tagger
  * rather than to all feature across the sequence which differ from the training sequence.
+ * <p>
+ * With more than one thread the sequences are randomly split into one shard per thread,
+ * each iteration trains a copy of the parameters on every shard and mixes the copies by
+ * averaging (iterative parameter mixing). The averaged model is then the average of the
+ * mixed parameters over the iterations. The {@link SequenceStream#updateContext} method
+ * of the sequence stream is called by several threads in this case.
  */
 public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceTrainer {
 
@@ -51,6 +66,7 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
 
   /** Mapping between context and an integer */
   private Map<String, Integer> pmap;
+  private FeatureIndex featureIndex;
 
   private Map<String,Integer> omap;
 
@@ -66,6 +82,9 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
   private String[] predLabels;
   private int numSequences;
 
+  private int threads = 1;
+  private long seed;
+
   public SimplePerceptronSequenceTrainer() {
   }
 
@@ -87,9 +106,36 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
 
     boolean useAverage = getBooleanParam("UseAverage", true);
 
+    setThreads(getIntParam(TrainingParameters.THREADS_PARAM, 1));
+    setSeed(getIntParam(TrainingParameters.SEED_PARAM, 0));
+
     return trainModel(iterations, events, cutoff, useAverage);
   }
 
+  /**
+   * Sets the number of threads. With more than one thread the parameters are
+   * trained with iterative parameter mixing.
+   *
+   * @param threads the number of threads
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new
+          IllegalArgumentException("threads must be at least one but is " + threads + "!");
+    }
+
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the seed of the random split of the sequences into shards.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
   // << members related to AbstractSequenceTrainer
 
   public AbstractModel trainModel(int iterations, SequenceStream sequenceStream, int cutoff, boolean useAverage) throws IOException {
@@ -111,6 +157,9 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
     for (int i = 0; i < predLabels.length; i++) {
       pmap.put(predLabels[i], i);
     }
+    // the models built for every sequence share one index of the predicates
+    featureIndex = new FeatureIndex(pmap);
+    AbstractModel.warnCollisions(featureIndex);
     
     display("Incorporating indexed data for training...  \n");
     this.useAverage = useAverage;
@@ -156,7 +205,10 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
     modelDistribution = new double[numOutcomes];
 
     display("Computing model parameters...\n");
-    findParameters(iterations);
+    if (threads > 1 && numSequences > 1)
+      findMixedParameters(iterations);
+    else
+      findParameters(iterations);
     display("...done.\n");
 
     /* Create and return the model ****/
@@ -194,6 +246,173 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
     }
   }
 
+  private void findMixedParameters(int iterations) throws IOException {
+    List<Sequence> sequences = new ArrayList<>(numSequences);
+    sequenceStream.reset();
+    Sequence sequence;
+    while ((sequence = sequenceStream.read()) != null) {
+      sequences.add(sequence);
+    }
+
+    Collections.shuffle(sequences, new Random(seed));
+    int numShards = Math.min(threads, sequences.size());
+    List<MixingTask> tasks = new ArrayList<>(numShards);
+    for (int s = 0; s < numShards; s++) {
+      int start = sequences.size() * s / numShards;
+      int end = sequences.size() * (s + 1) / numShards;
+      tasks.add(new MixingTask(sequences.subList(start, end)));
+    }
+
+    display("Performing " + iterations + " iterations in " + numShards + " threads.\n");
+    ExecutorService executor = Executors.newFixedThreadPool(numShards);
+    try {
+      for (int i = 1; i <= iterations; i++) {
+        if (i < 10)
+          display("  " + i + ":  ");
+        else if (i < 100)
+          display(" " + i + ":  ");
+        else
+          display(i + ":  ");
+
+        int numCorrect = 0;
+        List<Future<Integer>> results = new ArrayList<>(numShards);
+        for (MixingTask task : tasks) {
+          results.add(executor.submit(task));
+        }
+        for (Future<Integer> result : results) {
+          numCorrect += result.get();
+        }
+
+        // mix in a fixed order, so that the result does not depend on the scheduling
+        for (int pi = 0; pi < numPreds; pi++) {
+          double[] mixed = params[pi].getParameters();
+          for (int oi = 0; oi < numOutcomes; oi++) {
+            double sum = 0;
+            for (MixingTask task : tasks) {
+              sum += task.params[pi].getParameters()[oi];
+            }
+            mixed[oi] = sum / numShards;
+            if (useAverage) {
+              averageParams[pi].updateParameter(oi, mixed[oi]);
+            }
+          }
+        }
+        display(". ("+numCorrect+"/"+numEvents+") "+((double) numCorrect / numEvents) + "\n");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interruption is not supported!", e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw new RuntimeException("Exception during training: " + e.getMessage(), e);
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    if (useAverage) {
+      for (int pi = 0; pi < numPreds; pi++) {
+        for (int oi = 0; oi < numOutcomes; oi++) {
+          averageParams[pi].setParameter(oi, averageParams[pi].getParameters()[oi] / iterations);
+        }
+      }
+      trainingStats(averageParams);
+    }
+    else {
+      trainingStats(params);
+    }
+  }
+
+  /**
+   * Trains a copy of the mixed parameters on one shard of the sequences.
+   */
+  private class MixingTask implements Callable<Integer> {
+
+    private final List<Sequence> sequences;
+    private final MutableContext[] params;
+    private final List<Map<String,Float>> featureCounts;
+
+    MixingTask(List<Sequence> sequences) {
+      this.sequences = sequences;
+      params = new MutableContext[numPreds];
+      for (int pi = 0; pi < numPreds; pi++) {
+        params[pi] = new MutableContext(allOutcomesPattern, new double[numOutcomes]);
+      }
+      featureCounts = new ArrayList<>(numOutcomes);
+      for (int oi = 0; oi < numOutcomes; oi++) {
+        featureCounts.add(new HashMap<String,Float>());
+      }
+    }
+
+    public Integer call() {
+      MutableContext[] mixed = SimplePerceptronSequenceTrainer.this.params;
+      for (int pi = 0; pi < numPreds; pi++) {
+        System.arraycopy(mixed[pi].getParameters(), 0, params[pi].getParameters(), 0, numOutcomes);
+      }
+
+      int numCorrect = 0;
+      PerceptronModel model = new PerceptronModel(params,predLabels,pmap,outcomeLabels,featureIndex);
+      for (Sequence sequence : sequences) {
+        Event[] taggerEvents = sequenceStream.updateContext(sequence, model);
+        Event[] events = sequence.getEvents();
+        boolean update = false;
+        for (int ei = 0; ei < events.length; ei++) {
+          if (!taggerEvents[ei].getOutcome().equals(events[ei].getOutcome()))
+            update = true;
+          else
+            numCorrect++;
+        }
+
+        if (update) {
+          countFeatures(events, taggerEvents, featureCounts);
+          for (int oi = 0; oi < numOutcomes; oi++) {
+            for (Map.Entry<String,Float> count : featureCounts.get(oi).entrySet()) {
+              Integer pi = pmap.get(count.getKey());
+              if (pi != null)
+                params[pi].updateParameter(oi, count.getValue());
+            }
+          }
+          model = new PerceptronModel(params,predLabels,pmap,outcomeLabels,featureIndex);
+        }
+      }
+      return numCorrect;
+    }
+  }
+
+  /**
+   * Counts the features of the training events positively and the features of
+   * the tagged events negatively.
+   */
+  private void countFeatures(Event[] events, Event[] taggerEvents, List<Map<String,Float>> featureCounts) {
+    for (int oi=0;oi<numOutcomes;oi++) {
+      featureCounts.get(oi).clear();
+    }
+    for (int ei=0;ei<events.length;ei++) {
+      addFeatures(events[ei], 1, featureCounts);
+      addFeatures(taggerEvents[ei], -1, featureCounts);
+    }
+  }
+
+  private void addFeatures(Event event, float sign, List<Map<String,Float>> featureCounts) {
+    String[] contextStrings = event.getContext();
+    float values[] = event.getValues();
+    Map<String,Float> counts = featureCounts.get(omap.get(event.getOutcome()));
+    for (int ci=0;ci<contextStrings.length;ci++) {
+      float value = values != null ? values[ci] : 1;
+      Float c = counts.get(contextStrings[ci]);
+      c = c == null ? sign * value : c + sign * value;
+      if (c == 0f) {
+        counts.remove(contextStrings[ci]);
+      }
+      else {
+        counts.put(contextStrings[ci], c);
+      }
+    }
+  }
+
   private void display(String s) {
     if (printMessages)
       System.out.print(s);
@@ -208,7 +427,7 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
     for (int oi=0;oi<numOutcomes;oi++) {
       featureCounts.add(new HashMap<String,Float>());
     }
-    PerceptronModel model = new PerceptronModel(params,predLabels,pmap,outcomeLabels);
+    PerceptronModel model = new PerceptronModel(params,predLabels,pmap,outcomeLabels,featureIndex);
 
     sequenceStream.reset();
 
@@ -296,7 +515,7 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
             }
           }
         }
-        model = new PerceptronModel(params,predLabels,pmap,outcomeLabels);
+        model = new PerceptronModel(params,predLabels,pmap,outcomeLabels,featureIndex);
       }
       si++;
     }
@@ -328,7 +547,7 @@ public class SimplePerceptronSequenceTrainer extends AbstractEventModelSequenceT
 
     Sequence sequence;
     while ((sequence = sequenceStream.read()) != null) {
-      Event[] taggerEvents = sequenceStream.updateContext(sequence, new PerceptronModel(params,predLabels,pmap,outcomeLabels));
+      Event[] taggerEvents = sequenceStream.updateContext(sequence, new PerceptronModel(params,predLabels,pmap,outcomeLabels,featureIndex));
       for (int ei=0;ei<taggerEvents.length;ei++,oei++) {
         int max = omap.get(taggerEvents[ei].getOutcome());
         if (max == outcomeList[oei]) {
@@ -0,0 +1,172 @@
+package com.lc.nlp4han.ml.util;
+
+/**
+ * 基于字符序列{@link CharSentence}的模板上下文产生器
+ *
+ * 特征代码直接读取字符数组中的字，不需要为每个字创建字符串。训练时事件流可直接传入样本的字符序列；
+ * 按字符串数组解码时，调用者可用{@link #bind(String[], CharSentence)}把数组绑定到其字符序列，
+ * 每个位置只比较数组的引用。未绑定的数组由每个线程缓存最近一次转换的结果，同一句子的各个位置只转换一次，
+ * 但每次调用都要逐字比较整个数组
+ */
+public abstract class AbstractCharContextGenerator extends AbstractTemplateContextGenerator
+{
+    /**
+     * 每个线程最近转换得到的字符序列，其字符数组为副本，不引用调用者的数组
+     */
+    private static final ThreadLocal<CharSentence> LAST = new ThreadLocal<CharSentence>();
+
+    /**
+     * 每个线程当前绑定的字符串数组及其字符序列
+     */
+    private static final ThreadLocal<Binding> BOUND = new ThreadLocal<Binding>()
+    {
+        @Override
+        protected Binding initialValue()
+        {
+            return new Binding();
+        }
+    };
+
+    private static final class Binding
+    {
+        private String[] tokens;
+
+        private CharSentence sentence;
+    }
+
+    /**
+     * 在当前线程中把字符串数组绑定到与其内容相同的字符序列，直到{@link #unbind()}为止
+     *
+     * 绑定期间按该数组调用getContext和getContextIds时直接使用绑定的字符序列，只比较数组的引用和长度。
+     * 解码器按字符串数组逐位置取特征，调用者应在解码前绑定、解码后在finally中解除绑定，绑定期间不能修改数组
+     *
+     * @param tokens 字符串数组
+     * @param sentence 与数组内容相同的字符序列
+     */
+    public static void bind(String[] tokens, CharSentence sentence)
+    {
+        if (sentence.length() != tokens.length)
+            throw new IllegalArgumentException("字符序列的长度" + sentence.length() + "与数组长度" + tokens.length + "不同");
+
+        Binding binding = BOUND.get();
+        binding.tokens = tokens;
+        binding.sentence = sentence;
+    }
+
+    /**
+     * 解除当前线程的绑定，不再引用调用者的数组
+     */
+    public static void unbind()
+    {
+        Binding binding = BOUND.get();
+        binding.tokens = null;
+        binding.sentence = null;
+    }
+
+    /**
+     * 得到字符序列中当前位置的上下文特征
+     *
+     * @param index 当前位置
+     * @param sentence 字符序列
+     * @param priorDecisions 之前的决策
+     * @param additionalContext 额外的上下文
+     * @return 上下文特征
+     */
+    public String[] getContext(int index, CharSentence sentence, String[] priorDecisions, Object[] additionalContext)
+    {
+        StringFeatureCollector features = new StringFeatureCollector();
+        collect(index, sentence, priorDecisions, additionalContext, features);
+
+        return features.toArray();
+    }
+
+    /**
+     * 得到字符序列中当前位置的上下文特征对应的模型谓词编号
+     *
+     * @param index 当前位置
+     * @param sentence 字符序列
+     * @param priorDecisions 之前的决策
+     * @param additionalContext 额外的上下文
+     * @param ids 绑定到模型的谓词编号收集器
+     * @return 模型已知的特征的谓词编号
+     */
+    public int[] getContextIds(int index, CharSentence sentence, String[] priorDecisions, Object[] additionalContext,
+            PredicateIdCollector ids)
+    {
+        ids.reset();
+        collect(index, sentence, priorDecisions, additionalContext, ids);
+
+        return ids.toArray();
+    }
+
+    @Override
+    protected void collect(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext,
+            FeatureCollector features)
+    {
+        collect(index, toCharSentence(sequence), priorDecisions, additionalContext, features);
+    }
+
+    /**
+     * 将当前位置的特征交给特征收集器
+     *
+     * @param index 当前位置
+     * @param sentence 字符序列
+     * @param priorDecisions 之前的决策
+     * @param additionalContext 额外的上下文
+     * @param features 特征收集器
+     */
+    protected abstract void collect(int index, CharSentence sentence, String[] priorDecisions,
+            Object[] additionalContext, FeatureCollector features);
+
+    /**
+     * 得到字符串数组对应的字符序列，绑定的数组直接使用其字符序列；
+     * 否则数组的每个字都与上次转换的字符序列相同时使用缓存
+     *
+     * 特征会读取当前位置前后的字，因此比较整个数组而不只是当前位置，比较不需要分配内存
+     */
+    private static CharSentence toCharSentence(String[] tokens)
+    {
+        Binding binding = BOUND.get();
+        if (binding.tokens == tokens && binding.sentence != null && binding.sentence.length() == tokens.length)
+            return binding.sentence;
+
+        CharSentence last = LAST.get();
+        if (last != null && sameUnits(last, tokens))
+            return last;
+
+        CharSentence sentence = CharSentence.of(tokens);
+        LAST.set(sentence);
+
+        return sentence;
+    }
+
+    private static boolean sameUnits(CharSentence sentence, String[] tokens)
+    {
+        if (sentence.length() != tokens.length)
+            return false;
+
+        for (int i = 0; i < tokens.length; i++)
+        {
+            if (!sameUnit(sentence, i, tokens[i]))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean sameUnit(CharSentence sentence, int index, String token)
+    {
+        int start = sentence.start(index);
+        if (sentence.end(index) - start != token.length())
+            return false;
+
+        char[] chars = sentence.getChars();
+        for (int k = 0; k < token.length(); k++)
+        {
+            if (chars[start + k] != token.charAt(k))
+                return false;
+        }
+
+        return true;
+    }
+}
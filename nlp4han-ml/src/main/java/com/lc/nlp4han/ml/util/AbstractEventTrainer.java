@@ -7,6 +7,7 @@ import com.lc.nlp4han.ml.model.DataIndexer;
 import com.lc.nlp4han.ml.model.Event;
 import com.lc.nlp4han.ml.model.HashSumEventStream;
 import com.lc.nlp4han.ml.model.OnePassDataIndexer;
+import com.lc.nlp4han.ml.model.ParallelDataIndexer;
 import com.lc.nlp4han.ml.model.TwoPassDataIndexer;
 
 
@@ -16,6 +17,10 @@ public abstract class AbstractEventTrainer extends AbstractTrainer implements
   public static final String DATA_INDEXER_PARAM = "DataIndexer";
   public static final String DATA_INDEXER_ONE_PASS_VALUE = "OnePass";
   public static final String DATA_INDEXER_TWO_PASS_VALUE = "TwoPass";
+  public static final String DATA_INDEXER_PARALLEL_VALUE = "Parallel";
+
+  /** The number of predicate ids the parallel data indexer keeps in memory before spilling to disk. */
+  public static final String DATA_INDEXER_BUDGET_PARAM = "DataIndexerBudget";
 
   public AbstractEventTrainer() {
   }
@@ -31,7 +36,7 @@ public abstract class AbstractEventTrainer extends AbstractTrainer implements
 
     if (dataIndexer != null) {
       if (!(DATA_INDEXER_ONE_PASS_VALUE.equals(dataIndexer) || DATA_INDEXER_TWO_PASS_VALUE
-          .equals(dataIndexer))) {
+          .equals(dataIndexer) || DATA_INDEXER_PARALLEL_VALUE.equals(dataIndexer))) {
         return false;
       }
     }
@@ -55,6 +60,11 @@ public abstract class AbstractEventTrainer extends AbstractTrainer implements
       indexer = new OnePassDataIndexer(events, cutoff, sortAndMerge);
     } else if (DATA_INDEXER_TWO_PASS_VALUE.equals(dataIndexerName)) {
       indexer = new TwoPassDataIndexer(events, cutoff, sortAndMerge);
+    } else if (DATA_INDEXER_PARALLEL_VALUE.equals(dataIndexerName)) {
+      int threads = getIntParam(TrainingParameters.THREADS_PARAM,
+          Runtime.getRuntime().availableProcessors());
+      int budget = getIntParam(DATA_INDEXER_BUDGET_PARAM, ParallelDataIndexer.DEFAULT_MEMORY_BUDGET);
+      indexer = new ParallelDataIndexer(events, cutoff, sortAndMerge, threads, budget, null);
     } else {
       throw new IllegalStateException("Unexpected data indexer name: "
           + dataIndexerName);
@@ -71,7 +81,10 @@ public abstract class AbstractEventTrainer extends AbstractTrainer implements
     }
 
     HashSumEventStream hses = new HashSumEventStream(events);
+    long start = System.nanoTime();
     DataIndexer indexer = getDataIndexer(hses);
+    createTrainingMonitor(getIntParam(TrainingParameters.THREADS_PARAM, 1))
+        .indexingFinished(System.nanoTime() - start, indexer.getNumEvents());
 
     ClassificationModel model = doTrain(indexer);
 
@@ -0,0 +1,51 @@
+package com.lc.nlp4han.ml.util;
+
+/**
+ * 通过特征收集器描述特征的上下文产生器
+ * 
+ * 同一份特征代码既产生训练和getContext()所需的特征字符串，也产生getContextIds()所需的模型谓词编号，
+ * 解码时据此直接评估模型，不再拼接特征字符串
+ */
+public abstract class AbstractTemplateContextGenerator extends AbstractStringContextGenerator
+{
+
+    @Override
+    public String[] getContext(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext)
+    {
+        StringFeatureCollector features = new StringFeatureCollector();
+        collect(index, sequence, priorDecisions, additionalContext, features);
+
+        return features.toArray();
+    }
+
+    /**
+     * 得到上下文特征对应的模型谓词编号
+     * 
+     * @param index 当前位置
+     * @param sequence 序列
+     * @param priorDecisions 之前的决策
+     * @param additionalContext 额外的上下文
+     * @param ids 绑定到模型的谓词编号收集器
+     * @return 模型已知的特征的谓词编号
+     */
+    public int[] getContextIds(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext,
+            PredicateIdCollector ids)
+    {
+        ids.reset();
+        collect(index, sequence, priorDecisions, additionalContext, ids);
+
+        return ids.toArray();
+    }
+
+    /**
+     * 将当前位置的特征交给特征收集器
+     * 
+     * @param index 当前位置
+     * @param sequence 序列
+     * @param priorDecisions 之前的决策
+     * @param additionalContext 额外的上下文
+     * @param features 特征收集器
+     */
+    protected abstract void collect(int index, String[] sequence, String[] priorDecisions,
+            Object[] additionalContext, FeatureCollector features);
+}
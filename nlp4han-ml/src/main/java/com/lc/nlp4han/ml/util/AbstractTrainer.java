@@ -1,6 +1,10 @@
 package com.lc.nlp4han.ml.util;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.lc.nlp4han.ml.maxent.gis.GIS;
 
@@ -16,9 +20,14 @@ public abstract class AbstractTrainer {
   public static final String ITERATIONS_PARAM = "Iterations";
   public static final int ITERATIONS_DEFAULT = 100;
 
+  /** A file the training events are appended to as JSON lines. */
+  public static final String TRAINING_LOG_PARAM = "TrainingLog";
+
   private Map<String, String> trainParams;
   private Map<String, String> reportMap;
 
+  private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+
   public AbstractTrainer() {
   }
 
@@ -82,6 +91,55 @@ public abstract class AbstractTrainer {
       return defaultValue;
   }
 
+  /**
+   * Adds a listener which receives the indexing and iteration events of the
+   * trainings run by this trainer.
+   *
+   * @param listener the listener.
+   */
+  public void addTrainingListener(TrainingListener listener) {
+    if (listener == null)
+      throw new IllegalArgumentException("listener must not be null");
+
+    listeners.add(listener);
+  }
+
+  public void removeTrainingListener(TrainingListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns the listener the events of a training are sent to: the added
+   * listeners and, if the {@link #TRAINING_LOG_PARAM} parameter is set, a
+   * {@link JsonLinesTrainingListener} which appends to that file.
+   *
+   * @return the listener, or null if there is no listener.
+   */
+  protected TrainingListener getTrainingListener() {
+    final List<TrainingListener> all = new ArrayList<>(listeners);
+    String log = trainParams != null ? trainParams.get(TRAINING_LOG_PARAM) : null;
+    if (log != null)
+      all.add(new JsonLinesTrainingListener(new File(log)));
+
+    if (all.isEmpty())
+      return null;
+    if (all.size() == 1)
+      return all.get(0);
+
+    return event -> {
+      for (TrainingListener listener : all)
+        listener.onEvent(event);
+    };
+  }
+
+  /**
+   * @param threads the number of threads of the training.
+   * @return a monitor which sends the events of a training to the listeners.
+   */
+  protected TrainingMonitor createTrainingMonitor(int threads) {
+    return new TrainingMonitor(getTrainingListener(), getClass().getSimpleName(), threads);
+  }
+
   protected void addToReport(String key, String value) {
     if (reportMap != null) {
       reportMap.put(key, value);
@@ -0,0 +1,437 @@
+package com.lc.nlp4han.ml.util;
+
+import com.lc.nlp4han.ml.model.AbstractModel;
+import com.lc.nlp4han.ml.model.ClassificationModel;
+import com.lc.nlp4han.ml.model.SequenceClassificationModel;
+
+/**
+ * Performs the same k-best search as {@link BeamSearch}, but keeps the beam in
+ * preallocated arrays.
+ * <p>
+ * Every hypothesis is a back-pointer to its parent hypothesis at the previous
+ * position together with the index of its outcome. The outcomes of a hypothesis
+ * are only turned into strings when they are passed to the context generator and
+ * the validator, and {@link Sequence} objects are only built for the returned
+ * sequences. The scores of a context are thresholded with a partial selection and
+ * the best hypotheses are kept in a bounded heap, so nothing is sorted.
+ * <p>
+ * If the context generator is an {@link AbstractTemplateContextGenerator}, the
+ * model an {@link AbstractModel} and the sequence a <code>String[]</code>, contexts
+ * are passed to the model as predicate ids and no feature strings are built. The
+ * context score cache is used on both paths, keyed by feature strings or by
+ * predicate ids.
+ * <p>
+ * The returned sequences are the same as those of {@link BeamSearch}. When several
+ * hypotheses have exactly the same score the one created first is preferred.
+ * <p>
+ * A search can be shared by multiple threads. The model is only read, and every
+ * thread keeps its own score arrays and beam, which are reused between the calls
+ * of that thread.
+ *
+ * @see BeamSearch
+ */
+public class ArrayBeamSearch<T> implements SequenceClassificationModel<T> {
+
+  private static final Object[] EMPTY_ADDITIONAL_CONTEXT = new Object[0];
+  private static final String[] EMPTY_OUTCOMES = new String[0];
+  private static final int zeroLog = -100000;
+
+  protected int size;
+  protected ClassificationModel model;
+
+  private final String[] outcomeNames;
+  private final ContextScoreCache contextsCache;
+
+  /** The beam state of every thread which uses this search. */
+  private final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+    @Override
+    protected Search initialValue() {
+      return new Search();
+    }
+  };
+
+  /**
+   * Creates new search object.
+   *
+   * @param size The size of the beam (k).
+   * @param model the model for assigning probabilities to the sequence outcomes.
+   */
+  public ArrayBeamSearch(int size, ClassificationModel model) {
+    this(size, model, (ContextScoreCache) null);
+  }
+
+  /**
+   * Creates new search object with its own context score cache.
+   *
+   * @param size The size of the beam (k).
+   * @param model the model for assigning probabilities to the sequence outcomes.
+   * @param cacheSize the number of contexts whose scores are cached, 0 disables the cache.
+   */
+  public ArrayBeamSearch(int size, ClassificationModel model, int cacheSize) {
+    this(size, model, cacheSize > 0 ? new ContextScoreCache(cacheSize) : null);
+  }
+
+  /**
+   * Creates new search object which shares a context score cache with other searches.
+   *
+   * @param size The size of the beam (k).
+   * @param model the model for assigning probabilities to the sequence outcomes.
+   * @param contextsCache the cache of context scores of the model, may be null.
+   */
+  public ArrayBeamSearch(int size, ClassificationModel model, ContextScoreCache contextsCache) {
+    this.size = size;
+    this.model = model;
+    this.contextsCache = contextsCache;
+
+    int numOutcomes = model.getNumOutcomes();
+    this.outcomeNames = new String[numOutcomes];
+    for (int i = 0; i < numOutcomes; i++) {
+      outcomeNames[i] = model.getOutcome(i);
+    }
+
+  }
+
+  public Sequence[] bestSequences(int numSequences, T[] sequence,
+      Object[] additionalContext, double minSequenceScore, BeamSearchContextGenerator<T> cg, SequenceValidator<T> validator) {
+
+    if (additionalContext == null) {
+      additionalContext = EMPTY_ADDITIONAL_CONTEXT;
+    }
+
+    return searches.get().bestSequences(numSequences, sequence, additionalContext, minSequenceScore, cg, validator);
+  }
+
+  public Sequence[] bestSequences(int numSequences, T[] sequence,
+      Object[] additionalContext, BeamSearchContextGenerator<T> cg, SequenceValidator<T> validator) {
+    return bestSequences(numSequences, sequence, additionalContext, zeroLog, cg, validator);
+  }
+
+  public Sequence bestSequence(T[] sequence, Object[] additionalContext,
+      BeamSearchContextGenerator<T> cg, SequenceValidator<T> validator) {
+    Sequence sequences[] =  bestSequences(1, sequence, additionalContext, cg, validator);
+
+    if (sequences.length > 0)
+      return sequences[0];
+    else
+      return null;
+  }
+
+  @Override
+  public String[] getOutcomes() {
+    return outcomeNames.clone();
+  }
+
+  /**
+   * Returns the cache of context scores used by this search.
+   *
+   * @return the cache, or null if scores are not cached.
+   */
+  public ContextScoreCache getContextsCache() {
+    return contextsCache;
+  }
+
+  /**
+   * The beam of one thread.
+   */
+  private class Search {
+
+    private final double[] probs = new double[outcomeNames.length];
+    private final double[] selectBuffer = new double[outcomeNames.length];
+
+    /** Collects predicate ids for template context generators, created on first use. */
+    private PredicateIdCollector predicateIds;
+
+    /** Capacity of the beam at every position, the larger of the beam size and the requested sequences. */
+    private int width;
+
+    /** Back-pointers of all positions, the hypothesis j of position i is stored at i * width + j. */
+    private int[] parents = new int[0];
+    private int[] outcomeIds = new int[0];
+    private double[] outcomeProbs = new double[0];
+
+    /** Scores of the hypotheses of the previous position, best first. */
+    private double[] prevScores = new double[0];
+    private int prevCount;
+
+    /** Bounded min-heap of the candidates for the current position. */
+    private int[] heap = new int[0];
+    private int heapCount;
+    private double[] candScores = new double[0];
+    private long[] candOrder = new long[0];
+    private int[] candParents = new int[0];
+    private int[] candOutcomes = new int[0];
+    private double[] candProbs = new double[0];
+    private long candCounter;
+
+    Sequence[] bestSequences(int numSequences, T[] sequence, Object[] additionalContext,
+        double minSequenceScore, BeamSearchContextGenerator<T> cg, SequenceValidator<T> validator) {
+      ensureCapacity(Math.max(1, Math.max(size, numSequences)), sequence.length);
+
+      AbstractTemplateContextGenerator templates = null;
+      // colliding predicates can not be told apart by their hashes, use the string contexts then
+      if (cg instanceof AbstractTemplateContextGenerator && model instanceof AbstractModel
+          && sequence instanceof String[] && ((AbstractModel) model).hasExactFeatureIndex()) {
+        templates = (AbstractTemplateContextGenerator) cg;
+        if (predicateIds == null) {
+          predicateIds = new PredicateIdCollector(((AbstractModel) model).getFeatureIndex());
+        }
+      }
+
+      // the empty hypothesis before the first position
+      prevScores[0] = 0;
+      prevCount = 1;
+
+      for (int i = 0; i < sequence.length; i++) {
+        int sz = Math.min(size, prevCount);
+
+        heapCount = 0;
+        candCounter = 0;
+
+        for (int sc = 0; sc < sz; sc++) {
+          String[] outcomes = history(i, sc);
+          double[] scores;
+          if (templates != null) {
+            int[] predIds = templates.getContextIds(i, (String[]) sequence, outcomes, additionalContext, predicateIds);
+            if (contextsCache != null) {
+              scores = contextsCache.eval(model, predIds, probs);
+            }
+            else {
+              scores = model.eval(predIds, probs);
+            }
+          }
+          else {
+            String[] contexts = cg.getContext(i, sequence, outcomes, additionalContext);
+            if (contextsCache != null) {
+              scores = contextsCache.eval(model, contexts, probs);
+            }
+            else {
+              scores = model.eval(contexts, probs);
+            }
+          }
+
+          double min = threshold(scores);
+          double topScore = prevScores[sc];
+
+          for (int p = 0; p < scores.length; p++) {
+            if (scores[p] < min)
+              continue; //only advance first "size" outcomes
+            if (validator.validSequence(i, sequence, outcomes, outcomeNames[p])) {
+              offer(topScore, sc, p, scores[p], minSequenceScore);
+            }
+          }
+
+          if (candCounter == 0) {//if no advanced sequences, advance all valid
+            for (int p = 0; p < scores.length; p++) {
+              if (validator.validSequence(i, sequence, outcomes, outcomeNames[p])) {
+                offer(topScore, sc, p, scores[p], minSequenceScore);
+              }
+            }
+          }
+        }
+
+        advance(i);
+      }
+
+      int numSeq = Math.min(numSequences, prevCount);
+      Sequence[] topSequences = new Sequence[numSeq];
+
+      for (int seqIndex = 0; seqIndex < numSeq; seqIndex++) {
+        topSequences[seqIndex] = toSequence(sequence.length, seqIndex);
+      }
+
+      return topSequences;
+    }
+
+    private void ensureCapacity(int width, int length) {
+      this.width = width;
+
+      int cells = width * Math.max(1, length);
+      if (parents.length < cells) {
+        parents = new int[cells];
+        outcomeIds = new int[cells];
+        outcomeProbs = new double[cells];
+      }
+
+      if (heap.length < width) {
+        heap = new int[width];
+        prevScores = new double[width];
+        candScores = new double[width];
+        candOrder = new long[width];
+        candParents = new int[width];
+        candOutcomes = new int[width];
+        candProbs = new double[width];
+      }
+    }
+
+    /**
+     * Returns the score above which the outcomes of a context are advanced, that is the
+     * <code>size</code>-th largest score, or the smallest score if there are fewer outcomes.
+     */
+    private double threshold(double[] scores) {
+      int n = scores.length;
+      System.arraycopy(scores, 0, selectBuffer, 0, n);
+      return select(selectBuffer, n, Math.max(0, n - size));
+    }
+
+    /**
+     * Offers the extension of a hypothesis of the previous position to the beam of the
+     * current position.
+     */
+    private void offer(double topScore, int parent, int outcome, double prob, double minSequenceScore) {
+      double score = topScore + Math.log(prob);
+      if (score <= minSequenceScore)
+        return;
+
+      long order = candCounter++;
+
+      int slot;
+      if (heapCount < width) {
+        slot = heapCount;
+      }
+      else {
+        slot = heap[0];
+        // the root is the worst kept candidate, an equal score loses against it since it came first
+        if (score <= candScores[slot])
+          return;
+      }
+
+      candScores[slot] = score;
+      candOrder[slot] = order;
+      candParents[slot] = parent;
+      candOutcomes[slot] = outcome;
+      candProbs[slot] = prob;
+
+      if (heapCount < width) {
+        heap[heapCount] = slot;
+        siftUp(heapCount++);
+      }
+      else {
+        siftDown(0, heapCount);
+      }
+    }
+
+    /** Returns true if candidate a is worse than candidate b. */
+    private boolean worse(int a, int b) {
+      if (candScores[a] != candScores[b])
+        return candScores[a] < candScores[b];
+      return candOrder[a] > candOrder[b];
+    }
+
+    private void siftUp(int pos) {
+      int slot = heap[pos];
+      while (pos > 0) {
+        int parent = (pos - 1) >>> 1;
+        if (!worse(slot, heap[parent]))
+          break;
+        heap[pos] = heap[parent];
+        pos = parent;
+      }
+      heap[pos] = slot;
+    }
+
+    private void siftDown(int pos, int count) {
+      int slot = heap[pos];
+      while (true) {
+        int child = 2 * pos + 1;
+        if (child >= count)
+          break;
+        if (child + 1 < count && worse(heap[child + 1], heap[child]))
+          child++;
+        if (!worse(heap[child], slot))
+          break;
+        heap[pos] = heap[child];
+        pos = child;
+      }
+      heap[pos] = slot;
+    }
+
+    /**
+     * Moves the candidates into the beam of position i, best first.
+     */
+    private void advance(int i) {
+      int count = heapCount;
+      int base = i * width;
+
+      // pop the worst candidate into the last free place until the heap is empty
+      for (int last = count - 1; last >= 0; last--) {
+        int slot = heap[0];
+        heap[0] = heap[last];
+        siftDown(0, last);
+
+        parents[base + last] = candParents[slot];
+        outcomeIds[base + last] = candOutcomes[slot];
+        outcomeProbs[base + last] = candProbs[slot];
+        prevScores[last] = candScores[slot];
+      }
+
+      prevCount = count;
+      heapCount = 0;
+    }
+
+    /**
+     * Returns the outcomes of hypothesis j of position i - 1, which are the prior
+     * decisions at position i.
+     */
+    private String[] history(int i, int j) {
+      if (i == 0)
+        return EMPTY_OUTCOMES;
+
+      String[] outcomes = new String[i];
+      for (int t = i - 1; t >= 0; t--) {
+        int cell = t * width + j;
+        outcomes[t] = outcomeNames[outcomeIds[cell]];
+        j = parents[cell];
+      }
+      return outcomes;
+    }
+
+    private Sequence toSequence(int length, int j) {
+      int[] path = new int[length];
+      for (int t = length - 1; t >= 0; t--) {
+        path[t] = t * width + j;
+        j = parents[path[t]];
+      }
+
+      Sequence s = new Sequence();
+      for (int t = 0; t < length; t++) {
+        s.add(outcomeNames[outcomeIds[path[t]]], outcomeProbs[path[t]]);
+      }
+      return s;
+    }
+  }
+
+  /**
+   * Returns the element which would be at index k if the first n elements were sorted
+   * in ascending order. The elements are reordered.
+   */
+  private static double select(double[] a, int n, int k) {
+    int lo = 0;
+    int hi = n - 1;
+    while (lo < hi) {
+      double pivot = a[(lo + hi) >>> 1];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (a[i] < pivot)
+          i++;
+        while (a[j] > pivot)
+          j--;
+        if (i <= j) {
+          double tmp = a[i];
+          a[i] = a[j];
+          a[j] = tmp;
+          i++;
+          j--;
+        }
+      }
+
+      if (k <= j)
+        hi = j;
+      else if (k >= i)
+        lo = i;
+      else
+        break;
+    }
+    return a[k];
+  }
+}
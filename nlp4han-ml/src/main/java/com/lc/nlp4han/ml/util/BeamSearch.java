@@ -26,8 +26,7 @@ public class BeamSearch<T> implements SequenceClassificationModel<T> {
   protected int size;
   protected ClassificationModel model;
 
-  private double[] probs;
-  private Cache<String[], double[]> contextsCache;
+  private ContextScoreCache contextsCache;
   private static final int zeroLog = -100000;
 
   /**
@@ -40,16 +39,29 @@ public class BeamSearch<T> implements SequenceClassificationModel<T> {
     this(size, model, 0);
   }
 
+  /**
+   * Creates new search object with its own context score cache.
+   *
+   * @param size The size of the beam (k).
+   * @param model the model for assigning probabilities to the sequence outcomes.
+   * @param cacheSize the number of contexts whose scores are cached, 0 disables the cache.
+   */
   public BeamSearch(int size, ClassificationModel model, int cacheSize) {
+    this(size, model, cacheSize > 0 ? new ContextScoreCache(cacheSize) : null);
+  }
+
+  /**
+   * Creates new search object which shares a context score cache with other searches.
+   *
+   * @param size The size of the beam (k).
+   * @param model the model for assigning probabilities to the sequence outcomes.
+   * @param contextsCache the cache of context scores of the model, may be null.
+   */
+  public BeamSearch(int size, ClassificationModel model, ContextScoreCache contextsCache) {
 
     this.size = size;
     this.model = model;
-
-    if (cacheSize > 0) {
-      contextsCache = new Cache<>(cacheSize);
-    }
-
-    this.probs = new double[model.getNumOutcomes()];
+    this.contextsCache = contextsCache;
   }
 
   /**
@@ -68,6 +80,9 @@ public class BeamSearch<T> implements SequenceClassificationModel<T> {
     Queue<Sequence> tmp;
     prev.add(new Sequence());
 
+    // allocated per call so that one search can be used by several threads
+    double[] probs = new double[model.getNumOutcomes()];
+
     if (additionalContext == null) {
       additionalContext = EMPTY_ADDITIONAL_CONTEXT;
     }
@@ -82,11 +97,7 @@ public class BeamSearch<T> implements SequenceClassificationModel<T> {
         String[] contexts = cg.getContext(i, sequence, outcomes, additionalContext);
         double[] scores;
         if (contextsCache != null) {
-          scores = contextsCache.get(contexts);
-          if (scores == null) {
-            scores = model.eval(contexts, probs);
-            contextsCache.put(contexts,scores);
-          }
+          scores = contextsCache.eval(model, contexts, probs);
         }
         else {
           scores = model.eval(contexts, probs);
@@ -156,6 +167,15 @@ public class BeamSearch<T> implements SequenceClassificationModel<T> {
       return null;
   }
 
+  /**
+   * Returns the cache of context scores used by this search.
+   *
+   * @return the cache, or null if scores are not cached.
+   */
+  public ContextScoreCache getContextsCache() {
+    return contextsCache;
+  }
+
   @Override
   public String[] getOutcomes() {
     String outcomes[] = new String[model.getNumOutcomes()];
@@ -0,0 +1,266 @@
+package com.lc.nlp4han.ml.util;
+
+/**
+ * A sentence of character units backed by a single <code>char[]</code>.
+ * <p>
+ * Unit <code>i</code> is the range <code>[start(i), end(i))</code> of the array. A
+ * sentence created from text has one unit per code point, so a surrogate pair is never
+ * split; a sentence created from tokens has one unit per token. Context generators read
+ * the units through {@link FeatureCollector#append(CharSentence, int)} or
+ * {@link #codePointAt(int)} and need no per-character strings.
+ * <p>
+ * Where the string-based APIs still need tokens, {@link #get(int)} returns a shared
+ * instance for single-character units instead of a new string.
+ * <p>
+ * Instances are immutable as long as the wrapped array is not modified.
+ */
+public final class CharSentence {
+
+  private static final String[] SINGLE_CHARS = new String[Character.MAX_VALUE + 1];
+
+  private final char[] chars;
+  private final int offset;
+  private final int length;
+
+  /**
+   * The array index where each unit starts followed by the end of the last unit,
+   * or null if every unit is exactly one char starting at {@link #offset}.
+   */
+  private final int[] starts;
+
+  private CharSentence(char[] chars, int offset, int length, int[] starts) {
+    this.chars = chars;
+    this.offset = offset;
+    this.length = length;
+    this.starts = starts;
+  }
+
+  /**
+   * Returns a shared string of a single character.
+   *
+   * @param c the character.
+   * @return the string of <code>c</code>.
+   */
+  public static String valueOf(char c) {
+    // racy single check, all threads see equal strings
+    String s = SINGLE_CHARS[c];
+    if (s == null) {
+      s = String.valueOf(c);
+      SINGLE_CHARS[c] = s;
+    }
+    return s;
+  }
+
+  /**
+   * Creates a sentence with one unit per code point of a copy of the text.
+   *
+   * @param text the text.
+   * @return the sentence.
+   */
+  public static CharSentence of(CharSequence text) {
+    char[] chars = text.toString().toCharArray();
+    return wrap(chars, 0, chars.length);
+  }
+
+  /**
+   * Creates a sentence with one unit per code point of <code>text[start, end)</code>,
+   * the array is not copied.
+   *
+   * @param text the characters.
+   * @param start the index of the first character.
+   * @param end the index after the last character.
+   * @return the sentence.
+   */
+  public static CharSentence wrap(char[] text, int start, int end) {
+    if (start < 0 || end > text.length || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length);
+    }
+
+    int units = Character.codePointCount(text, start, end - start);
+    if (units == end - start) {
+      return new CharSentence(text, start, units, null);
+    }
+
+    int[] starts = new int[units + 1];
+    for (int i = 0, p = start; i < units; i++) {
+      starts[i] = p;
+      p += Character.isHighSurrogate(text[p]) && p + 1 < end && Character.isLowSurrogate(text[p + 1]) ? 2 : 1;
+    }
+    starts[units] = end;
+
+    return new CharSentence(text, start, units, starts);
+  }
+
+  /**
+   * Creates a sentence with one unit per token.
+   *
+   * @param tokens the tokens, each of them non-empty.
+   * @return the sentence.
+   */
+  public static CharSentence of(String[] tokens) {
+    int total = 0;
+    boolean singleChars = true;
+    for (String token : tokens) {
+      if (token.isEmpty()) {
+        throw new IllegalArgumentException("empty tokens are not allowed");
+      }
+      total += token.length();
+      singleChars &= token.length() == 1;
+    }
+
+    char[] chars = new char[total];
+    int[] starts = singleChars ? null : new int[tokens.length + 1];
+    int p = 0;
+    for (int i = 0; i < tokens.length; i++) {
+      if (starts != null) {
+        starts[i] = p;
+      }
+      tokens[i].getChars(0, tokens[i].length(), chars, p);
+      p += tokens[i].length();
+    }
+    if (starts != null) {
+      starts[tokens.length] = p;
+    }
+
+    return new CharSentence(chars, 0, tokens.length, starts);
+  }
+
+  /**
+   * @return the number of units.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Returns the backing array, the units are ranges of it.
+   *
+   * @return the backing array, it must not be modified.
+   */
+  public char[] getChars() {
+    return chars;
+  }
+
+  /**
+   * @param index the index of the unit.
+   * @return the array index of the first character of the unit.
+   */
+  public int start(int index) {
+    checkIndex(index);
+    return starts == null ? offset + index : starts[index];
+  }
+
+  /**
+   * @param index the index of the unit.
+   * @return the array index after the last character of the unit.
+   */
+  public int end(int index) {
+    checkIndex(index);
+    return starts == null ? offset + index + 1 : starts[index + 1];
+  }
+
+  /**
+   * Returns the code point at the start of a unit.
+   *
+   * @param index the index of the unit.
+   * @return the code point.
+   */
+  public int codePointAt(int index) {
+    return Character.codePointAt(chars, start(index), end(index));
+  }
+
+  /**
+   * Returns a unit as a string, single characters are shared instances.
+   *
+   * @param index the index of the unit.
+   * @return the unit.
+   */
+  public String get(int index) {
+    int start = start(index);
+    int end = end(index);
+    return end - start == 1 ? valueOf(chars[start]) : new String(chars, start, end - start);
+  }
+
+  /**
+   * Returns the text of the units <code>[from, to)</code>.
+   *
+   * @param from the index of the first unit.
+   * @param to the index after the last unit.
+   * @return the text.
+   */
+  public String substring(int from, int to) {
+    if (from == to) {
+      return "";
+    }
+    if (to - from == 1) {
+      return get(from);
+    }
+    int start = start(from);
+    return new String(chars, start, end(to - 1) - start);
+  }
+
+  /**
+   * Returns all units as strings, see {@link #get(int)}.
+   *
+   * @return the units.
+   */
+  public String[] toTokens() {
+    String[] tokens = new String[length];
+    for (int i = 0; i < length; i++) {
+      tokens[i] = get(i);
+    }
+    return tokens;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CharSentence)) {
+      return false;
+    }
+
+    CharSentence other = (CharSentence) obj;
+    if (length != other.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      int start = start(i);
+      int otherStart = other.start(i);
+      int size = end(i) - start;
+      if (size != other.end(i) - otherStart) {
+        return false;
+      }
+      for (int k = 0; k < size; k++) {
+        if (chars[start + k] != other.chars[otherStart + k]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = length;
+    for (int i = 0; i < length; i++) {
+      for (int k = start(i); k < end(i); k++) {
+        hash = 31 * hash + chars[k];
+      }
+      hash = 31 * hash + end(i) - start(i);
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return substring(0, length);
+  }
+}
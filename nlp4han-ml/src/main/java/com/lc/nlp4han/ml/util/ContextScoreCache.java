@@ -0,0 +1,299 @@
+package com.lc.nlp4han.ml.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lc.nlp4han.ml.model.ClassificationModel;
+
+/**
+ * Bounded, thread-safe cache of outcome scores keyed by the content of a context.
+ * <p>
+ * A context is identified by a 64-bit fingerprint of its feature strings, or of its
+ * predicate ids when the decoder passes ids to the model. On a
+ * fingerprint match the stored features are compared one by one, so a fingerprint
+ * collision is counted as a miss and never returns the scores of another context.
+ * Entries are spread over independently locked least recently used segments, which
+ * keeps the total number of entries below the capacity and lets concurrent
+ * decoders share one instance.
+ * <p>
+ * The cached scores depend on the model which produced them, an instance must
+ * therefore only be shared between decoders which evaluate the same model.
+ */
+public class ContextScoreCache {
+
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /** Not a valid character, separates the features inside the fingerprint. */
+  private static final char FEATURE_SEPARATOR = '\uFFFF';
+
+  private final Segment[] segments;
+  private final int segmentMask;
+  private final int capacity;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Creates a cache which holds at most <code>capacity</code> contexts.
+   *
+   * @param capacity the maximum number of cached contexts.
+   */
+  public ContextScoreCache(int capacity) {
+    this(capacity, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Creates a cache which holds at most <code>capacity</code> contexts.
+   *
+   * @param capacity the maximum number of cached contexts.
+   * @param concurrencyLevel the expected number of threads using the cache at the same time.
+   */
+  public ContextScoreCache(int capacity, int concurrencyLevel) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("concurrencyLevel must be positive: " + concurrencyLevel);
+    }
+
+    int numSegments = 1;
+    while (numSegments < concurrencyLevel && numSegments * 2 <= capacity) {
+      numSegments <<= 1;
+    }
+
+    this.capacity = capacity;
+    this.segmentMask = numSegments - 1;
+    this.segments = new Segment[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      int segmentCapacity = capacity / numSegments + (i < capacity % numSegments ? 1 : 0);
+      segments[i] = new Segment(segmentCapacity);
+    }
+  }
+
+  /**
+   * Computes the 64-bit fingerprint of a context.
+   *
+   * @param context the features of the context.
+   * @return the fingerprint of the features, in order.
+   */
+  public static long fingerprint(String[] context) {
+    long hash = FNV_OFFSET_BASIS;
+    for (String feature : context) {
+      for (int i = 0; i < feature.length(); i++) {
+        hash ^= feature.charAt(i);
+        hash *= FNV_PRIME;
+      }
+      hash ^= FEATURE_SEPARATOR;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Computes the 64-bit fingerprint of a context given as predicate ids.
+   *
+   * @param predIds the predicate ids of the context.
+   * @return the fingerprint of the ids, in order.
+   */
+  public static long fingerprint(int[] predIds) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int id : predIds) {
+      hash ^= id;
+      hash *= FNV_PRIME;
+    }
+    // keeps id contexts apart from string contexts with the same hash
+    hash ^= FEATURE_SEPARATOR;
+    hash *= FNV_PRIME;
+    return ~hash;
+  }
+
+  /**
+   * Returns the cached scores of a context.
+   *
+   * @param context the features of the context.
+   * @return the cached scores, which must not be modified, or null if the context is not cached.
+   */
+  public double[] get(String[] context) {
+    return lookup(fingerprint(context), context);
+  }
+
+  /**
+   * Caches the scores of a context. Both arrays are copied.
+   *
+   * @param context the features of the context.
+   * @param scores the outcome scores of the context.
+   */
+  public void put(String[] context, double[] scores) {
+    store(fingerprint(context), context, scores);
+  }
+
+  /**
+   * Returns the cached scores of a context, or evaluates the context with the model
+   * and caches the result.
+   *
+   * @param model the model the cache belongs to.
+   * @param context the features of the context.
+   * @param probs the buffer passed to {@link ClassificationModel#eval(String[], double[])} on a miss.
+   * @return the scores of the context, which must not be modified.
+   */
+  public double[] eval(ClassificationModel model, String[] context, double[] probs) {
+    long fp = fingerprint(context);
+    double[] scores = lookup(fp, context);
+    if (scores == null) {
+      scores = model.eval(context, probs);
+      store(fp, context, scores);
+    }
+    return scores;
+  }
+
+  /**
+   * Returns the cached scores of a context given as predicate ids, or evaluates the
+   * context with the model and caches the result.
+   *
+   * @param model the model the cache belongs to.
+   * @param predIds the predicate ids of the context.
+   * @param probs the buffer passed to {@link ClassificationModel#eval(int[], double[])} on a miss.
+   * @return the scores of the context, which must not be modified.
+   */
+  public double[] eval(ClassificationModel model, int[] predIds, double[] probs) {
+    long fp = fingerprint(predIds);
+    double[] scores = lookup(fp, predIds);
+    if (scores == null) {
+      scores = model.eval(predIds, probs);
+      store(fp, predIds.clone(), scores);
+    }
+    return scores;
+  }
+
+  private double[] lookup(long fp, Object context) {
+    Segment segment = segmentFor(fp);
+    Entry entry;
+    synchronized (segment) {
+      entry = segment.get(fp);
+    }
+
+    if (entry != null && sameContext(entry.context, context)) {
+      hits.increment();
+      return entry.scores;
+    }
+
+    misses.increment();
+    return null;
+  }
+
+  private static boolean sameContext(Object a, Object b) {
+    if (a instanceof String[] && b instanceof String[]) {
+      return Arrays.equals((String[]) a, (String[]) b);
+    }
+    if (a instanceof int[] && b instanceof int[]) {
+      return Arrays.equals((int[]) a, (int[]) b);
+    }
+    return false;
+  }
+
+  private void store(long fp, String[] context, double[] scores) {
+    store(fp, (Object) context.clone(), scores);
+  }
+
+  /**
+   * Stores a context which has already been copied.
+   */
+  private void store(long fp, Object context, double[] scores) {
+    Entry entry = new Entry(context, scores.clone());
+    Segment segment = segmentFor(fp);
+    synchronized (segment) {
+      segment.put(fp, entry);
+    }
+  }
+
+  private Segment segmentFor(long fp) {
+    // the low bits already select the bucket inside a segment, mix before taking the high bits
+    return segments[(int) ((fp * 0x9e3779b97f4a7c15L) >>> 40) & segmentMask];
+  }
+
+  /**
+   * Removes all cached contexts, the hit and miss counters are kept.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached contexts.
+   *
+   * @return the number of cached contexts.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the fraction of lookups which were answered from the cache.
+   *
+   * @return the hit rate, 0 if no lookup was made.
+   */
+  public double getHitRate() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  @Override
+  public String toString() {
+    return "size=" + size() + " capacity=" + capacity + " hits=" + getHits() + " misses=" + getMisses();
+  }
+
+  private static final class Entry {
+    /** The features as String[] or the predicate ids as int[]. */
+    private final Object context;
+    private final double[] scores;
+
+    private Entry(Object context, double[] scores) {
+      this.context = context;
+      this.scores = scores;
+    }
+  }
+
+  private static final class Segment extends LinkedHashMap<Long, Entry> {
+
+    private final int capacity;
+
+    private Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+      return size() > capacity;
+    }
+  }
+}
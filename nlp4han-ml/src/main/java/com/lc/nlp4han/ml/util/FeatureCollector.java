@@ -0,0 +1,87 @@
+package com.lc.nlp4han.ml.util;
+
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+
+/**
+ * Receives the features of a context one part at a time, so a context generator can
+ * produce either feature strings or predicate ids with the same code.
+ *
+ * @see StringFeatureCollector
+ * @see PredicateIdCollector
+ */
+public abstract class FeatureCollector {
+
+  /**
+   * Starts a new feature with the prefix of a template.
+   *
+   * @param template the template of the feature.
+   * @return this collector.
+   */
+  public abstract FeatureCollector start(FeatureTemplate template);
+
+  /**
+   * Appends a value to the current feature, null is appended as <code>"null"</code>
+   * like in string concatenation.
+   *
+   * @param value the appended value.
+   * @return this collector.
+   */
+  public abstract FeatureCollector append(String value);
+
+  /**
+   * Appends the characters <code>text[start, end)</code> to the current feature.
+   * Subclasses should override this to avoid the intermediate string.
+   *
+   * @param text the characters.
+   * @param start the index of the first appended character.
+   * @param end the index after the last appended character.
+   * @return this collector.
+   */
+  public FeatureCollector append(char[] text, int start, int end) {
+    return append(new String(text, start, end - start));
+  }
+
+  /**
+   * Appends a unit of a sentence to the current feature.
+   *
+   * @param sentence the sentence.
+   * @param index the index of the unit.
+   * @return this collector.
+   */
+  public FeatureCollector append(CharSentence sentence, int index) {
+    return append(sentence.getChars(), sentence.start(index), sentence.end(index));
+  }
+
+  /**
+   * Completes the current feature.
+   */
+  public abstract void end();
+
+  /**
+   * Adds the feature <code>template + value</code>.
+   */
+  public void add(FeatureTemplate template, String value) {
+    start(template).append(value).end();
+  }
+
+  /**
+   * Adds the feature <code>template + value1 + value2</code>.
+   */
+  public void add(FeatureTemplate template, String value1, String value2) {
+    start(template).append(value1).append(value2).end();
+  }
+
+  /**
+   * Adds the feature <code>template + sentence[index]</code>.
+   */
+  public void add(FeatureTemplate template, CharSentence sentence, int index) {
+    start(template).append(sentence, index).end();
+  }
+
+  /**
+   * Adds the feature <code>template + sentence[index1] + sentence[index2]</code>.
+   */
+  public void add(FeatureTemplate template, CharSentence sentence, int index1, int index2) {
+    start(template).append(sentence, index1).append(sentence, index2).end();
+  }
+}
@@ -0,0 +1,124 @@
+package com.lc.nlp4han.ml.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every {@link TrainingEvent} as one JSON object per line, for example
+ * <pre>
+ * {"type":"ITERATION","trainer":"GIS","iteration":3,"wallTimeMs":41.2,"events":5000,
+ *  "eventsPerSecond":121359.2,"heapUsed":52428800,"objective":-2817.5,"gradientNorm":143.7,
+ *  "accuracy":0.91,"threads":4,"threadUtilization":0.78}
+ * </pre>
+ * (on a single line). Metrics which are NaN are written as <code>null</code>.
+ */
+public class JsonLinesTrainingListener implements TrainingListener {
+
+  private final Writer writer;
+  private final File file;
+
+  /**
+   * Writes the events to a writer, which is flushed after every event and is
+   * not closed by this listener.
+   *
+   * @param writer the writer.
+   */
+  public JsonLinesTrainingListener(Writer writer) {
+    this.writer = writer;
+    this.file = null;
+  }
+
+  /**
+   * Appends the events to a file in UTF-8, the file is opened and closed for
+   * every event.
+   *
+   * @param file the file.
+   */
+  public JsonLinesTrainingListener(File file) {
+    this.writer = null;
+    this.file = file;
+  }
+
+  @Override
+  public void onEvent(TrainingEvent event) {
+    String line = toJson(event) + "\n";
+    try {
+      if (writer != null) {
+        synchronized (writer) {
+          writer.write(line);
+          writer.flush();
+        }
+      }
+      else {
+        synchronized (this) {
+          try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            out.write(line);
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to write training event", e);
+    }
+  }
+
+  /**
+   * @param event the event.
+   * @return the event as a JSON object on one line.
+   */
+  public static String toJson(TrainingEvent event) {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"type\":\"").append(event.getType()).append('"');
+    json.append(",\"trainer\":");
+    appendString(json, event.getTrainer());
+    json.append(",\"iteration\":").append(event.getIteration());
+    json.append(",\"wallTimeMs\":");
+    appendNumber(json, event.getWallTimeNanos() / 1e6);
+    json.append(",\"events\":").append(event.getEvents());
+    json.append(",\"eventsPerSecond\":");
+    appendNumber(json, event.getEventsPerSecond());
+    json.append(",\"heapUsed\":").append(event.getHeapUsed());
+    json.append(",\"objective\":");
+    appendNumber(json, event.getObjective());
+    json.append(",\"gradientNorm\":");
+    appendNumber(json, event.getGradientNorm());
+    json.append(",\"accuracy\":");
+    appendNumber(json, event.getAccuracy());
+    json.append(",\"threads\":").append(event.getThreads());
+    json.append(",\"threadUtilization\":");
+    appendNumber(json, event.getThreadUtilization());
+    json.append('}');
+    return json.toString();
+  }
+
+  private static void appendNumber(StringBuilder json, double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      json.append("null");
+    else
+      json.append(value);
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    if (value == null) {
+      json.append("null");
+      return;
+    }
+
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\')
+        json.append('\\').append(c);
+      else if (c < 0x20)
+        json.append(String.format("\\u%04x", (int) c));
+      else
+        json.append(c);
+    }
+    json.append('"');
+  }
+}
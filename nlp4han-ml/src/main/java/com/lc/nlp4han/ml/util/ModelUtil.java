@@ -15,6 +15,8 @@ import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.ClassificationModel;
 import com.lc.nlp4han.ml.model.GenericModelReader;
 import com.lc.nlp4han.ml.model.GenericModelWriter;
+import com.lc.nlp4han.ml.model.MappedModel;
+import com.lc.nlp4han.ml.model.MappedModelWriter;
 
 /**
  * Utility class for handling of {@link ClassificationModel}s.
@@ -53,12 +55,54 @@ public final class ModelUtil {
     }));
     modelWriter.persist();
   }
-  
+
+  /**
+   * Writes the given model to the given {@link OutputStream} in the format
+   * of {@link MappedModel}, which can be mapped into memory when it is read.
+   *
+   * This methods does not closes the provided stream.
+   *
+   * @param model the model to be written
+   * @param out the stream the model should be written to
+   *
+   * @throws IOException
+   * @throws IllegalArgumentException in case one of the parameters is null
+   */
+  public static void writeMappedModel(ClassificationModel model, final OutputStream out)
+          throws IOException, IllegalArgumentException {
+
+    if (model == null)
+      throw new IllegalArgumentException("model parameter must not be null!");
+
+    if (out == null)
+      throw new IllegalArgumentException("out parameter must not be null!");
+
+    MappedModelWriter modelWriter = new MappedModelWriter((AbstractModel) model, new DataOutputStream(new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+      }
+    }));
+    modelWriter.persist();
+  }
+
+  /**
+   * Reads a model from a file. Files in the format of {@link MappedModel} are
+   * mapped into memory, other files are read according to their suffix.
+   */
   public static ClassificationModel readModel(File modelFile)
           throws IOException, IllegalArgumentException {
     if (modelFile == null)
       throw new IllegalArgumentException("modelFile parameter must not be null!");
 
+    if (MappedModel.isMappedModel(modelFile))
+      return MappedModel.open(modelFile);
+
     GenericModelReader modelReader = new GenericModelReader(modelFile);
     
     
@@ -71,6 +115,9 @@ public final class ModelUtil {
     if (input == null)
       throw new IllegalArgumentException("input parameter must not be null!");
 
+    if (binary && input.markSupported() && MappedModel.isMappedModel(input))
+      return MappedModel.read(input);
+
     GenericModelReader modelReader = new GenericModelReader(input, binary);
     
     
@@ -82,10 +129,7 @@ public final class ModelUtil {
     if (input == null)
       throw new IllegalArgumentException("input parameter must not be null!");
 
-    GenericModelReader modelReader = new GenericModelReader(input);
-    
-    
-    return modelReader.getModel();
+    return readModel(input, true);
   }
 
   /**
@@ -9,13 +9,26 @@ import java.io.OutputStream;
 import java.net.URL;
 
 import com.lc.nlp4han.ml.model.ClassificationModel;
+import com.lc.nlp4han.ml.model.MappedModel;
 import com.lc.nlp4han.ml.model.SequenceClassificationModel;
 
+/**
+ * 模型包装类
+ * 
+ * 加载后的模型只读，一个ModelWrapper可在多个线程间共享，无需为每个线程加载模型。
+ * getSequenceModel()构造的序列模型也可共享，其打分数组和beam状态由每个线程各自持有。
+ */
 public class ModelWrapper
 {
     protected ClassificationModel model;
     protected SequenceClassificationModel<String> seqModel;
     protected int beamSize = 3;
+    protected ContextScoreCache contextsCache;
+
+    /**
+     * 由分类模型构造的序列模型，首次使用时创建
+     */
+    private volatile SequenceClassificationModel<String> sharedSeqModel;
     
     public static int DEFAULT_BEAM_SIZE = 3;
 
@@ -52,6 +65,13 @@ public class ModelWrapper
 
     public ModelWrapper(File modelFile) throws IOException
     {
+        // 紧凑格式的模型直接映射到内存
+        if (MappedModel.isMappedModel(modelFile))
+        {
+            model = MappedModel.open(modelFile);
+            return;
+        }
+
         try (InputStream in = new BufferedInputStream(new FileInputStream(modelFile)))
         {
             loadModel(in);
@@ -100,6 +120,8 @@ public class ModelWrapper
     /**
      * 得到序列分类模型或构造序列分类模型
      * 
+     * 由分类模型构造的序列模型只构造一次，可在多个线程间共享
+     * 
      * @return 序列分类模型
      */
     public SequenceClassificationModel<String> getSequenceModel()
@@ -108,7 +130,21 @@ public class ModelWrapper
             return seqModel;
         else if (model != null)
         {
-            return new BeamSearch<>(beamSize, model);
+            SequenceClassificationModel<String> search = sharedSeqModel;
+            if (search == null)
+            {
+                synchronized (this)
+                {
+                    search = sharedSeqModel;
+                    if (search == null)
+                    {
+                        search = new ArrayBeamSearch<>(beamSize, model, contextsCache);
+                        sharedSeqModel = search;
+                    }
+                }
+            }
+
+            return search;
         }
         else
             return null;
@@ -119,4 +155,35 @@ public class ModelWrapper
     {
         return beamSize;
     }
+
+    /**
+     * 设置上下文得分缓存的大小
+     * 
+     * 之后由getSequenceModel()构造的序列模型使用该缓存，缓存可在多个线程间共享
+     * 
+     * @param cacheSize 缓存的上下文个数，为0时不缓存
+     */
+    public void setContextsCacheSize(int cacheSize)
+    {
+        if (cacheSize < 0)
+        {
+            throw new IllegalArgumentException("The cacheSize param must not be negative!");
+        }
+
+        synchronized (this)
+        {
+            contextsCache = cacheSize > 0 ? new ContextScoreCache(cacheSize) : null;
+            sharedSeqModel = null;
+        }
+    }
+
+    /**
+     * 得到上下文得分缓存
+     * 
+     * @return 上下文得分缓存，未设置时为null
+     */
+    public ContextScoreCache getContextsCache()
+    {
+        return contextsCache;
+    }
 }
@@ -0,0 +1,183 @@
+package com.lc.nlp4han.ml.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the folds of an n-fold cross validation concurrently.
+ * <p>
+ * The samples are read once into memory. Every fold gets its own training and
+ * test streams over the shared list, so folds do not depend on each other the
+ * way the streams of a {@link CrossValidationPartitioner} do. Sample <code>i</code>
+ * is a test sample of fold <code>i % nFolds</code>, the same split the
+ * partitioner makes.
+ * <p>
+ * The folds are trained and evaluated by at most <code>threads</code> threads.
+ * The results are returned in fold order whatever order the folds finish in,
+ * so merging them front to back gives the same measure on every run.
+ */
+public class ParallelCrossValidator {
+
+  /**
+   * Trains a model on the training samples of a fold and evaluates it on the
+   * test samples of the fold. Several folds are evaluated at the same time, so
+   * implementations must not share mutable state between calls.
+   *
+   * @param <T> the type of the samples
+   * @param <M> the type of the measure of a fold
+   */
+  public interface FoldEvaluator<T, M> {
+
+    /**
+     * @param fold the index of the fold, starting at 0.
+     * @param trainingSamples the training samples, the stream can be reset.
+     * @param testSamples the test samples, the stream can be reset.
+     * @return the measure of the fold.
+     */
+    M evaluate(int fold, ObjectStream<T> trainingSamples, ObjectStream<T> testSamples) throws IOException;
+  }
+
+  /**
+   * The training or the test samples of one fold over a shared list.
+   */
+  private static class FoldSampleStream<T> implements ObjectStream<T> {
+
+    private final List<T> samples;
+    private final int numberOfPartitions;
+    private final int testIndex;
+    private final boolean test;
+    private int index;
+
+    FoldSampleStream(List<T> samples, int numberOfPartitions, int testIndex, boolean test) {
+      this.samples = samples;
+      this.numberOfPartitions = numberOfPartitions;
+      this.testIndex = testIndex;
+      this.test = test;
+    }
+
+    public T read() {
+      while (index < samples.size()) {
+        int i = index++;
+        if ((i % numberOfPartitions == testIndex) == test) {
+          return samples.get(i);
+        }
+      }
+      return null;
+    }
+
+    public void reset() {
+      index = 0;
+    }
+
+    public void close() {
+    }
+  }
+
+  private final int threads;
+
+  /**
+   * @param threads the largest number of folds which are evaluated at the same time.
+   */
+  public ParallelCrossValidator(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("Threads must be at least 1, but is " + threads);
+
+    this.threads = threads;
+  }
+
+  /**
+   * Evaluates all folds of the samples.
+   *
+   * @param samples the samples, which are read completely before the folds start.
+   * @param nFolds the number of folds.
+   * @param evaluator trains and evaluates one fold.
+   * @return the measures of the folds in fold order.
+   */
+  public <T, M> List<M> evaluate(ObjectStream<T> samples, int nFolds, FoldEvaluator<T, M> evaluator)
+      throws IOException {
+    List<T> list = new ArrayList<>();
+    T sample;
+    while ((sample = samples.read()) != null) {
+      list.add(sample);
+    }
+    return evaluate(list, nFolds, evaluator);
+  }
+
+  /**
+   * Evaluates all folds of the samples.
+   *
+   * @param samples the samples, which must not change while the folds run.
+   * @param nFolds the number of folds.
+   * @param evaluator trains and evaluates one fold.
+   * @return the measures of the folds in fold order.
+   */
+  public <T, M> List<M> evaluate(List<T> samples, int nFolds, final FoldEvaluator<T, M> evaluator)
+      throws IOException {
+    if (nFolds < 2)
+      throw new IllegalArgumentException("Number of folds must be at least 2, but is " + nFolds);
+
+    final List<T> shared = Collections.unmodifiableList(samples);
+    List<M> measures = new ArrayList<>(nFolds);
+
+    if (threads == 1) {
+      for (int fold = 0; fold < nFolds; fold++) {
+        measures.add(evaluator.evaluate(fold, new FoldSampleStream<>(shared, nFolds, fold, false),
+            new FoldSampleStream<>(shared, nFolds, fold, true)));
+      }
+      return measures;
+    }
+
+    List<Callable<M>> tasks = new ArrayList<>(nFolds);
+    for (int fold = 0; fold < nFolds; fold++) {
+      final int f = fold;
+      final int folds = nFolds;
+      tasks.add(() -> evaluator.evaluate(f, new FoldSampleStream<>(shared, folds, f, false),
+          new FoldSampleStream<>(shared, folds, f, true)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, nFolds));
+    try {
+      for (Future<M> future : executor.invokeAll(tasks)) {
+        measures.add(future.get());
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interruption is not supported!", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new RuntimeException("Exception during cross validation: " + e.getMessage(), e);
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    return measures;
+  }
+
+  /**
+   * Merges the measures of the folds in fold order.
+   *
+   * @param measures the measures of the folds.
+   * @return the merged measure.
+   */
+  public static FMeasure merge(List<FMeasure> measures) {
+    FMeasure merged = new FMeasure();
+    for (FMeasure measure : measures) {
+      merged.mergeInto(measure);
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,83 @@
+package com.lc.nlp4han.ml.util;
+
+import java.util.Arrays;
+
+import com.lc.nlp4han.ml.model.FeatureIndex;
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+
+/**
+ * Collects the features of a context as the predicate ids of a model.
+ * <p>
+ * Features are hashed while they are collected and looked up in the
+ * {@link FeatureIndex} of the model, no feature string is built. Features the model
+ * does not know are dropped, they would not contribute to the evaluation anyway.
+ * <p>
+ * Instances reuse their buffer and are not thread-safe.
+ */
+public class PredicateIdCollector extends FeatureCollector {
+
+  private static final String NULL = "null";
+
+  private final FeatureIndex index;
+  private long hash;
+  private int[] ids = new int[32];
+  private int size;
+
+  public PredicateIdCollector(FeatureIndex index) {
+    this.index = index;
+  }
+
+  @Override
+  public FeatureCollector start(FeatureTemplate template) {
+    hash = template.getHash();
+    return this;
+  }
+
+  @Override
+  public FeatureCollector append(String value) {
+    hash = FeatureIndex.append(hash, value != null ? value : NULL);
+    return this;
+  }
+
+  @Override
+  public FeatureCollector append(char[] text, int start, int end) {
+    hash = FeatureIndex.append(hash, text, start, end);
+    return this;
+  }
+
+  @Override
+  public void end() {
+    int id = index.get(hash);
+    if (id >= 0) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+  }
+
+  /**
+   * Removes all collected ids.
+   */
+  public void reset() {
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public FeatureIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the ids of the collected features which are known to the model,
+   * in the order they were added.
+   *
+   * @return the predicate ids.
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(ids, size);
+  }
+}
@@ -0,0 +1,55 @@
+package com.lc.nlp4han.ml.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+
+/**
+ * Collects the features of a context as strings.
+ */
+public class StringFeatureCollector extends FeatureCollector {
+
+  private final StringBuilder feature = new StringBuilder();
+  private final List<String> features = new ArrayList<>();
+
+  @Override
+  public FeatureCollector start(FeatureTemplate template) {
+    feature.setLength(0);
+    feature.append(template.getPrefix());
+    return this;
+  }
+
+  @Override
+  public FeatureCollector append(String value) {
+    feature.append(value);
+    return this;
+  }
+
+  @Override
+  public FeatureCollector append(char[] text, int start, int end) {
+    feature.append(text, start, end - start);
+    return this;
+  }
+
+  @Override
+  public void end() {
+    features.add(feature.toString());
+  }
+
+  /**
+   * Removes all collected features.
+   */
+  public void reset() {
+    features.clear();
+  }
+
+  /**
+   * Returns the collected features in the order they were added.
+   *
+   * @return the features.
+   */
+  public String[] toArray() {
+    return features.toArray(new String[features.size()]);
+  }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 
 import com.lc.nlp4han.ml.maxent.gis.GIS;
 import com.lc.nlp4han.ml.maxent.quasinewton.QNTrainer;
+import com.lc.nlp4han.ml.maxent.sgd.SGDTrainer;
 import com.lc.nlp4han.ml.naivebayes.NaiveBayesTrainer;
 import com.lc.nlp4han.ml.perceptron.PerceptronTrainer;
 import com.lc.nlp4han.ml.perceptron.SimplePerceptronSequenceTrainer;
@@ -26,6 +27,7 @@ public class TrainerFactory {
     Map<String, Class> _trainers = new HashMap<>();
     _trainers.put(GIS.MAXENT_VALUE, GIS.class);
     _trainers.put(QNTrainer.MAXENT_QN_VALUE, QNTrainer.class);
+    _trainers.put(SGDTrainer.MAXENT_SGD_VALUE, SGDTrainer.class);
     _trainers.put(PerceptronTrainer.PERCEPTRON_VALUE, PerceptronTrainer.class);
     _trainers.put(SimplePerceptronSequenceTrainer.PERCEPTRON_SEQUENCE_VALUE,
         SimplePerceptronSequenceTrainer.class);
@@ -137,6 +139,12 @@ public class TrainerFactory {
 
       String iterationsString = trainParams.get(AbstractTrainer.ITERATIONS_PARAM);
       if (iterationsString != null) Integer.parseInt(iterationsString);
+
+      String threadsString = trainParams.get(TrainingParameters.THREADS_PARAM);
+      if (threadsString != null && Integer.parseInt(threadsString) < 1) return false;
+
+      String seedString = trainParams.get(TrainingParameters.SEED_PARAM);
+      if (seedString != null) Integer.parseInt(seedString);
     }
     catch (NumberFormatException e) {
       return false;
@@ -146,7 +154,8 @@ public class TrainerFactory {
 
     if (dataIndexer != null) {
       if (!(AbstractEventTrainer.DATA_INDEXER_ONE_PASS_VALUE.equals(dataIndexer)
-          || AbstractEventTrainer.DATA_INDEXER_TWO_PASS_VALUE.equals(dataIndexer))) {
+          || AbstractEventTrainer.DATA_INDEXER_TWO_PASS_VALUE.equals(dataIndexer)
+          || AbstractEventTrainer.DATA_INDEXER_PARALLEL_VALUE.equals(dataIndexer))) {
         return false;
       }
     }
@@ -0,0 +1,117 @@
+package com.lc.nlp4han.ml.util;
+
+/**
+ * The metrics of one step of a training. A metric which a trainer does not
+ * compute is <code>NaN</code>, for example the gradient norm of a perceptron.
+ */
+public class TrainingEvent {
+
+  public enum Type {
+    /** The training data was read and indexed. */
+    INDEXING,
+    /** An iteration over the training data finished. */
+    ITERATION
+  }
+
+  private final Type type;
+  private final String trainer;
+  private final int iteration;
+  private final long wallTimeNanos;
+  private final long events;
+  private final double objective;
+  private final double gradientNorm;
+  private final double accuracy;
+  private final long heapUsed;
+  private final int threads;
+  private final double threadUtilization;
+
+  /**
+   * @param type the step which finished.
+   * @param trainer the name of the trainer.
+   * @param iteration the iteration, starting at 1, or 0 for the indexing.
+   * @param wallTimeNanos the wall time of the step in nanoseconds.
+   * @param events the number of events processed by the step.
+   * @param objective the value of the objective function, or NaN.
+   * @param gradientNorm the L2 norm of the gradient, or NaN.
+   * @param accuracy the accuracy on the training data, or NaN.
+   * @param heapUsed the used heap memory in bytes after the step.
+   * @param threads the number of threads of the trainer.
+   * @param threadUtilization the fraction of the wall time the threads were busy, or NaN.
+   */
+  public TrainingEvent(Type type, String trainer, int iteration, long wallTimeNanos, long events,
+      double objective, double gradientNorm, double accuracy, long heapUsed, int threads,
+      double threadUtilization) {
+    this.type = type;
+    this.trainer = trainer;
+    this.iteration = iteration;
+    this.wallTimeNanos = wallTimeNanos;
+    this.events = events;
+    this.objective = objective;
+    this.gradientNorm = gradientNorm;
+    this.accuracy = accuracy;
+    this.heapUsed = heapUsed;
+    this.threads = threads;
+    this.threadUtilization = threadUtilization;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getTrainer() {
+    return trainer;
+  }
+
+  public int getIteration() {
+    return iteration;
+  }
+
+  public long getWallTimeNanos() {
+    return wallTimeNanos;
+  }
+
+  public long getEvents() {
+    return events;
+  }
+
+  /**
+   * @return the number of events processed per second of wall time, or NaN if
+   *     the wall time is 0.
+   */
+  public double getEventsPerSecond() {
+    if (wallTimeNanos <= 0)
+      return Double.NaN;
+
+    return events * 1e9 / wallTimeNanos;
+  }
+
+  public double getObjective() {
+    return objective;
+  }
+
+  public double getGradientNorm() {
+    return gradientNorm;
+  }
+
+  public double getAccuracy() {
+    return accuracy;
+  }
+
+  public long getHeapUsed() {
+    return heapUsed;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public double getThreadUtilization() {
+    return threadUtilization;
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + trainer + " " + iteration + ": " + (wallTimeNanos / 1e6) + "ms, "
+        + events + " events, objective=" + objective;
+  }
+}
@@ -0,0 +1,19 @@
+package com.lc.nlp4han.ml.util;
+
+/**
+ * Receives the progress of a training as structured events, one after the
+ * indexing of the training data and one after every iteration.
+ * <p>
+ * The events are delivered by the training thread, so a listener should return
+ * quickly and must not change the trainer.
+ *
+ * @see AbstractTrainer#addTrainingListener(TrainingListener)
+ * @see JsonLinesTrainingListener
+ */
+public interface TrainingListener {
+
+  /**
+   * @param event the metrics of the finished step.
+   */
+  void onEvent(TrainingEvent event);
+}
@@ -0,0 +1,101 @@
+package com.lc.nlp4han.ml.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the steps of a training and sends them to a {@link TrainingListener}.
+ * Without a listener all methods do nothing, so a trainer can call them
+ * unconditionally.
+ * <p>
+ * The thread utilization of an iteration is the time the worker tasks reported
+ * through {@link #addBusyTime(long)} divided by the wall time of the iteration
+ * times the number of threads. It is NaN when no busy time was reported.
+ */
+public class TrainingMonitor {
+
+  private final TrainingListener listener;
+  private final String trainer;
+  private final int threads;
+
+  private final AtomicLong busyNanos = new AtomicLong();
+  private long iterationStart;
+
+  /**
+   * @param listener the listener, or null to measure nothing.
+   * @param trainer the name of the trainer in the events.
+   * @param threads the number of threads of the trainer.
+   */
+  public TrainingMonitor(TrainingListener listener, String trainer, int threads) {
+    this.listener = listener;
+    this.trainer = trainer;
+    this.threads = threads;
+  }
+
+  /**
+   * @return whether the events are sent to a listener.
+   */
+  public boolean isEnabled() {
+    return listener != null;
+  }
+
+  /**
+   * Reports the indexing of the training data.
+   *
+   * @param wallTimeNanos the wall time of the indexing in nanoseconds.
+   * @param events the number of indexed events.
+   */
+  public void indexingFinished(long wallTimeNanos, long events) {
+    if (listener != null) {
+      listener.onEvent(new TrainingEvent(TrainingEvent.Type.INDEXING, trainer, 0, wallTimeNanos,
+          events, Double.NaN, Double.NaN, Double.NaN, heapUsed(), threads, Double.NaN));
+    }
+  }
+
+  /**
+   * Starts the wall time of an iteration.
+   */
+  public void startIteration() {
+    if (listener != null) {
+      busyNanos.set(0);
+      iterationStart = System.nanoTime();
+    }
+  }
+
+  /**
+   * Adds the time a worker task was busy in the current iteration. Can be
+   * called by several threads at the same time.
+   *
+   * @param nanos the busy time in nanoseconds.
+   */
+  public void addBusyTime(long nanos) {
+    if (listener != null)
+      busyNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Reports the iteration started by the last call of {@link #startIteration()}.
+   *
+   * @param iteration the iteration, starting at 1.
+   * @param events the number of events processed by the iteration.
+   * @param objective the value of the objective function, or NaN.
+   * @param gradientNorm the L2 norm of the gradient, or NaN.
+   * @param accuracy the accuracy on the training data, or NaN.
+   */
+  public void iterationFinished(int iteration, long events, double objective, double gradientNorm,
+      double accuracy) {
+    if (listener != null) {
+      long wallTimeNanos = System.nanoTime() - iterationStart;
+      long busy = busyNanos.get();
+      double utilization = busy > 0 && wallTimeNanos > 0
+          ? (double) busy / ((double) wallTimeNanos * threads) : Double.NaN;
+
+      listener.onEvent(new TrainingEvent(TrainingEvent.Type.ITERATION, trainer, iteration,
+          wallTimeNanos, events, objective, gradientNorm, accuracy, heapUsed(), threads, utilization));
+    }
+  }
+
+  private static long heapUsed() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
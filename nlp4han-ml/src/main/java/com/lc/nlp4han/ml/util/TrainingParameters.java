@@ -18,6 +18,7 @@ public class TrainingParameters {
   public static final String ITERATIONS_PARAM = "Iterations";
   public static final String CUTOFF_PARAM = "Cutoff";
   public static final String THREADS_PARAM = "Threads";
+  public static final String SEED_PARAM = "Seed";
   
   private Map<String, String> parameters = new HashMap<>();
 
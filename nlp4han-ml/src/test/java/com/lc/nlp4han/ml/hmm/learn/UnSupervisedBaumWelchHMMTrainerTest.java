@@ -0,0 +1,142 @@
+package com.lc.nlp4han.ml.hmm.learn;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.hmm.model.ArrayHMMKernel;
+import com.lc.nlp4han.ml.hmm.model.HMModel;
+import com.lc.nlp4han.ml.hmm.model.HMModelBasedArray;
+import com.lc.nlp4han.ml.hmm.model.HMModelByRandom;
+import com.lc.nlp4han.ml.hmm.utils.Observation;
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+import com.lc.nlp4han.ml.hmm.utils.State;
+import com.lc.nlp4han.ml.hmm.utils.StringObservation;
+import com.lc.nlp4han.ml.hmm.utils.StringState;
+import com.lc.nlp4han.ml.util.TrainingEvent;
+
+/**
+ *<ul>
+ *<li>Description: 测试多线程Baum-Welch训练与单线程结果一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class UnSupervisedBaumWelchHMMTrainerTest {
+
+	/**
+	 * 迭代固定次数
+	 */
+	private static class IterationJudge implements ConvergencyJudge {
+
+		private int iterations;
+
+		public IterationJudge(int iterations) {
+			this.iterations = iterations;
+		}
+
+		@Override
+		public boolean isConvergency(HMModel preModel, HMModel currentModel, List<ObservationSequence> trainSequences, int iteration) {
+			return iteration >= iterations;
+		}
+	}
+
+	private List<ObservationSequence> sequences(Random random, int number) {
+		List<ObservationSequence> sequences = new ArrayList<>();
+		for(int n = 0; n < number; n++) {
+			Observation[] observations = new Observation[1 + random.nextInt(12)];
+			int previous = random.nextInt(3);
+			for(int i = 0; i < observations.length; i++) {
+				previous = (previous + 1 + random.nextInt(2)) % 3;
+				observations[i] = new StringObservation("o" + (previous * 4 + random.nextInt(4)));
+			}
+			sequences.add(new ObservationSequence(observations));
+		}
+
+		return sequences;
+	}
+
+	private HMModel initModel() {
+		List<Observation> observations = new ArrayList<>();
+		for(int i = 0; i < 12; i++)
+			observations.add(new StringObservation("o" + i));
+		List<State> states = new ArrayList<>();
+		for(int i = 0; i < 3; i++)
+			states.add(new StringState("s" + i));
+
+		return new HMModelByRandom(observations, states, 101).train();
+	}
+
+	private double logLikelihood(HMModel model, List<ObservationSequence> sequences) {
+		ArrayHMMKernel kernel = new ArrayHMMKernel(new HMModelBasedArray(model));
+		double logProb = 0.0;
+		for(ObservationSequence sequence : sequences)
+			logProb += kernel.forward(kernel.getObservationIndex(sequence));
+
+		return logProb;
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		List<ObservationSequence> sequences = sequences(new Random(102), 500);
+
+		HMModel serial = new UnSupervisedBaumWelchHMMTrainer(initModel(), sequences, new IterationJudge(3), 1).train();
+		HMModel parallel = new UnSupervisedBaumWelchHMMTrainer(initModel(), sequences, new IterationJudge(3), 4).train();
+		assertEquals(serial, parallel);
+		assertEquals(serial, new UnSupervisedBaumWelchHMMTrainer(initModel(), sequences, new IterationJudge(3), 3).train());
+	}
+
+	@Test
+	public void testReestimation() throws IOException {
+		List<ObservationSequence> sequences = sequences(new Random(103), 300);
+		HMModel init = initModel();
+		HMModel model = new UnSupervisedBaumWelchHMMTrainer(init, sequences, new IterationJudge(5), 2).train();
+
+		// 重估的概率经过0.001的平滑，每行的和为0.999 + 0.001 * 个数
+		int N = model.statesCount();
+		int M = model.observationsCount();
+		double piSum = 0.0;
+		for(int i = 0; i < N; i++) {
+			piSum += Math.pow(10, model.getLogPi(i));
+
+			double transitionSum = 0.0;
+			for(int j = 0; j < N; j++)
+				transitionSum += Math.pow(10, model.transitionLogProb(new int[] {i}, j));
+			assertEquals(0.999 + 0.001 * N, transitionSum, 1e-9);
+
+			double emissionSum = 0.0;
+			for(int k = 0; k < M; k++)
+				emissionSum += Math.pow(10, model.emissionLogProb(i, k));
+			assertEquals(0.999 + 0.001 * M, emissionSum, 1e-9);
+		}
+		assertEquals(0.999 + 0.001 * N, piSum, 1e-9);
+
+		assertTrue(logLikelihood(model, sequences) > logLikelihood(init, sequences));
+	}
+
+	@Test
+	public void testTrainingListener() throws IOException {
+		List<ObservationSequence> sequences = sequences(new Random(104), 300);
+		HMModel init = initModel();
+		UnSupervisedBaumWelchHMMTrainer trainer = new UnSupervisedBaumWelchHMMTrainer(init, sequences, new IterationJudge(4), 2);
+		List<TrainingEvent> events = new ArrayList<>();
+		trainer.setTrainingListener(events::add);
+		trainer.train();
+
+		// 每次迭代报告迭代前模型的对数似然，且逐次增大
+		assertEquals(4, events.size());
+		assertEquals(logLikelihood(init, sequences), events.get(0).getObjective(), 1e-6);
+		for(int i = 0; i < events.size(); i++) {
+			TrainingEvent event = events.get(i);
+			assertEquals(i + 1, event.getIteration());
+			assertEquals(300, event.getEvents());
+			assertEquals(2, event.getThreads());
+			if(i > 0)
+				assertTrue(event.getObjective() > events.get(i - 1).getObjective());
+		}
+	}
+}
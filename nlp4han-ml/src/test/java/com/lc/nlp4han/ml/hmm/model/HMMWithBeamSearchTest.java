@@ -0,0 +1,159 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.hmm.learn.SupervisedAdditionHMMTrainer;
+import com.lc.nlp4han.ml.hmm.stream.SupervisedHMMSample;
+import com.lc.nlp4han.ml.hmm.utils.Observation;
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+import com.lc.nlp4han.ml.hmm.utils.State;
+import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+import com.lc.nlp4han.ml.hmm.utils.StringObservation;
+import com.lc.nlp4han.ml.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 测试柱搜索解码与候选隐藏状态
+ *<li>Company: HUST
+ *</ul>
+ */
+public class HMMWithBeamSearchTest {
+
+	/**
+	 * 每个观测只由少数隐藏状态发射
+	 */
+	static List<SupervisedHMMSample> samples(Random random, int number, int states, int observations) {
+		List<SupervisedHMMSample> samples = new ArrayList<>();
+		for(int n = 0; n < number; n++) {
+			int length = 1 + random.nextInt(10);
+			State[] s = new State[length];
+			Observation[] o = new Observation[length];
+			int state = random.nextInt(states);
+			for(int i = 0; i < length; i++) {
+				state = (state + 1 + random.nextInt(2)) % states;
+				s[i] = new StringState("s" + state);
+				o[i] = new StringObservation("o" + (state * 2 + random.nextInt(3)) % observations);
+			}
+			samples.add(new SupervisedHMMSample(new StateSequence(s), new ObservationSequence(o)));
+		}
+
+		return samples;
+	}
+
+	/**
+	 * 测试用的观测序列，包括未登录的观测
+	 */
+	static ObservationSequence observations(Random random, int length, int observations) {
+		Observation[] o = new Observation[length];
+		for(int i = 0; i < length; i++)
+			o[i] = new StringObservation("o" + random.nextInt(observations + 2));
+
+		return new ObservationSequence(o);
+	}
+
+	private void testExhaustive(int order) throws IOException {
+		HMModel model = new SupervisedAdditionHMMTrainer(samples(new Random(111), 300, 6, 12), order).train();
+		HMModelBasedArray arrayModel = new HMModelBasedArray(model);
+		HMMWithViterbi viterbi = new HMMWithViterbi(arrayModel);
+		HMMWithBeamSearch beam = new HMMWithBeamSearch(arrayModel, 0, Double.POSITIVE_INFINITY, false);
+
+		Random random = new Random(112);
+		for(int n = 0; n < 100; n++) {
+			ObservationSequence observations = observations(random, 1 + random.nextInt(15), 12);
+			StateSequence expected = viterbi.bestStateSeqence(observations);
+			assertEquals(expected, beam.bestStateSeqence(observations));
+			assertEquals(viterbi.getLogProb(observations, expected), beam.getLogProb(observations, expected), 1e-9);
+		}
+	}
+
+	@Test
+	public void testFirstOrder() throws IOException {
+		testExhaustive(1);
+	}
+
+	@Test
+	public void testSecondOrder() throws IOException {
+		testExhaustive(2);
+	}
+
+	@Test
+	public void testPruning() throws IOException {
+		HMModel model = new HMModelBasedArray(new SupervisedAdditionHMMTrainer(samples(new Random(113), 300, 6, 12), 2).train());
+		StateCandidates candidates = new StateCandidates(model);
+		HMMWithViterbi viterbi = new HMMWithViterbi(model);
+		HMMWithBeamSearch constrained = new HMMWithBeamSearch(model, 0, Double.POSITIVE_INFINITY, true);
+		HMMWithBeamSearch narrow = new HMMWithBeamSearch(model, 2, 2.0, true);
+
+		Random random = new Random(114);
+		for(int n = 0; n < 100; n++) {
+			ObservationSequence observations = observations(random, 1 + random.nextInt(15), 12);
+			double best = viterbi.getLogProb(observations, viterbi.bestStateSeqence(observations));
+
+			// 只扩展候选隐藏状态
+			StateSequence states = constrained.bestStateSeqence(observations);
+			for(int t = 0; t < states.length(); t++) {
+				int[] cand = candidates.getCandidates(model.getObservationIndex(observations.get(t)));
+				int index = model.getDict().getIndex(states.get(t));
+				boolean found = false;
+				for(int i : cand)
+					found |= i == index;
+				assertTrue(found);
+			}
+			assertTrue(constrained.getLogProb(observations, states) <= best + 1e-9);
+
+			StateSequence pruned = narrow.bestStateSeqence(observations);
+			assertEquals(observations.length(), pruned.length());
+			assertTrue(narrow.getLogProb(observations, pruned) <= constrained.getLogProb(observations, states) + 1e-9);
+		}
+	}
+
+	@Test
+	public void testTiesAtCutoff() throws IOException {
+		HMModelBasedArray model = new HMModelBasedArray(new SupervisedAdditionHMMTrainer(samples(new Random(116), 100, 6, 12), 1).train());
+		int N = model.statesCount;
+
+		// 第一个观测：状态0、1的得分相同且等于剪枝的界，索引最大的状态得分最高
+		Arrays.fill(model.pi, Math.log10(1.0 / N));
+		int e = N;
+		for(int i = 0; i < N; i++)
+			model.emissions[e + i] = -9;
+		model.emissions[e] = -3;
+		model.emissions[e + 1] = -3;
+		model.emissions[e + N - 1] = -1;
+
+		HMMWithBeamSearch beam = new HMMWithBeamSearch(model, 2, Double.POSITIVE_INFINITY, false);
+		int[] states = new int[1];
+		beam.decode(new int[] {0}, states);
+		assertEquals(N - 1, states[0]);
+
+		// 得分相同的状态只保留索引较小的
+		model.emissions[e + N - 1] = -9;
+		model.emissions[e + 2] = -3;
+		beam.decode(new int[] {0}, states);
+		assertEquals(0, states[0]);
+	}
+
+	@Test
+	public void testCandidates() throws IOException {
+		HMModel model = new SupervisedAdditionHMMTrainer(samples(new Random(115), 100, 6, 12), 1).train();
+		StateCandidates candidates = new StateCandidates(model);
+		assertEquals(6, candidates.getCandidates(-1).length);
+		for(Observation observation : model.getObservations()) {
+			int o = model.getObservationIndex(observation);
+			int[] cand = candidates.getCandidates(o);
+			assertTrue(cand.length > 0 && cand.length < 6);
+			for(int i = 0; i < cand.length; i++) {
+				assertTrue(model.getEmissionMatrix().get(model.getState(cand[i])).contain(observation));
+				assertTrue(i == 0 || cand[i - 1] < cand[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.hmm.learn.SupervisedAdditionHMMTrainer;
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+
+/**
+ *<ul>
+ *<li>Description: 测试带启发函数的A*解码与不剪枝的解码得分一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class HMMWithHeuristicAStarTest {
+
+	private void testOptimal(int order) throws IOException {
+		HMModel model = new HMModelBasedArray(new SupervisedAdditionHMMTrainer(
+				HMMWithBeamSearchTest.samples(new Random(121), 300, 6, 12), order).train());
+		HMMWithViterbi viterbi = new HMMWithViterbi(model);
+		HMMWithBeamSearch constrainedBeam = new HMMWithBeamSearch(model, 0, Double.POSITIVE_INFINITY, true);
+		HMMWithHeuristicAStar astar = new HMMWithHeuristicAStar(model, false);
+		HMMWithHeuristicAStar constrained = new HMMWithHeuristicAStar(model, true);
+
+		Random random = new Random(122);
+		for(int n = 0; n < 100; n++) {
+			ObservationSequence observations = HMMWithBeamSearchTest.observations(random, 1 + random.nextInt(15), 12);
+
+			double expected = viterbi.getLogProb(observations, viterbi.bestStateSeqence(observations));
+			StateSequence states = astar.bestStateSeqence(observations);
+			assertEquals(observations.length(), states.length());
+			assertEquals(expected, astar.getLogProb(observations, states), 1e-9);
+
+			expected = constrainedBeam.getLogProb(observations, constrainedBeam.bestStateSeqence(observations));
+			states = constrained.bestStateSeqence(observations);
+			assertEquals(expected, constrained.getLogProb(observations, states), 1e-9);
+		}
+	}
+
+	@Test
+	public void testFirstOrder() throws IOException {
+		testOptimal(1);
+	}
+
+	@Test
+	public void testSecondOrder() throws IOException {
+		testOptimal(2);
+	}
+}
@@ -0,0 +1,139 @@
+package com.lc.nlp4han.ml.hmm.model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.hmm.io.BinaryFileHMMReader;
+import com.lc.nlp4han.ml.hmm.io.BinaryFileHMMWriter;
+import com.lc.nlp4han.ml.hmm.learn.SupervisedAdditionHMMTrainer;
+import com.lc.nlp4han.ml.hmm.stream.SupervisedHMMSample;
+import com.lc.nlp4han.ml.hmm.utils.Observation;
+import com.lc.nlp4han.ml.hmm.utils.ObservationSequence;
+import com.lc.nlp4han.ml.hmm.utils.State;
+import com.lc.nlp4han.ml.hmm.utils.StateSequence;
+import com.lc.nlp4han.ml.hmm.utils.StringObservation;
+import com.lc.nlp4han.ml.hmm.utils.StringState;
+
+/**
+ *<ul>
+ *<li>Description: 测试基于数组的HMM模型及其Viterbi、前向和后向算法与基于Map的模型一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class HMModelBasedArrayTest {
+
+	private List<SupervisedHMMSample> samples(Random random, int number, int states, int observations) {
+		List<SupervisedHMMSample> samples = new ArrayList<>();
+		for(int n = 0; n < number; n++) {
+			int length = 1 + random.nextInt(10);
+			State[] s = new State[length];
+			Observation[] o = new Observation[length];
+			for(int i = 0; i < length; i++) {
+				int state = random.nextInt(states);
+				s[i] = new StringState("s" + state);
+				o[i] = new StringObservation("o" + (state * 3 + random.nextInt(observations)) % observations);
+			}
+			samples.add(new SupervisedHMMSample(new StateSequence(s), new ObservationSequence(o)));
+		}
+
+		return samples;
+	}
+
+	/**
+	 * 测试用的观测序列，包括未登录的观测
+	 */
+	private ObservationSequence observations(Random random, int length, int observations) {
+		Observation[] o = new Observation[length];
+		for(int i = 0; i < length; i++)
+			o[i] = new StringObservation("o" + random.nextInt(observations + 2));
+
+		return new ObservationSequence(o);
+	}
+
+	@Test
+	public void testFirstOrder() throws IOException {
+		HMModel model = new SupervisedAdditionHMMTrainer(samples(new Random(91), 200, 5, 12), 1).train();
+		HMModelBasedArray arrayModel = new HMModelBasedArray(model);
+		HMMWithViterbi expected = new HMMWithViterbi(model);
+		HMMWithViterbi actual = new HMMWithViterbi(arrayModel);
+		ArrayHMMKernel kernel = new ArrayHMMKernel(arrayModel);
+
+		Random random = new Random(92);
+		for(int n = 0; n < 100; n++) {
+			ObservationSequence observations = observations(random, 1 + random.nextInt(15), 12);
+			assertEquals(expected.bestStateSeqence(observations), actual.bestStateSeqence(observations));
+
+			double logProb = Math.log10(new ForwardAlgorithm(model, observations).getProb());
+			assertEquals(logProb, Math.log10(actual.getLogProb(observations)), 1e-9);
+			assertEquals(logProb, kernel.backward(kernel.getObservationIndex(observations)), 1e-9);
+			assertEquals(Math.log10(new BackwardAlgorithm(model, observations).getProb()),
+					kernel.backward(kernel.getObservationIndex(observations)), 1e-9);
+		}
+	}
+
+	/**
+	 * 2阶模型与枚举所有隐藏序列的结果比较
+	 */
+	@Test
+	public void testSecondOrder() throws IOException {
+		HMModel model = new SupervisedAdditionHMMTrainer(samples(new Random(93), 300, 3, 6), 2).train();
+		HMModelBasedArray arrayModel = new HMModelBasedArray(model);
+		HMMWithAStar scorer = new HMMWithAStar(model);
+		HMMWithViterbi viterbi = new HMMWithViterbi(arrayModel);
+		ArrayHMMKernel kernel = new ArrayHMMKernel(arrayModel);
+
+		Random random = new Random(94);
+		for(int n = 0; n < 30; n++) {
+			int length = 1 + random.nextInt(5);
+			ObservationSequence observations = observations(random, length, 6);
+
+			double max = Double.NEGATIVE_INFINITY;
+			double sum = 0.0;
+			int[] states = new int[length];
+			for(int code = 0; code < Math.pow(3, length); code++) {
+				for(int i = length - 1, rest = code; i >= 0; i--, rest /= 3)
+					states[i] = rest % 3;
+				State[] s = new State[length];
+				for(int i = 0; i < length; i++)
+					s[i] = model.getState(states[i]);
+
+				double score = scorer.getLogProb(observations, new StateSequence(s));
+				max = Math.max(max, score);
+				sum += Math.pow(10, score);
+			}
+
+			StateSequence best = viterbi.bestStateSeqence(observations);
+			assertEquals(max, scorer.getLogProb(observations, best), 1e-9);
+			assertEquals(max, viterbi.getLogProb(observations, best), 1e-9);
+			assertEquals(Math.log10(sum), kernel.forward(kernel.getObservationIndex(observations)), 1e-9);
+			assertEquals(Math.log10(sum), kernel.backward(kernel.getObservationIndex(observations)), 1e-9);
+		}
+	}
+
+	@Test
+	public void testReadModel() throws IOException, ClassNotFoundException {
+		HMModel model = new SupervisedAdditionHMMTrainer(samples(new Random(95), 100, 4, 8), 2).train();
+
+		File file = File.createTempFile("hmm", ".bin");
+		try {
+			new BinaryFileHMMWriter(model, file).persist();
+			HMModel read = new BinaryFileHMMReader(file).readModel(true);
+			assertTrue(read instanceof HMModelBasedArray);
+			assertEquals(2, read.getOrder());
+
+			HMMWithViterbi viterbi = new HMMWithViterbi(read);
+			ObservationSequence observations = observations(new Random(96), 8, 8);
+			assertEquals(new HMMWithViterbi(new HMModelBasedArray(model)).bestStateSeqence(observations),
+					viterbi.bestStateSeqence(observations));
+		} finally {
+			file.delete();
+		}
+	}
+}
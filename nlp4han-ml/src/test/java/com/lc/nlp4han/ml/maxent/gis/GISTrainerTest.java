@@ -0,0 +1,94 @@
+package com.lc.nlp4han.ml.maxent.gis;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.model.Context;
+import com.lc.nlp4han.ml.model.DataIndexer;
+import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.model.OnePassRealValueDataIndexer;
+import com.lc.nlp4han.ml.model.TwoPassDataIndexer;
+import com.lc.nlp4han.ml.util.CollectionObjectStream;
+
+/**
+ * 测试多线程GIS训练与单线程训练得到相同的模型
+ */
+public class GISTrainerTest {
+
+	private static final String[] OUTCOMES = {"B", "M", "E", "S", "X"};
+
+	private List<Event> events(Random random, int n) {
+		List<Event> events = new ArrayList<>();
+		for (int k = 0; k < n; k++) {
+			int outcome = random.nextInt(OUTCOMES.length);
+			String[] context = new String[1 + random.nextInt(4)];
+			context[0] = "c0=" + (random.nextInt(4) == 0 ? random.nextInt(OUTCOMES.length) : outcome);
+			for (int i = 1; i < context.length; i++)
+				context[i] = "c" + i + "=" + random.nextInt(30);
+			events.add(new Event(OUTCOMES[outcome], context));
+		}
+		return events;
+	}
+
+	private void assertSameModel(List<Event> events, boolean smoothing, int threads) throws IOException {
+		DataIndexer indexer = new TwoPassDataIndexer(new CollectionObjectStream<>(events), 2, true);
+		GISModel expected = GIS.trainModel(30, indexer, false, smoothing, null, 2, 1);
+		GISModel actual = GIS.trainModel(30, indexer, false, smoothing, null, 2, threads);
+
+		for (Event event : events(new Random(51), 200))
+			assertArrayEquals(expected.eval(event.getContext()), actual.eval(event.getContext()), 0.0);
+	}
+
+	@Test
+	public void testPartitionedExpectations() throws IOException {
+		List<Event> events = events(new Random(52), 3000);
+		assertSameModel(events, false, 2);
+		assertSameModel(events, false, 5);
+	}
+
+	@Test
+	public void testSmoothing() throws IOException {
+		List<Event> events = events(new Random(53), 1000);
+		assertSameModel(events, true, 3);
+	}
+
+	@Test
+	public void testRealValues() throws IOException {
+		Random random = new Random(55);
+		List<Event> events = new ArrayList<>();
+		for (Event event : events(random, 2000)) {
+			float[] values = new float[event.getContext().length];
+			for (int i = 0; i < values.length; i++)
+				values[i] = 0.1f + random.nextFloat() * 1.3f;
+			// 重复的事件合并后出现次数大于1，值与次数之积不能用float精确表示
+			for (int k = 0; k < 3; k++)
+				events.add(new Event(event.getOutcome(), event.getContext(), values));
+		}
+
+		DataIndexer indexer = new OnePassRealValueDataIndexer(new CollectionObjectStream<>(events), 2);
+		GISModel expected = GIS.trainModel(30, indexer, false, false, null, 2, 1);
+		for (int threads : new int[]{2, 5}) {
+			GISModel actual = GIS.trainModel(30, indexer, false, false, null, 2, threads);
+
+			Context[] e = (Context[]) expected.getDataStructures()[0];
+			Context[] a = (Context[]) actual.getDataStructures()[0];
+			assertEquals(e.length, a.length);
+			for (int pi = 0; pi < e.length; pi++) {
+				assertArrayEquals(e[pi].getOutcomes(), a[pi].getOutcomes());
+				assertArrayEquals(e[pi].getParameters(), a[pi].getParameters(), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testMoreThreadsThanPredicates() throws IOException {
+		List<Event> events = events(new Random(54), 10);
+		assertSameModel(events, false, 16);
+	}
+}
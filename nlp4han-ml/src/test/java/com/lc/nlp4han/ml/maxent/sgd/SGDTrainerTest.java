@@ -0,0 +1,106 @@
+package com.lc.nlp4han.ml.maxent.sgd;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.maxent.quasinewton.QNModel;
+import com.lc.nlp4han.ml.model.ClassificationModel;
+import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.util.AbstractTrainer;
+import com.lc.nlp4han.ml.util.CollectionObjectStream;
+import com.lc.nlp4han.ml.util.EventTrainer;
+import com.lc.nlp4han.ml.util.TrainerFactory;
+import com.lc.nlp4han.ml.util.TrainingParameters;
+
+/**
+ * 测试随机梯度下降最大熵训练器
+ */
+public class SGDTrainerTest {
+
+	private static final String[] OUTCOMES = {"B", "M", "E", "S"};
+
+	/**
+	 * 结果由第一个特征决定，其余特征为噪声
+	 */
+	private List<Event> events(Random random, int n) {
+		List<Event> events = new ArrayList<>();
+		for (int k = 0; k < n; k++) {
+			int outcome = random.nextInt(OUTCOMES.length);
+			String[] context = {"c0=" + outcome, "c1=" + random.nextInt(10), "c2=" + random.nextInt(10)};
+			events.add(new Event(OUTCOMES[outcome], context));
+		}
+		return events;
+	}
+
+	private ClassificationModel train(List<Event> events, String... settings) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		params.put(AbstractTrainer.ALGORITHM_PARAM, SGDTrainer.MAXENT_SGD_VALUE);
+		params.put(AbstractTrainer.ITERATIONS_PARAM, "10");
+		params.put(AbstractTrainer.CUTOFF_PARAM, "0");
+		for (int i = 0; i < settings.length; i += 2)
+			params.put(settings[i], settings[i + 1]);
+		assertTrue(TrainerFactory.isValid(params));
+
+		EventTrainer trainer = TrainerFactory.getEventTrainer(params, new HashMap<String, String>());
+		ClassificationModel model = trainer.train(new CollectionObjectStream<>(events));
+		assertTrue(model instanceof QNModel);
+		return model;
+	}
+
+	private void assertLearned(ClassificationModel model) {
+		for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+			String[] context = {"c0=" + outcome, "c1=3", "c2=7"};
+			double[] probs = model.eval(context);
+			assertEquals(OUTCOMES[outcome], model.getBestOutcome(probs));
+			assertTrue(probs[model.getIndex(OUTCOMES[outcome])] > 0.5);
+		}
+	}
+
+	@Test
+	public void testUpdaters() throws IOException {
+		List<Event> events = events(new Random(41), 2000);
+		assertLearned(train(events, SGDTrainer.UPDATER_PARAM, SGDTrainer.UPDATER_SGD_VALUE));
+		assertLearned(train(events, SGDTrainer.UPDATER_PARAM, SGDTrainer.UPDATER_ADAGRAD_VALUE));
+		assertLearned(train(events, SGDTrainer.UPDATER_PARAM, SGDTrainer.UPDATER_SGD_VALUE,
+				SGDTrainer.MINI_BATCH_SIZE_PARAM, "8", SGDTrainer.LEARNING_RATE_PARAM, "1"));
+	}
+
+	@Test
+	public void testHogwild() throws IOException {
+		List<Event> events = events(new Random(42), 2000);
+		assertLearned(train(events, TrainingParameters.THREADS_PARAM, "4", SGDTrainer.MINI_BATCH_SIZE_PARAM, "4"));
+	}
+
+	@Test
+	public void testL1() throws IOException {
+		List<Event> events = events(new Random(43), 2000);
+		ClassificationModel model = train(events, SGDTrainer.L1COST_PARAM, "20", SGDTrainer.L2COST_PARAM, "0.1");
+		assertLearned(model);
+
+		// 噪声特征的参数被L1正则化截断为0
+		int zeros = 0;
+		for (int i = 0; i < 10; i++) {
+			double[] probs = model.eval(new String[] {"c1=" + i});
+			if (probs[0] == probs[1] && probs[1] == probs[2] && probs[2] == probs[3])
+				zeros++;
+		}
+		assertTrue(zeros > 5);
+	}
+
+	@Test
+	public void testDeterministic() throws IOException {
+		List<Event> events = events(new Random(44), 500);
+		ClassificationModel first = train(events, SGDTrainer.L1COST_PARAM, "1");
+		ClassificationModel second = train(events, SGDTrainer.L1COST_PARAM, "1");
+		for (Event event : events)
+			assertArrayEquals(first.eval(event.getContext()), second.eval(event.getContext()), 0.0);
+	}
+}
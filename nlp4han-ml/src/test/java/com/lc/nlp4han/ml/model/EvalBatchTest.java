@@ -0,0 +1,90 @@
+package com.lc.nlp4han.ml.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.maxent.gis.GISModel;
+import com.lc.nlp4han.ml.maxent.quasinewton.QNModel;
+import com.lc.nlp4han.ml.naivebayes.NaiveBayesModel;
+import com.lc.nlp4han.ml.perceptron.PerceptronModel;
+
+/**
+ * 测试批量计算与逐个计算上下文的结果相同
+ */
+public class EvalBatchTest {
+
+	private static final String[] OUTCOMES = {"SBJ", "OBJ", "ATT", "ADV", "null"};
+
+	private String[] preds;
+
+	private Context[] params(Random random, boolean counts) {
+		preds = new String[40];
+		Context[] params = new Context[preds.length];
+		for (int i = 0; i < params.length; i++) {
+			preds[i] = "w0p1=" + i;
+
+			// 一半特征与所有结果共现，一半只与部分结果共现
+			int[] outcomes;
+			if (i % 2 == 0) {
+				outcomes = new int[]{0, 1, 2, 3, 4};
+			}
+			else {
+				outcomes = new int[]{1 + random.nextInt(2), 3 + random.nextInt(2)};
+			}
+
+			double[] values = new double[outcomes.length];
+			for (int j = 0; j < values.length; j++)
+				values[j] = counts ? 1 + random.nextInt(9) : random.nextGaussian();
+			params[i] = new Context(outcomes, values);
+		}
+		return params;
+	}
+
+	private void assertSameAsEval(ClassificationModel model, Random random) {
+		String[][] contexts = new String[30][];
+		for (int k = 0; k < contexts.length; k++) {
+			contexts[k] = new String[random.nextInt(6)];
+			for (int i = 0; i < contexts[k].length; i++)
+				contexts[k][i] = random.nextInt(5) == 0 ? "unknown" : preds[random.nextInt(preds.length)];
+		}
+
+		double[][] batch = model.evalBatch(contexts, null);
+		assertEquals(contexts.length, batch.length);
+		for (int k = 0; k < contexts.length; k++)
+			assertArrayEquals(model.eval(contexts[k]), batch[k], 0.0);
+
+		// 复用调用者的数组
+		double[][] reused = model.evalBatch(contexts, batch);
+		assertSame(batch, reused);
+		for (int k = 0; k < contexts.length; k++)
+			assertArrayEquals(model.eval(contexts[k]), reused[k], 0.0);
+	}
+
+	@Test
+	public void testGIS() {
+		Random random = new Random(11);
+		assertSameAsEval(new GISModel(params(random, false), preds, OUTCOMES, 4, 0.3), random);
+		assertSameAsEval(new GISModel(params(random, false), preds, OUTCOMES, 1, 0), random);
+	}
+
+	@Test
+	public void testPerceptron() {
+		Random random = new Random(12);
+		assertSameAsEval(new PerceptronModel(params(random, false), preds, OUTCOMES), random);
+	}
+
+	@Test
+	public void testQN() {
+		Random random = new Random(13);
+		assertSameAsEval(new QNModel(params(random, false), preds, OUTCOMES), random);
+	}
+
+	@Test
+	public void testNaiveBayes() {
+		Random random = new Random(14);
+		assertSameAsEval(new NaiveBayesModel(params(random, true), preds, OUTCOMES), random);
+	}
+}
@@ -0,0 +1,159 @@
+package com.lc.nlp4han.ml.model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.maxent.gis.GISModel;
+import com.lc.nlp4han.ml.maxent.quasinewton.QNModel;
+import com.lc.nlp4han.ml.naivebayes.NaiveBayesModel;
+import com.lc.nlp4han.ml.perceptron.PerceptronModel;
+import com.lc.nlp4han.ml.util.ModelUtil;
+
+/**
+ * 测试内存映射格式的模型与原模型的计算结果相同
+ */
+public class MappedModelTest {
+
+	private static final String[] OUTCOMES = {"B", "M", "E", "S"};
+
+	private String[] preds;
+
+	private Context[] params(Random random, boolean counts) {
+		preds = new String[50];
+		Context[] params = new Context[preds.length];
+		for (int i = 0; i < params.length; i++) {
+			preds[i] = "f" + (i * 7919 % 50) + "=中" + i;
+
+			// 每个特征只与部分结果共现
+			int n = 1 + random.nextInt(OUTCOMES.length);
+			int[] outcomes = new int[n];
+			double[] values = new double[n];
+			for (int j = 0; j < n; j++) {
+				outcomes[j] = j + OUTCOMES.length - n;
+				values[j] = counts ? 1 + random.nextInt(9) : random.nextGaussian();
+			}
+			params[i] = new Context(outcomes, values);
+		}
+		return params;
+	}
+
+	private void assertSameEval(AbstractModel expected, ClassificationModel actual, Random random) {
+		assertEquals(expected.getNumOutcomes(), actual.getNumOutcomes());
+		for (int i = 0; i < OUTCOMES.length; i++)
+			assertEquals(expected.getOutcome(i), actual.getOutcome(i));
+
+		for (int k = 0; k < 100; k++) {
+			String[] context = new String[1 + random.nextInt(6)];
+			for (int i = 0; i < context.length; i++)
+				context[i] = random.nextInt(5) == 0 ? "unknown" + i : preds[random.nextInt(preds.length)];
+
+			assertArrayEquals(expected.eval(context), actual.eval(context), 0.0);
+		}
+	}
+
+	private MappedModel convert(AbstractModel model) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ModelUtil.writeMappedModel(model, out);
+		return (MappedModel) ModelUtil.readModel(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void testGIS() throws IOException {
+		Random random = new Random(1);
+		AbstractModel model = new GISModel(params(random, false), preds, OUTCOMES, 3, 0.5);
+		assertSameEval(model, convert(model), random);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNonUniformPrior() throws IOException {
+		Random random = new Random(7);
+		Prior prior = new Prior() {
+			private int numOutcomes;
+
+			public void logPrior(double[] dist, int[] context, float[] values) {
+				for (int oi = 0; oi < numOutcomes; oi++)
+					dist[oi] = Math.log((oi + 1.0) / (numOutcomes * (numOutcomes + 1) / 2));
+			}
+
+			public void logPrior(double[] dist, int[] context) {
+				logPrior(dist, context, null);
+			}
+
+			public void setLabels(String[] outcomeLabels, String[] contextLabels) {
+				numOutcomes = outcomeLabels.length;
+			}
+		};
+
+		// 映射格式不能保存先验，非均匀先验的模型不能转换
+		convert(new GISModel(params(random, false), preds, OUTCOMES, 3, 0.5, prior));
+	}
+
+	@Test
+	public void testPerceptron() throws IOException {
+		Random random = new Random(2);
+		AbstractModel model = new PerceptronModel(params(random, false), preds, OUTCOMES);
+		assertSameEval(model, convert(model), random);
+	}
+
+	@Test
+	public void testQN() throws IOException {
+		Random random = new Random(3);
+		AbstractModel model = new QNModel(params(random, false), preds, OUTCOMES);
+		assertSameEval(model, convert(model), random);
+	}
+
+	@Test
+	public void testNaiveBayes() throws IOException {
+		Random random = new Random(4);
+		AbstractModel model = new NaiveBayesModel(params(random, true), preds, OUTCOMES);
+		assertSameEval(model, convert(model), random);
+	}
+
+	@Test
+	public void testPredicateIds() throws IOException {
+		Random random = new Random(5);
+		AbstractModel model = new GISModel(params(random, false), preds, OUTCOMES, 3, 0);
+		MappedModel mapped = convert(model);
+
+		assertEquals(preds.length, mapped.getNumPredicates());
+		for (String pred : preds) {
+			int id = mapped.getPredIndex(pred);
+			assertEquals(pred, mapped.getPredicate(id));
+			assertEquals(id, mapped.getFeatureIndex().get(pred));
+		}
+		assertEquals(-1, mapped.getPredIndex("f0"));
+		assertEquals(-1, mapped.getPredIndex(""));
+	}
+
+	@Test
+	public void testMappedFileAndBack() throws IOException {
+		Random random = new Random(6);
+		AbstractModel model = new GISModel(params(random, false), preds, OUTCOMES, 3, 0);
+
+		File file = File.createTempFile("mapped", ".bin");
+		file.deleteOnExit();
+		new MappedModelWriter(model, file).persist();
+		assertTrue(MappedModel.isMappedModel(file));
+
+		ClassificationModel mapped = ModelUtil.readModel(file);
+		assertTrue(mapped instanceof MappedModel);
+		assertSameEval(model, mapped, random);
+
+		// 转回原格式
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ModelUtil.writeModel(mapped, out);
+		ClassificationModel legacy = ModelUtil.readModel(new ByteArrayInputStream(out.toByteArray()));
+		assertTrue(legacy instanceof GISModel);
+		assertSameEval(model, legacy, random);
+
+		Files.delete(file.toPath());
+	}
+}
@@ -0,0 +1,86 @@
+package com.lc.nlp4han.ml.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.util.CollectionObjectStream;
+
+/**
+ * 测试并行索引与两遍索引得到相同的事件
+ */
+public class ParallelDataIndexerTest {
+
+	private List<Event> events(Random random, int n) {
+		List<Event> events = new ArrayList<>();
+		for (int k = 0; k < n; k++) {
+			// 特征取值范围较小，使重复事件和低频特征都会出现
+			String[] context = new String[random.nextInt(4)];
+			for (int i = 0; i < context.length; i++)
+				context[i] = "c" + i + "=" + random.nextInt(i == 0 ? 3 : 40);
+			events.add(new Event(random.nextBoolean() ? "B" : "E", context));
+		}
+		return events;
+	}
+
+	/**
+	 * 将索引后的事件还原为字符串形式，以便比较特征编号不同的索引
+	 */
+	private List<String> decode(DataIndexer indexer) {
+		List<String> decoded = new ArrayList<>();
+		int[][] contexts = indexer.getContexts();
+		for (int i = 0; i < contexts.length; i++) {
+			String[] preds = new String[contexts[i].length];
+			for (int j = 0; j < preds.length; j++)
+				preds[j] = indexer.getPredLabels()[contexts[i][j]];
+			Arrays.sort(preds);
+			decoded.add(indexer.getOutcomeLabels()[indexer.getOutcomeList()[i]] + " "
+					+ Arrays.toString(preds) + " " + indexer.getNumTimesEventsSeen()[i]);
+		}
+		return decoded;
+	}
+
+	private void assertSameAsTwoPass(List<Event> events, boolean sort, int threads, int budget)
+			throws IOException {
+		DataIndexer expected = new TwoPassDataIndexer(new CollectionObjectStream<>(events), 3, sort);
+		DataIndexer actual = new ParallelDataIndexer(new CollectionObjectStream<>(events), 3, sort,
+				threads, budget, null);
+
+		assertEquals(expected.getNumEvents(), actual.getNumEvents());
+		assertArrayEquals(expected.getOutcomeLabels(), actual.getOutcomeLabels());
+
+		List<String> expectedEvents = decode(expected);
+		List<String> actualEvents = decode(actual);
+		if (sort) {
+			// 特征编号不同，合并后事件的顺序也不同
+			expectedEvents.sort(null);
+			actualEvents.sort(null);
+		}
+		assertEquals(expectedEvents, actualEvents);
+
+		String[] preds = expected.getPredLabels().clone();
+		Arrays.sort(preds);
+		assertArrayEquals(preds, actual.getPredLabels());
+	}
+
+	@Test
+	public void testInMemory() throws IOException {
+		List<Event> events = events(new Random(21), 5000);
+		assertSameAsTwoPass(events, true, 4, ParallelDataIndexer.DEFAULT_MEMORY_BUDGET);
+		assertSameAsTwoPass(events, false, 4, ParallelDataIndexer.DEFAULT_MEMORY_BUDGET);
+	}
+
+	@Test
+	public void testSpill() throws IOException {
+		List<Event> events = events(new Random(22), 5000);
+		assertSameAsTwoPass(events, true, 3, 500);
+		assertSameAsTwoPass(events, false, 3, 500);
+		assertSameAsTwoPass(events, true, 1, 100);
+	}
+}
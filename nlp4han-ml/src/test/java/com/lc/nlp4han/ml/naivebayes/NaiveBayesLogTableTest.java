@@ -0,0 +1,98 @@
+package com.lc.nlp4han.ml.naivebayes;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.model.Context;
+
+/**
+ * 测试朴素贝叶斯的对数概率表与基于Map的计算结果完全相同
+ */
+public class NaiveBayesLogTableTest {
+
+	private static final String[] OUTCOMES = {"POS", "NEG", "NEU", "MIX"};
+
+	private String[] preds;
+
+	private Context[] params(Random random) {
+		preds = new String[60];
+		Context[] params = new Context[preds.length];
+		for (int i = 0; i < params.length; i++) {
+			preds[i] = "w=" + i;
+
+			// 部分特征不与最后的结果共现，部分特征没有结果
+			int[] outcomes;
+			if (i % 3 == 0)
+				outcomes = new int[]{0, 1, 2, 3};
+			else if (i % 3 == 1)
+				outcomes = new int[]{random.nextInt(2), 2};
+			else
+				outcomes = i % 10 == 2 ? new int[0] : new int[]{1 + random.nextInt(3)};
+
+			double[] counts = new double[outcomes.length];
+			for (int j = 0; j < counts.length; j++)
+				counts[j] = 1 + random.nextInt(20);
+			params[i] = new Context(outcomes, counts);
+		}
+		return params;
+	}
+
+	private String[] context(Random random) {
+		String[] context = new String[random.nextInt(30)];
+		for (int i = 0; i < context.length; i++)
+			context[i] = random.nextInt(6) == 0 ? "unknown" : preds[random.nextInt(preds.length)];
+		return context;
+	}
+
+	@Test
+	public void testSameAsMap() {
+		Random random = new Random(131);
+		Context[] params = params(random);
+		NaiveBayesModel model = new NaiveBayesModel(params, preds, OUTCOMES);
+		NaiveBayesEvalParameters evalParams = new NaiveBayesEvalParameters(params, OUTCOMES.length,
+				model.outcomeTotals, preds.length);
+		assertNotNull(model.getLogTable());
+
+		for (int k = 0; k < 200; k++) {
+			String[] context = context(random);
+			int[] predIds = new int[context.length];
+			float[] values = new float[context.length];
+			for (int i = 0; i < context.length; i++) {
+				predIds[i] = model.getPredIndex(context[i]);
+				values[i] = 0.5f + random.nextInt(4);
+			}
+
+			double[] expected = NaiveBayesModel.eval(predIds, null, new double[OUTCOMES.length], evalParams, true);
+			assertArrayEquals(expected, model.eval(context), 0.0);
+			assertArrayEquals(expected, model.eval(predIds, new double[OUTCOMES.length]), 0.0);
+
+			expected = NaiveBayesModel.eval(predIds, values, new double[OUTCOMES.length], evalParams, true);
+			assertArrayEquals(expected, model.eval(context, values), 0.0);
+		}
+	}
+
+	@Test
+	public void testBatch() {
+		Random random = new Random(132);
+		Context[] params = params(random);
+		NaiveBayesModel model = new NaiveBayesModel(params, preds, OUTCOMES);
+		NaiveBayesEvalParameters evalParams = new NaiveBayesEvalParameters(params, OUTCOMES.length,
+				model.outcomeTotals, preds.length);
+
+		String[][] contexts = new String[50][];
+		for (int k = 0; k < contexts.length; k++)
+			contexts[k] = context(random);
+
+		double[][] batch = model.evalBatch(contexts, null);
+		for (int k = 0; k < contexts.length; k++) {
+			int[] predIds = new int[contexts[k].length];
+			for (int i = 0; i < predIds.length; i++)
+				predIds[i] = model.getPredIndex(contexts[k][i]);
+			assertArrayEquals(NaiveBayesModel.eval(predIds, null, new double[OUTCOMES.length], evalParams, true),
+					batch[k], 0.0);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.ngram.utils.ARPAEntry;
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.NGram;
+import com.lc.nlp4han.ml.ngram.utils.NGramGenerator;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ *<ul>
+ *<li>Description: 测试n元模型的频数截断和相对熵剪枝
+ *<li>Company: HUST
+ *</ul>
+ */
+public class NGramModelPrunerTest {
+
+	/**
+	 * 带有局部规律的序列，使高阶n元有不同的信息量
+	 */
+	private Gram[] sequence(Random random, int length) {
+		Gram[] grams = new Gram[length];
+		int previous = 0;
+		for(int i = 0; i < length; i++) {
+			int word = random.nextInt(4) == 0 ? random.nextInt(30) : (previous * 7 + random.nextInt(3)) % 30;
+			grams[i] = new StringGram("w" + word);
+			previous = word;
+		}
+
+		return grams;
+	}
+
+	private List<Gram[]> testSet() {
+		Random random = new Random(82);
+		List<Gram[]> test = new ArrayList<>();
+		for(int i = 0; i < 50; i++)
+			test.add(sequence(random, 20));
+
+		return test;
+	}
+
+	private double sumProbability(NGramLanguageModel model, NGram history) {
+		double sum = 0.0;
+		for(int i = 0; i < model.getVocabulary().getNumIds(); i++)
+			sum += Math.pow(10, model.getNGramLogProbability(history.addLast(model.getVocabulary().getGram(i))));
+
+		return sum;
+	}
+
+	@Test
+	public void testNoPruning() throws IOException {
+		NGramCounter counter = new NGramCounter(sequence(new Random(81), 5000), 3);
+		NGramLanguageModel model = new LaplaceLanguageModelTrainer(counter, 3).trainModel();
+		HashMap<NGram, ARPAEntry> copy = new HashMap<>();
+		for(NGram nGram : model.getnGramLogProbability().keySet()) {
+			ARPAEntry entry = model.getnGramLogProbability().get(nGram);
+			copy.put(nGram, new ARPAEntry(entry.getLog_prob(), entry.getLog_bo()));
+		}
+
+		NGramLanguageModel pruned = new NGramModelPruner(model, 0.0).prune();
+		assertEquals(copy, model.getnGramLogProbability());
+		assertEquals(model.getnGramLogProbability().keySet(), pruned.getnGramLogProbability().keySet());
+		for(Gram[] grams : testSet())
+			for(int n = 1; n <= 3; n++)
+				for(NGram nGram : NGramGenerator.generate(grams, n))
+					assertEquals(nGram.toString(), model.getNGramLogProbability(nGram), pruned.getNGramLogProbability(nGram), 1e-9);
+	}
+
+	@Test
+	public void testCutoffs() throws IOException {
+		NGramCounter counter = new NGramCounter(sequence(new Random(81), 5000), 3);
+		NGramLanguageModel model = new LaplaceLanguageModelTrainer(counter, 3).trainModel();
+		NGramLanguageModel pruned = new NGramModelPruner(model, 0.0, counter, new int[] {5, 2, 3}).prune();
+
+		int[] before = NGramModelPruner.getNGramCounts(model);
+		int[] after = NGramModelPruner.getNGramCounts(pruned);
+		assertEquals(before[0], after[0]);
+		assertTrue(after[1] < before[1]);
+		assertTrue(after[2] < before[2]);
+
+		HashMap<NGram, ARPAEntry> nGrams = pruned.getnGramLogProbability();
+		for(NGram nGram : nGrams.keySet()) {
+			if(nGram.length() == 3)
+				assertTrue(counter.getNGramCount(nGram) >= 3);
+			if(nGram.length() > 1)
+				assertTrue(nGrams.containsKey(nGram.removeLast()));
+		}
+		for(NGram nGram : model.getnGramLogProbability().keySet())
+			if(nGram.length() == 2 && counter.getNGramCount(nGram) >= 2)
+				assertTrue(nGrams.containsKey(nGram));
+	}
+
+	@Test
+	public void testEntropyPruning() throws IOException {
+		NGramCounter counter = new NGramCounter(sequence(new Random(81), 5000), 3);
+		NGramLanguageModel model = new LaplaceLanguageModelTrainer(counter, 3).trainModel();
+		NGramLanguageModel pruned = new NGramModelPruner(model, 1e-4).prune();
+
+		int sizeBefore = model.getnGramLogProbability().size();
+		int sizeAfter = pruned.getnGramLogProbability().size();
+		assertTrue(sizeAfter < sizeBefore * 0.8);
+
+		// 剪枝后每个历史下的概率和与剪枝前一致
+		Gram[] grams = sequence(new Random(83), 200);
+		for(int n = 1; n <= 2; n++)
+			for(NGram history : NGramGenerator.generate(grams, n))
+				assertEquals(history.toString(), sumProbability(model, history), sumProbability(pruned, history), 1e-6);
+
+		double before = model.getPerplexity(testSet(), 3, true);
+		double after = pruned.getPerplexity(testSet(), 3, true);
+		assertTrue(after < before * 1.1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testML() throws IOException {
+		NGramCounter counter = new NGramCounter(sequence(new Random(81), 500), 3);
+		new NGramModelPruner(new MLLanguageModelTrainer(counter, 3).trainModel(), 1e-5);
+	}
+}
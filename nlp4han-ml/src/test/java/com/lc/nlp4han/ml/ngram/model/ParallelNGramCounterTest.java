@@ -0,0 +1,108 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.ngram.io.BinaryFileNGramCountWriter;
+import com.lc.nlp4han.ml.ngram.io.TextFileNGramCountWriter;
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.GramSentenceStream;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ *<ul>
+ *<li>Description: 测试多线程外存n元计数与NGramCounter的结果一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class ParallelNGramCounterTest {
+
+	private List<Gram[]> sentences(Random random, int number) {
+		List<Gram[]> sentences = new ArrayList<>();
+		for(int i = 0; i < number; i++) {
+			Gram[] grams = new Gram[1 + random.nextInt(10)];
+			for(int j = 0; j < grams.length; j++)
+				grams[j] = new StringGram("w" + random.nextInt(30));
+			sentences.add(grams);
+		}
+
+		return sentences;
+	}
+
+	private GramSentenceStream stream(final List<Gram[]> sentences) {
+		return new GramSentenceStream() {
+
+			private Iterator<Gram[]> iterator = sentences.iterator();
+
+			@Override
+			public Gram next() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Gram[] nextSentence() {
+				return iterator.hasNext() ? iterator.next() : null;
+			}
+
+			@Override
+			public void reset() {
+				iterator = sentences.iterator();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	private void assertSameCounts(List<Gram[]> sentences, int threads, int budget) throws IOException {
+		NGramCounter expected = new NGramCounter(stream(sentences), 3);
+		ParallelNGramCounter counter = new ParallelNGramCounter(3, threads, budget, null);
+		counter.count(stream(sentences));
+
+		File expectedText = File.createTempFile("count", ".txt");
+		File actualText = File.createTempFile("count", ".txt");
+		File expectedBinary = File.createTempFile("count", ".bin");
+		File actualBinary = File.createTempFile("count", ".bin");
+		try {
+			assertEquals(expected, counter.getNGramCounter());
+
+			new TextFileNGramCountWriter(expected, expectedText).persist();
+			counter.persist(new TextFileNGramCountWriter(actualText));
+			assertArrayEquals(Files.readAllBytes(expectedText.toPath()), Files.readAllBytes(actualText.toPath()));
+
+			new BinaryFileNGramCountWriter(expected, expectedBinary).persist();
+			counter.persist(new BinaryFileNGramCountWriter(actualBinary));
+			assertArrayEquals(Files.readAllBytes(expectedBinary.toPath()), Files.readAllBytes(actualBinary.toPath()));
+		} finally {
+			counter.close();
+			expectedText.delete();
+			actualText.delete();
+			expectedBinary.delete();
+			actualBinary.delete();
+		}
+	}
+
+	@Test
+	public void testInMemory() throws IOException {
+		List<Gram[]> sentences = sentences(new Random(71), 5000);
+		assertSameCounts(sentences, 1, ParallelNGramCounter.DEFAULT_MEMORY_BUDGET);
+		assertSameCounts(sentences, 4, ParallelNGramCounter.DEFAULT_MEMORY_BUDGET);
+	}
+
+	@Test
+	public void testSpill() throws IOException {
+		List<Gram[]> sentences = sentences(new Random(72), 5000);
+		assertSameCounts(sentences, 3, 1000);
+		assertSameCounts(sentences, 1, 100);
+	}
+}
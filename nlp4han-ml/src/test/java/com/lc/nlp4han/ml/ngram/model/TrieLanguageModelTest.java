@@ -0,0 +1,201 @@
+package com.lc.nlp4han.ml.ngram.model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.ngram.io.ARPATextFileNGramModleWriter;
+import com.lc.nlp4han.ml.ngram.io.BinaryFileNGramModelWriter;
+import com.lc.nlp4han.ml.ngram.io.TextFileNGramModelWriter;
+import com.lc.nlp4han.ml.ngram.io.TrieNGramModelReader;
+import com.lc.nlp4han.ml.ngram.utils.Gram;
+import com.lc.nlp4han.ml.ngram.utils.NGram;
+import com.lc.nlp4han.ml.ngram.utils.NGramGenerator;
+import com.lc.nlp4han.ml.ngram.utils.PseudoWord;
+import com.lc.nlp4han.ml.ngram.utils.StringGram;
+
+/**
+ *<ul>
+ *<li>Description: 测试前缀树n元模型与n元映射模型的结果一致
+ *<li>Company: HUST
+ *</ul>
+ */
+public class TrieLanguageModelTest {
+
+	private Gram[] sequence(Random random, int length, int words) {
+		Gram[] grams = new Gram[length];
+		for(int i = 0; i < length; i++)
+			grams[i] = new StringGram("w" + random.nextInt(words));
+
+		return grams;
+	}
+
+	private NGramLanguageModel train(String smooth) throws IOException {
+		NGramCounter counter = new NGramCounter(sequence(new Random(61), 3000, 40), 3);
+		if(smooth.equals("ml"))
+			return new MLLanguageModelTrainer(counter, 3).trainModel();
+		else
+			return new LaplaceLanguageModelTrainer(counter, 3).trainModel();
+	}
+
+	/**
+	 * 测试用的n元，包括未出现的n元和字典外的元
+	 */
+	private List<NGram> testNGrams() {
+		List<NGram> nGrams = new ArrayList<>();
+		Gram[] grams = sequence(new Random(62), 500, 45);
+		for(int n = 1; n <= 3; n++)
+			nGrams.addAll(NGramGenerator.generate(grams, n));
+
+		return nGrams;
+	}
+
+	private void assertSameProbabilities(LanguageModel expected, LanguageModel actual, double delta) {
+		for(NGram nGram : testNGrams())
+			assertEquals(nGram.toString(), expected.getNGramLogProbability(nGram), actual.getNGramLogProbability(nGram), delta);
+	}
+
+	private TrieLanguageModel read(File file, int quantizationBits) throws IOException {
+		return new TrieNGramModelReader(file).getModel(quantizationBits);
+	}
+
+	@Test
+	public void testModelFiles() throws IOException {
+		for(String smooth : new String[] {"ml", "laplace"}) {
+			NGramLanguageModel model = train(smooth);
+
+			File text = File.createTempFile("trie", ".txt");
+			File binary = File.createTempFile("trie", ".bin");
+			try {
+				new TextFileNGramModelWriter(model, text).persist();
+				new BinaryFileNGramModelWriter(model, binary).persist();
+
+				TrieLanguageModel trie = read(text, 0);
+				assertEquals(smooth, trie.getSmooth());
+				assertEquals(3, trie.getOrder());
+				assertSameProbabilities(model, trie, 1e-6);
+				assertSameProbabilities(model, read(binary, 0), 1e-6);
+			} finally {
+				text.delete();
+				binary.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testARPA() throws IOException {
+		NGramLanguageModel model = train("laplace");
+
+		File arpa = File.createTempFile("trie", ".arpa");
+		try {
+			new ARPATextFileNGramModleWriter(model, arpa).persist();
+			TrieLanguageModel trie = read(arpa, 0);
+			assertEquals("backoff", trie.getSmooth());
+			// arpa模型按回退方式计算，与同样按回退方式计算的laplace模型一致
+			assertSameProbabilities(model, trie, 1e-6);
+		} finally {
+			arpa.delete();
+		}
+	}
+
+	@Test
+	public void testQuantization() throws IOException {
+		NGramLanguageModel model = train("laplace");
+		int nGrams = model.getnGramLogProbability().size();
+
+		File text = File.createTempFile("trie", ".txt");
+		try {
+			new TextFileNGramModelWriter(model, text).persist();
+			TrieLanguageModel trie = read(text, 10);
+			assertSameProbabilities(model, trie, 0.05);
+			assertTrue(trie.getMemorySize() < read(text, 0).getMemorySize());
+			assertTrue(trie.getMemorySize() < 8L * nGrams);
+		} finally {
+			text.delete();
+		}
+	}
+
+	/**
+	 * 逐元增量打分，与对应n元的概率以及整句的概率一致
+	 */
+	private void assertSameScores(StatefulLanguageModel model, double delta) {
+		Vocabulary vocabulary = model.getVocabulary();
+		Random random = new Random(64);
+		for(int s = 0; s < 50; s++) {
+			Gram[] sentence = sequence(random, 1 + random.nextInt(8), 45);
+			Gram[] grams = new Gram[sentence.length + 2];
+			grams[0] = PseudoWord.Start;
+			System.arraycopy(sentence, 0, grams, 1, sentence.length);
+			grams[grams.length - 1] = PseudoWord.End;
+
+			LanguageModelState state = model.newSentenceState();
+			LanguageModelState next = model.newState();
+			double logProb = 0.0;
+			for(int i = 1; i < grams.length; i++) {
+				double score = model.score(state, vocabulary.getId(grams[i]), next);
+				NGram nGram = new NGram(Arrays.copyOfRange(grams, Math.max(0, i - model.getOrder() + 1), i + 1));
+				assertEquals(nGram.toString(), model.getNGramLogProbability(nGram), score, delta);
+				assertTrue(next.getLength() < model.getOrder());
+				logProb += score;
+
+				LanguageModelState tmp = state;
+				state = next;
+				next = tmp;
+			}
+
+			double expected = model.getSequenceLogProbability(sentence, model.getOrder(), true);
+			if(expected != 0.0)
+				assertEquals(Math.log10(expected), logProb, 1e-9);
+		}
+	}
+
+	@Test
+	public void testStatefulScore() throws IOException {
+		for(String smooth : new String[] {"ml", "laplace"}) {
+			NGramLanguageModel model = train(smooth);
+			assertSameScores(model, 1e-12);
+
+			File text = File.createTempFile("trie", ".txt");
+			try {
+				new TextFileNGramModelWriter(model, text).persist();
+				assertSameScores(read(text, 0), 0.0);
+				assertSameScores(read(text, 8), 0.0);
+			} finally {
+				text.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testMappedFile() throws IOException {
+		NGramLanguageModel model = train("laplace");
+
+		File text = File.createTempFile("trie", ".txt");
+		File mapped = File.createTempFile("trie", ".trie");
+		try {
+			new TextFileNGramModelWriter(model, text).persist();
+			for(int quantizationBits : new int[] {0, 8}) {
+				TrieLanguageModel trie = read(text, quantizationBits);
+				trie.write(mapped);
+
+				TrieLanguageModel opened = TrieLanguageModel.open(mapped);
+				assertEquals(trie.getMemorySize(), opened.getMemorySize());
+				assertEquals(trie.getVocabulary().getNumIds(), opened.getVocabulary().getNumIds());
+				assertSameProbabilities(trie, opened, 0.0);
+
+				Gram[] sentence = sequence(new Random(63), 10, 40);
+				assertEquals(trie.getNextPrediction(sentence, 3, false), opened.getNextPrediction(sentence, 3, false));
+			}
+		} finally {
+			text.delete();
+			mapped.delete();
+		}
+	}
+}
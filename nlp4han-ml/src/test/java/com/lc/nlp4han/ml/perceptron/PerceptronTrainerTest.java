@@ -0,0 +1,86 @@
+package com.lc.nlp4han.ml.perceptron;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.model.ClassificationModel;
+import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.util.AbstractTrainer;
+import com.lc.nlp4han.ml.util.CollectionObjectStream;
+import com.lc.nlp4han.ml.util.EventTrainer;
+import com.lc.nlp4han.ml.util.TrainerFactory;
+import com.lc.nlp4han.ml.util.TrainingParameters;
+
+/**
+ * 测试多线程感知机训练（迭代参数混合）
+ */
+public class PerceptronTrainerTest {
+
+	private static final String[] OUTCOMES = {"B", "M", "E", "S"};
+
+	/**
+	 * 结果由第一个特征决定，其余特征为噪声
+	 */
+	private List<Event> events(Random random, int n) {
+		List<Event> events = new ArrayList<>();
+		for (int k = 0; k < n; k++) {
+			int outcome = random.nextInt(OUTCOMES.length);
+			String[] context = {"c0=" + outcome, "c1=" + random.nextInt(10), "c2=" + random.nextInt(10)};
+			events.add(new Event(OUTCOMES[outcome], context));
+		}
+		return events;
+	}
+
+	private ClassificationModel train(List<Event> events, int threads, int seed) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		params.put(AbstractTrainer.ALGORITHM_PARAM, PerceptronTrainer.PERCEPTRON_VALUE);
+		params.put(AbstractTrainer.ITERATIONS_PARAM, "20");
+		params.put(AbstractTrainer.CUTOFF_PARAM, "0");
+		params.put(TrainingParameters.THREADS_PARAM, Integer.toString(threads));
+		params.put(TrainingParameters.SEED_PARAM, Integer.toString(seed));
+		assertTrue(TrainerFactory.isValid(params));
+
+		EventTrainer trainer = TrainerFactory.getEventTrainer(params, new HashMap<String, String>());
+		return trainer.train(new CollectionObjectStream<>(events));
+	}
+
+	private void assertLearned(ClassificationModel model) {
+		for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+			String[] context = {"c0=" + outcome, "c1=3", "c2=7"};
+			assertEquals(OUTCOMES[outcome], model.getBestOutcome(model.eval(context)));
+		}
+	}
+
+	@Test
+	public void testMixedTraining() throws IOException {
+		List<Event> events = events(new Random(31), 2000);
+		assertLearned(train(events, 1, 0));
+		assertLearned(train(events, 4, 0));
+	}
+
+	@Test
+	public void testReproducible() throws IOException {
+		List<Event> events = events(new Random(32), 2000);
+		ClassificationModel first = train(events, 3, 7);
+		ClassificationModel second = train(events, 3, 7);
+
+		Random random = new Random(33);
+		for (Event event : events(random, 100))
+			assertArrayEquals(first.eval(event.getContext()), second.eval(event.getContext()), 0.0);
+	}
+
+	@Test
+	public void testInvalidThreads() {
+		Map<String, String> params = new HashMap<>();
+		params.put(TrainingParameters.THREADS_PARAM, "0");
+		assertFalse(TrainerFactory.isValid(params));
+	}
+}
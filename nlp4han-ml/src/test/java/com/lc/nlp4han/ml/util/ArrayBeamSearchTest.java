@@ -0,0 +1,205 @@
+package com.lc.nlp4han.ml.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.maxent.gis.GISModel;
+import com.lc.nlp4han.ml.model.ClassificationModel;
+import com.lc.nlp4han.ml.model.Context;
+import com.lc.nlp4han.ml.model.FeatureIndex;
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+
+/**
+ * 测试基于数组的beam搜索与BeamSearch结果相同
+ */
+public class ArrayBeamSearchTest {
+
+	private static final String[] OUTCOMES = {"B", "M", "E", "S"};
+
+	private ClassificationModel model;
+
+	private BeamSearchContextGenerator<String> cg = new BeamSearchContextGenerator<String>() {
+		@Override
+		public String[] getContext(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext) {
+			String prev = index > 0 ? priorDecisions[index - 1] : "BOS";
+			return new String[]{"c0=" + sequence[index], "t_1=" + prev, "c0t_1=" + sequence[index] + prev};
+		}
+	};
+
+	// B、M后只能接M、E，E、S后只能接B、S
+	private SequenceValidator<String> validator = new SequenceValidator<String>() {
+		@Override
+		public boolean validSequence(int i, String[] inputSequence, String[] outcomesSequence, String outcome) {
+			boolean open = i > 0 && (outcomesSequence[i - 1].equals("B") || outcomesSequence[i - 1].equals("M"));
+			boolean cont = outcome.equals("M") || outcome.equals("E");
+			return open == cont;
+		}
+	};
+
+	@Before
+	public void setup() {
+		Random random = new Random(7);
+		String[] chars = {"中", "国", "人", "民", "大", "学"};
+		String[] prevs = {"BOS", "B", "M", "E", "S"};
+		String[] preds = new String[chars.length * (1 + prevs.length) + prevs.length];
+		int n = 0;
+		for (String c : chars) {
+			preds[n++] = "c0=" + c;
+			for (String p : prevs)
+				preds[n++] = "c0t_1=" + c + p;
+		}
+		for (String p : prevs)
+			preds[n++] = "t_1=" + p;
+
+		Context[] params = new Context[preds.length];
+		for (int i = 0; i < params.length; i++) {
+			double[] values = new double[OUTCOMES.length];
+			for (int j = 0; j < values.length; j++)
+				values[j] = random.nextGaussian();
+			params[i] = new Context(new int[]{0, 1, 2, 3}, values);
+		}
+
+		model = new GISModel(params, preds, OUTCOMES, 1, 0);
+	}
+
+	@Test
+	public void testSameAsBeamSearch() {
+		String[] sentence = "中国人民大学人民中国大学".split("");
+		for (int beam = 1; beam <= 4; beam++) {
+			BeamSearch<String> expected = new BeamSearch<>(beam, model);
+			ArrayBeamSearch<String> actual = new ArrayBeamSearch<>(beam, model);
+
+			for (int k = 1; k <= 6; k++) {
+				Sequence[] e = expected.bestSequences(k, sentence, null, cg, validator);
+				Sequence[] a = actual.bestSequences(k, sentence, null, cg, validator);
+
+				assertEquals(e.length, a.length);
+				for (int i = 0; i < e.length; i++) {
+					assertEquals(e[i].getOutcomes(), a[i].getOutcomes());
+					assertEquals(e[i].getScore(), a[i].getScore(), 0.0);
+					assertArrayEquals(e[i].getProbs(), a[i].getProbs(), 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSharedByThreads() throws Exception {
+		final ArrayBeamSearch<String> search = new ArrayBeamSearch<>(3, model);
+		final String[][] sentences = {"中国人民大学".split(""), "人民中国大学人民中国".split(""), "大学".split("")};
+		final Sequence[][] expected = new Sequence[sentences.length][];
+		for (int i = 0; i < sentences.length; i++)
+			expected[i] = new BeamSearch<String>(3, model).bestSequences(3, sentences[i], null, cg, validator);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for (int n = 0; n < 200; n++) {
+							int i = n % sentences.length;
+							Sequence[] actual = search.bestSequences(3, sentences[i], null, cg, validator);
+							for (int j = 0; j < actual.length; j++) {
+								if (!expected[i][j].getOutcomes().equals(actual[j].getOutcomes())
+										|| expected[i][j].getScore() != actual[j].getScore())
+									return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+
+			for (Future<Boolean> result : results)
+				assertTrue(result.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testPredicateIdsWithCache() {
+		final FeatureTemplate c0 = new FeatureTemplate("c0=");
+		final FeatureTemplate t_1 = new FeatureTemplate("t_1=");
+		final FeatureTemplate c0t_1 = new FeatureTemplate("c0t_1=");
+		AbstractTemplateContextGenerator templates = new AbstractTemplateContextGenerator() {
+			@Override
+			protected void collect(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext,
+					FeatureCollector features) {
+				String prev = index > 0 ? priorDecisions[index - 1] : "BOS";
+				features.add(c0, sequence[index]);
+				features.add(t_1, prev);
+				features.add(c0t_1, sequence[index], prev);
+			}
+		};
+
+		String[] sentence = "中国人民大学人民中国大学".split("");
+		ArrayBeamSearch<String> search = new ArrayBeamSearch<>(3, model, 100);
+		for (int n = 0; n < 2; n++) {
+			Sequence[] e = new BeamSearch<String>(3, model).bestSequences(3, sentence, null, cg, validator);
+			Sequence[] a = search.bestSequences(3, sentence, null, templates, validator);
+
+			assertEquals(e.length, a.length);
+			for (int i = 0; i < e.length; i++) {
+				assertEquals(e[i].getOutcomes(), a[i].getOutcomes());
+				assertEquals(e[i].getScore(), a[i].getScore(), 0.0);
+			}
+		}
+
+		// 谓词编号的上下文同样使用缓存
+		assertTrue(search.getContextsCache().getHits() > 0);
+		assertTrue(search.getContextsCache().size() > 0);
+	}
+
+	@Test
+	public void testHashCollision() {
+		// 两个不同的字串的64位散列值相同，加上相同的前缀后仍然相同
+		String s1 = "\u6000\u606a\u6000\u615c\u6000\u6000";
+		String s2 = "\u628d\u6000\u63af\u6000\u645b\u62b9";
+		assertEquals(FeatureIndex.hash("c0=" + s1), FeatureIndex.hash("c0=" + s2));
+
+		final FeatureTemplate c0 = new FeatureTemplate("c0=");
+		AbstractTemplateContextGenerator templates = new AbstractTemplateContextGenerator() {
+			@Override
+			protected void collect(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext,
+					FeatureCollector features) {
+				features.add(c0, sequence[index]);
+			}
+		};
+		String[] preds = {"c0=" + s1, "c0=" + s2};
+		Context[] params = {new Context(new int[]{0, 1, 2, 3}, new double[]{2, 0, 0, 1}),
+				new Context(new int[]{0, 1, 2, 3}, new double[]{0, 1, 2, 0})};
+		GISModel collided = new GISModel(params, preds, OUTCOMES, 1, 0);
+		assertEquals(1, collided.getFeatureIndex().getCollisions());
+		assertFalse(collided.hasExactFeatureIndex());
+
+		// 冲突的谓词按散列值无法区分，改用特征字符串求值
+		String[] sentence = {s1, s2, s2, s1};
+		Sequence e = new BeamSearch<String>(3, collided).bestSequence(sentence, null, templates, validator);
+		Sequence a = new ArrayBeamSearch<String>(3, collided).bestSequence(sentence, null, templates, validator);
+		assertEquals(e.getOutcomes(), a.getOutcomes());
+		assertEquals(e.getScore(), a.getScore(), 0.0);
+	}
+
+	@Test
+	public void testEmptySequence() {
+		ArrayBeamSearch<String> search = new ArrayBeamSearch<>(3, model);
+		Sequence best = search.bestSequence(new String[0], null, cg, validator);
+
+		assertNotNull(best);
+		assertEquals(0, best.getOutcomes().size());
+	}
+}
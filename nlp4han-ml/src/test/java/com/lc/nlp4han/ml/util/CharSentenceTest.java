@@ -0,0 +1,133 @@
+package com.lc.nlp4han.ml.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.model.FeatureIndex;
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+
+/**
+ * 测试字符序列及基于字符序列的上下文产生器
+ */
+public class CharSentenceTest {
+
+	private static final FeatureTemplate C0 = new FeatureTemplate("c0=");
+	private static final FeatureTemplate C_1C0 = new FeatureTemplate("c_1c0=");
+
+	private AbstractCharContextGenerator cg = new AbstractCharContextGenerator() {
+		@Override
+		protected void collect(int index, CharSentence sentence, String[] priorDecisions, Object[] additionalContext,
+				FeatureCollector features) {
+			features.add(C0, sentence, index);
+			if (index > 0) {
+				features.add(C_1C0, sentence, index - 1, index);
+			}
+		}
+	};
+
+	@Test
+	public void testSurrogatePairs() {
+		// U+20BB7为增补字符，占两个char
+		String text = "吉𠮷祥";
+		CharSentence sentence = CharSentence.of(text);
+
+		assertEquals(3, sentence.length());
+		assertEquals(1, sentence.start(1));
+		assertEquals(3, sentence.end(1));
+		assertEquals(0x20BB7, sentence.codePointAt(1));
+		assertEquals("𠮷", sentence.get(1));
+		assertEquals(text, sentence.toString());
+		assertEquals("𠮷祥", sentence.substring(1, 3));
+
+		// 不成对的代理字符单独成为一个单位
+		assertEquals(2, CharSentence.of("\udfb7\ud842").length());
+	}
+
+	@Test
+	public void testWrap() {
+		char[] text = "我们研究生命".toCharArray();
+		CharSentence sentence = CharSentence.wrap(text, 2, 5);
+
+		assertSame(text, sentence.getChars());
+		assertEquals(3, sentence.length());
+		assertEquals(2, sentence.start(0));
+		assertEquals("研究生", sentence.toString());
+		assertArrayEquals(new String[] {"研", "究", "生"}, sentence.toTokens());
+		assertEquals(CharSentence.of("研究生"), sentence);
+		assertEquals(CharSentence.of("研究生").hashCode(), sentence.hashCode());
+
+		try {
+			sentence.get(3);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testTokens() {
+		CharSentence sentence = CharSentence.of(new String[] {"研", "究生", "命"});
+
+		assertEquals(3, sentence.length());
+		assertEquals("究生", sentence.get(1));
+		assertFalse(sentence.equals(CharSentence.of("研究生命")));
+
+		// 单字字符串共享同一实例
+		assertSame(sentence.get(0), CharSentence.of("研").get(0));
+		assertSame(CharSentence.valueOf('研'), sentence.get(0));
+	}
+
+	@Test
+	public void testContext() {
+		String[] tokens = {"研", "究", "生", "命"};
+		CharSentence sentence = CharSentence.of(tokens);
+
+		for (int i = 0; i < tokens.length; i++) {
+			assertArrayEquals(cg.getContext(i, tokens, null, null), cg.getContext(i, sentence, null, null));
+		}
+		assertArrayEquals(new String[] {"c0=究", "c_1c0=研究"}, cg.getContext(1, sentence, null, null));
+
+		// 同一数组的内容改变后重新转换
+		tokens[0] = "学";
+		assertArrayEquals(new String[] {"c0=学"}, cg.getContext(0, tokens, null, null));
+
+		// 只改变相邻位置的字，当前位置的特征也要更新
+		tokens[0] = "研";
+		assertArrayEquals(new String[] {"c0=究", "c_1c0=研究"}, cg.getContext(1, tokens, null, null));
+		tokens[0] = "学";
+		assertArrayEquals(new String[] {"c0=究", "c_1c0=学究"}, cg.getContext(1, tokens, null, null));
+
+		Map<String, Integer> predicates = new HashMap<>();
+		predicates.put("c0=究", 0);
+		predicates.put("c_1c0=研究", 1);
+		PredicateIdCollector ids = new PredicateIdCollector(new FeatureIndex(predicates));
+		assertArrayEquals(new int[] {0, 1}, cg.getContextIds(1, sentence, null, null, ids));
+		assertArrayEquals(new int[] {0}, cg.getContextIds(1, new String[] {"学", "究"}, null, null, ids));
+	}
+
+	@Test
+	public void testBind() {
+		String[] tokens = {"研", "究"};
+
+		// 绑定的数组只比较引用，直接使用绑定的字符序列
+		AbstractCharContextGenerator.bind(tokens, CharSentence.of("学究"));
+		try {
+			assertArrayEquals(new String[] {"c0=究", "c_1c0=学究"}, cg.getContext(1, tokens, null, null));
+			assertArrayEquals(new String[] {"c0=究", "c_1c0=研究"}, cg.getContext(1, new String[] {"研", "究"}, null, null));
+		} finally {
+			AbstractCharContextGenerator.unbind();
+		}
+
+		// 解除绑定后按数组内容转换
+		assertArrayEquals(new String[] {"c0=究", "c_1c0=研究"}, cg.getContext(1, tokens, null, null));
+
+		try {
+			AbstractCharContextGenerator.bind(tokens, CharSentence.of("研究生"));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
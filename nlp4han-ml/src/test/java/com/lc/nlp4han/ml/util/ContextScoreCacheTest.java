@@ -0,0 +1,60 @@
+package com.lc.nlp4han.ml.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * 测试按内容缓存上下文得分
+ */
+public class ContextScoreCacheTest {
+
+	@Test
+	public void testHitByContent() {
+		ContextScoreCache cache = new ContextScoreCache(10);
+		cache.put(new String[]{"c0=中", "c1=国"}, new double[]{0.2, 0.8});
+
+		double[] scores = cache.get(new String[]{"c0=中", "c1=" + "国"});
+		assertArrayEquals(new double[]{0.2, 0.8}, scores, 0.0);
+		assertNull(cache.get(new String[]{"c0=中", "c1=人"}));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testPredicateIds() {
+		assertNotEquals(ContextScoreCache.fingerprint(new int[]{1, 2}),
+				ContextScoreCache.fingerprint(new int[]{2, 1}));
+		assertNotEquals(ContextScoreCache.fingerprint(new int[0]),
+				ContextScoreCache.fingerprint(new String[0]));
+	}
+
+	@Test
+	public void testFeatureBoundaries() {
+		assertNotEquals(ContextScoreCache.fingerprint(new String[]{"ab", "c"}),
+				ContextScoreCache.fingerprint(new String[]{"a", "bc"}));
+	}
+
+	@Test
+	public void testStoresCopies() {
+		ContextScoreCache cache = new ContextScoreCache(10);
+		String[] context = {"w0=我"};
+		double[] probs = {0.5, 0.5};
+		cache.put(context, probs);
+		probs[0] = 1.0;
+		context[0] = "w0=你";
+
+		assertArrayEquals(new double[]{0.5, 0.5}, cache.get(new String[]{"w0=我"}), 0.0);
+	}
+
+	@Test
+	public void testCapacity() {
+		ContextScoreCache cache = new ContextScoreCache(8, 4);
+		for (int i = 0; i < 100; i++) {
+			cache.put(new String[]{"f=" + i}, new double[]{i});
+		}
+
+		assertTrue(cache.size() <= 8);
+		assertNotNull(cache.get(new String[]{"f=99"}));
+	}
+}
@@ -0,0 +1,102 @@
+package com.lc.nlp4han.ml.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 测试并行交叉验证的折划分与顺序合并
+ */
+public class ParallelCrossValidatorTest {
+
+	private List<Integer> samples(int n) {
+		List<Integer> samples = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			samples.add(i);
+		return samples;
+	}
+
+	private static List<Integer> read(ObjectStream<Integer> stream) throws IOException {
+		List<Integer> list = new ArrayList<>();
+		Integer sample;
+		while ((sample = stream.read()) != null)
+			list.add(sample);
+		return list;
+	}
+
+	/**
+	 * 与CrossValidationPartitioner的划分相同
+	 */
+	@Test
+	public void testSameSplitAsPartitioner() throws IOException {
+		List<List<Integer>> expected = new ArrayList<>();
+		CrossValidationPartitioner<Integer> partitioner = new CrossValidationPartitioner<>(samples(23), 4);
+		while (partitioner.hasNext()) {
+			CrossValidationPartitioner.TrainingSampleStream<Integer> training = partitioner.next();
+			expected.add(read(training));
+			expected.add(read(training.getTestSampleStream()));
+		}
+
+		List<List<List<Integer>>> folds = new ParallelCrossValidator(3).evaluate(
+				new CollectionObjectStream<>(samples(23)), 4, (fold, training, test) -> {
+					List<List<Integer>> split = new ArrayList<>();
+					split.add(read(training));
+					training.reset();
+					assertEquals(split.get(0), read(training));
+					split.add(read(test));
+					return split;
+				});
+
+		List<List<Integer>> actual = new ArrayList<>();
+		for (List<List<Integer>> fold : folds)
+			actual.addAll(fold);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testMergeInFoldOrder() throws IOException {
+		ParallelCrossValidator.FoldEvaluator<Integer, FMeasure> evaluator = (fold, training, test) -> {
+			// 后面的折先完成
+			try {
+				Thread.sleep(10 * (5 - fold));
+			}
+			catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+
+			List<Integer> samples = read(test);
+			Object[] references = new Object[samples.size()];
+			Object[] predictions = new Object[samples.size()];
+			for (int i = 0; i < samples.size(); i++) {
+				references[i] = samples.get(i);
+				predictions[i] = samples.get(i) % 3 == 0 ? -1 : samples.get(i);
+			}
+			FMeasure measure = new FMeasure();
+			measure.updateScores(references, predictions);
+			return measure;
+		};
+
+		List<FMeasure> serial = new ParallelCrossValidator(1).evaluate(samples(100), 5, evaluator);
+		List<FMeasure> parallel = new ParallelCrossValidator(5).evaluate(samples(100), 5, evaluator);
+		assertEquals(5, parallel.size());
+		for (int fold = 0; fold < 5; fold++)
+			assertEquals(serial.get(fold).toString(), parallel.get(fold).toString());
+
+		FMeasure merged = ParallelCrossValidator.merge(parallel);
+		assertEquals(ParallelCrossValidator.merge(serial).toString(), merged.toString());
+		assertEquals(66.0 / 100, merged.getPrecisionScore(), 1e-12);
+	}
+
+	@Test(expected = IOException.class)
+	public void testException() throws IOException {
+		new ParallelCrossValidator(2).evaluate(samples(10), 2, (fold, training, test) -> {
+			if (fold == 1)
+				throw new IOException("fold " + fold);
+			return fold;
+		});
+	}
+}
@@ -0,0 +1,140 @@
+package com.lc.nlp4han.ml.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.maxent.gis.GIS;
+import com.lc.nlp4han.ml.maxent.quasinewton.QNTrainer;
+import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.perceptron.PerceptronTrainer;
+
+/**
+ * 测试训练器向监听器报告索引和每次迭代的训练指标
+ */
+public class TrainingListenerTest {
+
+	private static final String[] OUTCOMES = {"B", "M", "E", "S"};
+
+	private static List<Event> events(Random random, int n) {
+		List<Event> events = new ArrayList<>();
+		for (int k = 0; k < n; k++) {
+			int outcome = random.nextInt(OUTCOMES.length);
+			String[] context = new String[1 + random.nextInt(3)];
+			context[0] = "c0=" + (random.nextInt(4) == 0 ? random.nextInt(OUTCOMES.length) : outcome);
+			for (int i = 1; i < context.length; i++)
+				context[i] = "c" + i + "=" + random.nextInt(20);
+			events.add(new Event(OUTCOMES[outcome], context));
+		}
+		return events;
+	}
+
+	private static List<TrainingEvent> train(String algorithm, int threads) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		params.put(AbstractTrainer.ALGORITHM_PARAM, algorithm);
+		params.put(AbstractTrainer.ITERATIONS_PARAM, "10");
+		params.put(AbstractTrainer.CUTOFF_PARAM, "1");
+		params.put(TrainingParameters.THREADS_PARAM, Integer.toString(threads));
+
+		AbstractEventTrainer trainer = (AbstractEventTrainer) TrainerFactory.getEventTrainer(params, null);
+		final List<TrainingEvent> received = new ArrayList<>();
+		trainer.addTrainingListener(received::add);
+		trainer.train(new CollectionObjectStream<>(events(new Random(61), 500)));
+		return received;
+	}
+
+	private static void assertEvents(List<TrainingEvent> received, String trainer, int threads) {
+		assertTrue(received.size() >= 2);
+		TrainingEvent indexing = received.get(0);
+		assertEquals(TrainingEvent.Type.INDEXING, indexing.getType());
+		assertEquals(trainer, indexing.getTrainer());
+		assertEquals(500, indexing.getEvents());
+
+		for (int i = 1; i < received.size(); i++) {
+			TrainingEvent event = received.get(i);
+			assertEquals(TrainingEvent.Type.ITERATION, event.getType());
+			assertEquals(trainer, event.getTrainer());
+			assertEquals(i, event.getIteration());
+			assertEquals(threads, event.getThreads());
+			assertTrue(event.getWallTimeNanos() > 0);
+			assertTrue(event.getEvents() > 0);
+			assertTrue(event.getHeapUsed() > 0);
+			assertFalse(Double.isNaN(event.getObjective()));
+			assertTrue(event.getAccuracy() >= 0 && event.getAccuracy() <= 1);
+		}
+	}
+
+	@Test
+	public void testGIS() throws IOException {
+		List<TrainingEvent> received = train(GIS.MAXENT_VALUE, 2);
+		assertEvents(received, "GIS", 2);
+		for (TrainingEvent event : received.subList(1, received.size())) {
+			assertTrue(event.getObjective() < 0);
+			assertFalse(Double.isNaN(event.getGradientNorm()));
+			assertFalse(Double.isNaN(event.getThreadUtilization()));
+		}
+	}
+
+	@Test
+	public void testQN() throws IOException {
+		List<TrainingEvent> received = train(QNTrainer.MAXENT_QN_VALUE, 1);
+		assertEvents(received, "QNTrainer", 1);
+		for (TrainingEvent event : received.subList(1, received.size())) {
+			assertFalse(Double.isNaN(event.getGradientNorm()));
+			assertEquals(0, event.getEvents() % 500);
+		}
+	}
+
+	@Test
+	public void testPerceptron() throws IOException {
+		List<TrainingEvent> received = train(PerceptronTrainer.PERCEPTRON_VALUE, 2);
+		assertEvents(received, "PerceptronTrainer", 2);
+		for (TrainingEvent event : received.subList(1, received.size())) {
+			assertEquals(500 * (1 - event.getAccuracy()), event.getObjective(), 1e-6);
+			assertTrue(Double.isNaN(event.getGradientNorm()));
+		}
+	}
+
+	@Test
+	public void testJsonLines() throws IOException {
+		StringWriter writer = new StringWriter();
+		TrainingListener listener = new JsonLinesTrainingListener(writer);
+		listener.onEvent(new TrainingEvent(TrainingEvent.Type.ITERATION, "GIS", 3, 2000000L, 1000,
+				-12.5, Double.NaN, 0.75, 1024, 2, 0.5));
+
+		assertEquals("{\"type\":\"ITERATION\",\"trainer\":\"GIS\",\"iteration\":3,\"wallTimeMs\":2.0,"
+				+ "\"events\":1000,\"eventsPerSecond\":500000.0,\"heapUsed\":1024,\"objective\":-12.5,"
+				+ "\"gradientNorm\":null,\"accuracy\":0.75,\"threads\":2,\"threadUtilization\":0.5}\n",
+				writer.toString());
+	}
+
+	@Test
+	public void testTrainingLogParameter() throws IOException {
+		File log = File.createTempFile("training", ".jsonl");
+		log.deleteOnExit();
+
+		Map<String, String> params = new HashMap<>();
+		params.put(AbstractTrainer.ITERATIONS_PARAM, "5");
+		params.put(AbstractTrainer.CUTOFF_PARAM, "1");
+		params.put(AbstractTrainer.TRAINING_LOG_PARAM, log.getPath());
+		EventTrainer trainer = TrainerFactory.getEventTrainer(params, null);
+		trainer.train(new CollectionObjectStream<>(events(new Random(62), 200)));
+
+		List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+		assertTrue(lines.size() >= 2);
+		assertTrue(lines.get(0).startsWith("{\"type\":\"INDEXING\",\"trainer\":\"GIS\""));
+		for (String line : lines.subList(1, lines.size()))
+			assertTrue(line.startsWith("{\"type\":\"ITERATION\""));
+	}
+}
@@ -1,10 +1,11 @@
 package com.lc.nlp4han.ner.word;
 
 import java.io.IOException;
+import java.util.List;
 
-import com.lc.nlp4han.ml.util.CrossValidationPartitioner;
 import com.lc.nlp4han.ml.util.ModelWrapper;
 import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.ParallelCrossValidator;
 import com.lc.nlp4han.ml.util.TrainingParameters;
 import com.lc.nlp4han.ner.NEREvaluateMonitor;
 import com.lc.nlp4han.ner.NERMeasure;
@@ -39,27 +40,37 @@ public class NERWordCrossValidation {
 	 */
 	public void evaluate(ObjectStream<NERWordOrCharacterSample> sample, int nFolds,
 			NERWordContextGenerator contextGenerator) throws IOException{
-		CrossValidationPartitioner<NERWordOrCharacterSample> partitioner = new CrossValidationPartitioner<NERWordOrCharacterSample>(sample, nFolds);
-		int run = 1;
-		//小于折数的时候
-		while(partitioner.hasNext()){
-			System.out.println("Run"+run+"...");
-			CrossValidationPartitioner.TrainingSampleStream<NERWordOrCharacterSample> trainingSampleStream = partitioner.next();
-			
+		evaluate(sample, nFolds, contextGenerator, 1);
+	}
+	
+	/**
+	 * 交叉验证评估，多个折同时训练和评估，各折结果按折的顺序输出
+	 * @param sample 样本流
+	 * @param nFolds 折数
+	 * @param contextGenerator 上下文，多线程时被各折共享
+	 * @param threads 同时训练和评估的折数
+	 * @throws IOException io异常
+	 */
+	public void evaluate(ObjectStream<NERWordOrCharacterSample> sample, int nFolds,
+			final NERWordContextGenerator contextGenerator, int threads) throws IOException{
+		List<NERMeasure> measures = new ParallelCrossValidator(threads).evaluate(sample, nFolds, (fold, trainingSamples, testSamples) -> {
 			//训练模型
-			trainingSampleStream.reset();
-			ModelWrapper model = NERWordME.train(trainingSampleStream, params, contextGenerator);
+			trainingSamples.reset();
+			ModelWrapper model = NERWordME.train(trainingSamples, params, contextGenerator);
 
 			NERWordEvaluator evaluator = new NERWordEvaluator(new NERWordME(model, contextGenerator), monitor);
 			NERMeasure measure = new NERMeasure();
 			
 			evaluator.setMeasure(measure);
 	        //设置测试集（在测试集上进行评价）
-	        evaluator.evaluate(trainingSampleStream.getTestSampleStream());
+	        evaluator.evaluate(testSamples);
 	        
-	        System.out.println(measure);
-	        run++;
+	        return measure;
+		});
+		
+		for(int run = 0; run < measures.size(); run++){
+			System.out.println("Run"+(run + 1)+"...");
+			System.out.println(measures.get(run));
 		}
-//		System.out.println(measure);
 	}
 }
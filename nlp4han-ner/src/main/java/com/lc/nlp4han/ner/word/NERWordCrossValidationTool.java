@@ -3,14 +3,11 @@ package com.lc.nlp4han.ner.word;
 import java.io.File;
 import java.io.IOException;
 
-import com.lc.nlp4han.ml.util.CrossValidationPartitioner;
 import com.lc.nlp4han.ml.util.MarkableFileInputStreamFactory;
-import com.lc.nlp4han.ml.util.ModelWrapper;
 import com.lc.nlp4han.ml.util.ObjectStream;
 import com.lc.nlp4han.ml.util.PlainTextByLineStream;
 import com.lc.nlp4han.ml.util.TrainingParameters;
 import com.lc.nlp4han.ner.NEREvaluateMonitor;
-import com.lc.nlp4han.ner.NERMeasure;
 import com.lc.nlp4han.ner.NERParseStrategy;
 import com.lc.nlp4han.ner.NERWordOrCharacterSample;
 
@@ -28,36 +25,20 @@ public class NERWordCrossValidationTool
 			NERWordContextGenerator contextGen, TrainingParameters trainParam, NEREvaluateMonitor... listeners)
 			throws IOException
 	{
-		CrossValidationPartitioner<NERWordOrCharacterSample> partitioner = new CrossValidationPartitioner<NERWordOrCharacterSample>(
-				samples, nFolds);
-		int run = 1;
-		// 小于折数的时候
-		while (partitioner.hasNext())
-		{
-			System.out.println("Run" + run + "...");
-			CrossValidationPartitioner.TrainingSampleStream<NERWordOrCharacterSample> trainingSampleStream = partitioner
-					.next();
-
-			// 训练模型
-			trainingSampleStream.reset();
-			ModelWrapper model = NERWordME.train(trainingSampleStream, trainParam, contextGen);
-
-			NERWordEvaluator evaluator = new NERWordEvaluator(new NERWordME(model, contextGen), listeners);
-			NERMeasure measure = new NERMeasure();
-
-			evaluator.setMeasure(measure);
-			// 设置测试集（在测试集上进行评价）
-			evaluator.evaluate(trainingSampleStream.getTestSampleStream());
+		evaluate(samples, nFolds, contextGen, trainParam, 1, listeners);
+	}
 
-			System.out.println(measure);
-			run++;
-		}
+	public static void evaluate(ObjectStream<NERWordOrCharacterSample> samples, int nFolds,
+			NERWordContextGenerator contextGen, TrainingParameters trainParam, int threads,
+			NEREvaluateMonitor... listeners) throws IOException
+	{
+		new NERWordCrossValidation(trainParam, listeners).evaluate(samples, nFolds, contextGen, threads);
 	}
 
 	private static void usage()
 	{
 		System.out.println(NERWordCrossValidationTool.class.getName() + " -data <corpusFile> -encoding <encoding> "
-				+ "[-cutoff <num>] [-iters <num>] [-folds <nFolds>] ");
+				+ "[-cutoff <num>] [-iters <num>] [-folds <nFolds>] [-threads <num>] ");
 	}
 
 	public static void main(String[] args) throws IOException
@@ -71,6 +52,7 @@ public class NERWordCrossValidationTool
 		int cutoff = 3;
 		int iters = 100;
 		int folds = 10;
+		int threads = 1;
 		File corpusFile = null;
 		String encoding = "UTF-8";
 		for (int i = 0; i < args.length; i++)
@@ -100,6 +82,11 @@ public class NERWordCrossValidationTool
 				folds = Integer.parseInt(args[i + 1]);
 				i++;
 			}
+			else if (args[i].equals("-threads"))
+			{
+				threads = Integer.parseInt(args[i + 1]);
+				i++;
+			}
 		}
 
 		TrainingParameters params = TrainingParameters.defaultParams();
@@ -113,6 +100,6 @@ public class NERWordCrossValidationTool
 		// TODO: 根据命令行参数选择不同的样本解析类
 		NERParseStrategy parse = new NERParseWordPD();
 		ObjectStream<NERWordOrCharacterSample> sampleStream = new NERWordSampleStream(lineStream, parse);
-		evaluate(sampleStream, folds, context, params);
+		evaluate(sampleStream, folds, context, params, threads);
 	}
 }
@@ -6,8 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
-import com.lc.nlp4han.util.CharTypeUtil;
-import com.lc.nlp4han.util.FullHalfWidthUtil;
+import com.lc.nlp4han.util.CharClassifier;
 
 /**
  * 根据配置文件配置的特征的信息，生成上下文的特征
@@ -117,7 +116,7 @@ public class CharPOSContextGeneratorConf implements CharPOSContextGenerator{
         TC_1 = TC_2 = TC0 = TC1 = TC2 = null;
         String w0,w_1,w_2,p_1,p_2;
         w0 = w_1 = w_2 = p_1 = p_2 = null;
-        c0 = characters[i].split("_")[0];
+        c0 = CharPOSSample.getCharacter(characters[i]);
         int record = -1;
 		int len = 0;
 		for (int j = 0; j < words.length; j++) {				
@@ -134,30 +133,30 @@ public class CharPOSContextGeneratorConf implements CharPOSContextGenerator{
         		w_2 = words[record - 2];
         	}
         }
-        TC0 = CharTypeUtil.featureType(c0);
+        TC0 = CharClassifier.featureType(c0.charAt(0));
         if (characters.length > i + 1)
         {
-            c1 = characters[i + 1].split("_")[0];
-            TC1 = CharTypeUtil.featureType(c1);
+            c1 = CharPOSSample.getCharacter(characters[i + 1]);
+            TC1 = CharClassifier.featureType(c1.charAt(0));
 
             if (characters.length > i + 2)
             {
-                c2 = characters[i + 2].split("_")[0];
-                TC2 = CharTypeUtil.featureType(c2);
+                c2 = CharPOSSample.getCharacter(characters[i + 2]);
+                TC2 = CharClassifier.featureType(c2.charAt(0));
             }
         }
 
         if (i - 1 >= 0)
         {
-            c_1 = characters[i - 1].split("_")[0];
-            p_1 = tagsAndPoses[i - 1].split("_")[1];
-            TC_1 = CharTypeUtil.featureType(c_1);
+            c_1 = CharPOSSample.getCharacter(characters[i - 1]);
+            p_1 = CharPOSSample.getPos(tagsAndPoses[i - 1]);
+            TC_1 = CharClassifier.featureType(c_1.charAt(0));
 
             if (i - 2 >= 0)
             {
-                c_2 = characters[i - 2].split("_")[0];
-                p_2 = tagsAndPoses[i - 2].split("_")[1];
-                TC_2 = CharTypeUtil.featureType(c_2);
+                c_2 = CharPOSSample.getCharacter(characters[i - 2]);
+                p_2 = CharPOSSample.getPos(tagsAndPoses[i - 2]);
+                TC_2 = CharClassifier.featureType(c_2.charAt(0));
             }
         }
 
@@ -227,7 +226,7 @@ public class CharPOSContextGeneratorConf implements CharPOSContextGenerator{
         }
         //Pu
         if(PuSet){
-        	if (CharTypeUtil.isChinesePunctuation(FullHalfWidthUtil.toHalfWidth(c0)))
+        	if (CharClassifier.isPunctuation(c0.charAt(0)))
                 features.add("Pu=" + 1);
             else
                 features.add("Pu=" + 0);
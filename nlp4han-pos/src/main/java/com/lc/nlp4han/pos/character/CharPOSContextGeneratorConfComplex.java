@@ -5,11 +5,10 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
-import java.util.Set;
 
+import com.lc.nlp4han.util.CharClassifier;
 import com.lc.nlp4han.util.DictionaryLoader;
-import com.lc.nlp4han.util.CharTypeUtil;
-import com.lc.nlp4han.util.FullHalfWidthUtil;
+import com.lc.nlp4han.util.DoubleArrayTrie;
 
 /**
  * 根据配置文件配置的特征的信息，生成上下文的特征
@@ -41,7 +40,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 	private boolean c1t0Set;
 
 	// 获取词典中的词（自己提供地址和编码方式）
-	private Set<String> dictWords;
+	private DoubleArrayTrie dictWords;
 
 	private String dictResource;
 	private String dictEncoding;
@@ -119,7 +118,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		dictEncoding = config.getProperty("feature.dict.encoding");
 
 		InputStream dictIn = CharPOSContextGeneratorConfComplex.class.getClassLoader().getResourceAsStream(dictResource);
-		dictWords = DictionaryLoader.getWords(dictIn, dictEncoding);
+		dictWords = DictionaryLoader.getTrie(dictIn, dictEncoding);
 	}
 
 	@Override
@@ -152,7 +151,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		TC_1 = TC_2 = TC0 = TC1 = TC2 = null;
 		String w0, w_1, w_2, p_1, p_2;
 		w0 = w_1 = w_2 = p_1 = p_2 = null;
-		c0 = characters[i].split("_")[0];
+		c0 = CharPOSSample.getCharacter(characters[i]);
 		int record = -1;
 		int len = 0;
 		for (int j = 0; j < words.length; j++) {
@@ -169,14 +168,14 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 				w_2 = words[record - 2];
 			}
 		}
-		TC0 = CharTypeUtil.featureType(c0);
+		TC0 = CharClassifier.featureType(c0.charAt(0));
 		if (characters.length > i + 1) {
-			c1 = characters[i + 1].split("_")[0];
-			TC1 = CharTypeUtil.featureType(c1);
+			c1 = CharPOSSample.getCharacter(characters[i + 1]);
+			TC1 = CharClassifier.featureType(c1.charAt(0));
 
 			if (characters.length > i + 2) {
-				c2 = characters[i + 2].split("_")[0];
-				TC2 = CharTypeUtil.featureType(c2);
+				c2 = CharPOSSample.getCharacter(characters[i + 2]);
+				TC2 = CharClassifier.featureType(c2.charAt(0));
 				if (characters.length > i + 3) {
 					c3 = characters[i + 3];
 				}
@@ -184,14 +183,14 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 
 		if (i - 1 >= 0) {
-			c_1 = characters[i - 1].split("_")[0];
-			p_1 = tagsAndPoses[i - 1].split("_")[1];
-			TC_1 = CharTypeUtil.featureType(c_1);
+			c_1 = CharPOSSample.getCharacter(characters[i - 1]);
+			p_1 = CharPOSSample.getPos(tagsAndPoses[i - 1]);
+			TC_1 = CharClassifier.featureType(c_1.charAt(0));
 
 			if (i - 2 >= 0) {
-				c_2 = characters[i - 2].split("_")[0];
-				p_2 = tagsAndPoses[i - 2].split("_")[1];
-				TC_2 = CharTypeUtil.featureType(c_2);
+				c_2 = CharPOSSample.getCharacter(characters[i - 2]);
+				p_2 = CharPOSSample.getPos(tagsAndPoses[i - 2]);
+				TC_2 = CharClassifier.featureType(c_2.charAt(0));
 				if (i - 3 >= 0) {
 					c_3 = characters[i - 3];
 				}
@@ -268,7 +267,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 		// Pu
 		if (PuSet) {
-			if (CharTypeUtil.isChinesePunctuation(FullHalfWidthUtil.toHalfWidth(c0)))
+			if (CharClassifier.isPunctuation(c0.charAt(0)))
 				features.add("Pu=" + 1);
 			else
 				features.add("Pu=" + 0);
@@ -312,7 +311,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		// (1)c_3c_2c_1c0
 		if (c_3 != null && c_2 != null && c_1 != null && c0 != null) {
 
-			if (isDictionalWords(c_3 + c_2 + c_1 + c0)) {
+			if (isDictionalWords(c_3, c_2, c_1, c0)) {
 				if (Lt0Set) {
 					features.add("Le=" + 4);
 				}
@@ -338,7 +337,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 
 		// (2)c_2c_1c0c1与c_1c0c1c2记录的特征是一样的
 		if (c_2 != null && c_1 != null && c0 != null && c1 != null) {
-			if (isDictionalWords(c_2 + c_1 + c0 + c1)) {
+			if (isDictionalWords(c_2, c_1, c0, c1)) {
 				if (Lt0Set) {
 					features.add("Lm=" + 4);
 				}
@@ -362,7 +361,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 		// (3)c_2c_1c0c1与c_1c0c1c2记录的特征是一样的
 		if (c_1 != null && c0 != null && c1 != null && c2 != null) {
-			if (isDictionalWords(c_1 + c0 + c1 + c2)) {
+			if (isDictionalWords(c_1, c0, c1, c2)) {
 				if (Lt0Set) {
 					features.add("Lm=" + 4);
 				}
@@ -381,7 +380,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 		// (4)c0c1c2c3
 		if (c0 != null && c1 != null && c2 != null && c3 != null) {
-			if (isDictionalWords(c0 + c1 + c2 + c3)) {
+			if (isDictionalWords(c0, c1, c2, c3)) {
 				if (Lt0Set) {
 					features.add("Lb=" + 4);
 				}
@@ -406,7 +405,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		// 2.匹配三字词的情形
 		// （1）c_2c_1c0
 		if (c_2 != null && c_1 != null && c0 != null && flagByThree) {
-			if (isDictionalWords(c_2 + c_1 + c0)) {
+			if (isDictionalWords(c_2, c_1, c0)) {
 				if (Lt0Set) {
 					features.add("Le=" + 4);
 				}
@@ -427,7 +426,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 		// (2)c_1c0c1
 		if (c_1 != null && c0 != null && c1 != null && flagByThree) {
-			if (isDictionalWords(c_1 + c0 + c1)) {
+			if (isDictionalWords(c_1, c0, c1)) {
 				if (Lt0Set) {
 					features.add("Lm=" + 4);
 				}
@@ -446,7 +445,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 		// (3)c0c1c2
 		if (c0 != null && c1 != null && c2 != null && flagByThree) {
-			if (isDictionalWords(c0 + c1 + c2)) {
+			if (isDictionalWords(c0, c1, c2)) {
 				if (Lt0Set) {
 					features.add("Lb=" + 4);
 				}
@@ -469,7 +468,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		// 3.匹配两字的情形
 		// （1）c_1c0
 		if (c_1 != null && c0 != null && flagByTwo) {
-			if (isDictionalWords(c_1 + c0)) {
+			if (isDictionalWords(c_1, c0)) {
 				if (Lt0Set) {
 					features.add("Le=" + 4);
 				}
@@ -488,7 +487,7 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 		}
 		// (2)c0c1
 		if (c0 != null && c1 != null && flagByTwo) {
-			if (isDictionalWords(c0 + c1)) {
+			if (isDictionalWords(c0, c1)) {
 				if (Lt0Set) {
 					features.add("Lb=" + 4);
 				}
@@ -513,10 +512,23 @@ public class CharPOSContextGeneratorConfComplex implements CharPOSContextGenerat
 
 	// 判断是否为词典中的词语
 	public boolean isDictionalWords(String words) {
-		if (dictWords.contains(words))
-			return true;
-		else
-			return false;
+		return dictWords.contains(words);
+	}
+
+	// 以下逐字在Trie树上转移，不必拼接窗口中的字
+	private boolean isDictionalWords(String w1, String w2) {
+		return dictWords.getValue(dictWords.next(dictWords.next(DoubleArrayTrie.ROOT, w1), w2)) != DoubleArrayTrie.NOT_FOUND;
+	}
+
+	private boolean isDictionalWords(String w1, String w2, String w3) {
+		int state = dictWords.next(dictWords.next(DoubleArrayTrie.ROOT, w1), w2);
+		return dictWords.getValue(dictWords.next(state, w3)) != DoubleArrayTrie.NOT_FOUND;
+	}
+
+	private boolean isDictionalWords(String w1, String w2, String w3, String w4) {
+		int state = dictWords.next(dictWords.next(DoubleArrayTrie.ROOT, w1), w2);
+		state = dictWords.next(dictWords.next(state, w3), w4);
+		return dictWords.getValue(state) != DoubleArrayTrie.NOT_FOUND;
 	}
 
 	/**
@@ -5,6 +5,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import com.lc.nlp4han.ml.util.CharSentence;
+
 /**
  * 解析后文本样式类
  * 
@@ -126,6 +128,34 @@ public class CharPOSSample {
 		return poses.toArray(new String[poses.size()]);
 	}
 
+	/**
+	 * 从"字_边界"中取出字，单字使用共享的字符串，不用split拆分
+	 * 
+	 * @param characterAndTag
+	 *            字_边界
+	 * @return 字
+	 */
+	public static String getCharacter(String characterAndTag) {
+		int split = characterAndTag.lastIndexOf('_');
+		if (split < 0) {
+			return characterAndTag;
+		} else if (split == 1) {
+			return CharSentence.valueOf(characterAndTag.charAt(0));
+		}
+		return characterAndTag.substring(0, split);
+	}
+
+	/**
+	 * 从"边界_词性"中取出词性
+	 * 
+	 * @param tagAndPos
+	 *            边界_词性
+	 * @return 词性
+	 */
+	public static String getPos(String tagAndPos) {
+		return tagAndPos.substring(tagAndPos.indexOf('_') + 1);
+	}
+
 	/**
 	 * 返回分词加上词性的标记
 	 * 
@@ -18,23 +18,34 @@ public class DefaultCharPOSSequenceValidator implements SequenceValidator<String
 	 */
 	@Override
 	public boolean validSequence(int i, String[] characters, String[] tagsAndPoses, String out) {
-		String temptag = out.split("_")[0];
-		String temppos = out.split("_")[1];
+		//搜索时每个候选结果都要验证，直接比较子串，不用split拆分
+		int split = out.indexOf('_');
+		String character = characters[i];
+		int charSplit = character.lastIndexOf('_');
 		//保证分词的结果是一样的
-		if(!temptag.equals(characters[i].split("_")[1])){
+		if(split != character.length() - charSplit - 1 || !out.regionMatches(0, character, charSplit + 1, split)){
 			return false;
 		}else{
 			//如果是开始或者是单个的，词性可以是任意的
-			if(temptag.equals("S")){
+			if(out.startsWith("S_")){
 				return true;
-			}else if(temptag.equals("B")){
+			}else if(out.startsWith("B_")){
 				return true;
-			}else if(temptag.equals("M") && temppos.equals(tagsAndPoses[i-1].split("_")[1])){
+			}else if(out.startsWith("M_") && samePos(out, split, tagsAndPoses[i-1])){
 				return true;
-			}else if(temptag.equals("E") && temppos.equals(tagsAndPoses[i-1].split("_")[1])){
+			}else if(out.startsWith("E_") && samePos(out, split, tagsAndPoses[i-1])){
 				return true;
 			}
 		}
 		return false;
 	}
+
+	/**
+	 * 输出结果的词性与前一个字的词性是否相同
+	 */
+	private static boolean samePos(String out, int split, String prior) {
+		int priorSplit = prior.indexOf('_');
+		int length = out.length() - split - 1;
+		return length == prior.length() - priorSplit - 1 && out.regionMatches(split + 1, prior, priorSplit + 1, length);
+	}
 }
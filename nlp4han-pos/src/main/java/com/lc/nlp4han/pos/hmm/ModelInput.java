@@ -21,6 +21,20 @@ public class ModelInput
 	 * @throws ClassNotFoundException
 	 */
 	public static HMModel loadModel(File modelFile, String type) throws IOException, ClassNotFoundException
+	{
+		return loadModel(modelFile, type, false);
+	}
+
+	/**
+	 * 从模型文件读取模型
+	 * @param modelFile
+	 * @param type
+	 * @param basedArray 是否转换为基于数组的模型，Viterbi解码更快，且支持高阶模型
+	 * @return
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static HMModel loadModel(File modelFile, String type, boolean basedArray) throws IOException, ClassNotFoundException
 	{
 		AbstractHMMReader reader = new TextFileHMMReader(modelFile);
 		switch (type.toLowerCase())
@@ -37,7 +51,7 @@ public class ModelInput
 		default:
 			throw new IllegalArgumentException("错误的文件类型:text/binary/object");
 		}
-		return reader.readModel();
+		return reader.readModel(basedArray);
 	}
 	
 	/**
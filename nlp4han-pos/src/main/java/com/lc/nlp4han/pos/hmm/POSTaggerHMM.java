@@ -11,6 +11,8 @@ import com.lc.nlp4han.ml.hmm.learn.SupervisedMLHMMTrainer;
 import com.lc.nlp4han.ml.hmm.learn.SupervisedWittenBellHMMTrainer;
 import com.lc.nlp4han.ml.hmm.model.HMM;
 import com.lc.nlp4han.ml.hmm.model.HMMWithAStar;
+import com.lc.nlp4han.ml.hmm.model.HMMWithBeamSearch;
+import com.lc.nlp4han.ml.hmm.model.HMMWithHeuristicAStar;
 import com.lc.nlp4han.ml.hmm.model.HMMWithViterbi;
 import com.lc.nlp4han.ml.hmm.model.HMModel;
 import com.lc.nlp4han.ml.hmm.stream.SupervisedHMMSample;
@@ -22,8 +24,32 @@ import com.lc.nlp4han.pos.POSTagger;
 
 public class POSTaggerHMM implements POSTagger
 {
+	/**
+	 * 柱搜索解码时默认每个位置保留的候选数
+	 */
+	public static final int DEFAULT_BEAM_SIZE = 16;
+
+	/**
+	 * 柱搜索解码时默认保留的候选与最优得分之差的上限（以10为底的对数）
+	 */
+	public static final double DEFAULT_THRESHOLD = 5.0;
+
 	private HMModel model;
 	private String decodeAlgo;
+	private int beamSize = DEFAULT_BEAM_SIZE;
+	private double threshold = DEFAULT_THRESHOLD;
+
+	/**
+	 * 解码器在解码时会修改自身状态，每个线程使用各自的解码器，同一线程内复用
+	 */
+	private final ThreadLocal<HMM> decoders = new ThreadLocal<HMM>()
+	{
+		@Override
+		protected HMM initialValue()
+		{
+			return getDecoder(model, decodeAlgo, beamSize, threshold);
+		}
+	};
 
 	public POSTaggerHMM()
 	{
@@ -42,6 +68,44 @@ public class POSTaggerHMM implements POSTagger
 		this.decodeAlgo = decodeAlgo;
 	}
 
+	public POSTaggerHMM(HMModel model, String decodeAlgo, int beamSize, double threshold)
+	{
+		this.model = model;
+		this.decodeAlgo = decodeAlgo;
+		this.beamSize = beamSize;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * 返回解码算法对应的HMM
+	 * 
+	 * @param model
+	 *            HMM模型
+	 * @param decodeAlgo
+	 *            解码算法：A-A*柱搜索，V-Viterbi，B-词典约束的柱搜索，H-词典约束和启发函数的A*
+	 * @param beamSize
+	 *            柱搜索每个位置保留的候选数，不大于0时不限制
+	 * @param threshold
+	 *            柱搜索保留的候选与最优得分之差的上限（以10为底的对数）
+	 * @return HMM
+	 */
+	public static HMM getDecoder(HMModel model, String decodeAlgo, int beamSize, double threshold)
+	{
+		switch (decodeAlgo.toUpperCase())
+		{
+		case "A":
+			return new HMMWithAStar(model);
+		case "V":
+			return new HMMWithViterbi(model);
+		case "B":
+			return new HMMWithBeamSearch(model, beamSize, threshold, true);
+		case "H":
+			return new HMMWithHeuristicAStar(model);
+		default:
+			throw new IllegalArgumentException("错误的解码算法：" + decodeAlgo);
+		}
+	}
+
 	public static HMModel train(List<SupervisedHMMSample> supervisedSamples, String smooth, int order, double ratio)
 			throws IOException
 	{
@@ -75,24 +139,13 @@ public class POSTaggerHMM implements POSTagger
 
 	public String[] tag(String[] sentence)
 	{
-		HMM hmm = null;
-		switch (decodeAlgo.toUpperCase())
-		{
-		case "A":
-			hmm = new HMMWithAStar(model);
-			break;
-		case "V":
-			hmm = new HMMWithViterbi(model);
-			break;
-		}
-
 		Observation[] words = new Observation[sentence.length];
 		for (int i = 0; i < sentence.length; i++)
 		{
 			words[i] = new StringObservation(sentence[i]);
 		}
 		ObservationSequence wordSequence = new ObservationSequence(words);
-		StateSequence state = hmm.bestStateSeqence(wordSequence);
+		StateSequence state = decoders.get().bestStateSeqence(wordSequence);
 		String[] pos = state.toString().split(" ");
 		return pos;
 	}
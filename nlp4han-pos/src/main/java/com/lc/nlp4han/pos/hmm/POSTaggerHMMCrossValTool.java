@@ -26,6 +26,8 @@ public class POSTaggerHMMCrossValTool
 		int folds = 10;
 		double ratio = 0.1;
 		String decodeAlgo = "A";
+		int beamSize = POSTaggerHMM.DEFAULT_BEAM_SIZE;
+		double threshold = POSTaggerHMM.DEFAULT_THRESHOLD;
 		String smooth = "add";
 		String encoding = "UTF-8";
 		String dataPath = "E:\\codeprac\\HMM\\pos.train";
@@ -47,6 +49,16 @@ public class POSTaggerHMMCrossValTool
 				decodeAlgo = args[i + 1];
 				i++;
 			}
+			if (args[i].equals("-beam"))
+			{
+				beamSize = Integer.parseInt(args[i + 1]);
+				i++;
+			}
+			if (args[i].equals("-threshold"))
+			{
+				threshold = Double.parseDouble(args[i + 1]);
+				i++;
+			}
 			if (args[i].equals("-folds"))
 			{
 				folds = Integer.parseInt(args[i + 1]);
@@ -73,7 +85,7 @@ public class POSTaggerHMMCrossValTool
 		List<SupervisedHMMSample> corssValSamples = POSTaggerHMMSamplesReader.readSupervisedHMMSamples(crossValFile,
 				order, encoding);
 
-		POSTaggerHMMCrossValidation crossVal = new POSTaggerHMMCrossValidation(decodeAlgo);
+		POSTaggerHMMCrossValidation crossVal = new POSTaggerHMMCrossValidation(decodeAlgo, beamSize, threshold);
 		crossVal.evaluate(corssValSamples, folds, smooth, order, ratio);
 	}
 
@@ -81,6 +93,7 @@ public class POSTaggerHMMCrossValTool
 	{
 		System.out.println(POSTaggerHMMCrossValTool.class.getName()
 				+ "-smooth <smoothType> -data <dataPath> -decode <decodeAlgorithm> "
+				+ "-beam <beamSize> -threshold <threshold> "
 				+ "-folds <k-folds> -order <orderOfHMM> -ratio <ratio>" 
 				+ "-encoding <encoding>");
 	}
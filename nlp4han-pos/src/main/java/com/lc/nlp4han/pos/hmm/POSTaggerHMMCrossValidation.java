@@ -6,8 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 
 import com.lc.nlp4han.ml.hmm.model.HMM;
-import com.lc.nlp4han.ml.hmm.model.HMMWithAStar;
-import com.lc.nlp4han.ml.hmm.model.HMMWithViterbi;
 import com.lc.nlp4han.ml.hmm.model.HMModel;
 import com.lc.nlp4han.ml.hmm.stream.SupervisedHMMSample;
 import com.lc.nlp4han.ml.hmm.utils.Observation;
@@ -17,10 +15,19 @@ public class POSTaggerHMMCrossValidation
 {
 
 	private String decodeAlgo;
+	private int beamSize;
+	private double threshold;
 
 	public POSTaggerHMMCrossValidation(String decodeAlgo)
+	{
+		this(decodeAlgo, POSTaggerHMM.DEFAULT_BEAM_SIZE, POSTaggerHMM.DEFAULT_THRESHOLD);
+	}
+
+	public POSTaggerHMMCrossValidation(String decodeAlgo, int beamSize, double threshold)
 	{
 		this.decodeAlgo = decodeAlgo;
+		this.beamSize = beamSize;
+		this.threshold = threshold;
 	}
 
 	public void evaluate(List<SupervisedHMMSample> samples, int folds, String smooth, int order, double ratio)
@@ -51,16 +58,7 @@ public class POSTaggerHMMCrossValidation
 			HMModel model = POSTaggerHMM.train(trainSamples, smooth, order, ratio);
 			long train = System.currentTimeMillis();
 
-			HMM decodeModel = null;
-			switch (decodeAlgo.toUpperCase())
-			{
-			case "V":
-				decodeModel = new HMMWithViterbi(model);
-				break;
-			case "A":
-				decodeModel = new HMMWithAStar(model);
-				break;
-			}
+			HMM decodeModel = POSTaggerHMM.getDecoder(model, decodeAlgo, beamSize, threshold);
 
 			Observation[] observations = model.getObservations();
 			HashSet<String> dict = new HashSet<>();
@@ -6,8 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 
 import com.lc.nlp4han.ml.hmm.model.HMM;
-import com.lc.nlp4han.ml.hmm.model.HMMWithAStar;
-import com.lc.nlp4han.ml.hmm.model.HMMWithViterbi;
 import com.lc.nlp4han.ml.hmm.model.HMModel;
 import com.lc.nlp4han.ml.hmm.stream.SupervisedHMMSample;
 import com.lc.nlp4han.ml.hmm.utils.Observation;
@@ -34,6 +32,8 @@ public class POSTaggerHMMEvalTool
 		String modelPath = "E:\\codeprac\\HMM\\pos-hmm.model";
 		String dataPath = "E:\\codeprac\\HMM\\pos.test";
 		String decodeAlgo = "A";
+		int beamSize = POSTaggerHMM.DEFAULT_BEAM_SIZE;
+		double threshold = POSTaggerHMM.DEFAULT_THRESHOLD;
 		String modelFileType = "object";
 		String encoding = "UTF-8";
 
@@ -54,6 +54,16 @@ public class POSTaggerHMMEvalTool
 				decodeAlgo = args[i + 1];
 				i++;
 			}
+			if (args[i].equals("-beam"))
+			{
+				beamSize = Integer.parseInt(args[i + 1]);
+				i++;
+			}
+			if (args[i].equals("-threshold"))
+			{
+				threshold = Double.parseDouble(args[i + 1]);
+				i++;
+			}
 			if (args[i].equals("-type"))
 			{
 				modelFileType = args[i + 1];
@@ -78,17 +88,9 @@ public class POSTaggerHMMEvalTool
 				encoding);
 
 		File modelFile = new File(modelPath);
-		HMModel hmModel = ModelInput.loadModel(modelFile, modelFileType);
-		HMM decodeModel = null;
-		switch (decodeAlgo.toUpperCase())
-		{
-		case "A":
-			decodeModel = new HMMWithAStar(hmModel);
-			break;
-		case "V":
-			decodeModel = new HMMWithViterbi(hmModel);
-			break;
-		}
+		// Viterbi、柱搜索和A*解码时使用基于数组的模型
+		HMModel hmModel = ModelInput.loadModel(modelFile, modelFileType, !decodeAlgo.equalsIgnoreCase("A"));
+		HMM decodeModel = POSTaggerHMM.getDecoder(hmModel, decodeAlgo, beamSize, threshold);
 		POSTaggerHMMEvaluator evaluator = new POSTaggerHMMEvaluator(decodeModel);
 
 		Observation[] observations = hmModel.getObservations();
@@ -97,8 +99,10 @@ public class POSTaggerHMMEvalTool
 			dict.add(observation.toString());
 		WordPOSMeasure measure = new WordPOSMeasure(dict);
 
+		long decodeTime = System.currentTimeMillis();
 		evaluator.eval(measure, evalSamples);
 		System.out.println(measure);
+		System.out.println("解码时间：" + (System.currentTimeMillis() - decodeTime) / 1000.0 + "s");
 		System.out.println("评估时间：" + (System.currentTimeMillis() - startTime) / 1000.0 + "s");
 	}
 
@@ -106,6 +110,7 @@ public class POSTaggerHMMEvalTool
 	{
 		System.out.println(POSTaggerHMMEvalTool.class.getName()
 				+ "-data <testData> -model <modelOutPath> -decode <decodeAlgorithm> "
+				+ "-beam <beamSize> -threshold <threshold> "
 				+ "-type <modelFileType> -order <orderOfHMM> -encoding <encoding>");
 	}
 
@@ -1,27 +1,42 @@
 package com.lc.nlp4han.pos.word;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+import com.lc.nlp4han.ml.util.AbstractTemplateContextGenerator;
+import com.lc.nlp4han.ml.util.FeatureCollector;
 
-import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
-
-public class DefaultWordPOSContextGenerator extends AbstractStringContextGenerator
+public class DefaultWordPOSContextGenerator extends AbstractTemplateContextGenerator
 {
 
     protected final String SE = "*SE*";
     protected final String SB = "*SB*";
 
+    private static final String SEP = ",";
+
+    private static final FeatureTemplate W0 = new FeatureTemplate("w0=");
+    private static final FeatureTemplate W_1 = new FeatureTemplate("w_1=");
+    private static final FeatureTemplate W_1W0 = new FeatureTemplate("w_1w0=");
+    private static final FeatureTemplate T_1 = new FeatureTemplate("t_1=");
+    private static final FeatureTemplate W_2 = new FeatureTemplate("w_2=");
+    private static final FeatureTemplate W_2W_1 = new FeatureTemplate("w_2w_1=");
+    private static final FeatureTemplate T_2T_1 = new FeatureTemplate("t_2t_1=");
+    private static final FeatureTemplate W_1W1 = new FeatureTemplate("w_1w1=");
+    private static final FeatureTemplate W1 = new FeatureTemplate("w1=");
+    private static final FeatureTemplate W0W1 = new FeatureTemplate("w0w1=");
+    private static final FeatureTemplate W2 = new FeatureTemplate("w2=");
+    private static final FeatureTemplate W1W2 = new FeatureTemplate("w1w2=");
+
     public DefaultWordPOSContextGenerator()
     {
     }
 
-    public String[] getContext(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext)
+    public String[] getContext(int index, String[] tokens, String[] tags)
     {
-        //System.out.println("WordPOSContextGenerator");
-        return getContext(index, sequence, priorDecisions);
+        return getContext(index, tokens, tags, null);
     }
 
-    public String[] getContext(int index, String[] tokens, String[] tags)
+    @Override
+    protected void collect(int index, String[] tokens, String[] tags, Object[] additionalContext,
+            FeatureCollector e)
     {
         String next, nextnext = null, lex, prev, prevprev = null;
         String tagprev, tagprevprev;
@@ -62,57 +77,52 @@ public class DefaultWordPOSContextGenerator extends AbstractStringContextGenerat
             prev = SB; // Sentence Beginning
         }
         
-        List<String> e = new ArrayList<>();
 //        e.add("default");
         // add the word itself
         
-        e.add("w0=" + lex);
+        e.add(W0, lex);
         
         // add the words and pos's of the surrounding context
         if (prev != null)
         {
-            e.add("w_1=" + prev);
+            e.add(W_1, prev);
             
-            e.add("w_1w0=" + prev +"," + lex);
+            e.start(W_1W0).append(prev).append(SEP).append(lex).end();
             
             if (tagprev != null)
             {
-                e.add("t_1=" + tagprev);
+                e.add(T_1, tagprev);
             }
             
             if (prevprev != null)
             {
-                e.add("w_2=" + prevprev);
+                e.add(W_2, prevprev);
                 
-                e.add("w_2w_1=" + prevprev + "," + prev);
+                e.start(W_2W_1).append(prevprev).append(SEP).append(prev).end();
                 
                 if (tagprevprev != null)
                 {
-                    e.add("t_2t_1=" + tagprevprev + "," + tagprev);
+                    e.start(T_2T_1).append(tagprevprev).append(SEP).append(tagprev).end();
                 }
             }
             
             if (next != null)
-                e.add("w_1w1=" + prev + "," + next);
+                e.start(W_1W1).append(prev).append(SEP).append(next).end();
         }
 
         if (next != null)
         {
-            e.add("w1=" + next);
+            e.add(W1, next);
             
-            e.add("w0w1=" + lex + "," + next);
+            e.start(W0W1).append(lex).append(SEP).append(next).end();
             
             if (nextnext != null)
             {
-                e.add("w2=" + nextnext);
+                e.add(W2, nextnext);
                 
-                e.add("w1w2=" + next + "," + nextnext);
+                e.start(W1W2).append(next).append(SEP).append(nextnext).end();
             }
         }
-        
-        String[] contexts = e.toArray(new String[e.size()]);
-        
-        return contexts;
     }
 
 }
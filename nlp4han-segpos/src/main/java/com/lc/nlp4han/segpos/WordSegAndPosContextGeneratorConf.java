@@ -7,9 +7,8 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
+import com.lc.nlp4han.util.CharClassifier;
 import com.lc.nlp4han.util.DictionaryLoader;
-import com.lc.nlp4han.util.CharTypeUtil;
-import com.lc.nlp4han.util.FullHalfWidthUtil;
 
 public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGenerator{
 
@@ -167,16 +166,16 @@ public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGe
         w0 = w_1 = w_2 = p_1 = p_2 = null;
         c0 = characters[i];
         w0 = words[j];
-        TC0 = CharTypeUtil.featureType(c0);
+        TC0 = CharClassifier.featureType(c0.charAt(0));
         if (characters.length > i + 1)
         {
             c1 = characters[i + 1];
-            TC1 = CharTypeUtil.featureType(c1);
+            TC1 = CharClassifier.featureType(c1.charAt(0));
 
             if (characters.length > i + 2)
             {
                 c2 = characters[i + 2];
-                TC2 = CharTypeUtil.featureType(c2);
+                TC2 = CharClassifier.featureType(c2.charAt(0));
                 if(characters.length > i + 3){
                 	c3 = characters[i + 3];
                 }
@@ -186,12 +185,12 @@ public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGe
         if (i - 1 >= 0)
         {
             c_1 = characters[i - 1];
-            TC_1 = CharTypeUtil.featureType(c_1);
+            TC_1 = CharClassifier.featureType(c_1.charAt(0));
 
             if (i - 2 >= 0)
             {
                 c_2 = characters[i - 2].toString();
-                TC_2 = CharTypeUtil.featureType(c_2);
+                TC_2 = CharClassifier.featureType(c_2.charAt(0));
                 if(i - 3 >= 0){
                 	c_3 = characters[i - 3];
                 }
@@ -271,7 +270,7 @@ public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGe
         }
         //Pu
         if(PuSet){
-        	if (CharTypeUtil.isChinesePunctuation(FullHalfWidthUtil.toHalfWidth(c0)))
+        	if (CharClassifier.isPunctuation(c0.charAt(0)))
                 features.add("Pu=" + 1);
             else
                 features.add("Pu=" + 0);
@@ -663,16 +662,16 @@ public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGe
         String w0,w_1,w_2,p_1,p_2;
         w0 = w_1 = w_2 = p_1 = p_2 = null;
         c0 = characters[i];
-        TC0 = CharTypeUtil.featureType(c0);
+        TC0 = CharClassifier.featureType(c0.charAt(0));
         if (characters.length > i + 1)
         {
             c1 = characters[i + 1];
-            TC1 = CharTypeUtil.featureType(c1);
+            TC1 = CharClassifier.featureType(c1.charAt(0));
 
             if (characters.length > i + 2)
             {
                 c2 = characters[i + 2];
-                TC2 = CharTypeUtil.featureType(c2);
+                TC2 = CharClassifier.featureType(c2.charAt(0));
                 if(characters.length > i + 3){
                 	c3 = characters[i + 3];
                 }
@@ -690,12 +689,12 @@ public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGe
         	}
                        
             c_1 = characters[i - 1];
-            TC_1 = CharTypeUtil.featureType(c_1);
+            TC_1 = CharClassifier.featureType(c_1.charAt(0));
 
             if (i - 2 >= 0)
             {
                 c_2 = characters[i - 2];
-                TC_2 = CharTypeUtil.featureType(c_2);
+                TC_2 = CharClassifier.featureType(c_2.charAt(0));
                 if(i - 3 >= 0){
                 	c_3 = characters[i - 3];
                 }
@@ -769,7 +768,7 @@ public class WordSegAndPosContextGeneratorConf implements WordSegAndPosContextGe
         }
         //Pu
         if(PuSet){
-        	if (CharTypeUtil.isChinesePunctuation(FullHalfWidthUtil.toHalfWidth(c0)))
+        	if (CharClassifier.isPunctuation(c0.charAt(0)))
                 features.add("Pu=" + 1);
             else
                 features.add("Pu=" + 0);
@@ -64,6 +64,27 @@ public class SentimentAnalyzerNB implements SentimentAnalyzer
 		return new SentimentPolarity(getBestResult(analyzeResult));
 	}
 
+	/**
+	 * 批量分析多个文本的情感信息，朴素贝叶斯模型使用预先计算的对数概率表，结果与逐个分析相同
+	 * 
+	 * @param texts
+	 *            给定的文本
+	 * @return 每个文本的情感极性
+	 */
+	public SentimentPolarity[] analyze(String[] texts)
+	{
+		String[][] contexts = new String[texts.length][];
+		for (int i = 0; i < texts.length; i++)
+			contexts[i] = contextGen.getContext(texts[i], extraInformation);
+
+		double[][] analyzeResults = model.getModel().evalBatch(contexts, null);
+		SentimentPolarity[] polarities = new SentimentPolarity[texts.length];
+		for (int i = 0; i < texts.length; i++)
+			polarities[i] = new SentimentPolarity(getBestResult(analyzeResults[i]));
+
+		return polarities;
+	}
+
 	private String getBestResult(double[] outcome)
 	{
 		return model.getModel().getBestOutcome(outcome);
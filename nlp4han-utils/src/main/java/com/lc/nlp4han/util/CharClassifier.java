@@ -0,0 +1,197 @@
+package com.lc.nlp4han.util;
+
+/**
+ * 预先计算的字符类别表
+ *
+ * 对基本多文种平面（BMP）的每个字符用一个字节记录字符类型、是否为有半角形式的全角字符、转为半角后是否为标点，
+ * 与{@link CharTypeUtil}和{@link FullHalfWidthUtil}的判断一致。查询只是一次数组访问，不需要装箱或创建字符串。
+ * 增补平面的字符归为其他类型。
+ *
+ * 类别值中的低3位为类型{@link #DIGIT}、{@link #DATE}、{@link #LETTER}、{@link #OTHER}，
+ * 其余位为{@link #FULL_WIDTH}、{@link #PUNCTUATION}标志
+ */
+public class CharClassifier
+{
+	/**
+	 * 数字【中文数字，阿拉伯数字（全角和半角）】
+	 */
+	public static final int DIGIT = 1;
+
+	/**
+	 * 年月日
+	 */
+	public static final int DATE = 2;
+
+	/**
+	 * 英文字母（大小写，全角半角）
+	 */
+	public static final int LETTER = 3;
+
+	/**
+	 * 其他字符
+	 */
+	public static final int OTHER = 4;
+
+	/**
+	 * 类型所在的位
+	 */
+	public static final int TYPE_MASK = 0x07;
+
+	/**
+	 * 有对应半角字符的全角字符
+	 */
+	public static final int FULL_WIDTH = 0x08;
+
+	/**
+	 * 转为半角后为标点
+	 */
+	public static final int PUNCTUATION = 0x10;
+
+	/**
+	 * 类型对应的特征值，与{@link CharTypeUtil#featureType(String)}相同
+	 */
+	private static final String[] FEATURE_TYPES = { null, "1", "2", "3", "4" };
+
+	private static final byte[] TABLE = new byte[Character.MAX_VALUE + 1];
+
+	static
+	{
+		for (int c = 0; c <= Character.MAX_VALUE; c++)
+		{
+			char ch = (char) c;
+			int classes;
+			if (CharTypeUtil.isDigit(ch))
+			{
+				classes = DIGIT;
+			}
+			else if (CharTypeUtil.isDate(ch))
+			{
+				classes = DATE;
+			}
+			else if (CharTypeUtil.isLetter(ch))
+			{
+				classes = LETTER;
+			}
+			else
+			{
+				classes = OTHER;
+			}
+
+			char half = FullHalfWidthUtil.toHalfWidth(new char[] { ch })[0];
+			if (half != ch)
+			{
+				classes |= FULL_WIDTH;
+			}
+
+			if (CharTypeUtil.punctSet.contains(half))
+			{
+				classes |= PUNCTUATION;
+			}
+
+			TABLE[c] = (byte) classes;
+		}
+	}
+
+	/**
+	 * 得到字符的类别
+	 *
+	 * @param codePoint
+	 *            字符的码位
+	 * @return 类别值
+	 */
+	public static int classify(int codePoint)
+	{
+		if (codePoint < 0 || codePoint > Character.MAX_VALUE)
+		{
+			return OTHER;
+		}
+
+		return TABLE[codePoint];
+	}
+
+	/**
+	 * 得到字符数组中每个字符的类别，一个句子的类别只需计算一次
+	 *
+	 * @param text
+	 *            字符数组
+	 * @param out
+	 *            存放类别值，长度不小于字符数组
+	 */
+	public static void classify(char[] text, int[] out)
+	{
+		classify(text, 0, text.length, out);
+	}
+
+	/**
+	 * 得到字符数组中[start, end)内每个字符的类别，第i个字符的类别存入out[i - start]
+	 *
+	 * @param text
+	 *            字符数组
+	 * @param start
+	 *            第一个字符的位置
+	 * @param end
+	 *            最后一个字符之后的位置
+	 * @param out
+	 *            存放类别值，长度不小于end - start
+	 */
+	public static void classify(char[] text, int start, int end, int[] out)
+	{
+		for (int i = start; i < end; i++)
+		{
+			out[i - start] = TABLE[text[i]];
+		}
+	}
+
+	/**
+	 * 类别值中的类型
+	 *
+	 * @param classes
+	 *            类别值
+	 * @return {@link #DIGIT}、{@link #DATE}、{@link #LETTER}或{@link #OTHER}
+	 */
+	public static int type(int classes)
+	{
+		return classes & TYPE_MASK;
+	}
+
+	/**
+	 * 字符类型的特征值
+	 *
+	 * @param codePoint
+	 *            字符的码位
+	 * @return 与{@link CharTypeUtil#featureType(String)}相同的特征值
+	 */
+	public static String featureType(int codePoint)
+	{
+		return FEATURE_TYPES[type(classify(codePoint))];
+	}
+
+	/**
+	 * 字符转为半角后是否为标点
+	 *
+	 * @param codePoint
+	 *            字符的码位
+	 * @return 是否为标点
+	 */
+	public static boolean isPunctuation(int codePoint)
+	{
+		return (classify(codePoint) & PUNCTUATION) != 0;
+	}
+
+	/**
+	 * 全角字符转为半角，与{@link FullHalfWidthUtil#toHalfWidth(char[])}相同
+	 *
+	 * @param c
+	 *            字符
+	 * @return 对应的半角字符，没有时为原字符
+	 */
+	public static char toHalfWidth(char c)
+	{
+		if ((TABLE[c] & FULL_WIDTH) == 0)
+		{
+			return c;
+		}
+
+		return c == 12288 ? ' ' : (char) (c - 65248);
+	}
+}
@@ -92,24 +92,17 @@ public class CharTypeUtil
 		}
 	}
 
+	/**
+	 * 字符类型的特征值：数字为1，年月日为2，字母为3，其他为4
+	 * 
+	 * 查{@link CharClassifier}预先计算的类别表
+	 * 
+	 * @param c
+	 * @return
+	 */
 	public static String featureType(String c)
 	{
-		if (isDigit(c.toCharArray()[0]))
-		{
-			return "1";
-		}
-		else if (isDate(c.toCharArray()[0]))
-		{
-			return "2";
-		}
-		else if (isLetter(c.toCharArray()[0]))
-		{
-			return "3";
-		}
-		else
-		{// 其他的情形
-			return "4";
-		}
+		return CharClassifier.featureType(c.charAt(0));
 	}
 
 	/**
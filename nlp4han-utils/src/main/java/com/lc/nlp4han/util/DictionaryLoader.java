@@ -78,4 +78,34 @@ public class DictionaryLoader
 
 		return wordSet;
 	}
+
+	/**
+	 * 从字典文件中读取词，构建双数组Trie树
+	 * 
+	 * 每行一个词，词的值为其在按字典序排列的词表中的序号
+	 * 
+	 * @param dictPath 字典文件路径
+	 * @param encoding 字典文件编码
+	 * @return 双数组Trie树
+	 * @throws IOException
+	 */
+	public static DoubleArrayTrie getTrie(String dictPath, String encoding) throws IOException
+	{
+		return DoubleArrayTrie.build(getWords(dictPath, encoding));
+	}
+
+	/**
+	 * 从流中读取词，构建双数组Trie树
+	 * 
+	 * 每行一个词，词的值为其在按字典序排列的词表中的序号
+	 * 
+	 * @param dictStream 字典流
+	 * @param encoding 字典流编码
+	 * @return 双数组Trie树
+	 * @throws IOException
+	 */
+	public static DoubleArrayTrie getTrie(InputStream dictStream, String encoding) throws IOException
+	{
+		return DoubleArrayTrie.build(getWords(dictStream, encoding));
+	}
 }
@@ -0,0 +1,591 @@
+package com.lc.nlp4han.util;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 双数组Trie树，保存词到非负整数值的映射
+ *
+ * 状态s经字符c转移到状态t = base[s] + c + 1，当且仅当check[t] == s；状态s是一个词的结尾，当且仅当t = base[s]满足
+ * check[t] == s，此时base[t]为词的值。查找只在给定的字符区间上转移状态，不创建字符串，因此可以直接查字符数组或句子中的任意一段，
+ * 也可以查出从某一位置开始的所有词（公共前缀查找）。
+ *
+ * 树可以保存为镜像：魔数、状态数、词数，然后是base和check数组，都是大端的int。镜像可以读入堆中，也可以通过内存映射直接使用。
+ *
+ * 树构建后只读，可以被多个线程共享。
+ */
+public class DoubleArrayTrie
+{
+	/**
+	 * 根状态
+	 */
+	public static final int ROOT = 0;
+
+	/**
+	 * 不存在的状态或值
+	 */
+	public static final int NOT_FOUND = -1;
+
+	private static final int MAGIC = 0x44415431;
+
+	private static final int HEADER_BYTES = 12;
+
+	private final IntBuffer base;
+
+	private final IntBuffer check;
+
+	/**
+	 * 数组的长度
+	 */
+	private final int length;
+
+	/**
+	 * 词数
+	 */
+	private final int size;
+
+	private DoubleArrayTrie(IntBuffer base, IntBuffer check, int size)
+	{
+		this.base = base;
+		this.check = check;
+		this.length = base.limit();
+		this.size = size;
+	}
+
+	/**
+	 * 由词集构建，词的值为其在按字典序排列的词表中的序号
+	 *
+	 * @param words 词集
+	 * @return Trie树
+	 */
+	public static DoubleArrayTrie build(Collection<String> words)
+	{
+		TreeSet<String> sorted = new TreeSet<>(words);
+		String[] keys = sorted.toArray(new String[sorted.size()]);
+		int[] values = new int[keys.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = i;
+		}
+
+		return new Builder(keys, values).build();
+	}
+
+	/**
+	 * 由词与值的映射构建
+	 *
+	 * @param dict 词与值的映射，值不能为负
+	 * @return Trie树
+	 */
+	public static DoubleArrayTrie build(Map<String, Integer> dict)
+	{
+		TreeMap<String, Integer> sorted = new TreeMap<>(dict);
+		String[] keys = new String[sorted.size()];
+		int[] values = new int[keys.length];
+		int i = 0;
+		for (Entry<String, Integer> entry : sorted.entrySet())
+		{
+			if (entry.getValue() < 0)
+				throw new IllegalArgumentException("词的值不能为负：" + entry.getKey() + "=" + entry.getValue());
+
+			keys[i] = entry.getKey();
+			values[i] = entry.getValue();
+			i++;
+		}
+
+		return new Builder(keys, values).build();
+	}
+
+	/**
+	 * 返回词数
+	 *
+	 * @return 词数
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * 从状态state经字符c转移
+	 *
+	 * @param state 状态，可以为{@link #NOT_FOUND}
+	 * @param c 字符
+	 * @return 转移到的状态，不能转移时为{@link #NOT_FOUND}
+	 */
+	public int next(int state, char c)
+	{
+		if (state < 0)
+			return NOT_FOUND;
+
+		int t = base.get(state) + c + 1;
+		if (t < length && check.get(t) == state)
+			return t;
+
+		return NOT_FOUND;
+	}
+
+	/**
+	 * 从状态state依次经text[start, end)中的字符转移
+	 *
+	 * @param state 状态，可以为{@link #NOT_FOUND}
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @return 转移到的状态，不能转移时为{@link #NOT_FOUND}
+	 */
+	public int next(int state, CharSequence text, int start, int end)
+	{
+		for (int i = start; i < end && state >= 0; i++)
+		{
+			state = next(state, text.charAt(i));
+		}
+
+		return state;
+	}
+
+	/**
+	 * 从状态state依次经text中的字符转移
+	 *
+	 * @param state 状态，可以为{@link #NOT_FOUND}
+	 * @param text 文本
+	 * @return 转移到的状态，不能转移时为{@link #NOT_FOUND}
+	 */
+	public int next(int state, CharSequence text)
+	{
+		return next(state, text, 0, text.length());
+	}
+
+	/**
+	 * 从状态state依次经text[start, end)中的字符转移
+	 *
+	 * @param state 状态，可以为{@link #NOT_FOUND}
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @return 转移到的状态，不能转移时为{@link #NOT_FOUND}
+	 */
+	public int next(int state, char[] text, int start, int end)
+	{
+		for (int i = start; i < end && state >= 0; i++)
+		{
+			state = next(state, text[i]);
+		}
+
+		return state;
+	}
+
+	/**
+	 * 返回从根到状态state的字符组成的词的值
+	 *
+	 * @param state 状态，可以为{@link #NOT_FOUND}
+	 * @return 词的值，不是词时为{@link #NOT_FOUND}
+	 */
+	public int getValue(int state)
+	{
+		if (state < 0)
+			return NOT_FOUND;
+
+		int t = base.get(state);
+		if (t < length && check.get(t) == state)
+			return base.get(t);
+
+		return NOT_FOUND;
+	}
+
+	/**
+	 * 返回词的值
+	 *
+	 * @param word 词
+	 * @return 词的值，不是词时为{@link #NOT_FOUND}
+	 */
+	public int get(CharSequence word)
+	{
+		return getValue(next(ROOT, word));
+	}
+
+	/**
+	 * 返回text[start, end)组成的词的值
+	 *
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @return 词的值，不是词时为{@link #NOT_FOUND}
+	 */
+	public int get(CharSequence text, int start, int end)
+	{
+		return getValue(next(ROOT, text, start, end));
+	}
+
+	/**
+	 * 返回text[start, end)组成的词的值
+	 *
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @return 词的值，不是词时为{@link #NOT_FOUND}
+	 */
+	public int get(char[] text, int start, int end)
+	{
+		return getValue(next(ROOT, text, start, end));
+	}
+
+	/**
+	 * 判断是否为词
+	 *
+	 * @param word 词
+	 * @return 是词时为true
+	 */
+	public boolean contains(CharSequence word)
+	{
+		return get(word) != NOT_FOUND;
+	}
+
+	/**
+	 * 判断text[start, end)是否为词
+	 *
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @return 是词时为true
+	 */
+	public boolean contains(CharSequence text, int start, int end)
+	{
+		return get(text, start, end) != NOT_FOUND;
+	}
+
+	/**
+	 * 判断text[start, end)是否为词
+	 *
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @return 是词时为true
+	 */
+	public boolean contains(char[] text, int start, int end)
+	{
+		return get(text, start, end) != NOT_FOUND;
+	}
+
+	/**
+	 * 公共前缀查找：查出text[start, end)中从start开始的所有词，按长度从短到长依次写入lengths和values
+	 *
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @param lengths 词的长度，最多查出lengths.length个词
+	 * @param values 词的值，可以为null
+	 * @return 查出的词数
+	 */
+	public int commonPrefixSearch(CharSequence text, int start, int end, int[] lengths, int[] values)
+	{
+		int count = 0;
+		int state = ROOT;
+		for (int i = start; i < end && count < lengths.length; i++)
+		{
+			state = next(state, text.charAt(i));
+			if (state < 0)
+				break;
+
+			count = addMatch(state, i - start + 1, lengths, values, count);
+		}
+
+		return count;
+	}
+
+	/**
+	 * 公共前缀查找：查出text[start, end)中从start开始的所有词，按长度从短到长依次写入lengths和values
+	 *
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param end 结束位置（不含）
+	 * @param lengths 词的长度，最多查出lengths.length个词
+	 * @param values 词的值，可以为null
+	 * @return 查出的词数
+	 */
+	public int commonPrefixSearch(char[] text, int start, int end, int[] lengths, int[] values)
+	{
+		int count = 0;
+		int state = ROOT;
+		for (int i = start; i < end && count < lengths.length; i++)
+		{
+			state = next(state, text[i]);
+			if (state < 0)
+				break;
+
+			count = addMatch(state, i - start + 1, lengths, values, count);
+		}
+
+		return count;
+	}
+
+	private int addMatch(int state, int length, int[] lengths, int[] values, int count)
+	{
+		int value = getValue(state);
+		if (value == NOT_FOUND)
+			return count;
+
+		lengths[count] = length;
+		if (values != null)
+			values[count] = value;
+
+		return count + 1;
+	}
+
+	/**
+	 * 把镜像写入输出流，输出流不会被关闭
+	 *
+	 * @param out 输出流
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException
+	{
+		ByteBuffer image = ByteBuffer.allocate(HEADER_BYTES + 8 * length);
+		image.putInt(MAGIC).putInt(length).putInt(size);
+
+		IntBuffer arrays = image.asIntBuffer();
+		IntBuffer b = base.duplicate();
+		b.rewind();
+		arrays.put(b);
+		IntBuffer c = check.duplicate();
+		c.rewind();
+		arrays.put(c);
+
+		image.rewind();
+		WritableByteChannel channel = Channels.newChannel(out);
+		while (image.hasRemaining())
+		{
+			channel.write(image);
+		}
+		out.flush();
+	}
+
+	/**
+	 * 把镜像写入文件
+	 *
+	 * @param file 文件
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException
+	{
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			write(out);
+		}
+	}
+
+	/**
+	 * 从输入流读入镜像，数组保存在堆中，输入流不会被关闭
+	 *
+	 * @param in 输入流
+	 * @return Trie树
+	 * @throws IOException
+	 */
+	public static DoubleArrayTrie read(InputStream in) throws IOException
+	{
+		DataInputStream data = new DataInputStream(in);
+		byte[] header = new byte[HEADER_BYTES];
+		data.readFully(header);
+		int length = checkHeader(ByteBuffer.wrap(header), Long.MAX_VALUE);
+
+		byte[] arrays = new byte[8 * length];
+		data.readFully(arrays);
+		int[] base = new int[length];
+		int[] check = new int[length];
+		IntBuffer ints = ByteBuffer.wrap(arrays).asIntBuffer();
+		ints.get(base);
+		ints.get(check);
+
+		return new DoubleArrayTrie(IntBuffer.wrap(base), IntBuffer.wrap(check), ByteBuffer.wrap(header).getInt(8));
+	}
+
+	/**
+	 * 以内存映射的方式打开镜像文件，数组不占用堆，映射的内存可以被多个进程共享
+	 *
+	 * @param file 镜像文件
+	 * @return Trie树
+	 * @throws IOException
+	 */
+	public static DoubleArrayTrie map(File file) throws IOException
+	{
+		MappedByteBuffer image;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		int length = checkHeader(image, image.capacity() - HEADER_BYTES);
+		image.position(HEADER_BYTES);
+		IntBuffer ints = image.slice().asIntBuffer();
+		ints.limit(length);
+		IntBuffer base = ints.slice();
+		ints.limit(2 * length);
+		ints.position(length);
+		IntBuffer check = ints.slice();
+
+		return new DoubleArrayTrie(base, check, image.getInt(8));
+	}
+
+	/**
+	 * 检查镜像头，返回数组的长度
+	 */
+	private static int checkHeader(ByteBuffer header, long availableBytes) throws IOException
+	{
+		if (header.getInt(0) != MAGIC)
+			throw new IOException("不是双数组Trie树的镜像");
+
+		int length = header.getInt(4);
+		if (length < 1 || 8L * length > availableBytes)
+			throw new IOException("双数组Trie树的镜像不完整，数组长度：" + length);
+
+		return length;
+	}
+
+	/**
+	 * 按字典序对排好序的词深度优先地分配状态
+	 */
+	private static class Builder
+	{
+		private static final int FREE = -1;
+
+		private final String[] keys;
+
+		private final int[] values;
+
+		private int[] base = new int[1024];
+
+		private int[] check = new int[1024];
+
+		/**
+		 * 寻找空闲位置的起点，之前的位置几乎都已占用
+		 */
+		private int nextCheckPos = 1;
+
+		private int maxState = 0;
+
+		Builder(String[] keys, int[] values)
+		{
+			this.keys = keys;
+			this.values = values;
+			Arrays.fill(check, FREE);
+		}
+
+		DoubleArrayTrie build()
+		{
+			check[ROOT] = ROOT;
+			base[ROOT] = 1;
+			if (keys.length > 0)
+				insert(ROOT, 0, keys.length, 0);
+
+			int length = maxState + 1;
+			int[] b = Arrays.copyOf(base, length);
+			int[] c = Arrays.copyOf(check, length);
+
+			return new DoubleArrayTrie(IntBuffer.wrap(b), IntBuffer.wrap(c), keys.length);
+		}
+
+		/**
+		 * 为状态state分配子状态，keys[lo, hi)是经过state的词，它们的前depth个字符相同
+		 */
+		private void insert(int state, int lo, int hi, int depth)
+		{
+			// 子状态的标号（词结束为0，字符c为c + 1）及其词的起点
+			int[] labels = new int[hi - lo];
+			int[] starts = new int[hi - lo + 1];
+			int n = 0;
+			for (int i = lo; i < hi; i++)
+			{
+				int label = keys[i].length() == depth ? 0 : keys[i].charAt(depth) + 1;
+				if (n == 0 || labels[n - 1] != label)
+				{
+					labels[n] = label;
+					starts[n] = i;
+					n++;
+				}
+			}
+			starts[n] = hi;
+
+			int b = findBase(labels, n);
+			base[state] = b;
+			for (int k = 0; k < n; k++)
+			{
+				check[b + labels[k]] = state;
+			}
+			maxState = Math.max(maxState, b + labels[n - 1]);
+
+			for (int k = 0; k < n; k++)
+			{
+				int child = b + labels[k];
+				if (labels[k] == 0)
+					base[child] = values[starts[k]];
+				else
+					insert(child, starts[k], starts[k + 1], depth + 1);
+			}
+		}
+
+		/**
+		 * 寻找使所有子状态的位置都空闲的base
+		 */
+		private int findBase(int[] labels, int n)
+		{
+			int pos = Math.max(nextCheckPos, labels[0] + 1);
+			int occupied = 0;
+			while (true)
+			{
+				ensureCapacity(pos + labels[n - 1] - labels[0] + 1);
+				if (check[pos] != FREE)
+				{
+					occupied++;
+					pos++;
+					continue;
+				}
+
+				int b = pos - labels[0];
+				boolean fit = true;
+				for (int k = 1; k < n && fit; k++)
+				{
+					fit = check[b + labels[k]] == FREE;
+				}
+
+				if (fit)
+				{
+					if (pos > nextCheckPos && occupied >= 0.95 * (pos - nextCheckPos))
+						nextCheckPos = pos;
+
+					return b;
+				}
+
+				pos++;
+			}
+		}
+
+		private void ensureCapacity(int capacity)
+		{
+			if (capacity <= check.length)
+				return;
+
+			int oldLength = check.length;
+			int newLength = Math.max(capacity, oldLength + (oldLength >> 1));
+			base = Arrays.copyOf(base, newLength);
+			check = Arrays.copyOf(check, newLength);
+			Arrays.fill(check, oldLength, newLength, FREE);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.lc.nlp4han.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * 字符类别表的测试
+ */
+public class CharClassifierTest
+{
+	@Test
+	public void testSameAsCharTypeUtil()
+	{
+		for (int c = 0; c <= Character.MAX_VALUE; c++)
+		{
+			String s = String.valueOf((char) c);
+			String half = FullHalfWidthUtil.toHalfWidth(s);
+
+			int classes = CharClassifier.classify(c);
+			assertEquals(s, Integer.parseInt(CharTypeUtil.featureType(s)), CharClassifier.type(classes));
+			assertEquals(s, CharTypeUtil.isChinesePunctuation(half), CharClassifier.isPunctuation(c));
+			assertEquals(s, half.charAt(0), CharClassifier.toHalfWidth((char) c));
+			assertEquals(s, half.charAt(0) != c, (classes & CharClassifier.FULL_WIDTH) != 0);
+		}
+	}
+
+	@Test
+	public void testClassify()
+	{
+		assertEquals(CharClassifier.DIGIT, CharClassifier.type(CharClassifier.classify('５')));
+		assertEquals(CharClassifier.DATE, CharClassifier.type(CharClassifier.classify('年')));
+		assertEquals(CharClassifier.LETTER, CharClassifier.type(CharClassifier.classify('ａ')));
+		assertEquals(CharClassifier.OTHER, CharClassifier.type(CharClassifier.classify('中')));
+		assertEquals("3", CharClassifier.featureType('Z'));
+		assertTrue(CharClassifier.isPunctuation('，'));
+		assertTrue(CharClassifier.isPunctuation('？'));
+		assertFalse(CharClassifier.isPunctuation('中'));
+
+		// 增补字符为其他类型
+		assertEquals(CharClassifier.OTHER, CharClassifier.classify(0x20BB7));
+		assertEquals("4", CharClassifier.featureType(0x20BB7));
+
+		char[] text = "他说：２０１８年".toCharArray();
+		int[] classes = new int[text.length + 1];
+		CharClassifier.classify(text, classes);
+		for (int i = 0; i < text.length; i++)
+		{
+			assertEquals(CharClassifier.classify(text[i]), classes[i]);
+		}
+
+		CharClassifier.classify(text, 3, 5, classes);
+		assertEquals(CharClassifier.classify('２'), classes[0]);
+		assertEquals(CharClassifier.classify('０'), classes[1]);
+	}
+}
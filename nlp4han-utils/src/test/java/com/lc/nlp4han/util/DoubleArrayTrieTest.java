@@ -0,0 +1,187 @@
+package com.lc.nlp4han.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * 双数组Trie树的测试
+ */
+public class DoubleArrayTrieTest
+{
+	private static final List<String> WORDS = Arrays.asList("中国", "中国人", "中华", "人民", "中华人民共和国", "共和国", "国");
+
+	@Test
+	public void testGet()
+	{
+		DoubleArrayTrie trie = DoubleArrayTrie.build(WORDS);
+
+		assertEquals(7, trie.size());
+		assertEquals(0, trie.get("中华"));
+		assertEquals(1, trie.get("中华人民共和国"));
+		assertEquals(2, trie.get("中国"));
+		assertTrue(trie.contains("国"));
+		assertFalse(trie.contains("中"));
+		assertFalse(trie.contains("中华人民"));
+		assertFalse(trie.contains("美国"));
+		assertFalse(trie.contains(""));
+		assertEquals(DoubleArrayTrie.NOT_FOUND, trie.get("中国人民"));
+
+		String text = "我是中国人";
+		assertTrue(trie.contains(text, 2, 4));
+		assertTrue(trie.contains(text.toCharArray(), 2, 5));
+		assertFalse(trie.contains(text.toCharArray(), 1, 4));
+
+		int state = trie.next(DoubleArrayTrie.ROOT, "中");
+		assertEquals(DoubleArrayTrie.NOT_FOUND, trie.getValue(state));
+		assertEquals(2, trie.getValue(trie.next(state, '国')));
+		assertEquals(DoubleArrayTrie.NOT_FOUND, trie.next(trie.next(state, '美'), '国'));
+	}
+
+	@Test
+	public void testCommonPrefixSearch()
+	{
+		DoubleArrayTrie trie = DoubleArrayTrie.build(WORDS);
+		int[] lengths = new int[4];
+		int[] values = new int[4];
+
+		String text = "中华人民共和国成立";
+		assertEquals(2, trie.commonPrefixSearch(text, 0, text.length(), lengths, values));
+		assertArrayEquals(new int[] { 2, 7 }, Arrays.copyOf(lengths, 2));
+		assertArrayEquals(new int[] { 0, 1 }, Arrays.copyOf(values, 2));
+
+		// 窗口之外的字符不参与匹配
+		assertEquals(1, trie.commonPrefixSearch(text.toCharArray(), 0, 6, lengths, null));
+		assertEquals(2, lengths[0]);
+
+		text = "在中国人中";
+		assertEquals(2, trie.commonPrefixSearch(text.toCharArray(), 1, text.length(), lengths, values));
+		assertArrayEquals(new int[] { 2, 3 }, Arrays.copyOf(lengths, 2));
+
+		// 最多查出lengths.length个词
+		assertEquals(1, trie.commonPrefixSearch(text, 1, text.length(), new int[1], null));
+		assertEquals(0, trie.commonPrefixSearch(text, 0, text.length(), lengths, values));
+	}
+
+	@Test
+	public void testRandomDictionary()
+	{
+		Random random = new Random(22);
+		Set<String> words = new HashSet<>();
+		char[] alphabet = { 'a', 'b', 'c', '中', '国', '人', '\u0000', '\uffff', '\ud842', '\udfb7' };
+		while (words.size() < 2000)
+		{
+			char[] word = new char[1 + random.nextInt(6)];
+			for (int i = 0; i < word.length; i++)
+			{
+				word[i] = alphabet[random.nextInt(alphabet.length)];
+			}
+			words.add(new String(word));
+		}
+
+		DoubleArrayTrie trie = DoubleArrayTrie.build(words);
+		assertEquals(words.size(), trie.size());
+
+		char[] text = new char[200];
+		for (int i = 0; i < text.length; i++)
+		{
+			text[i] = alphabet[random.nextInt(alphabet.length)];
+		}
+
+		int[] lengths = new int[8];
+		for (int start = 0; start < text.length; start++)
+		{
+			int count = trie.commonPrefixSearch(text, start, text.length, lengths, null);
+			int k = 0;
+			for (int end = start + 1; end <= Math.min(text.length, start + 8); end++)
+			{
+				boolean expected = words.contains(new String(text, start, end - start));
+				assertEquals(expected, trie.contains(text, start, end));
+				if (expected)
+					assertEquals(end - start, lengths[k++]);
+			}
+			assertEquals(k, count);
+		}
+	}
+
+	@Test
+	public void testMapValues()
+	{
+		Map<String, Integer> dict = new HashMap<>();
+		dict.put("中国", 12);
+		dict.put("中", 0);
+		dict.put("国", 7);
+		DoubleArrayTrie trie = DoubleArrayTrie.build(dict);
+
+		assertEquals(12, trie.get("中国"));
+		assertEquals(0, trie.get("中"));
+		assertEquals(7, trie.get("国"));
+
+		dict.put("人", -1);
+		try
+		{
+			DoubleArrayTrie.build(dict);
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		DoubleArrayTrie trie = DoubleArrayTrie.build(new HashSet<String>());
+
+		assertEquals(0, trie.size());
+		assertFalse(trie.contains("中"));
+		assertEquals(0, trie.commonPrefixSearch("中国", 0, 2, new int[2], null));
+	}
+
+	@Test
+	public void testImage() throws IOException
+	{
+		DoubleArrayTrie trie = DoubleArrayTrie.build(WORDS);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		trie.write(out);
+		assertImage(DoubleArrayTrie.read(new ByteArrayInputStream(out.toByteArray())));
+
+		File file = File.createTempFile("dict", ".dat");
+		file.deleteOnExit();
+		trie.save(file);
+		assertImage(DoubleArrayTrie.map(file));
+
+		try
+		{
+			DoubleArrayTrie.read(new ByteArrayInputStream(new byte[12]));
+			fail();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+	private static void assertImage(DoubleArrayTrie trie)
+	{
+		assertEquals(WORDS.size(), trie.size());
+		for (String word : WORDS)
+		{
+			assertTrue(trie.contains(word));
+		}
+		assertEquals(1, trie.get("中华人民共和国"));
+		assertFalse(trie.contains("中华人民"));
+	}
+}
@@ -0,0 +1,197 @@
+package com.lc.nlp4han.segment;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import com.lc.nlp4han.ml.util.ObjectStream;
+
+/**
+ * 从字符流中逐句读出句子的断句器
+ *
+ * 每一行按{@link SentenceSegmenterRule}的规则断句，行尾总是句子的结束，得到的句子与对每一行调用
+ * {@link SentenceSegmenterRule#segment(String)}相同。文本按固定大小的缓冲区读入，句子可以跨越缓冲区，
+ * 句号等是否成句要看下一个字符，引号的状态也在缓冲区之间保留。
+ *
+ * 为使内存不随文本增长，长度达到上限仍未结束的句子被强制切分。
+ */
+public class SentenceReader implements ObjectStream<String>
+{
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    public static final int DEFAULT_MAX_SENTENCE_LENGTH = 10000;
+
+    private final Reader reader;
+
+    private final char[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    private boolean eof;
+
+    private final int maxSentenceLength;
+
+    /**
+     * 当前句子已读入的内容
+     */
+    private final StringBuilder sentence = new StringBuilder();
+
+    private boolean inQuote;
+
+    /**
+     * 当前句子以句号、问号或感叹号结束，是否成句由下一个字符决定
+     */
+    private boolean pendingEnd;
+
+    public SentenceReader(Reader reader)
+    {
+        this(reader, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_SENTENCE_LENGTH);
+    }
+
+    /**
+     * @param reader 文本
+     * @param bufferSize 读缓冲区的字符数
+     * @param maxSentenceLength 句子的最大字符数，更长的句子被切分
+     */
+    public SentenceReader(Reader reader, int bufferSize, int maxSentenceLength)
+    {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("缓冲区大小应大于0：" + bufferSize);
+        if (maxSentenceLength < 2)
+            throw new IllegalArgumentException("句子的最大长度应大于1：" + maxSentenceLength);
+
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.maxSentenceLength = maxSentenceLength;
+    }
+
+    /**
+     * 从字节通道读入文本，无法解码的字节被替换
+     *
+     * @param channel 文本
+     * @param charset 文本的编码
+     */
+    public SentenceReader(ReadableByteChannel channel, Charset charset)
+    {
+        this(Channels.newReader(channel, newDecoder(charset), DEFAULT_BUFFER_SIZE), DEFAULT_BUFFER_SIZE,
+                DEFAULT_MAX_SENTENCE_LENGTH);
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset)
+    {
+        return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static boolean isEnd(char c)
+    {
+        return c == '。' || c == '？' || c == '！';
+    }
+
+    /**
+     * 返回下一个句子
+     *
+     * @return 句子，文本结束时返回null
+     */
+    @Override
+    public String read() throws IOException
+    {
+        while (true)
+        {
+            if (position == limit)
+            {
+                if (eof)
+                    return endLine();
+
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit < 0)
+                {
+                    limit = 0;
+                    eof = true;
+                }
+                continue;
+            }
+
+            char c = buffer[position];
+            if (c == '\n' || c == '\r')
+            {
+                position++;
+                String line = endLine();
+                if (line != null)
+                    return line;
+
+                continue;
+            }
+
+            if (pendingEnd)
+            {
+                pendingEnd = false;
+                if (c == '”') // 句号、问号和感叹号在引号内，和引号一起成句
+                {
+                    sentence.append(c);
+                    position++;
+                    inQuote = false;
+                    return emit();
+                }
+                else if (!isEnd(c) && !inQuote) // 句号、问号和感叹号不在引号内，成句
+                {
+                    return emit();
+                }
+            }
+
+            position++;
+            sentence.append(c);
+            if (isEnd(c))
+                pendingEnd = true;
+            else if (c == '“')
+                inQuote = true;
+            else if (c == '”')
+                inQuote = false;
+
+            if (sentence.length() >= maxSentenceLength && !Character.isHighSurrogate(c))
+            {
+                pendingEnd = false;
+                return emit();
+            }
+        }
+    }
+
+    /**
+     * 行结束，剩余内容成句
+     */
+    private String endLine()
+    {
+        pendingEnd = false;
+        inQuote = false;
+        if (sentence.length() == 0)
+            return null;
+
+        return emit();
+    }
+
+    private String emit()
+    {
+        String s = sentence.toString();
+        sentence.setLength(0);
+        return s;
+    }
+
+    @Override
+    public void reset() throws IOException, UnsupportedOperationException
+    {
+        throw new UnsupportedOperationException("SentenceReader不支持重置");
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+}
@@ -0,0 +1,193 @@
+package com.lc.nlp4han.segment;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.lc.nlp4han.ml.util.ObjectStream;
+
+/**
+ * 流式分词：从文本中逐句读出句子，分批交给分词器，按输入的顺序输出分词结果
+ *
+ * 每个分词器同一时间只被一个线程使用，分词器的个数即线程数，因此非线程安全的分词器（如
+ * {@link com.lc.nlp4han.segment.maxent.WordSegmenterME}）每个线程需要一个实例，这些实例可以共享一个模型。
+ *
+ * 同时处理中的批次不超过线程数的两倍，内存与文本的大小无关。每个句子输出一行，词之间以空格分隔。
+ */
+public class StreamingWordSegmenter
+{
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * 空闲的分词器
+     */
+    private final BlockingQueue<WordSegmenter> segmenters;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    public StreamingWordSegmenter(WordSegmenter segmenter)
+    {
+        this(new WordSegmenter[] { segmenter }, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param segmenters 分词器，每个线程一个
+     * @param batchSize 一批的句子数
+     */
+    public StreamingWordSegmenter(WordSegmenter[] segmenters, int batchSize)
+    {
+        if (segmenters.length < 1)
+            throw new IllegalArgumentException("至少需要一个分词器");
+        if (batchSize < 1)
+            throw new IllegalArgumentException("批次大小应大于0：" + batchSize);
+
+        this.segmenters = new ArrayBlockingQueue<>(segmenters.length);
+        for (WordSegmenter segmenter : segmenters)
+            this.segmenters.add(segmenter);
+        this.threads = segmenters.length;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 对文本断句并分词
+     *
+     * @param in 文本
+     * @param out 分词结果
+     * @return 句子数
+     */
+    public long segment(Reader in, Writer out) throws IOException
+    {
+        return segment(new SentenceReader(in), out);
+    }
+
+    /**
+     * 对文本断句并分词
+     *
+     * @param in 文本
+     * @param charset 文本的编码
+     * @param out 分词结果
+     * @return 句子数
+     */
+    public long segment(ReadableByteChannel in, Charset charset, Writer out) throws IOException
+    {
+        return segment(new SentenceReader(in, charset), out);
+    }
+
+    /**
+     * 对句子分词，句子流不会被关闭
+     *
+     * @param sentences 句子
+     * @param out 分词结果
+     * @return 句子数
+     */
+    public long segment(ObjectStream<String> sentences, Writer out) throws IOException
+    {
+        long count = 0;
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        Deque<Future<String[][]>> pending = new ArrayDeque<>();
+        try
+        {
+            String[] batch;
+            while ((batch = readBatch(sentences)) != null)
+            {
+                if (executor == null)
+                {
+                    count += write(segmentBatch(batch), out);
+                    continue;
+                }
+
+                if (pending.size() >= 2 * threads)
+                    count += write(pending.removeFirst().get(), out);
+
+                final String[] sentencesOfBatch = batch;
+                pending.addLast(executor.submit(() -> segmentBatch(sentencesOfBatch)));
+            }
+
+            while (!pending.isEmpty())
+                count += write(pending.removeFirst().get(), out);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interruption is not supported!", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException("Exception during word segmentation: " + e.getMessage(), e);
+        }
+        finally
+        {
+            if (executor != null)
+                executor.shutdown();
+        }
+
+        out.flush();
+        return count;
+    }
+
+    /**
+     * 读入下一批句子
+     *
+     * @return 句子，没有句子时返回null
+     */
+    private String[] readBatch(ObjectStream<String> sentences) throws IOException
+    {
+        List<String> batch = new ArrayList<>(batchSize);
+        String sentence;
+        while (batch.size() < batchSize && (sentence = sentences.read()) != null)
+            batch.add(sentence);
+
+        return batch.isEmpty() ? null : batch.toArray(new String[batch.size()]);
+    }
+
+    private String[][] segmentBatch(String[] batch) throws InterruptedException
+    {
+        WordSegmenter segmenter = segmenters.take();
+        try
+        {
+            String[][] words = new String[batch.length][];
+            for (int i = 0; i < batch.length; i++)
+                words[i] = segmenter.segment(batch[i]);
+
+            return words;
+        }
+        finally
+        {
+            segmenters.add(segmenter);
+        }
+    }
+
+    private static int write(String[][] words, Writer out) throws IOException
+    {
+        String lineSeparator = System.lineSeparator();
+        for (String[] sentence : words)
+        {
+            for (int i = 0; i < sentence.length; i++)
+            {
+                if (i > 0)
+                    out.write(' ');
+                out.write(sentence[i]);
+            }
+            out.write(lineSeparator);
+        }
+
+        return words.length;
+    }
+}
@@ -1,101 +1,90 @@
 package com.lc.nlp4han.segment.maxent;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
+import com.lc.nlp4han.ml.util.CharSentence;
+import com.lc.nlp4han.ml.util.FeatureCollector;
 
 /**
  * 缺省分词上下文产生器
  *
+ * 特征直接从句子的字符数组中读取，不为每个字创建字符串
+ *
  * @author 刘小峰
  */
-public class DefaultWordSegContextGenerator extends AbstractStringContextGenerator
+public class DefaultWordSegContextGenerator extends AbstractCharContextGenerator
 {
+    private static final FeatureTemplate C0 = new FeatureTemplate("c0=");
+    private static final FeatureTemplate C_1 = new FeatureTemplate("c_1=");
+    // 已有模型按不带"="的前缀训练
+    private static final FeatureTemplate C_2 = new FeatureTemplate("c_2");
+    private static final FeatureTemplate C1 = new FeatureTemplate("c1=");
+    private static final FeatureTemplate C2 = new FeatureTemplate("c2=");
+    private static final FeatureTemplate C_2C_1 = new FeatureTemplate("c_2c_1=");
+    private static final FeatureTemplate C_1C0 = new FeatureTemplate("c_1c0=");
+    private static final FeatureTemplate C0C1 = new FeatureTemplate("c0c1=");
+    private static final FeatureTemplate C1C2 = new FeatureTemplate("c1c2=");
+    private static final FeatureTemplate C_1C1 = new FeatureTemplate("c_1c1=");
 
-    @Override
-    public String[] getContext(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext)
+    public String[] getContext(int index, String[] tokens, String[] tags)
     {
-        return getContext(index, sequence, priorDecisions);
+        return getContext(index, tokens, tags, null);
     }
 
-    public String[] getContext(int index, String[] tokens, String[] tags)
+    @Override
+    protected void collect(int index, CharSentence tokens, String[] tags, Object[] additionalContext,
+            FeatureCollector features)
     {
-        String c1, c2, c0, c_1, c_2;
-        c1 = c2 = c0 = c_1 = c_2 = null;
+        boolean c1 = tokens.length() > index + 1;
+        boolean c2 = tokens.length() > index + 2;
+        boolean c_1 = index - 1 >= 0;
+        boolean c_2 = index - 2 >= 0;
 
-        c0 = tokens[index].toString();
+        features.add(C0, tokens, index);
 
-        if (tokens.length > index + 1)
+        if (c_1)
         {
-            c1 = tokens[index + 1].toString();
+            features.add(C_1, tokens, index - 1);
 
-            if (tokens.length > index + 2)
+            if (c_2)
             {
-                c2 = tokens[index + 2].toString();
+                features.add(C_2, tokens, index - 2);
             }
         }
 
-        if (index - 1 >= 0)
+        if (c1)
         {
-            c_1 = tokens[index - 1].toString();
-
-            if (index - 2 >= 0)
+            features.add(C1, tokens, index + 1);
+            if (c2)
             {
-                c_2 = tokens[index - 2].toString();
+                features.add(C2, tokens, index + 2);
             }
         }
 
-        List<String> features = new ArrayList<String>();
-        features.add("c0=" + c0);
-
-        if (c_1 != null)
+        if (c_2 && c_1)
         {
-            features.add("c_1=" + c_1);
-
-            if (c_2 != null)
-            {
-                features.add("c_2" + c_2);
-            }
+            features.add(C_2C_1, tokens, index - 2, index - 1);
         }
 
-        if (c1 != null)
+        if (c_1)
         {
-            features.add("c1=" + c1);
-            if (c2 != null)
-            {
-                features.add("c2=" + c2);
-            }
-        }
-
-        if (c_2 != null && c_1 != null)
-        {
-            features.add("c_2c_1=" + c_2 + c_1);
+            features.add(C_1C0, tokens, index - 1, index);
         }
 
-        if (c_1 != null)
+        if (c1)
         {
-            features.add("c_1c0=" + c_1 + c0);
+            features.add(C0C1, tokens, index, index + 1);
         }
 
-        if (c1 != null)
+        if (c1 && c2)
         {
-            features.add("c0c1=" + c0 + c1);
+            features.add(C1C2, tokens, index + 1, index + 2);
         }
 
-        if (c1 != null && c2 != null)
+        if (c_1 && c1)
         {
-            features.add("c1c2=" + c1 + c2);
+            features.add(C_1C1, tokens, index - 1, index + 1);
         }
-
-        if (c_1 != null && c1 != null)
-        {
-            features.add("c_1c1=" + c_1 + c1);
-        }
-
-        String[] contexts = features.toArray(new String[features.size()]);
-
-        return contexts;
     }
 
 }
@@ -2,15 +2,15 @@ package com.lc.nlp4han.segment.maxent;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
-import java.util.Set;
 
-import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
+import com.lc.nlp4han.ml.model.FeatureTemplate;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
+import com.lc.nlp4han.ml.util.CharSentence;
+import com.lc.nlp4han.ml.util.FeatureCollector;
+import com.lc.nlp4han.util.CharClassifier;
 import com.lc.nlp4han.util.DictionaryLoader;
-import com.lc.nlp4han.util.CharTypeUtil;
-import com.lc.nlp4han.util.FullHalfWidthUtil;
+import com.lc.nlp4han.util.DoubleArrayTrie;
 
 /*
  * 基于配置文件的上下文特征产生器
@@ -18,7 +18,7 @@ import com.lc.nlp4han.util.FullHalfWidthUtil;
  * @author 刘小峰
  * @author 王馨苇
  */
-public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
+public class WordSegContextGeneratorConf extends AbstractCharContextGenerator
 {
 
     private boolean c_2Set;
@@ -52,7 +52,7 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
     private boolean TSet;
 
     // 获取词典中的词（自己提供地址和编码方式）
-    private Set<String> dictWords;
+    private DoubleArrayTrie dictWords;
     
     private String dictResource;
     private String dictEncoding;
@@ -80,7 +80,7 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         dictEncoding = config.getProperty("feature.dict.encoding");
         
         InputStream dictIn = WordSegContextGeneratorConf.class.getClassLoader().getResourceAsStream(dictResource);
-        dictWords = DictionaryLoader.getWords(dictIn, dictEncoding);
+        dictWords = DictionaryLoader.getTrie(dictIn, dictEncoding);
         
         c_2Set = (config.getProperty("feature.c_2", "true").equals("true"));
         c_1Set = (config.getProperty("feature.c_1", "true").equals("true"));
@@ -113,32 +113,92 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         TSet = (config.getProperty("feature.T", "true").equals("true"));
     }
     
-    private List<String> addC0Prefix(List<String> features, String c0){
-        List<String> result = new ArrayList<String>();
-        
-        for(String feature : features){
-            result.add(feature);
-            
-            int p = feature.indexOf("=");
-            String name = feature.substring(0, p);
-            String value = feature.substring(p+1);
-            
-            String cof = "c0_" + name + "=" + c0 + value;
-            
-            result.add(cof);
-        }
-        
-        return result;
+    private static FeatureTemplate[] templates(String name)
+    {
+        // 特征本身及加上当前字前缀的特征
+        return new FeatureTemplate[] { new FeatureTemplate(name + "="), new FeatureTemplate("c0_" + name + "=") };
     }
 
+    private static FeatureTemplate[] dictTemplates(String position)
+    {
+        return new FeatureTemplate[] { new FeatureTemplate("L" + position + "="), new FeatureTemplate("c_1" + position + "="),
+                new FeatureTemplate("c0" + position + "="), new FeatureTemplate("c1" + position + "=") };
+    }
 
-    @Override
-    public String[] getContext(int index, String[] tokens, String[] tags, Object[] ac)
+    private static final FeatureTemplate[] C0 = templates("c0");
+    private static final FeatureTemplate[] C_1 = templates("c_1");
+    private static final FeatureTemplate[] T_1 = templates("t_1");
+    private static final FeatureTemplate[] C_2 = templates("c_2");
+    private static final FeatureTemplate[] T_2 = templates("t_2");
+    private static final FeatureTemplate[] C_2C0 = templates("c_2c0");
+    private static final FeatureTemplate[] C1 = templates("c1");
+    private static final FeatureTemplate[] C2 = templates("c2");
+    private static final FeatureTemplate[] C_2C_1 = templates("c_2c_1");
+    private static final FeatureTemplate[] C_1C0 = templates("c_1c0");
+    private static final FeatureTemplate[] C0C1 = templates("c0c1");
+    private static final FeatureTemplate[] C1C2 = templates("c1c2");
+    private static final FeatureTemplate[] C_1C1 = templates("c_1c1");
+    private static final FeatureTemplate[] C_1C0C1 = templates("c_1c0c1");
+
+    private static final FeatureTemplate PU = new FeatureTemplate("Pu=");
+    private static final FeatureTemplate T = new FeatureTemplate("T=");
+
+    // 词典词结束于、跨越、开始于当前字
+    private static final FeatureTemplate[] DICT_E = dictTemplates("e");
+    private static final FeatureTemplate[] DICT_M = dictTemplates("m");
+    private static final FeatureTemplate[] DICT_B = dictTemplates("b");
+
+    private void add(FeatureCollector features, FeatureTemplate[] templates, String c0, String value)
+    {
+        features.add(templates[0], value);
+
+        if (c0prefix)
+            features.start(templates[1]).append(c0).append(value).end();
+    }
+
+    private void add(FeatureCollector features, FeatureTemplate[] templates, String c0, String value1, String value2)
     {
-        return getContext(index, tokens, tags);
+        features.add(templates[0], value1, value2);
+
+        if (c0prefix)
+            features.start(templates[1]).append(c0).append(value1).append(value2).end();
+    }
+
+    private void add(FeatureCollector features, FeatureTemplate[] templates, String c0, String value1, String value2,
+            String value3)
+    {
+        features.start(templates[0]).append(value1).append(value2).append(value3).end();
+
+        if (c0prefix)
+            features.start(templates[1]).append(c0).append(value1).append(value2).append(value3).end();
+    }
+
+    private void addDict(FeatureCollector features, FeatureTemplate[] templates, String c_1, String c0, String c1)
+    {
+        if (Lt0Set)
+            features.add(templates[0], "4");
+
+        if (c_1t0Set)
+            features.add(templates[1], c_1);
+
+        if (c0t0Set)
+            features.add(templates[2], c0);
+
+        if (c1t0Set)
+            features.add(templates[3], c1);
     }
 
     public String[] getContext(int index, Object[] tokens, String[] tags)
+    {
+        String[] chars = new String[tokens.length];
+        for (int i = 0; i < tokens.length; i++)
+            chars[i] = tokens[i].toString();
+
+        return getContext(index, chars, tags, null);
+    }
+
+    @Override
+    protected void collect(int index, CharSentence tokens, String[] tags, Object[] ac, FeatureCollector features)
     {
         String c1, c2, c3, c0, c_1, c_2, c_3;
         c1 = c2 = c3 = c0 = c_1 = c_2 = c_3 = null;
@@ -148,125 +208,121 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         String t_1 = null;
         String t_2 = null;
 
-        c0 = tokens[index].toString();
-        TC0 = CharTypeUtil.featureType(c0);
-        if (tokens.length > index + 1)
+        c0 = tokens.get(index);
+        TC0 = CharClassifier.featureType(tokens.codePointAt(index));
+        if (tokens.length() > index + 1)
         {
-            c1 = tokens[index + 1].toString();
-            TC1 = CharTypeUtil.featureType(c1);
+            c1 = tokens.get(index + 1);
+            TC1 = CharClassifier.featureType(tokens.codePointAt(index + 1));
 
-            if (tokens.length > index + 2)
+            if (tokens.length() > index + 2)
             {
-                c2 = tokens[index + 2].toString();
-                TC2 = CharTypeUtil.featureType(c2);
-                if (tokens.length > index + 3)
-                    c3 = tokens[index + 3].toString();
+                c2 = tokens.get(index + 2);
+                TC2 = CharClassifier.featureType(tokens.codePointAt(index + 2));
+                if (tokens.length() > index + 3)
+                    c3 = tokens.get(index + 3);
             }
         }
 
         if (index - 1 >= 0)
         {
-            c_1 = tokens[index - 1].toString();
-            TC_1 = CharTypeUtil.featureType(c_1);
+            c_1 = tokens.get(index - 1);
+            TC_1 = CharClassifier.featureType(tokens.codePointAt(index - 1));
             t_1 = tags[index - 1];
 
             if (index - 2 >= 0)
             {
-                c_2 = tokens[index - 2].toString();
+                c_2 = tokens.get(index - 2);
                 t_2 = tags[index - 2];
-                TC_2 = CharTypeUtil.featureType(c_2);
+                TC_2 = CharClassifier.featureType(tokens.codePointAt(index - 2));
 
                 if (index - 3 >= 0)
-                    c_3 = tokens[index - 3].toString();
+                    c_3 = tokens.get(index - 3);
             }
         }
 
-        List<String> features = new ArrayList<String>();
-
+        // 以下特征在c0prefix时紧跟着加上当前字前缀的特征
         if (c0Set)
-            features.add("c0=" + c0);
+            add(features, C0, c0, c0);
 
         if (c_1 != null)
         {
             if (c_1Set)
-                features.add("c_1=" + c_1);
+                add(features, C_1, c0, c_1);
 
             if (t_1Set)
-                features.add("t_1=" + t_1);
+                add(features, T_1, c0, t_1);
 
             if (c_2 != null)
             {
                 if (c_2Set)
-                    features.add("c_2=" + c_2);
+                    add(features, C_2, c0, c_2);
 
                 if (t_2Set)
-                    features.add("t_2=" + t_2 + "," + t_1);
+                    add(features, T_2, c0, t_2, ",", t_1);
 
                 if (c_2c0set)
-                    features.add("c_2c0=" + c_2 + c0);
+                    add(features, C_2C0, c0, c_2, c0);
             }
         }
 
         if (c1 != null)
         {
             if (c1Set)
-                features.add("c1=" + c1);
+                add(features, C1, c0, c1);
             
             if (c2 != null)
             {
                 if (c2Set)
-                    features.add("c2=" + c2);
+                    add(features, C2, c0, c2);
             }
         }
 
         if (c_2 != null && c_1 != null)
         {
             if (c_2c_1Set)
-                features.add("c_2c_1=" + c_2 + c_1);
+                add(features, C_2C_1, c0, c_2, c_1);
         }
 
         if (c_1 != null)
         {
             if (c_1c0Set)
-                features.add("c_1c0=" + c_1 + c0);
+                add(features, C_1C0, c0, c_1, c0);
         }
 
         if (c1 != null)
         {
             if (c0c1Set)
-                features.add("c0c1=" + c0 + c1);
+                add(features, C0C1, c0, c0, c1);
         }
 
         if (c1 != null && c2 != null)
         {
             if (c1c2Set)
-                features.add("c1c2=" + c1 + c2);
+                add(features, C1C2, c0, c1, c2);
         }
 
         if (c_1 != null && c1 != null)
         {
             if (c_1c1Set)
-                features.add("c_1c1=" + c_1 + c1);
+                add(features, C_1C1, c0, c_1, c1);
 
             if (c_1c0c1set)
-                features.add("c_1c0c1=" + c_1 + c0 + c1);
+                add(features, C_1C0C1, c0, c_1, c0, c1);
         }
         
-        if(c0prefix)
-            features = addC0Prefix(features, c0);
-        
         // 增加标点符号的特征【应用了全角转半角的strq2b方法】
         if (PuSet)
         {
-            if (CharTypeUtil.isChinesePunctuation(FullHalfWidthUtil.toHalfWidth(c0)))
-                features.add("Pu=" + 1);
+            if (CharClassifier.isPunctuation(tokens.codePointAt(index)))
+                features.add(PU, "1");
             else
-                features.add("Pu=" + 0);
+                features.add(PU, "0");
         }
         
         // 增加是否为数字字母等特征
         if (TSet)
-            features.add("T=" + TC_2 + TC_1 + TC0 + TC1 + TC2);
+            features.start(T).append(TC_2).append(TC_1).append(TC0).append(TC1).append(TC2).end();
         
         // 下面是增加和词典匹配后特征的情况
 
@@ -279,24 +335,9 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         // (1)c_3c_2c_1c0
         if (c_3 != null && c_2 != null && c_1 != null && c0 != null)
         {
-            if (isDictionalWords(c_3 + c_2 + c_1 + c0))
+            if (isDictionalWords(c_3, c_2, c_1, c0))
             {
-                if (Lt0Set)
-                {
-                    features.add("Le=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1e=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0e=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1e=" + c1);
-                }
+                addDict(features, DICT_E, c_1, c0, c1);
                 flagByThree = false;
                 flagByTwo = false;
             }
@@ -304,24 +345,9 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         // (2)c_2c_1c0c1与c_1c0c1c2记录的特征是一样的
         if (c_2 != null && c_1 != null && c0 != null && c1 != null)
         {
-            if (isDictionalWords(c_2 + c_1 + c0 + c1))
+            if (isDictionalWords(c_2, c_1, c0, c1))
             {
-                if (Lt0Set)
-                {
-                    features.add("Lm=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1m=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0m=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1m=" + c1);
-                }
+                addDict(features, DICT_M, c_1, c0, c1);
                 flagByThree = false;
                 flagByTwo = false;
             }
@@ -329,24 +355,9 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         // (3)c_2c_1c0c1与c_1c0c1c2记录的特征是一样的
         if (c_1 != null && c0 != null && c1 != null && c2 != null)
         {
-            if (isDictionalWords(c_1 + c0 + c1 + c2))
+            if (isDictionalWords(c_1, c0, c1, c2))
             {
-                if (Lt0Set)
-                {
-                    features.add("Lm=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1m=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0m=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1m=" + c1);
-                }
+                addDict(features, DICT_M, c_1, c0, c1);
                 flagByThree = false;
                 flagByTwo = false;
             }
@@ -354,24 +365,9 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         // (4)c0c1c2c3
         if (c0 != null && c1 != null && c2 != null && c3 != null)
         {
-            if (isDictionalWords(c0 + c1 + c2 + c3))
+            if (isDictionalWords(c0, c1, c2, c3))
             {
-                if (Lt0Set)
-                {
-                    features.add("Lb=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1b=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0b=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1b=" + c1);
-                }
+                addDict(features, DICT_B, c_1, c0, c1);
                 flagByThree = false;
                 flagByTwo = false;
             }
@@ -381,72 +377,27 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         // （1）c_2c_1c0
         if (c_2 != null && c_1 != null && c0 != null && flagByThree)
         {
-            if (isDictionalWords(c_2 + c_1 + c0))
+            if (isDictionalWords(c_2, c_1, c0))
             {
-                if (Lt0Set)
-                {
-                    features.add("Le=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1e=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0e=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1e=" + c1);
-                }
+                addDict(features, DICT_E, c_1, c0, c1);
                 flagByTwo = false;
             }
         }
         // (2)c_1c0c1
         if (c_1 != null && c0 != null && c1 != null && flagByThree)
         {
-            if (isDictionalWords(c_1 + c0 + c1))
+            if (isDictionalWords(c_1, c0, c1))
             {
-                if (Lt0Set)
-                {
-                    features.add("Lm=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1m=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0m=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1m=" + c1);
-                }
+                addDict(features, DICT_M, c_1, c0, c1);
                 flagByTwo = false;
             }
         }
         // (3)c0c1c2
         if (c0 != null && c1 != null && c2 != null && flagByThree)
         {
-            if (isDictionalWords(c0 + c1 + c2))
+            if (isDictionalWords(c0, c1, c2))
             {
-                if (Lt0Set)
-                {
-                    features.add("Lb=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1b=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0b=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1b=" + c1);
-                }
+                addDict(features, DICT_B, c_1, c0, c1);
                 flagByTwo = false;
             }
         }
@@ -454,53 +405,19 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
         // （1）c_1c0
         if (c_1 != null && c0 != null && flagByTwo)
         {
-            if (isDictionalWords(c_1 + c0))
+            if (isDictionalWords(c_1, c0))
             {
-                if (Lt0Set)
-                {
-                    features.add("Le=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1e=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0e=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1e=" + c1);
-                }
+                addDict(features, DICT_E, c_1, c0, c1);
             }
         }
         // (2)c0c1
         if (c0 != null && c1 != null && flagByTwo)
         {
-            if (isDictionalWords(c0 + c1))
+            if (isDictionalWords(c0, c1))
             {
-                if (Lt0Set)
-                {
-                    features.add("Lb=" + 4);
-                }
-                if (c_1t0Set)
-                {
-                    features.add("c_1b=" + c_1);
-                }
-                if (c0t0Set)
-                {
-                    features.add("c0b=" + c0);
-                }
-                if (c1t0Set)
-                {
-                    features.add("c1b=" + c1);
-                }
+                addDict(features, DICT_B, c_1, c0, c1);
             }
         }
-
-        String[] contexts = features.toArray(new String[features.size()]);
-
-        return contexts;
     }
 
     @Override
@@ -512,9 +429,25 @@ public class WordSegContextGeneratorConf extends AbstractStringContextGenerator
 
     public boolean isDictionalWords(String words)
     {
-        if (dictWords.contains(words))
-            return true;
-        else
-            return false;
+        return dictWords.contains(words);
+    }
+
+    // 以下逐字在Trie树上转移，不必拼接窗口中的字
+    private boolean isDictionalWords(String w1, String w2)
+    {
+        return dictWords.getValue(dictWords.next(dictWords.next(DoubleArrayTrie.ROOT, w1), w2)) != DoubleArrayTrie.NOT_FOUND;
+    }
+
+    private boolean isDictionalWords(String w1, String w2, String w3)
+    {
+        int state = dictWords.next(dictWords.next(DoubleArrayTrie.ROOT, w1), w2);
+        return dictWords.getValue(dictWords.next(state, w3)) != DoubleArrayTrie.NOT_FOUND;
+    }
+
+    private boolean isDictionalWords(String w1, String w2, String w3, String w4)
+    {
+        int state = dictWords.next(dictWords.next(DoubleArrayTrie.ROOT, w1), w2);
+        state = dictWords.next(dictWords.next(state, w3), w4);
+        return dictWords.getValue(state) != DoubleArrayTrie.NOT_FOUND;
     }
 }
@@ -3,12 +3,13 @@ package com.lc.nlp4han.segment.maxent;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 
 import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
-import com.lc.nlp4han.ml.util.CrossValidationPartitioner;
 import com.lc.nlp4han.ml.util.MarkableFileInputStreamFactory;
 import com.lc.nlp4han.ml.util.ModelWrapper;
 import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.ParallelCrossValidator;
 import com.lc.nlp4han.ml.util.PlainTextByLineStream;
 import com.lc.nlp4han.ml.util.TrainingParameters;
 import com.lc.nlp4han.segment.WordSegMeasure;
@@ -56,38 +57,56 @@ public class WordSegCrossValidatorTool
      */
     public void evaluate(ObjectStream<WordSegSample> samples, int nFolds, AbstractStringContextGenerator contextGenerator) throws IOException
     {
-        CrossValidationPartitioner<WordSegSample> partitioner = new CrossValidationPartitioner<>(samples, nFolds);
+        evaluate(samples, nFolds, contextGenerator, 1);
+    }
+
+    /**
+     * 交叉验证，多个折同时训练和评价，各折结果按折的顺序输出和合并
+     * 
+     * @param samples
+     *            训练和测试的样本
+     * @param nFolds
+     *            交叉验证的折数
+     * @param contextGenerator
+     *            训练和分词的上下文产生器，多线程时被各折共享
+     * @param threads
+     *            同时训练和评价的折数
+     * 
+     * @throws IOException
+     */
+    public void evaluate(ObjectStream<WordSegSample> samples, int nFolds, final AbstractStringContextGenerator contextGenerator, int threads)
+            throws IOException
+    {
+        List<WordSegMeasure> measures = new ParallelCrossValidator(threads).evaluate(samples, nFolds, (fold, trainingSamples, testSamples) -> {
+            HashSet<String> dict = WordSegmenterME.buildDict(trainingSamples);
+
+            trainingSamples.reset();
+            ModelWrapper model = WordSegmenterME.train(trainingSamples, params, contextGenerator);
 
-        int run = 1;
-        while (partitioner.hasNext())
-        {
-            System.out.println("Run " + run + "...");
-            CrossValidationPartitioner.TrainingSampleStream<WordSegSample> trainingSampleStream = partitioner.next();
-            
-            System.out.println("从样本构建词典...");
-            HashSet<String> dict = WordSegmenterME.buildDict(trainingSampleStream);
-            
-            System.out.println("训练分词模型...");
-            trainingSampleStream.reset();
-            ModelWrapper model = WordSegmenterME.train(trainingSampleStream, params, contextGenerator);
-
-            System.out.println("评价分词模型...");
             WordSegMeasure measure = new WordSegMeasure(dict);
             WordSegEvalTool evaluator = new WordSegEvalTool(new WordSegmenterME(model, contextGenerator), listeners);
             evaluator.setMeasure(measure);
-            evaluator.evaluate(trainingSampleStream.getTestSampleStream());
-            
-            System.out.println(measure);
+            evaluator.evaluate(testSamples);
+
+            return measure;
+        });
 
-            run++;
+        WordSegMeasure total = new WordSegMeasure();
+        for (int run = 0; run < measures.size(); run++)
+        {
+            System.out.println("Run " + (run + 1) + "...");
+            System.out.println(measures.get(run));
+
+            total.mergeInto(measures.get(run));
         }
 
-//        System.out.println(measure);
+        System.out.println("Total...");
+        System.out.println(total);
     }
 
     private static void usage()
     {
-        System.out.println(WordSegCrossValidatorTool.class.getName() + " -data <corpusFile> -encoding <encoding> [-folds <nFolds>] " + "[-context <contextGenClass>] [-cutoff <num>] [-iters <num>]");
+        System.out.println(WordSegCrossValidatorTool.class.getName() + " -data <corpusFile> -encoding <encoding> [-folds <nFolds>] [-threads <num>] " + "[-context <contextGenClass>] [-cutoff <num>] [-iters <num>]");
     }
 
     public static void main(String[] args) throws ClassNotFoundException, IOException, InstantiationException, IllegalAccessException
@@ -102,6 +121,7 @@ public class WordSegCrossValidatorTool
         int cutoff = 3;
         int iters = 100;
         int folds = 10;
+        int threads = 1;
         String contextClass = "com.lc.nlp4han.segment.maxent.WordSegContextGeneratorConf";
         File corpusFile = null;
         String encoding = "UTF-8";
@@ -138,6 +158,11 @@ public class WordSegCrossValidatorTool
                 folds = Integer.parseInt(args[i + 1]);
                 i++;
             }
+            else if (args[i].equals("-threads"))
+            {
+                threads = Integer.parseInt(args[i + 1]);
+                i++;
+            }
             else if (args[i].equals("-type"))
             {
                 algType = args[i + 1];
@@ -159,6 +184,6 @@ public class WordSegCrossValidatorTool
 
         WordSegCrossValidatorTool crossValidator = new WordSegCrossValidatorTool(params);
 
-        crossValidator.evaluate(sampleStream, folds, contextGenerator);
+        crossValidator.evaluate(sampleStream, folds, contextGenerator, threads);
     }
 }
@@ -0,0 +1,238 @@
+package com.lc.nlp4han.segment.maxent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
+import com.lc.nlp4han.ml.util.MarkableFileInputStreamFactory;
+import com.lc.nlp4han.ml.util.ModelWrapper;
+import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.PlainTextByLineStream;
+import com.lc.nlp4han.segment.WordSegMeasure;
+import com.lc.nlp4han.segment.WordSegmenter;
+import com.lc.nlp4han.util.DictionaryLoader;
+import com.lc.nlp4han.util.DoubleArrayTrie;
+
+/**
+ * 比较{@link WordSegmenterLattice}与{@link WordSegmenterME}的分词效果和吞吐量
+ *
+ * 两个分词器使用同一个模型，对黄金切分标准中的句子分词，输出各自的评价指标和每秒切分的字数。
+ * 计时前两个分词器各预热一遍，之后交替先后顺序重复计时多轮，取各自最快的一轮，避免先运行的分词器承担JIT编译和类加载的开销
+ */
+public class WordSegLatticeEvalTool
+{
+    private static final String DEFAULT_DICT = "com/lc/nlp4han/segment/words-gb.txt";
+
+    private static final String DEFAULT_DICT_ENCODING = "GBK";
+
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * 对样本中的句子分词，更新评价指标，并输出吞吐量
+     *
+     * @param name 分词器名称
+     * @param segmenter 分词器
+     * @param samples 参考切分
+     * @param measure 评价指标
+     * @return 每秒切分的字数
+     */
+    public static double evaluate(String name, WordSegmenter segmenter, List<WordSegSample> samples, WordSegMeasure measure)
+    {
+        String[] sentences = sentences(samples);
+        String[][] predictions = new String[sentences.length][];
+        long nanos = segment(segmenter, sentences, predictions);
+
+        return report(name, samples, sentences, predictions, nanos, measure);
+    }
+
+    /**
+     * 两个分词器先各预热一遍，再交替先后顺序计时rounds轮，输出各自的评价指标和最快一轮的吞吐量
+     *
+     * @param names 分词器名称
+     * @param segmenters 分词器
+     * @param samples 参考切分
+     * @param measures 评价指标
+     * @param rounds 计时的轮数
+     * @return 各分词器每秒切分的字数
+     */
+    public static double[] compare(String[] names, WordSegmenter[] segmenters, List<WordSegSample> samples,
+            WordSegMeasure[] measures, int rounds)
+    {
+        String[] sentences = sentences(samples);
+        String[][][] predictions = new String[segmenters.length][sentences.length][];
+        for (int s = 0; s < segmenters.length; s++)
+            segment(segmenters[s], sentences, predictions[s]);
+
+        long[] best = new long[segmenters.length];
+        Arrays.fill(best, Long.MAX_VALUE);
+        for (int r = 0; r < rounds; r++)
+        {
+            for (int k = 0; k < segmenters.length; k++)
+            {
+                int s = (r + k) % segmenters.length;
+                best[s] = Math.min(best[s], segment(segmenters[s], sentences, predictions[s]));
+            }
+        }
+
+        double[] charsPerSecond = new double[segmenters.length];
+        for (int s = 0; s < segmenters.length; s++)
+        {
+            charsPerSecond[s] = report(names[s], samples, sentences, predictions[s], best[s], measures[s]);
+            System.out.println();
+        }
+
+        return charsPerSecond;
+    }
+
+    private static String[] sentences(List<WordSegSample> samples)
+    {
+        String[] sentences = new String[samples.size()];
+        for (int i = 0; i < sentences.length; i++)
+        {
+            StringBuilder sentence = new StringBuilder();
+            for (String c : samples.get(i).getSentence())
+                sentence.append(c);
+
+            sentences[i] = sentence.toString();
+        }
+
+        return sentences;
+    }
+
+    /**
+     * 切分所有句子
+     *
+     * @return 用时（纳秒）
+     */
+    private static long segment(WordSegmenter segmenter, String[] sentences, String[][] predictions)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < sentences.length; i++)
+            predictions[i] = segmenter.segment(sentences[i]);
+
+        return System.nanoTime() - start;
+    }
+
+    private static double report(String name, List<WordSegSample> samples, String[] sentences, String[][] predictions,
+            long nanos, WordSegMeasure measure)
+    {
+        long chars = 0;
+        for (int i = 0; i < sentences.length; i++)
+        {
+            chars += sentences[i].codePointCount(0, sentences[i].length());
+            measure.updateScores(samples.get(i).toWords(), predictions[i]);
+        }
+
+        double charsPerSecond = nanos > 0 ? chars * 1e9 / nanos : Double.NaN;
+        System.out.println(name + ": " + sentences.length + " 句，" + chars + " 字，" + nanos / 1000000 + " ms，"
+                + Math.round(charsPerSecond) + " 字/秒");
+        System.out.println(measure);
+
+        return charsPerSecond;
+    }
+
+    private static void usage()
+    {
+        System.out.println(WordSegLatticeEvalTool.class.getName() + " -model <modelFile> -gold <goldFile> -encoding <encoding> [-dict <dictFile> -dictEncoding <dictEncoding>] [-context <contextGenClass>] [-maxWordLength <n>] [-rounds <n>]");
+    }
+
+    public static void main(String[] args) throws IOException, InstantiationException, IllegalAccessException, ClassNotFoundException
+    {
+        if (args.length < 1)
+        {
+            usage();
+
+            return;
+        }
+
+        String modelFile = null;
+        String goldFile = null;
+        String encoding = null;
+        String dictFile = null;
+        String dictEncoding = DEFAULT_DICT_ENCODING;
+        String contextClass = "com.lc.nlp4han.segment.maxent.DefaultWordSegContextGenerator";
+        int maxWordLength = WordSegmenterLattice.DEFAULT_MAX_WORD_LENGTH;
+        int rounds = DEFAULT_ROUNDS;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-model"))
+            {
+                modelFile = args[i + 1];
+                i++;
+            }
+            else if (args[i].equals("-gold"))
+            {
+                goldFile = args[i + 1];
+                i++;
+            }
+            else if (args[i].equals("-encoding"))
+            {
+                encoding = args[i + 1];
+                i++;
+            }
+            else if (args[i].equals("-dict"))
+            {
+                dictFile = args[i + 1];
+                i++;
+            }
+            else if (args[i].equals("-dictEncoding"))
+            {
+                dictEncoding = args[i + 1];
+                i++;
+            }
+            else if (args[i].equals("-context"))
+            {
+                contextClass = args[i + 1];
+                i++;
+            }
+            else if (args[i].equals("-maxWordLength"))
+            {
+                maxWordLength = Integer.parseInt(args[i + 1]);
+                i++;
+            }
+            else if (args[i].equals("-rounds"))
+            {
+                rounds = Integer.parseInt(args[i + 1]);
+                i++;
+            }
+        }
+
+        Set<String> words;
+        if (dictFile != null)
+        {
+            words = DictionaryLoader.getWords(dictFile, dictEncoding);
+        }
+        else
+        {
+            InputStream dictIn = WordSegLatticeEvalTool.class.getClassLoader().getResourceAsStream(DEFAULT_DICT);
+            words = DictionaryLoader.getWords(dictIn, dictEncoding);
+        }
+        DoubleArrayTrie dict = DoubleArrayTrie.build(words);
+
+        AbstractStringContextGenerator contextGenerator = (AbstractStringContextGenerator) Class.forName(contextClass).newInstance();
+        ModelWrapper model = new ModelWrapper(new FileInputStream(new File(modelFile)));
+
+        List<WordSegSample> samples = new ArrayList<WordSegSample>();
+        ObjectStream<String> lineStream = new PlainTextByLineStream(new MarkableFileInputStreamFactory(new File(goldFile)), encoding);
+        ObjectStream<WordSegSample> sampleStream = new WordTagSampleStream(lineStream);
+        WordSegSample sample;
+        while ((sample = sampleStream.read()) != null)
+            samples.add(sample);
+        sampleStream.close();
+
+        String[] names = { "WordSegmenterME", "WordSegmenterLattice" };
+        WordSegmenter[] segmenters = { new WordSegmenterME(model, contextGenerator),
+                new WordSegmenterLattice(model, contextGenerator, dict, maxWordLength) };
+        WordSegMeasure[] measures = { new WordSegMeasure(new HashSet<String>(words)),
+                new WordSegMeasure(new HashSet<String>(words)) };
+        double[] charsPerSecond = compare(names, segmenters, samples, measures, Math.max(1, rounds));
+        System.out.println("吞吐量之比: " + String.format("%.2f", charsPerSecond[1] / charsPerSecond[0]));
+    }
+}
@@ -1,15 +1,22 @@
 package com.lc.nlp4han.segment.maxent;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
+import com.lc.nlp4han.ml.util.MarkableFileInputStreamFactory;
+import com.lc.nlp4han.ml.util.ModelWrapper;
+import com.lc.nlp4han.ml.util.ObjectStream;
+import com.lc.nlp4han.ml.util.PlainTextByLineStream;
+import com.lc.nlp4han.segment.SentenceReader;
+import com.lc.nlp4han.segment.StreamingWordSegmenter;
+import com.lc.nlp4han.segment.WordSegmenter;
 
 /**
  * 最大熵分词测试工具
@@ -20,7 +27,7 @@ public class WordSegMETestTool
 {
     private static void usage()
     {
-        System.out.println(WordSegMETestTool.class.getName() + " -data <textFile> -model <modelFile> -encoding <encoding> [-out <resultFile>] [-context <contextGenClass>]");
+        System.out.println(WordSegMETestTool.class.getName() + " -data <textFile> -model <modelFile> -encoding <encoding> [-out <resultFile>] [-context <contextGenClass>] [-split] [-threads <n>]");
     }
 
     public static void main(String[] args) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException
@@ -37,6 +44,8 @@ public class WordSegMETestTool
         File resultFile = null;
         String contextClass = "com.lc.nlp4han.segment.WordSegContextGeneratorConf";
         String encoding = "UTF-8";
+        boolean split = false;
+        int threads = 1;
         for (int i = 0; i < args.length; i++)
         {
             if (args[i].equals("-data"))
@@ -64,23 +73,36 @@ public class WordSegMETestTool
                 resultFile = new File(args[i + 1]);
                 i++;
             }
+            else if (args[i].equals("-split"))
+            {
+                split = true;
+            }
+            else if (args[i].equals("-threads"))
+            {
+                threads = Integer.parseInt(args[i + 1]);
+                i++;
+            }
         }
 
-        String line = null;
-        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(textFile), encoding));
         AbstractStringContextGenerator contextGenerator = (AbstractStringContextGenerator) Class.forName(contextClass).newInstance();
-        WordSegmenterME segmenter = new WordSegmenterME(modelFile, contextGenerator);
-        PrintWriter out = new PrintWriter(System.out);
-        if(resultFile != null)
-            out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(resultFile), encoding));
-        while ((line = reader.readLine()) != null)
-        {
-            String[] words = segmenter.segment(line);
-            for (String word : words)
-               out.print(word + " ");
-            out.println();
-        }
+        ModelWrapper model = new ModelWrapper(modelFile);
+        WordSegmenter[] segmenters = new WordSegmenter[threads];
+        for (int i = 0; i < threads; i++)
+            segmenters[i] = new WordSegmenterME(model, contextGenerator);
+
+        // 断句时按句读入，否则按行读入
+        ObjectStream<String> sentences;
+        if (split)
+            sentences = new SentenceReader(new FileInputStream(textFile).getChannel(), Charset.forName(encoding));
+        else
+            sentences = new PlainTextByLineStream(new MarkableFileInputStreamFactory(textFile), encoding);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, encoding));
+        if (resultFile != null)
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(resultFile), encoding));
+
+        new StreamingWordSegmenter(segmenters, StreamingWordSegmenter.DEFAULT_BATCH_SIZE).segment(sentences, out);
         out.close();
-        reader.close();
+        sentences.close();
     }
 }
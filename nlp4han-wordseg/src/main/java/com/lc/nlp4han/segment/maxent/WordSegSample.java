@@ -5,17 +5,21 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import com.lc.nlp4han.ml.util.CharSentence;
+
 /**
  * 切分后的句子的内部表示或训练样本内部表示.
  *
  * 句子中每个字给出了位置标记。 位置标记集为：S（单字词）, B（多字词的第一个字）, M（多字词的中间字）, E（多字词的末尾字）.
  *
+ * 句子中的字保存在一个字符数组中（{@link CharSentence}），不为每个字单独创建字符串.
+ *
  * @author 刘小峰
  */
 public class WordSegSample
 {
 
-    private List<String> sentence; // 句子中字
+    private CharSentence sentence; // 句子中字
 
     private List<String> tags; // 对应的每个字的位置标记
 
@@ -50,7 +54,29 @@ public class WordSegSample
     public WordSegSample(List<String> sentence, List<String> tags,
             String[][] additionalContext)
     {
-        this.sentence = Collections.unmodifiableList(sentence);
+        this(toCharSentence(sentence), tags, additionalContext);
+    }
+
+    /**
+     *
+     * @param sentence 句子的字符序列
+     * @param tags 每个字的位置标记
+     */
+    public WordSegSample(CharSentence sentence, String tags[])
+    {
+        this(sentence, Arrays.asList(tags), null);
+    }
+
+    /**
+     *
+     * @param sentence 句子的字符序列
+     * @param tags 每个字的位置标记
+     * @param additionalContext 每个字的额外上下文或特征
+     */
+    public WordSegSample(CharSentence sentence, List<String> tags,
+            String[][] additionalContext)
+    {
+        this.sentence = sentence;
         this.tags = Collections.unmodifiableList(tags);
 
         checkArguments();
@@ -84,19 +110,25 @@ public class WordSegSample
         this(Arrays.asList(sentence), Arrays.asList(tags), additionalContext);
     }
 
+    private static CharSentence toCharSentence(List<String> sentence)
+    {
+        if (sentence.contains(null))
+        {
+            throw new IllegalArgumentException("null elements are not allowed in sentence tokens!");
+        }
+
+        return CharSentence.of(sentence.toArray(new String[sentence.size()]));
+    }
+
     private void checkArguments()
     {
-        if (sentence.size() != tags.size())
+        if (sentence.length() != tags.size())
         {
             throw new IllegalArgumentException(
-                    "There must be exactly one tag for each token. tokens: " + sentence.size()
+                    "There must be exactly one tag for each token. tokens: " + sentence.length()
                     + ", tags: " + tags.size());
         }
 
-        if (sentence.contains(null))
-        {
-            throw new IllegalArgumentException("null elements are not allowed in sentence tokens!");
-        }
         if (tags.contains(null))
         {
             throw new IllegalArgumentException("null elements are not allowed in tags!");
@@ -110,7 +142,17 @@ public class WordSegSample
      */
     public String[] getSentence()
     {
-        return sentence.toArray(new String[sentence.size()]);
+        return sentence.toTokens();
+    }
+
+    /**
+     * 句子的字符序列
+     *
+     * @return 句子的字符序列
+     */
+    public CharSentence getCharSentence()
+    {
+        return sentence;
     }
 
     /**
@@ -140,22 +182,20 @@ public class WordSegSample
      */
     public String[] toWords()
     {
-        String word = new String();
+        int start = 0;
         ArrayList<String> words = new ArrayList<String>();
         for (int i = 0; i < tags.size(); i++)
         {
-            word += sentence.get(i);
-
             if (tags.get(i).equals("S") || tags.get(i).equals("E"))
             {
-                words.add(word);
-                word = "";
+                words.add(sentence.substring(start, i + 1));
+                start = i + 1;
             }
         }
 
-        if (word.length() > 0)
+        if (start < tags.size())
         {
-            words.add(word);
+            words.add(sentence.substring(start, tags.size()));
         }
 
         return words.toArray(new String[words.size()]);
@@ -168,18 +208,19 @@ public class WordSegSample
      */
     public String toSample()
     {
-        String sample = new String();
+        StringBuilder sample = new StringBuilder();
+        char[] chars = sentence.getChars();
         for (int i = 0; i < tags.size(); i++)
         {
-            sample += sentence.get(i);
+            sample.append(chars, sentence.start(i), sentence.end(i) - sentence.start(i));
 
             if (tags.get(i).equals("S") || tags.get(i).equals("E"))
             {
-                sample += " ";
+                sample.append(' ');
             }
         }
 
-        return sample;
+        return sample.toString();
     }
 
     @Override
@@ -191,11 +232,12 @@ public class WordSegSample
 
         StringBuilder result = new StringBuilder();
 
-        for (int i = 0; i < getSentence().length; i++)
+        char[] chars = sentence.getChars();
+        for (int i = 0; i < sentence.length(); i++)
         {
-            result.append(getSentence()[i]);
+            result.append(chars, sentence.start(i), sentence.end(i) - sentence.start(i));
             result.append('_');
-            result.append(getTags()[i]);
+            result.append(tags.get(i));
             result.append(' ');
         }
 
@@ -211,51 +253,56 @@ public class WordSegSample
     /**
      * 将空格分隔的切分句子转换成样本内部表示
      * 
+     * 句子中的字去掉空白后存入一个字符数组，每个码位（包括由代理对组成的增补字符）为一个字
+     * 
      * @param sentenceString 空格分隔的切分句子
      * @return 样本内部表示
      */
     public static WordSegSample parse(String sentenceString)
     {
-
-//        String[] words = WhitespaceTokenizer.INSTANCE.tokenize(sentenceString);
-        String[] words = sentenceString.split("\\s+");
-
-        ArrayList<String> sentence = new ArrayList<String>();
-        ArrayList<String> tags = new ArrayList<String>();
-
-        for (int i = 0; i < words.length; i++)
+        char[] chars = new char[sentenceString.length()];
+        int length = 0;
+        // 每个字是否为所在词的开头
+        boolean[] wordStarts = new boolean[sentenceString.length() + 1];
+        boolean inWord = false;
+        for (int i = 0; i < sentenceString.length(); i++)
         {
-            String word = words[i];
-
-            if (word.length() == 1)
+            char c = sentenceString.charAt(i);
+            if (isSpace(c))
             {
-                sentence.add(word);
-                tags.add("S");
+                inWord = false;
                 continue;
             }
 
-            for (int j = 0; j < word.length(); j++)
-            {
-                char c = word.charAt(j);
-                if (j == 0)
-                {
-                    sentence.add(c + "");
-                    tags.add("B");
-                } else if (j == word.length() - 1)
-                {
-                    sentence.add(c + "");
-                    tags.add("E");
-                } else
-                {
-                    sentence.add(c + "");
-                    tags.add("M");
-                }
-            }
+            wordStarts[length] = !inWord;
+            chars[length++] = c;
+            inWord = true;
+        }
+        wordStarts[length] = true;
+
+        CharSentence sentence = CharSentence.wrap(chars, 0, length);
+        String[] tags = new String[sentence.length()];
+        for (int i = 0; i < tags.length; i++)
+        {
+            boolean begin = wordStarts[sentence.start(i)];
+            boolean end = wordStarts[sentence.end(i)];
+            if (begin)
+                tags[i] = end ? "S" : "B";
+            else
+                tags[i] = end ? "E" : "M";
         }
 
         return new WordSegSample(sentence, tags);
     }
 
+    /**
+     * 与正则表达式中的\s相同的空白字符
+     */
+    private static boolean isSpace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -266,8 +313,7 @@ public class WordSegSample
         {
             WordSegSample a = (WordSegSample) obj;
 
-            return Arrays.equals(getSentence(), a.getSentence())
-                    && Arrays.equals(getTags(), a.getTags());
+            return sentence.equals(a.sentence) && tags.equals(a.tags);
         } else
         {
             return false;
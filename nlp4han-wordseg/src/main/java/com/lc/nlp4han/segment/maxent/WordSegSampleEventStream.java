@@ -5,8 +5,10 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.lc.nlp4han.ml.model.Event;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
 import com.lc.nlp4han.ml.util.AbstractEventStream;
 import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
+import com.lc.nlp4han.ml.util.CharSentence;
 import com.lc.nlp4han.ml.util.ObjectStream;
 
 /**
@@ -44,13 +46,37 @@ public class WordSegSampleEventStream extends AbstractEventStream<WordSegSample>
 
     @Override
     protected Iterator<Event> createEvents(WordSegSample sample) {
-        String sentence[] = sample.getSentence();
         String tags[] = sample.getTags();
         Object ac[] = sample.getAddictionalContext();
-        List<Event> events = generateEvents(sentence, tags, ac, cg);
+        List<Event> events;
+        if (cg instanceof AbstractCharContextGenerator)
+            events = generateEvents(sample.getCharSentence(), tags, ac, (AbstractCharContextGenerator) cg);
+        else
+            events = generateEvents(sample.getSentence(), tags, ac, cg);
         return events.iterator();
     }
 
+    /**
+     * 由一个切分句子的字符序列创建训练事件序列，不为每个字创建字符串
+     * 
+     * @param sentence 切分句子的字符序列
+     * @param tags 字的标记
+     * @param additionalContext 字的额外特征
+     * @param cg 上下文产生器
+     * @return 事件序列
+     */
+    public static List<Event> generateEvents(CharSentence sentence, String[] tags,
+            Object[] additionalContext, AbstractCharContextGenerator cg) {
+        List<Event> events = new ArrayList<Event>(sentence.length());
+
+        for (int i = 0; i < sentence.length(); i++) {
+            String[] context = cg.getContext(i, sentence, tags, additionalContext);
+
+            events.add(new Event(tags[i], context));
+        }
+        return events;
+    }
+
     /**
      * 由一个切分句子创建训练事件序列
      * 
@@ -6,6 +6,7 @@ import com.lc.nlp4han.ml.model.AbstractModel;
 import com.lc.nlp4han.ml.model.Event;
 import com.lc.nlp4han.ml.model.Sequence;
 import com.lc.nlp4han.ml.model.SequenceStream;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
 import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
 import com.lc.nlp4han.ml.util.ModelWrapper;
 import com.lc.nlp4han.ml.util.ObjectStream;
@@ -32,11 +33,15 @@ public class WordSegSampleSequenceStream implements SequenceStream {
         WordSegmenterME tagger = new WordSegmenterME(new ModelWrapper(model));
         String[] sentence = pss.getSource().getSentence();
         Object[] ac = pss.getSource().getAddictionalContext();
-        String[] tags = tagger.tag(pss.getSource().getSentence());
+        String[] tags = tagger.tag(sentence);
         Event[] events = new Event[sentence.length];
         
-        WordSegSampleEventStream.generateEvents(sentence, tags, ac, pcg)
-                .toArray(events);
+        if (pcg instanceof AbstractCharContextGenerator)
+            WordSegSampleEventStream.generateEvents(pss.getSource().getCharSentence(), tags, ac,
+                    (AbstractCharContextGenerator) pcg).toArray(events);
+        else
+            WordSegSampleEventStream.generateEvents(sentence, tags, ac, pcg)
+                    .toArray(events);
         
         return events;
     }
@@ -46,17 +51,22 @@ public class WordSegSampleSequenceStream implements SequenceStream {
         WordSegSample sample = psi.read();
 
         if (sample != null) {
-            String sentence[] = sample.getSentence();
             String tags[] = sample.getTags();
-            Event[] events = new Event[sentence.length];
+            Event[] events = new Event[tags.length];
 
-            for (int i = 0; i < sentence.length; i++) {
+            if (pcg instanceof AbstractCharContextGenerator) {
+                WordSegSampleEventStream.generateEvents(sample.getCharSentence(), tags, null,
+                        (AbstractCharContextGenerator) pcg).toArray(events);
+            } else {
+                String sentence[] = sample.getSentence();
+                for (int i = 0; i < sentence.length; i++) {
 
-                // it is safe to pass the tags as previous tags because
-                // the context generator does not look for non predicted tags
-                String[] context = pcg.getContext(i, sentence, tags, null);
+                    // it is safe to pass the tags as previous tags because
+                    // the context generator does not look for non predicted tags
+                    String[] context = pcg.getContext(i, sentence, tags, null);
 
-                events[i] = new Event(tags[i], context);
+                    events[i] = new Event(tags[i], context);
+                }
             }
             
             Sequence<WordSegSample> sequence = new Sequence<WordSegSample>(events, sample);
@@ -0,0 +1,385 @@
+package com.lc.nlp4han.segment.maxent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.lc.nlp4han.ml.model.AbstractModel;
+import com.lc.nlp4han.ml.model.ClassificationModel;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
+import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
+import com.lc.nlp4han.ml.util.AbstractTemplateContextGenerator;
+import com.lc.nlp4han.ml.util.CharSentence;
+import com.lc.nlp4han.ml.util.ModelWrapper;
+import com.lc.nlp4han.ml.util.PredicateIdCollector;
+import com.lc.nlp4han.ml.util.SequenceValidator;
+import com.lc.nlp4han.segment.WordSegmenter;
+import com.lc.nlp4han.util.DoubleArrayTrie;
+
+/**
+ * 基于词图的词典与最大熵混合分词器
+ *
+ * 句子按码位切分为字，代理对不会被拆开。先用词典的Trie树查出句子中每个位置开始的词，构成词图，按词典词是否相互重叠把句子分成片段：
+ * <ul>
+ * <li>只有一个词典词，或有一个词典词覆盖整个片段的，直接成词；</li>
+ * <li>词典词交叉重叠的歧义片段，候选词为其中的词典词和单字；</li>
+ * <li>没有词典词的连续多个单字是可能的未登录词，候选词为其中所有不超过最大词长的字串。</li>
+ * </ul>
+ * 后两种片段交给最大熵模型：逐字计算B、M、E、S标记的概率，词的得分为其中各字标记的对数概率之和，在片段的词图上用动态规划（Viterbi）求得分最高的切分。
+ * 模型只评估这些片段中的字，比{@link WordSegmenterME}的逐字柱搜索快得多。
+ *
+ * 字的标记概率只依赖于上下文。若上下文产生器用到之前的标记，片段之前取已确定的切分，片段之内取之前各字最可能的合法标记。
+ *
+ * 分词器保存了切分用的缓冲区，不是线程安全的，每个线程需要一个实例，这些实例可以共享模型和词典。
+ */
+public class WordSegmenterLattice implements WordSegmenter
+{
+    public static final int DEFAULT_MAX_WORD_LENGTH = 16;
+
+    private static final String[] TAGS = { "B", "M", "E", "S" };
+
+    private static final int B = 0;
+    private static final int M = 1;
+    private static final int E = 2;
+    private static final int S = 3;
+
+    private final ClassificationModel model;
+
+    private final AbstractStringContextGenerator contextGen;
+
+    private final DoubleArrayTrie dict;
+
+    private final int maxWordLength;
+
+    /**
+     * 标记B、M、E、S在模型中的编号
+     */
+    private final int[] outcomeIds = new int[TAGS.length];
+
+    private final SequenceValidator<String> sequenceValidator = new DefaultWordSegSequenceValidator();
+
+    /**
+     * 模板上下文产生器直接得到谓词编号，不拼接特征字符串
+     */
+    private AbstractTemplateContextGenerator templates;
+
+    /**
+     * 基于字符序列的上下文产生器直接读取句子的字符序列，不需要转换字符串数组
+     */
+    private AbstractCharContextGenerator charContextGen;
+
+    private PredicateIdCollector predicateIds;
+
+    private final double[] probs;
+
+    private final int[] lengthBuffer;
+
+    /**
+     * 位置i开始的词典词（两字及以上）的长度为matchLengths[matchStarts[i], matchStarts[i + 1])
+     */
+    private int[] matchStarts = new int[0];
+
+    private int[] matchLengths = new int[0];
+
+    /**
+     * 片段中第k个字的标记t的对数概率为tagLogProbs[4 * k + t]
+     */
+    private double[] tagLogProbs = new double[0];
+
+    /**
+     * 片段中到第k个字之前的最佳得分，及该路径上最后一个词的长度
+     */
+    private double[] bestScores = new double[0];
+
+    private int[] lastLengths = new int[0];
+
+    /**
+     * 由分词模型和词典构建分词器
+     *
+     * @param model 分词模型
+     * @param dict 词典
+     */
+    public WordSegmenterLattice(ModelWrapper model, DoubleArrayTrie dict)
+    {
+        this(model, new DefaultWordSegContextGenerator(), dict);
+    }
+
+    /**
+     * @param model 分词模型
+     * @param contextGenerator 分词上下文产生器，应与训练模型时相同
+     * @param dict 词典
+     */
+    public WordSegmenterLattice(ModelWrapper model, AbstractStringContextGenerator contextGenerator, DoubleArrayTrie dict)
+    {
+        this(model, contextGenerator, dict, DEFAULT_MAX_WORD_LENGTH);
+    }
+
+    /**
+     * @param model 分词模型
+     * @param contextGenerator 分词上下文产生器，应与训练模型时相同
+     * @param dict 词典
+     * @param maxWordLength 词典词和未登录词的最大长度
+     */
+    public WordSegmenterLattice(ModelWrapper model, AbstractStringContextGenerator contextGenerator, DoubleArrayTrie dict,
+            int maxWordLength)
+    {
+        if (model.getModel() == null)
+            throw new IllegalArgumentException("词图分词需要分类模型，不支持序列模型");
+        if (maxWordLength < 1)
+            throw new IllegalArgumentException("最大词长应大于0：" + maxWordLength);
+
+        this.model = model.getModel();
+        this.contextGen = contextGenerator;
+        this.dict = dict;
+        this.maxWordLength = maxWordLength;
+
+        for (int t = 0; t < TAGS.length; t++)
+        {
+            outcomeIds[t] = this.model.getIndex(TAGS[t]);
+            if (outcomeIds[t] < 0)
+                throw new IllegalArgumentException("模型中没有分词标记：" + TAGS[t]);
+        }
+
+        // 谓词的散列值冲突时无法按散列值区分，改用特征字符串
+        if (contextGenerator instanceof AbstractTemplateContextGenerator && this.model instanceof AbstractModel
+                && ((AbstractModel) this.model).hasExactFeatureIndex())
+        {
+            templates = (AbstractTemplateContextGenerator) contextGenerator;
+            predicateIds = new PredicateIdCollector(((AbstractModel) this.model).getFeatureIndex());
+        }
+        if (contextGenerator instanceof AbstractCharContextGenerator)
+            charContextGen = (AbstractCharContextGenerator) contextGenerator;
+
+        probs = new double[this.model.getNumOutcomes()];
+        // 增补字符占两个char，最大词长内的词典词最多为2 * maxWordLength个char
+        lengthBuffer = new int[2 * maxWordLength];
+    }
+
+    @Override
+    public String[] segment(String text)
+    {
+        CharSentence sentence = CharSentence.of(text);
+        int n = sentence.length();
+        buildLattice(sentence);
+
+        List<String> words = new ArrayList<String>();
+        String[] chars = null;
+        String[] tags = new String[n];
+        int i = 0;
+        while (i < n)
+        {
+            int end;
+            boolean oov;
+            if (matchStarts[i] == matchStarts[i + 1])
+            {
+                // 连续的没有词典词的单字
+                end = i + 1;
+                while (end < n && matchStarts[end] == matchStarts[end + 1])
+                    end++;
+
+                oov = true;
+            }
+            else
+            {
+                // 相互重叠的词典词
+                end = i + maxMatchLength(i);
+                for (int j = i + 1; j < end; j++)
+                    end = Math.max(end, j + maxMatchLength(j));
+
+                oov = false;
+            }
+
+            if (end - i == 1 || (!oov && end - i == maxMatchLength(i)))
+            {
+                addWord(sentence, i, end, words, tags);
+            }
+            else
+            {
+                if (chars == null)
+                    chars = sentence.toTokens();
+
+                decode(sentence, chars, tags, i, end, oov, words);
+            }
+
+            i = end;
+        }
+
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * 查出每个位置开始的词典词，词长按字计算，结束在代理对中间的词不计入
+     */
+    private void buildLattice(CharSentence sentence)
+    {
+        int n = sentence.length();
+        if (matchStarts.length < n + 1)
+            matchStarts = new int[n + 1];
+
+        char[] text = sentence.getChars();
+        int count = 0;
+        for (int i = 0; i < n; i++)
+        {
+            matchStarts[i] = count;
+            int from = sentence.start(i);
+            int last = Math.min(n, i + maxWordLength) - 1;
+            int found = dict.commonPrefixSearch(text, from, sentence.end(last), lengthBuffer, null);
+
+            // 查出的词按长度从短到长排列，j为词的最后一个字
+            int j = i;
+            for (int k = 0; k < found; k++)
+            {
+                int end = from + lengthBuffer[k];
+                while (j < last && sentence.end(j) < end)
+                    j++;
+                if (sentence.end(j) != end || j == i)
+                    continue;
+
+                if (count == matchLengths.length)
+                    matchLengths = Arrays.copyOf(matchLengths, Math.max(16, 2 * count));
+                matchLengths[count++] = j - i + 1;
+            }
+        }
+        matchStarts[n] = count;
+    }
+
+    /**
+     * 位置i开始的最长词典词的长度，没有时为0
+     */
+    private int maxMatchLength(int i)
+    {
+        return matchStarts[i + 1] > matchStarts[i] ? matchLengths[matchStarts[i + 1] - 1] : 0;
+    }
+
+    private static void addWord(CharSentence sentence, int start, int end, List<String> words, String[] tags)
+    {
+        words.add(sentence.substring(start, end));
+
+        if (end - start == 1)
+        {
+            tags[start] = TAGS[S];
+            return;
+        }
+
+        tags[start] = TAGS[B];
+        for (int k = start + 1; k < end - 1; k++)
+            tags[k] = TAGS[M];
+        tags[end - 1] = TAGS[E];
+    }
+
+    /**
+     * 用最大熵模型计算片段[start, end)中各字的标记概率，在片段的词图上求最佳切分
+     *
+     * @param oov 是否为未登录片段，其候选词为所有字串，否则为词典词和单字
+     */
+    private void decode(CharSentence sentence, String[] chars, String[] tags, int start, int end, boolean oov,
+            List<String> words)
+    {
+        int length = end - start;
+        evalTags(sentence, chars, tags, start, end);
+
+        if (bestScores.length < length + 1)
+        {
+            bestScores = new double[length + 1];
+            lastLengths = new int[length + 1];
+        }
+        Arrays.fill(lastLengths, 0, length + 1, 0);
+        bestScores[0] = 0;
+
+        for (int a = 0; a < length; a++)
+        {
+            if (a > 0 && lastLengths[a] == 0)
+                continue;
+
+            // 单字
+            relax(a, 1, bestScores[a] + tagLogProbs[4 * a + S]);
+
+            if (oov)
+            {
+                double score = bestScores[a] + tagLogProbs[4 * a + B];
+                for (int len = 2; len <= Math.min(maxWordLength, length - a); len++)
+                {
+                    int last = a + len - 1;
+                    relax(a, len, score + tagLogProbs[4 * last + E]);
+                    score += tagLogProbs[4 * last + M];
+                }
+            }
+            else
+            {
+                for (int m = matchStarts[start + a]; m < matchStarts[start + a + 1]; m++)
+                {
+                    int len = matchLengths[m];
+                    if (a + len > length)
+                        break;
+
+                    double score = bestScores[a] + tagLogProbs[4 * a + B] + tagLogProbs[4 * (a + len - 1) + E];
+                    for (int k = a + 1; k < a + len - 1; k++)
+                        score += tagLogProbs[4 * k + M];
+
+                    relax(a, len, score);
+                }
+            }
+        }
+
+        // 回溯最佳路径上各词的长度
+        int count = 0;
+        for (int k = length; k > 0; k -= lastLengths[k])
+            count++;
+
+        int[] path = new int[count];
+        for (int k = length, c = count - 1; k > 0; k -= lastLengths[k], c--)
+            path[c] = lastLengths[k];
+
+        int position = start;
+        for (int len : path)
+        {
+            addWord(sentence, position, position + len, words, tags);
+            position += len;
+        }
+    }
+
+    private void relax(int from, int length, double score)
+    {
+        int to = from + length;
+        if (lastLengths[to] == 0 || score > bestScores[to])
+        {
+            bestScores[to] = score;
+            lastLengths[to] = length;
+        }
+    }
+
+    /**
+     * 计算片段[start, end)中各字的标记的对数概率，并将片段内之前各字的标记设为最可能的合法标记
+     */
+    private void evalTags(CharSentence sentence, String[] chars, String[] tags, int start, int end)
+    {
+        int length = end - start;
+        if (tagLogProbs.length < 4 * length)
+            tagLogProbs = new double[4 * length];
+
+        for (int i = start; i < end; i++)
+        {
+            double[] scores;
+            if (charContextGen != null && templates != null)
+                scores = model.eval(charContextGen.getContextIds(i, sentence, tags, null, predicateIds), probs);
+            else if (charContextGen != null)
+                scores = model.eval(charContextGen.getContext(i, sentence, tags, null), probs);
+            else if (templates != null)
+                scores = model.eval(templates.getContextIds(i, chars, tags, null, predicateIds), probs);
+            else
+                scores = model.eval(contextGen.getContext(i, chars, tags, null), probs);
+
+            int best = -1;
+            for (int t = 0; t < TAGS.length; t++)
+            {
+                double p = scores[outcomeIds[t]];
+                tagLogProbs[4 * (i - start) + t] = Math.log(p);
+
+                if (sequenceValidator.validSequence(i, chars, tags, TAGS[t])
+                        && (best < 0 || p > scores[outcomeIds[best]]))
+                    best = t;
+            }
+            tags[i] = TAGS[best];
+        }
+    }
+}
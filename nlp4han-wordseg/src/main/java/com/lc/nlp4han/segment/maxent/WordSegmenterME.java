@@ -11,8 +11,10 @@ import java.util.Map;
 import com.lc.nlp4han.ml.model.ClassificationModel;
 import com.lc.nlp4han.ml.model.Event;
 import com.lc.nlp4han.ml.model.SequenceClassificationModel;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
 import com.lc.nlp4han.ml.util.AbstractStringContextGenerator;
 import com.lc.nlp4han.ml.util.BeamSearch;
+import com.lc.nlp4han.ml.util.CharSentence;
 import com.lc.nlp4han.ml.util.EventModelSequenceTrainer;
 import com.lc.nlp4han.ml.util.EventTrainer;
 import com.lc.nlp4han.ml.util.ModelWrapper;
@@ -134,14 +136,7 @@ public class WordSegmenterME implements WordSegmenterProb
      */
     public String[] tag(String sentence)
     {
-        String[] chars = new String[sentence.length()];
-
-        for (int i = 0; i < sentence.length(); i++)
-        {
-            chars[i] = sentence.charAt(i) + "";
-        }
-
-        return tag(chars, null);
+        return tag(sentence, null);
     }
 
     /**
@@ -154,30 +149,61 @@ public class WordSegmenterME implements WordSegmenterProb
      */
     public String[] tag(String sentence, Object[] additionaContext)
     {
-        String[] chars = toCharArray(sentence);
+        return tag(CharSentence.of(sentence), additionaContext);
+    }
 
-        return tag(chars, additionaContext);
+    public String[] tag(String[] sentence, Object[] additionaContext)
+    {
+        return tag(sentence, null, additionaContext);
     }
-    
-    private String[] toCharArray(String sentence)
+
+    /**
+     * 句子中每个码位为一个字，单字字符串共享同一实例，不为每个字创建字符串
+     */
+    private String[] tag(CharSentence chars, Object[] additionaContext)
     {
-        String[] chars = new String[sentence.length()];
+        return tag(chars.toTokens(), chars, additionaContext);
+    }
 
-        for (int i = 0; i < sentence.length(); i++)
+    private String[] tag(String[] sentence, CharSentence chars, Object[] additionaContext)
+    {
+        boolean bound = bind(sentence, chars);
+        try
         {
-            chars[i] = sentence.charAt(i) + "";
+            bestSequence = model.bestSequence(sentence, additionaContext, contextGen, sequenceValidator);
+        }
+        finally
+        {
+            unbind(bound);
         }
-        
-        return chars;
-    }
 
-    public String[] tag(String[] sentence, Object[] additionaContext)
-    {
-        bestSequence = model.bestSequence(sentence, additionaContext, contextGen, sequenceValidator);
         List<String> t = bestSequence.getOutcomes();
         return t.toArray(new String[t.size()]);
     }
 
+    /**
+     * 上下文产生器基于字符序列时，解码期间把字符串数组绑定到字符序列，逐位置取特征时不再转换或逐字比较数组
+     *
+     * @param sentence 字符串数组
+     * @param chars 数组对应的字符序列，为null时由数组转换
+     * @return 是否绑定
+     */
+    private boolean bind(String[] sentence, CharSentence chars)
+    {
+        if (!(contextGen instanceof AbstractCharContextGenerator))
+            return false;
+
+        AbstractCharContextGenerator.bind(sentence, chars != null ? chars : CharSentence.of(sentence));
+
+        return true;
+    }
+
+    private void unbind(boolean bound)
+    {
+        if (bound)
+            AbstractCharContextGenerator.unbind();
+    }
+
     /**
      * 对待切分的句子返回多个标记（或切分）序列
      *
@@ -188,10 +214,19 @@ public class WordSegmenterME implements WordSegmenterProb
      */
     public String[][] tag(int numTaggings, String text)
     {
-        String[] sentence = toCharArray(text);
-        
-        Sequence[] bestSequences = model.bestSequences(numTaggings, sentence, null,
-                contextGen, sequenceValidator);
+        CharSentence chars = CharSentence.of(text);
+        String[] sentence = chars.toTokens();
+
+        Sequence[] bestSequences;
+        boolean bound = bind(sentence, chars);
+        try
+        {
+            bestSequences = model.bestSequences(numTaggings, sentence, null, contextGen, sequenceValidator);
+        }
+        finally
+        {
+            unbind(bound);
+        }
         String[][] tags = new String[bestSequences.length][];
         for (int si = 0; si < tags.length; si++)
         {
@@ -225,9 +260,18 @@ public class WordSegmenterME implements WordSegmenterProb
      */
     public Sequence[] topKSequences(String text, Object[] additionaContext)
     {
-        String[] sentence = toCharArray(text);
-        
-        return model.bestSequences(size, sentence, additionaContext, contextGen, sequenceValidator);
+        CharSentence chars = CharSentence.of(text);
+        String[] sentence = chars.toTokens();
+
+        boolean bound = bind(sentence, chars);
+        try
+        {
+            return model.bestSequences(size, sentence, additionaContext, contextGen, sequenceValidator);
+        }
+        finally
+        {
+            unbind(bound);
+        }
     }
 
     /**
@@ -253,25 +297,24 @@ public class WordSegmenterME implements WordSegmenterProb
     @Override
     public String[] segment(String text)
     {
-        String[] tags = tag(text);
+        CharSentence chars = CharSentence.of(text);
+        String[] tags = tag(chars, null);
 
-        String word = new String();
+        int start = 0;
         ArrayList<String> words = new ArrayList<String>();
         for (int i = 0; i < tags.length; i++)
         {
-            word += text.charAt(i);
-
             if (tags[i].equals("S") || tags[i].equals("E"))
             {
-                words.add(word);
-                word = "";
+                words.add(chars.substring(start, i + 1));
+                start = i + 1;
             }
 
         }
 
-        if (word.length() > 0)
+        if (start < tags.length)
         {
-            words.add(word);
+            words.add(chars.substring(start, tags.length));
         }
 
         return words.toArray(new String[words.size()]);
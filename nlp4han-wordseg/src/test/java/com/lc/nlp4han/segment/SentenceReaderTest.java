@@ -0,0 +1,85 @@
+package com.lc.nlp4han.segment;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.util.ObjectStream;
+
+/**
+ * SentenceReader单元测试
+ */
+public class SentenceReaderTest
+{
+    private static final String CHARS = "我你他好说的“”。？！，a";
+
+    private static List<String> readAll(ObjectStream<String> reader) throws IOException
+    {
+        List<String> sentences = new ArrayList<>();
+        String sentence;
+        while ((sentence = reader.read()) != null)
+            sentences.add(sentence);
+        reader.close();
+        return sentences;
+    }
+
+    private static List<String> segmentLines(String text)
+    {
+        SentenceSegmenter segmenter = new SentenceSegmenterRule();
+        List<String> sentences = new ArrayList<>();
+        for (String line : text.split("\r\n|\r|\n"))
+            sentences.addAll(Arrays.asList(segmenter.segment(line)));
+        return sentences;
+    }
+
+    @Test
+    public void testSameAsRule() throws IOException
+    {
+        String text = "妈妈说：“做个好孩子！好好学习。”“做个有志向的人。”爸爸说\n"
+                + "大家小心呀！！！汽车很危险。\r\n\r\n我喜欢“NLP”。你喜欢吗？NLP非常有趣啊！作为一个研究者，学习不能停止";
+        assertEquals(segmentLines(text), readAll(new SentenceReader(new StringReader(text))));
+    }
+
+    @Test
+    public void testBufferBoundaries() throws IOException
+    {
+        Random random = new Random(71);
+        for (int n = 0; n < 200; n++)
+        {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(200);
+            for (int i = 0; i < length; i++)
+                text.append(random.nextInt(30) == 0 ? '\n' : CHARS.charAt(random.nextInt(CHARS.length())));
+
+            List<String> expected = segmentLines(text.toString());
+            for (int bufferSize = 1; bufferSize <= 7; bufferSize++)
+                assertEquals(expected, readAll(new SentenceReader(new StringReader(text.toString()), bufferSize, 10000)));
+        }
+    }
+
+    @Test
+    public void testMaxSentenceLength() throws IOException
+    {
+        List<String> sentences = readAll(new SentenceReader(new StringReader("一二三四五六七八九十。好"), 3, 4));
+        assertEquals(Arrays.asList("一二三四", "五六七八", "九十。", "好"), sentences);
+    }
+
+    @Test
+    public void testChannel() throws IOException
+    {
+        String text = "你好。他说：“好！”\n再见";
+        SentenceReader reader = new SentenceReader(
+                Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("你好。", "他说：“好！”", "再见"), readAll(reader));
+    }
+}
@@ -0,0 +1,70 @@
+package com.lc.nlp4han.segment;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * StreamingWordSegmenter单元测试
+ */
+public class StreamingWordSegmenterTest
+{
+    /**
+     * 按字切分，并检查同一时间只被一个线程使用
+     */
+    private static class CharSegmenter implements WordSegmenter
+    {
+        private final AtomicInteger users = new AtomicInteger();
+
+        @Override
+        public String[] segment(String sentence)
+        {
+            assertEquals(1, users.incrementAndGet());
+            String[] words = new String[sentence.length()];
+            for (int i = 0; i < words.length; i++)
+                words[i] = sentence.substring(i, i + 1);
+            Thread.yield();
+            users.decrementAndGet();
+            return words;
+        }
+    }
+
+    private static String text(int sentences)
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++)
+        {
+            text.append("句").append(i % 10).append(i % 7 == 0 ? "！" : "。");
+            if (i % 13 == 0)
+                text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String segment(String text, int threads, int batchSize) throws IOException
+    {
+        WordSegmenter[] segmenters = new WordSegmenter[threads];
+        for (int i = 0; i < threads; i++)
+            segmenters[i] = new CharSegmenter();
+
+        StringWriter out = new StringWriter();
+        long count = new StreamingWordSegmenter(segmenters, batchSize).segment(new StringReader(text), out);
+        assertEquals(3000, count);
+        return out.toString();
+    }
+
+    @Test
+    public void testOrder() throws IOException
+    {
+        String text = text(3000);
+        String expected = segment(text, 1, 256);
+        assertTrue(expected.startsWith("句 0 ！" + System.lineSeparator() + "句 1 。" + System.lineSeparator()));
+        assertEquals(expected, segment(text, 4, 7));
+        assertEquals(expected, segment(text, 3, 1));
+    }
+}
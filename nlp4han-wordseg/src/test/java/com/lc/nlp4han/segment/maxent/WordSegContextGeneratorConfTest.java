@@ -0,0 +1,110 @@
+package com.lc.nlp4han.segment.maxent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.maxent.gis.GISModel;
+import com.lc.nlp4han.ml.model.Context;
+import com.lc.nlp4han.ml.util.AbstractCharContextGenerator;
+import com.lc.nlp4han.ml.util.AbstractTemplateContextGenerator;
+import com.lc.nlp4han.ml.util.CharSentence;
+import com.lc.nlp4han.ml.util.PredicateIdCollector;
+
+/**
+ * 测试特征模板产生的谓词编号与特征字符串一致
+ */
+public class WordSegContextGeneratorConfTest
+{
+    private static final String SENTENCE = "他说：“北京大学的学生有2018名。”";
+
+    private static final String[] TAGS = { "S", "S", "S", "S", "B", "M", "M", "E", "S", "B", "E", "S", "B", "M",
+            "M", "E", "S", "S", "S" };
+
+    private void assertSameIds(AbstractTemplateContextGenerator generator)
+    {
+        String[] chars = SENTENCE.split("");
+
+        Map<String, Integer> pmap = new HashMap<>();
+        String[][] contexts = new String[chars.length][];
+        for (int i = 0; i < chars.length; i++)
+        {
+            contexts[i] = generator.getContext(i, chars, TAGS, null);
+            for (String feature : contexts[i])
+            {
+                // 只让一部分特征为模型所知
+                if (feature.hashCode() % 3 != 0 && !pmap.containsKey(feature))
+                    pmap.put(feature, pmap.size());
+            }
+        }
+
+        Context[] params = new Context[pmap.size()];
+        for (int i = 0; i < params.length; i++)
+            params[i] = new Context(new int[] { 0 }, new double[] { 1 });
+        GISModel model = new GISModel(params, pmap.keySet().toArray(new String[0]), new String[] { "S", "B" }, 1,
+                0);
+        PredicateIdCollector ids = new PredicateIdCollector(model.getFeatureIndex());
+
+        for (int i = 0; i < chars.length; i++)
+        {
+            int[] actual = generator.getContextIds(i, chars, TAGS, null, ids);
+
+            int n = 0;
+            for (String feature : contexts[i])
+            {
+                int id = model.getPredIndex(feature);
+                if (id >= 0)
+                    assertEquals(feature, id, actual[n++]);
+            }
+            assertEquals(n, actual.length);
+        }
+    }
+
+    @Test
+    public void testDefaultConf() throws IOException
+    {
+        assertSameIds(new WordSegContextGeneratorConf());
+    }
+
+    @Test
+    public void testC0Prefix() throws IOException
+    {
+        Properties config = new Properties();
+        config.load(WordSegContextGeneratorConf.class.getClassLoader()
+                .getResourceAsStream("com/lc/nlp4han/segment/feature.properties"));
+        config.setProperty("feature.c0pre", "true");
+        config.setProperty("feature.t_1", "true");
+        config.setProperty("feature.t_2", "true");
+
+        assertSameIds(new WordSegContextGeneratorConf(config));
+    }
+
+    @Test
+    public void testDefaultGenerator()
+    {
+        assertSameIds(new DefaultWordSegContextGenerator());
+    }
+
+    /**
+     * 字符序列与字符串数组产生相同的特征
+     */
+    private void assertSameContext(AbstractCharContextGenerator generator)
+    {
+        String[] chars = SENTENCE.split("");
+        CharSentence sentence = CharSentence.of(SENTENCE);
+        for (int i = 0; i < chars.length; i++)
+            assertArrayEquals(generator.getContext(i, chars, TAGS, null), generator.getContext(i, sentence, TAGS, null));
+    }
+
+    @Test
+    public void testCharSentence() throws IOException
+    {
+        assertSameContext(new WordSegContextGeneratorConf());
+        assertSameContext(new DefaultWordSegContextGenerator());
+    }
+}
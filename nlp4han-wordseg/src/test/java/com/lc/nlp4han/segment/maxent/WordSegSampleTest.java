@@ -0,0 +1,38 @@
+package com.lc.nlp4han.segment.maxent;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * 测试分词样本的解析和转换
+ */
+public class WordSegSampleTest
+{
+    @Test
+    public void testParse()
+    {
+        WordSegSample sample = WordSegSample.parse(" 研究 生命\t的  起源 ");
+
+        assertArrayEquals(new String[] { "研", "究", "生", "命", "的", "起", "源" }, sample.getSentence());
+        assertArrayEquals(new String[] { "B", "E", "B", "E", "S", "B", "E" }, sample.getTags());
+        assertArrayEquals(new String[] { "研究", "生命", "的", "起源" }, sample.toWords());
+        assertEquals("研究 生命 的 起源 ", sample.toSample());
+        assertEquals("研_B 究_E 生_B 命_E 的_S 起_B 源_E", sample.toString());
+
+        assertEquals(new WordSegSample(sample.getSentence(), sample.getTags()), sample);
+        assertFalse(WordSegSample.parse("研究生 命").equals(sample));
+    }
+
+    @Test
+    public void testSurrogatePair()
+    {
+        // U+20BB7为增补字符，作为一个字标注
+        WordSegSample sample = WordSegSample.parse("𠮷 𠮷祥 如意");
+
+        assertArrayEquals(new String[] { "𠮷", "𠮷", "祥", "如", "意" }, sample.getSentence());
+        assertArrayEquals(new String[] { "S", "B", "E", "B", "E" }, sample.getTags());
+        assertArrayEquals(new String[] { "𠮷", "𠮷祥", "如意" }, sample.toWords());
+        assertEquals(0x20BB7, sample.getCharSentence().codePointAt(1));
+    }
+}
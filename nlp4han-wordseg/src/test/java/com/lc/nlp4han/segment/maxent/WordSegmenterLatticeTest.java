@@ -0,0 +1,136 @@
+package com.lc.nlp4han.segment.maxent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.lc.nlp4han.ml.util.CollectionObjectStream;
+import com.lc.nlp4han.ml.util.ModelWrapper;
+import com.lc.nlp4han.ml.util.TrainingParameters;
+import com.lc.nlp4han.segment.WordSegMeasure;
+import com.lc.nlp4han.segment.WordSegmenter;
+import com.lc.nlp4han.util.DoubleArrayTrie;
+
+/**
+ * WordSegmenterLattice单元测试
+ */
+public class WordSegmenterLatticeTest
+{
+    private static final String[] CORPUS = { "研究 生命 的 起源", "他 是 研究生", "小明 来到 北京", "小红 来到 上海",
+            "我们 研究 生命", "他 来到 研究所" };
+
+    private static final List<String> DICT = Arrays.asList("研究", "研究生", "生命", "起源", "来到", "北京", "上海", "我们",
+            "研究所");
+
+    private static ModelWrapper model;
+
+    private static List<WordSegSample> samples = new ArrayList<WordSegSample>();
+
+    @BeforeClass
+    public static void train() throws IOException
+    {
+        for (int i = 0; i < 5; i++)
+        {
+            for (String sentence : CORPUS)
+                samples.add(WordSegSample.parse(sentence));
+        }
+
+        TrainingParameters params = new TrainingParameters();
+        params.put(TrainingParameters.ITERATIONS_PARAM, "100");
+        params.put(TrainingParameters.CUTOFF_PARAM, "0");
+        model = WordSegmenterME.train(new CollectionObjectStream<WordSegSample>(samples), params);
+    }
+
+    private static WordSegmenterLattice segmenter()
+    {
+        return new WordSegmenterLattice(model, DoubleArrayTrie.build(DICT));
+    }
+
+    @Test
+    public void testSegment()
+    {
+        WordSegmenterLattice segmenter = segmenter();
+
+        // 歧义片段由模型在词典词中选择
+        assertArrayEquals(new String[] { "研究", "生命", "的", "起源" }, segmenter.segment("研究生命的起源"));
+        // 未登录片段由模型成词
+        assertArrayEquals(new String[] { "小明", "来到", "北京" }, segmenter.segment("小明来到北京"));
+        // 覆盖整个片段的词典词直接成词
+        assertArrayEquals(new String[] { "他", "来到", "研究所" }, segmenter.segment("他来到研究所"));
+        assertEquals(0, segmenter.segment("").length);
+    }
+
+    @Test
+    public void testMeasure()
+    {
+        WordSegMeasure lattice = new WordSegMeasure();
+        WordSegMeasure me = new WordSegMeasure();
+        double[] charsPerSecond = WordSegLatticeEvalTool.compare(new String[] { "WordSegmenterME", "WordSegmenterLattice" },
+                new WordSegmenter[] { new WordSegmenterME(model), segmenter() }, samples, new WordSegMeasure[] { me, lattice }, 2);
+
+        assertEquals(2, charsPerSecond.length);
+        assertEquals(me.getMeasure(), lattice.getMeasure(), 1e-9);
+        assertEquals(1.0, lattice.getMeasure(), 1e-9);
+    }
+
+    @Test
+    public void testSupplementaryCharacters()
+    {
+        // U+20BB7为增补字符，"来\uD842"只与代理对的前一半匹配，不能成词
+        List<String> dict = new ArrayList<String>(DICT);
+        dict.add("\uD842\uDFB7野家");
+        dict.add("来\uD842");
+        WordSegmenterLattice segmenter = new WordSegmenterLattice(model, DoubleArrayTrie.build(dict));
+
+        assertArrayEquals(new String[] { "小明", "来", "\uD842\uDFB7野家" }, segmenter.segment("小明来\uD842\uDFB7野家"));
+
+        String[] chars = { "研", "究", "生", "命", "小", "明", "来", "\uD842\uDFB7", "\uD83D\uDE00", "野", "家" };
+        Random random = new Random(24);
+        for (int i = 0; i < 200; i++)
+        {
+            StringBuilder sentence = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int k = 0; k < length; k++)
+                sentence.append(chars[random.nextInt(chars.length)]);
+
+            StringBuilder joined = new StringBuilder();
+            for (String word : segmenter.segment(sentence.toString()))
+            {
+                assertFalse(word, Character.isLowSurrogate(word.charAt(0)));
+                assertFalse(word, Character.isHighSurrogate(word.charAt(word.length() - 1)));
+                joined.append(word);
+            }
+            assertEquals(sentence.toString(), joined.toString());
+        }
+    }
+
+    @Test
+    public void testConcatenation()
+    {
+        WordSegmenterLattice segmenter = segmenter();
+        String chars = "研究生命的起源他是小明红来到北京上海我们所";
+        Random random = new Random(23);
+        for (int i = 0; i < 200; i++)
+        {
+            StringBuilder sentence = new StringBuilder();
+            int length = 1 + random.nextInt(30);
+            for (int k = 0; k < length; k++)
+                sentence.append(chars.charAt(random.nextInt(chars.length())));
+
+            StringBuilder joined = new StringBuilder();
+            for (String word : segmenter.segment(sentence.toString()))
+            {
+                assertTrue(word.length() > 0);
+                joined.append(word);
+            }
+            assertEquals(sentence.toString(), joined.toString());
+        }
+    }
+}